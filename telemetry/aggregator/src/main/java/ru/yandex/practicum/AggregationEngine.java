@@ -0,0 +1,13 @@
+package ru.yandex.practicum;
+
+/**
+ * Движок агрегации: читает события датчиков и пишет снапшоты хабов в топик снапшотов.
+ * Выбирается настройкой {@code aggregator.engine}: {@code loop} - собственный цикл потребителя
+ * с состоянием в памяти, {@code streams} - Kafka Streams с состоянием в хранилище с журналом изменений.
+ */
+public interface AggregationEngine {
+    /**
+     * Запускает агрегацию и возвращает управление после остановки движка.
+     */
+    void start();
+}
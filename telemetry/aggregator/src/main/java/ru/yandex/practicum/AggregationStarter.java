@@ -1,135 +1,276 @@
 package ru.yandex.practicum;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
-import org.apache.kafka.clients.consumer.OffsetAndMetadata;
-import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.TopicPartition;
-import org.apache.kafka.common.errors.WakeupException;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.anomaly.AnomalyDetector;
+import ru.yandex.practicum.anomaly.AnomalyProperties;
+import ru.yandex.practicum.kafka.telemetry.event.BatchedSensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorAnomalyAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorRollupAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.profiling.SnapshotUpdateEvent;
+import ru.yandex.practicum.recent.RecentReadings;
+import ru.yandex.practicum.recent.RecentReadingsProperties;
+import ru.yandex.practicum.reorder.HeldOffsets;
+import ru.yandex.practicum.reorder.ReorderBuffer;
+import ru.yandex.practicum.reorder.ReorderProperties;
+import ru.yandex.practicum.rollup.RollupAggregator;
+import ru.yandex.practicum.rollup.RollupProperties;
+import ru.yandex.practicum.state.LiveStateView;
+import ru.yandex.practicum.telemetry.common.hitters.HeavyHitters;
+import ru.yandex.practicum.telemetry.common.kafka.consumer.ConsumerEngineProperties;
+import ru.yandex.practicum.telemetry.common.kafka.consumer.KafkaConsumerEngine;
+import ru.yandex.practicum.telemetry.common.kafka.consumer.RecordHold;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
+import tracing.TraceContext;
 
-import java.time.Duration;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Класс AggregationStarter, ответственный за запуск агрегации данных.
  */
 @Slf4j
 @Component
+@ConditionalOnProperty(name = "aggregator.engine", havingValue = "loop", matchIfMissing = true)
 @RequiredArgsConstructor
-public class AggregationStarter {
-    private final KafkaConsumer<String, SensorEventAvro> consumer;
-    private final KafkaProducer<String, SensorsSnapshotAvro> producer;
+public class AggregationStarter implements AggregationEngine {
+    private final Consumer<String, SensorEventBatchAvro> consumer;
+    private final Producer<String, SpecificRecordBase> producer;
     private final SnapshotStorage snapshotStorage;
+    private final LiveStateView liveStateView;
+    private final RollupProperties rollupProperties;
+    private final ReorderProperties reorderProperties;
+    private final AnomalyProperties anomalyProperties;
+    private final RecentReadingsProperties recentReadingsProperties;
+    private final ConsumerEngineProperties engineProperties;
+    private final MeterRegistry meterRegistry;
+    private final LogSampler logSampler;
+    private final ObjectProvider<HeavyHitters> heavyHittersProvider;
     @Value("${kafka.input-topic}")
     private String inputTopic;
     @Value("${kafka.output-topic}")
     private String outputTopic;
-    private static final Map<TopicPartition, OffsetAndMetadata> currentOffsets = new HashMap<>();
-
+    private KafkaConsumerEngine<String, SensorEventBatchAvro> engine;
+    private Timer stageLatency;
+    private Counter snapshotsEmitted;
+    private RollupAggregator rollups;
+    private AnomalyDetector anomalies;
+    private RecentReadings recentReadings;
+    private ReorderBuffer<PendingEvent> reorder;
+    private final HeldOffsets heldOffsets = new HeldOffsets();
+    private HeavyHitters heavyHitters;
 
     /**
      * Метод для начала процесса агрегации данных.
      * Подписывается на топики для получения событий от датчиков,
      * формирует снимок их состояния и записывает в кафку.
      */
+    @Override
     public void start() {
-        try {
-
-            consumer.subscribe(List.of(inputTopic));
-            log.info("Подписка на топик {}", inputTopic);
-
-            // Цикл обработки событий
-            while (true) {
-                ConsumerRecords<String, SensorEventAvro> records = consumer.poll(Duration.ofMillis(1000));
-
-                int count = 0;
-                for (ConsumerRecord<String, SensorEventAvro> record : records) {
-                    // обрабатываем очередную запись
-                    handleRecord(record);
-                    // фиксируем оффсеты обработанных записей, если нужно
-                    manageOffsets(record, count, consumer);
-                    count++;
+        // время от приёма события коллектором до записи снапшота в Kafka
+        stageLatency = Timer.builder("telemetry.pipeline.stage.latency")
+                .description("Задержка от приёма события коллектором до выхода из стадии")
+                .tag("stage", "aggregator")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        snapshotsEmitted = Counter.builder("telemetry.aggregator.snapshots.emitted")
+                .description("Снапшоты, записанные агрегатором в Kafka")
+                .register(meterRegistry);
+        if (rollupProperties.isEnabled()) {
+            // статистика по окнам живёт в потоке обработки движка, как и снапшоты
+            rollups = new RollupAggregator(rollupProperties, this::sendRollup, meterRegistry);
+        }
+        if (recentReadingsProperties.isEnabled()) {
+            RecentReadings.logBounds(recentReadingsProperties);
+            recentReadings = new RecentReadings(recentReadingsProperties);
+        }
+        if (anomalyProperties.isEnabled()) {
+            anomalies = new AnomalyDetector(anomalyProperties, this::sendAnomaly, meterRegistry);
+        }
+        if (reorderProperties.isEnabled()) {
+            // события хаба применяются к снапшоту в порядке времени событий, а не в порядке прихода
+            reorder = new ReorderBuffer<>(reorderProperties, this::release, meterRegistry);
+        }
+        heavyHitters = heavyHittersProvider.getIfAvailable();
+        engine = new KafkaConsumerEngine<>("aggregator", consumer, List.of(inputTopic),
+                records -> records.forEach(this::handleRecord), engineProperties, meterRegistry);
+        // замолчавшие хабы обслуживаются по часам сервиса, даже если записей больше нет
+        engine.setTick(this::expireIfDue);
+        if (reorder != null) {
+            // смещения событий из буфера не фиксируются: при падении и смене владельца партиции
+            // они будут прочитаны снова, а после отзыва партиции её события здесь не применяются
+            engine.setRecordHold(new RecordHold() {
+                @Override
+                public long lowestHeldOffset(TopicPartition partition) {
+                    return heldOffsets.lowest(partition);
                 }
-                // фиксируем максимальный оффсет обработанных записей
-                consumer.commitAsync();
-            }
 
-        } catch (WakeupException ignored) {
-            // игнорируем - закрываем консьюмер и продюсер в блоке finally
-        } catch (Exception e) {
-            log.error("Ошибка во время обработки событий от датчиков", e);
+                @Override
+                public void discard(Collection<TopicPartition> partitions) {
+                    reorder.discard(pending -> partitions.contains(pending.partition()));
+                    heldOffsets.forget(partitions);
+                }
+            });
+        }
+        try {
+            engine.run();
         } finally {
-            try {
-                producer.flush();
-                log.info("Все данные отправлены в Kafka");
-                consumer.commitSync();
-                log.info("Все смещения зафиксированы");
-
-                // Перед тем, как закрыть продюсер и консьюмер, нужно убедиться,
-                // что все сообщения, лежащие в буффере, отправлены и
-                // все оффсеты обработанных сообщений зафиксированы
-
-                // здесь нужно вызвать метод продюсера для сброса данных в буффере
-                // здесь нужно вызвать метод консьюмера для фиксиции смещений
+            // Перед тем, как закрыть продюсер, нужно убедиться,
+            // что все сообщения, лежащие в буффере, отправлены
+            producer.flush();
+            log.info("Все данные отправлены в Kafka");
+            log.info("Закрываем продюсер");
+            producer.close();
+        }
+    }
 
-            } finally {
-                log.info("Закрываем консьюмер");
-                consumer.close();
-                log.info("Закрываем продюсер");
-                producer.close();
-            }
+    @PreDestroy
+    public void stop() {
+        if (engine != null) {
+            engine.close();
         }
     }
 
-    private static void manageOffsets(ConsumerRecord<String, SensorEventAvro> record, int count, KafkaConsumer<String, SensorEventAvro> consumer) {
-        // обновляем текущий оффсет для топика-партиции
-        currentOffsets.put(
-                new TopicPartition(record.topic(), record.partition()),
-                new OffsetAndMetadata(record.offset() + 1)
-        );
+    /**
+     * Выпускает буферы и закрывает окна замолчавших хабов. Выполняется в рабочем потоке движка
+     * после каждого опроса брокера, поэтому не зависит от того, пришли ли новые записи.
+     */
+    private void expireIfDue() {
+        long now = System.currentTimeMillis();
+        if (reorder != null) {
+            // события из буфера сначала попадают в окна, потом окна закрываются
+            reorder.expireIfDue(now);
+        }
+        if (rollups != null) {
+            rollups.expireIfDue(now);
+        }
+        if (anomalies != null) {
+            anomalies.expireIfDue(now);
+        }
+    }
 
-        if(count % 10 == 0) {
-            consumer.commitAsync(currentOffsets, (offsets, exception) -> {
-                if(exception != null) {
-                    log.warn("Ошибка во время фиксации оффсетов: {}", offsets, exception);
+    private void handleRecord(ConsumerRecord<String, SensorEventBatchAvro> record) {
+        if (logSampler.sample(log)) {
+            log.debug("топик = {}, партиция = {}, смещение = {}, значение: {}",
+                    record.topic(), record.partition(), record.offset(), record.value());
+        }
+        if (record.value() == null) {
+            return;
+        }
+        // одиночное событие приходит пачкой из одного события с трассировкой из заголовков записи
+        List<BatchedSensorEventAvro> entries = record.value().getEvents();
+        int bytes = record.serializedValueSize() / Math.max(1, entries.size());
+        for (BatchedSensorEventAvro entry : entries) {
+            SensorEventAvro event = entry.getEvent();
+            TraceContext trace = TraceContext.fromBatched(entry).orElse(null);
+            if (reorder != null) {
+                TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+                // смещение придерживается до добавления: буфер может сразу выпустить событие
+                heldOffsets.hold(partition, record.offset());
+                PendingEvent pending = new PendingEvent(event, trace, bytes, partition, record.offset());
+                if (!reorder.add(event.getHubId(), event.getTimestamp().toEpochMilli(), pending,
+                        System.currentTimeMillis())) {
+                    heldOffsets.release(partition, record.offset());
                 }
-            });
+            } else {
+                handleEvent(event, trace, bytes);
+            }
         }
     }
 
-    private void handleRecord(ConsumerRecord<String, SensorEventAvro> record) throws InterruptedException {
-        log.info("топик = {}, партиция = {}, смещение = {}, значение: {}\n",
-                record.topic(), record.partition(), record.offset(), record.value());
+    private void release(PendingEvent pending) {
+        heldOffsets.release(pending.partition(), pending.offset());
+        handleEvent(pending.event(), pending.trace(), pending.bytes());
+    }
+
+    private void handleEvent(SensorEventAvro event, TraceContext trace, int bytes) {
         try {
-            Optional<SensorsSnapshotAvro> mayBeSnapshot = snapshotStorage.updateState(record.value());
+            if (heavyHitters != null) {
+                heavyHitters.recordSensor(event.getHubId(), event.getId(), System.currentTimeMillis());
+            }
+            SnapshotUpdateEvent updateEvent = new SnapshotUpdateEvent();
+            updateEvent.begin();
+            Optional<SensorsSnapshotAvro> mayBeSnapshot = snapshotStorage.updateState(event, trace, recentReadings);
+            updateEvent.end();
+            if (rollups != null) {
+                rollups.add(event, System.currentTimeMillis());
+            }
+            if (anomalies != null) {
+                anomalies.add(event, System.currentTimeMillis());
+            }
+            if (updateEvent.shouldCommit()) {
+                updateEvent.hubId = event.getHubId();
+                updateEvent.sensorId = event.getId();
+                updateEvent.payloadType = event.getPayload().getClass().getSimpleName();
+                updateEvent.bytes = bytes;
+                updateEvent.changed = mayBeSnapshot.isPresent();
+                updateEvent.commit();
+            }
 
             if (mayBeSnapshot.isPresent()) {
                 SensorsSnapshotAvro snapshot = mayBeSnapshot.get();
-                ProducerRecord<String, SensorsSnapshotAvro> producerRecord =
+                // хранилище меняет снапшот на месте, запросам состояния отдаётся неизменяемая копия
+                liveStateView.publish(snapshot);
+                ProducerRecord<String, SpecificRecordBase> producerRecord =
                         new ProducerRecord<>(outputTopic, snapshot.getHubId(), snapshot);
 
                 producer.send(producerRecord, (metadata, exception) -> {
                     if (exception != null) {
                         log.error("Ошибка при отправке сообщения в Kafka: {}", exception.getMessage(), exception);
                     } else {
-                        log.info("Сообщение={} отправлено в Kafka: топик={}, смещение={}",
-                                producerRecord, metadata.topic(), metadata.offset());
+                        snapshotsEmitted.increment();
+                        if (trace != null) {
+                            stageLatency.record(trace.elapsedMillis(), TimeUnit.MILLISECONDS);
+                        }
                     }
                 });
             }
         } catch (Exception e) {
-            log.error("Ошибка при обработке записи: ключ={}, значение={}", record.key(), record.value(), e);
+            log.error("Ошибка при обработке события: {}", event, e);
         }
     }
-}
\ No newline at end of file
+
+    private void sendRollup(SensorRollupAvro rollup) {
+        producer.send(new ProducerRecord<>(rollupProperties.getTopic(), rollup.getHubId(), rollup),
+                (metadata, exception) -> {
+                    if (exception != null) {
+                        log.error("Ошибка при отправке статистики окна в Kafka: {}", exception.getMessage(), exception);
+                    }
+                });
+    }
+
+    private void sendAnomaly(SensorAnomalyAvro anomaly) {
+        producer.send(new ProducerRecord<>(anomalyProperties.getTopic(), anomaly.getHubId(), anomaly),
+                (metadata, exception) -> {
+                    if (exception != null) {
+                        log.error("Ошибка при отправке аномалии в Kafka: {}", exception.getMessage(), exception);
+                    }
+                });
+    }
+
+    /**
+     * Событие, ожидающее своей очереди в буфере упорядочивания.
+     */
+    private record PendingEvent(SensorEventAvro event, TraceContext trace, int bytes,
+                                TopicPartition partition, long offset) {
+    }
+}
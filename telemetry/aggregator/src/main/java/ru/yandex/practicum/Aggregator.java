@@ -1,9 +1,15 @@
 package ru.yandex.practicum;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
+import ru.yandex.practicum.telemetry.common.profiling.ContinuousRecording;
+import ru.yandex.practicum.telemetry.common.profiling.FlightRecorderProperties;
 
 @SpringBootApplication
 @ConfigurationPropertiesScan
@@ -14,8 +20,24 @@ public class Aggregator {
         // получения настроенных бинов
         ConfigurableApplicationContext context = SpringApplication.run(Aggregator.class, args);
 
-        // Получаем бин AggregationStarter из контекста и запускаем основную логику сервиса
-        AggregationStarter aggregator = context.getBean(AggregationStarter.class);
+        // Получаем выбранный движок агрегации из контекста и запускаем основную логику сервиса
+        AggregationEngine aggregator = context.getBean(AggregationEngine.class);
         aggregator.start();
     }
-}
\ No newline at end of file
+
+    @Bean
+    LogSampler logSampler(@Value("${telemetry.logging.sample-rate:100}") int sampleRate) {
+        return new LogSampler(sampleRate);
+    }
+
+    @Bean
+    @ConfigurationProperties("telemetry.jfr")
+    FlightRecorderProperties flightRecorderProperties() {
+        return new FlightRecorderProperties();
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    ContinuousRecording continuousRecording(FlightRecorderProperties properties) {
+        return new ContinuousRecording(properties);
+    }
+}
@@ -1,7 +1,9 @@
 package ru.yandex.practicum;
 
 
-import deserializer.SensorEventDeserializer;
+import deserializer.SensorEventBatchDeserializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
@@ -9,13 +11,27 @@ import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
-import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import ru.yandex.practicum.anomaly.AnomalyProperties;
+import ru.yandex.practicum.recent.RecentReadingsProperties;
+import ru.yandex.practicum.reorder.ReorderProperties;
+import ru.yandex.practicum.rollup.RollupProperties;
+import ru.yandex.practicum.state.ConsumerGroupOwnerLocator;
+import ru.yandex.practicum.state.StateProperties;
+import ru.yandex.practicum.telemetry.common.hitters.HeavyHitterProperties;
+import ru.yandex.practicum.telemetry.common.hitters.HeavyHitters;
+import ru.yandex.practicum.telemetry.common.hitters.HeavyHittersEndpoint;
+import ru.yandex.practicum.telemetry.common.kafka.consumer.ConsumerEngineProperties;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopicProvisioner;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopologyProperties;
 import serializer.GeneralAvroSerializer;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 @Configuration
@@ -29,21 +45,101 @@ public class KafkaConfig {
     private String consumerGroupId;
 
     @Bean
-    public KafkaConsumer<String, SensorEventAvro> kafkaConsumer() {
+    @ConfigurationProperties("kafka.topology")
+    public TopologyProperties topologyProperties() {
+        return new TopologyProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("aggregator.rollups")
+    public RollupProperties rollupProperties() {
+        return new RollupProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("aggregator.anomalies")
+    public AnomalyProperties anomalyProperties() {
+        return new AnomalyProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("aggregator.recent-readings")
+    public RecentReadingsProperties recentReadingsProperties() {
+        return new RecentReadingsProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("aggregator.reorder")
+    public ReorderProperties reorderProperties() {
+        return new ReorderProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("aggregator.heavy-hitters")
+    public HeavyHitterProperties heavyHitterProperties() {
+        return new HeavyHitterProperties();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "aggregator.heavy-hitters.enabled", havingValue = "true", matchIfMissing = true)
+    public HeavyHitters heavyHitters(HeavyHitterProperties properties, MeterRegistry meterRegistry) {
+        return new HeavyHitters(properties, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "aggregator.heavy-hitters.enabled", havingValue = "true", matchIfMissing = true)
+    public HeavyHittersEndpoint heavyHittersEndpoint(HeavyHitters heavyHitters) {
+        return new HeavyHittersEndpoint(heavyHitters);
+    }
+
+    @Bean
+    public TopicProvisioner topicProvisioner(TopologyProperties topology,
+                                             RollupProperties rollupProperties,
+                                             AnomalyProperties anomalyProperties,
+                                             @Value("${kafka.input-topic}") String inputTopic,
+                                             @Value("${kafka.output-topic}") String outputTopic) {
+        TopicProvisioner provisioner = new TopicProvisioner(bootstrapServers, topology);
+        List<String> topics = new ArrayList<>(List.of(inputTopic, outputTopic));
+        if (rollupProperties.isEnabled()) {
+            topics.add(rollupProperties.getTopic());
+        }
+        if (anomalyProperties.isEnabled()) {
+            topics.add(anomalyProperties.getTopic());
+        }
+        provisioner.provision(topics);
+        return provisioner;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "aggregator.engine", havingValue = "loop", matchIfMissing = true)
+    public KafkaConsumer<String, SensorEventBatchAvro> kafkaConsumer(TopologyProperties topology,
+                                                                     StateProperties stateProperties) {
         Properties properties = new Properties();
         properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         properties.put(ConsumerConfig.GROUP_ID_CONFIG, consumerGroupId);
+        // по идентификатору клиента соседи находят адрес экземпляра, обрабатывающего партицию
+        properties.put(ConsumerConfig.CLIENT_ID_CONFIG,
+                ConsumerGroupOwnerLocator.clientId("aggregator", stateProperties.getAdvertisedEndpoint()));
         properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, SensorEventDeserializer.class.getName());
+        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, SensorEventBatchDeserializer.class.getName());
+        topology.applyToConsumer(properties);
         return new KafkaConsumer<>(properties);
     }
 
     @Bean
-    public KafkaProducer<String, SensorsSnapshotAvro> kafkaProducer() {
+    @ConfigurationProperties("kafka.consumer-engine")
+    public ConsumerEngineProperties consumerEngineProperties() {
+        return new ConsumerEngineProperties();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "aggregator.engine", havingValue = "loop", matchIfMissing = true)
+    public KafkaProducer<String, SpecificRecordBase> kafkaProducer(TopologyProperties topology) {
         Properties properties = new Properties();
         properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
         properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, GeneralAvroSerializer.class.getName());
+        topology.applyToProducer(properties);
         return new KafkaProducer<>(properties);
     }
 }
\ No newline at end of file
@@ -1,11 +1,16 @@
 package ru.yandex.practicum;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.recent.RecentReadings;
+import tracing.TraceContext;
 
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -14,9 +19,68 @@ import java.util.Optional;
 @Component
 public class SnapshotStorage {
     private final Map<String, SensorsSnapshotAvro> snapshots = new HashMap<>();
+    // по соотношению счётчиков видно, какую долю событий агрегатор отбрасывает
+    private final Counter applied;
+    private final Counter duplicates;
+    private final Counter stale;
+
+    public SnapshotStorage(MeterRegistry meterRegistry) {
+        this.applied = updatesCounter(meterRegistry, "applied");
+        this.duplicates = updatesCounter(meterRegistry, "duplicate");
+        this.stale = updatesCounter(meterRegistry, "stale");
+    }
+
+    private static Counter updatesCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("telemetry.aggregator.updates")
+                .description("События датчиков, обработанные хранилищем снапшотов, по результату")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
 
     public Optional<SensorsSnapshotAvro> updateState(SensorEventAvro event) {
-        SensorsSnapshotAvro snapshot = snapshots.get(event.getHubId());
+        return updateState(event, null);
+    }
+
+    /**
+     * Обновляет снимок хаба событием датчика.
+     * Контекст трассировки, если он есть, сохраняется в состоянии датчика,
+     * чтобы анализатор мог передать его дальше вместе с действием.
+     */
+    public Optional<SensorsSnapshotAvro> updateState(SensorEventAvro event, TraceContext trace) {
+        return updateState(event, trace, null);
+    }
+
+    /**
+     * То же, что {@link #updateState(SensorEventAvro, TraceContext)}, но с историей последних показаний датчика.
+     *
+     * @param recent история показаний, которую ведёт вызывающий поток, или {@code null}
+     */
+    public Optional<SensorsSnapshotAvro> updateState(SensorEventAvro event, TraceContext trace,
+                                                     RecentReadings recent) {
+        Optional<SensorsSnapshotAvro> updated = apply(snapshots.get(event.getHubId()), event, trace, recent);
+        updated.ifPresent(snapshot -> snapshots.put(event.getHubId(), snapshot));
+        return updated;
+    }
+
+    /**
+     * Применяет событие датчика к снимку хаба, который хранится вне этого объекта,
+     * например в хранилище состояния Kafka Streams. Переданный снимок изменяется на месте.
+     *
+     * @param snapshot текущий снимок хаба или {@code null}, если хаб ещё не присылал событий
+     * @return изменённый или новый снимок; пустой результат, если событие устарело или ничего не меняет
+     */
+    public Optional<SensorsSnapshotAvro> apply(SensorsSnapshotAvro snapshot, SensorEventAvro event, TraceContext trace) {
+        return apply(snapshot, event, trace, null);
+    }
+
+    /**
+     * То же, что {@link #apply(SensorsSnapshotAvro, SensorEventAvro, TraceContext)}, но в новое состояние
+     * датчика попадает и история его последних показаний.
+     *
+     * @param recent история показаний, которую ведёт вызывающий поток, или {@code null}
+     */
+    public Optional<SensorsSnapshotAvro> apply(SensorsSnapshotAvro snapshot, SensorEventAvro event, TraceContext trace,
+                                               RecentReadings recent) {
         if (snapshot == null) {
             snapshot = new SensorsSnapshotAvro();
             snapshot.setHubId(event.getHubId());
@@ -28,8 +92,12 @@ public class SnapshotStorage {
         if (oldState != null) {
             // Если oldState произошёл позже, чем event
             // или данные совпадают, то обновление не требуется
-            if (oldState.getTimestamp().isAfter(event.getTimestamp()) ||
-                    oldState.getData().equals(event.getPayload())) {
+            if (oldState.getTimestamp().isAfter(event.getTimestamp())) {
+                stale.increment();
+                return Optional.empty();
+            }
+            if (oldState.getData().equals(event.getPayload())) {
+                duplicates.increment();
                 return Optional.empty();
             }
         }
@@ -37,9 +105,16 @@ public class SnapshotStorage {
         SensorStateAvro newState = new SensorStateAvro();
         newState.setTimestamp(event.getTimestamp());
         newState.setData(event.getPayload());
+        if (trace != null) {
+            newState.setTraceId(trace.traceId());
+            newState.setIngestedAt(Instant.ofEpochMilli(trace.ingestedAt()));
+        }
+        if (recent != null) {
+            newState.setHistory(recent.record(event, oldState));
+        }
         snapshot.getSensorsState().put(event.getId(), newState);
         snapshot.setTimestamp(event.getTimestamp());
-        snapshots.put(event.getHubId(), snapshot);
+        applied.increment();
         return Optional.of(snapshot);
     }
 }
\ No newline at end of file
@@ -0,0 +1,202 @@
+package ru.yandex.practicum.anomaly;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.yandex.practicum.kafka.telemetry.event.AnomalyKindAvro;
+import ru.yandex.practicum.kafka.telemetry.event.RollupMetricAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorAnomalyAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.rollup.SensorMetrics;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Ищет аномалии в показаниях датчиков за один проход, не храня сами показания.
+ * <p>
+ * У каждого показателя датчика есть экспоненциально сглаженные среднее и дисперсия: показание,
+ * отстоящее от среднего на {@code jump-threshold} стандартных отклонений и больше, - скачок, например
+ * просадка напряжения датчика движения. Время с последнего изменения значения замечает зависший датчик,
+ * например климатический, который перестал обновлять значения: число одинаковых показаний для этого
+ * не годится, потому что коллектор их пропускает. Зависание отмечается один раз, пока значение не изменится.
+ * <p>
+ * На событие - постоянная работа, на датчик - несколько примитивных массивов по числу его показателей.
+ * Объект не потокобезопасен и принадлежит одному потоку.
+ */
+public class AnomalyDetector {
+    private final double alpha;
+    private final int warmup;
+    private final double jumpThreshold;
+    private final double minDeviation;
+    private final long flatlineDuration;
+    private final boolean[] flatlineMetrics = new boolean[RollupMetricAvro.values().length];
+    private final long idleEvict;
+    private final long flushInterval;
+    private final Consumer<SensorAnomalyAvro> sink;
+    private final Map<String, HubState> hubs = new HashMap<>();
+    private final int[] values = new int[SensorMetrics.MAX_METRICS];
+    private final Counter jumps;
+    private final Counter flatlines;
+    private long nextFlush;
+
+    /**
+     * @param sink получает каждую найденную аномалию
+     */
+    public AnomalyDetector(AnomalyProperties properties, Consumer<SensorAnomalyAvro> sink, MeterRegistry meterRegistry) {
+        this.alpha = properties.getAlpha();
+        this.warmup = properties.getWarmup();
+        this.jumpThreshold = properties.getJumpThreshold();
+        this.minDeviation = properties.getMinDeviation();
+        this.flatlineDuration = properties.getFlatlineDuration().toMillis();
+        properties.getFlatlineMetrics().forEach(metric -> flatlineMetrics[metric.ordinal()] = true);
+        this.idleEvict = properties.getIdleEvict().toMillis();
+        this.flushInterval = properties.getFlushInterval().toMillis();
+        this.sink = sink;
+        this.jumps = anomaliesCounter(meterRegistry, AnomalyKindAvro.JUMP);
+        this.flatlines = anomaliesCounter(meterRegistry, AnomalyKindAvro.FLATLINE);
+    }
+
+    private static Counter anomaliesCounter(MeterRegistry meterRegistry, AnomalyKindAvro kind) {
+        return Counter.builder("telemetry.aggregator.anomalies")
+                .description("Аномалии показателей датчиков, переданные на запись, по виду")
+                .tag("kind", kind.name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Проверяет показатели события и учитывает их в среднем и дисперсии датчика.
+     *
+     * @param now текущее время сервиса в миллисекундах
+     */
+    public void add(SensorEventAvro event, long now) {
+        HubState hub = hubs.computeIfAbsent(event.getHubId(), ignored -> new HubState());
+        hub.lastEventAt = now;
+
+        Object payload = event.getPayload();
+        RollupMetricAvro[] metrics = SensorMetrics.metricsOf(payload);
+        SensorState sensor = hub.sensors.get(event.getId());
+        if (sensor == null || sensor.metrics != metrics) {
+            // новый датчик или датчик сменил тип: статистика начинается заново
+            sensor = new SensorState(metrics);
+            hub.sensors.put(event.getId(), sensor);
+        }
+
+        int count = SensorMetrics.valuesOf(payload, values);
+        for (int i = 0; i < count; i++) {
+            check(event, sensor, i, values[i]);
+        }
+        sensor.samples++;
+    }
+
+    /**
+     * Забывает замолчавшие хабы, если с прошлой проверки прошло не меньше {@code flush-interval}.
+     */
+    public void expireIfDue(long now) {
+        if (now >= nextFlush) {
+            expire(now);
+            nextFlush = now + flushInterval;
+        }
+    }
+
+    /**
+     * Забывает хабы, от которых нет событий дольше {@code idle-evict}.
+     */
+    public void expire(long now) {
+        Iterator<HubState> iterator = hubs.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().lastEventAt > idleEvict) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public int trackedHubs() {
+        return hubs.size();
+    }
+
+    private void check(SensorEventAvro event, SensorState sensor, int i, int value) {
+        RollupMetricAvro metric = sensor.metrics[i];
+        long timestamp = event.getTimestamp().toEpochMilli();
+        if (sensor.samples == 0) {
+            sensor.means[i] = value;
+            sensor.lastValues[i] = value;
+            sensor.unchangedSince[i] = timestamp;
+            return;
+        }
+
+        if (value == sensor.lastValues[i]) {
+            long unchanged = timestamp - sensor.unchangedSince[i];
+            if (!sensor.flatlined[i] && unchanged >= flatlineDuration && flatlineMetrics[metric.ordinal()]) {
+                sensor.flatlined[i] = true;
+                emit(event, metric, AnomalyKindAvro.FLATLINE, value, sensor.means[i],
+                        Math.sqrt(sensor.variances[i]), unchanged / 1000.0);
+                flatlines.increment();
+            }
+        } else {
+            sensor.lastValues[i] = value;
+            sensor.unchangedSince[i] = timestamp;
+            sensor.flatlined[i] = false;
+        }
+
+        double mean = sensor.means[i];
+        double variance = sensor.variances[i];
+        double diff = value - mean;
+        if (sensor.samples >= warmup && !SensorMetrics.isBoolean(metric)) {
+            double stdDev = Math.sqrt(variance);
+            double score = Math.abs(diff) / Math.max(stdDev, minDeviation);
+            if (score >= jumpThreshold) {
+                emit(event, metric, AnomalyKindAvro.JUMP, value, mean, stdDev, score);
+                jumps.increment();
+            }
+        }
+        // экспоненциально сглаженные среднее и дисперсия, обновление за O(1)
+        double increment = alpha * diff;
+        sensor.means[i] = mean + increment;
+        sensor.variances[i] = (1 - alpha) * (variance + diff * increment);
+    }
+
+    private void emit(SensorEventAvro event, RollupMetricAvro metric, AnomalyKindAvro kind, int value,
+                      double mean, double stdDev, double score) {
+        sink.accept(SensorAnomalyAvro.newBuilder()
+                .setHubId(event.getHubId())
+                .setSensorId(event.getId())
+                .setMetric(metric)
+                .setKind(kind)
+                .setTimestamp(event.getTimestamp())
+                .setValue(value)
+                .setMean(mean)
+                .setStdDev(stdDev)
+                .setScore(score)
+                .build());
+    }
+
+    private static final class HubState {
+        private final Map<String, SensorState> sensors = new HashMap<>();
+        private long lastEventAt;
+    }
+
+    /**
+     * Статистика одного датчика, по элементу массива на показатель в порядке {@link SensorMetrics#metricsOf}.
+     */
+    private static final class SensorState {
+        private final RollupMetricAvro[] metrics;
+        private final double[] means;
+        private final double[] variances;
+        private final int[] lastValues;
+        // время события, с которого значение не менялось
+        private final long[] unchangedSince;
+        private final boolean[] flatlined;
+        private long samples;
+
+        private SensorState(RollupMetricAvro[] metrics) {
+            this.metrics = metrics;
+            this.means = new double[metrics.length];
+            this.variances = new double[metrics.length];
+            this.lastValues = new int[metrics.length];
+            this.unchangedSince = new long[metrics.length];
+            this.flatlined = new boolean[metrics.length];
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.anomaly;
+
+import lombok.Getter;
+import lombok.Setter;
+import ru.yandex.practicum.kafka.telemetry.event.RollupMetricAvro;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Настройки поиска аномалий в показаниях датчиков.
+ */
+@Getter
+@Setter
+public class AnomalyProperties {
+    private boolean enabled = true;
+
+    private String topic = "telemetry.sensors.anomalies.v1";
+
+    /**
+     * Вес нового показания в экспоненциально сглаженных среднем и дисперсии.
+     * Чем меньше, тем длиннее память: 0.05 примерно соответствует последним 40 показаниям.
+     */
+    private double alpha = 0.05;
+
+    /**
+     * Сколько показаний датчика нужно, чтобы среднее и дисперсия устоялись и скачки начали отмечаться.
+     */
+    private int warmup = 30;
+
+    /**
+     * Скачок - отклонение от среднего не меньше стольких стандартных отклонений.
+     */
+    private double jumpThreshold = 6.0;
+
+    /**
+     * Нижняя граница стандартного отклонения при поиске скачков, в единицах показателя:
+     * без неё у датчика с почти постоянными показаниями скачком считалось бы любое изменение.
+     */
+    private double minDeviation = 1.0;
+
+    /**
+     * Показатель, значение которого не менялось столько времени по времени событий, считается зависшим.
+     * Коллектор пропускает одинаковые показания, поэтому зависание измеряется временем, а не их числом.
+     */
+    private Duration flatlineDuration = Duration.ofMinutes(10);
+
+    /**
+     * Показатели, у которых ищется зависание. У остальных, например у освещённости ночью,
+     * долго неизменное значение - обычное дело.
+     */
+    private List<RollupMetricAvro> flatlineMetrics = List.of(RollupMetricAvro.TEMPERATURE_C,
+            RollupMetricAvro.HUMIDITY, RollupMetricAvro.CO2_LEVEL, RollupMetricAvro.VOLTAGE);
+
+    /**
+     * Состояние хаба, от которого так долго нет событий, забывается.
+     */
+    private Duration idleEvict = Duration.ofHours(1);
+
+    /**
+     * Как часто проверяются замолчавшие хабы.
+     */
+    private Duration flushInterval = Duration.ofMinutes(1);
+}
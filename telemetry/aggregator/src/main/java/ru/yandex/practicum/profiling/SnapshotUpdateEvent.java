@@ -0,0 +1,18 @@
+package ru.yandex.practicum.profiling;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import ru.yandex.practicum.telemetry.common.profiling.StageEvent;
+
+/**
+ * Событие JFR для обновления снапшота хаба событием датчика.
+ */
+@Name("ru.yandex.practicum.telemetry.SnapshotUpdate")
+@Label("Snapshot Update")
+public class SnapshotUpdateEvent extends StageEvent {
+    @Label("Sensor Id")
+    public String sensorId;
+
+    @Label("Snapshot Changed")
+    public boolean changed;
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.recent;
+
+import ru.yandex.practicum.kafka.telemetry.event.MetricHistoryAvro;
+import ru.yandex.practicum.kafka.telemetry.event.RollupMetricAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorHistoryAvro;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Кольцевой буфер последних показаний одного датчика на примитивных массивах фиксированного размера:
+ * время показаний и значения всех показателей подряд, по {@code metrics.length} значений на показание.
+ */
+final class ReadingRing {
+    private final RollupMetricAvro[] metrics;
+    private final long[] times;
+    private final int[] values;
+    private int head;
+    private int size;
+
+    ReadingRing(RollupMetricAvro[] metrics, int capacity) {
+        this.metrics = metrics;
+        this.times = new long[capacity];
+        this.values = new int[capacity * metrics.length];
+    }
+
+    RollupMetricAvro[] metrics() {
+        return metrics;
+    }
+
+    int capacity() {
+        return times.length;
+    }
+
+    /**
+     * Добавляет показание, вытесняя самое старое, если буфер заполнен.
+     *
+     * @param readingValues значения показателей в порядке {@link #metrics()}
+     */
+    void add(long time, int[] readingValues) {
+        int slot = (head + size) % times.length;
+        if (size == times.length) {
+            head = (head + 1) % times.length;
+        } else {
+            size++;
+        }
+        times[slot] = time;
+        System.arraycopy(readingValues, 0, values, slot * metrics.length, metrics.length);
+    }
+
+    SensorHistoryAvro toAvro() {
+        List<Long> timestampDeltas = new ArrayList<>(size - 1);
+        long firstTime = times[head];
+        long previousTime = firstTime;
+        for (int i = 1; i < size; i++) {
+            long time = times[(head + i) % times.length];
+            timestampDeltas.add(time - previousTime);
+            previousTime = time;
+        }
+        List<MetricHistoryAvro> metricHistories = new ArrayList<>(metrics.length);
+        for (int m = 0; m < metrics.length; m++) {
+            int first = values[head * metrics.length + m];
+            List<Integer> deltas = new ArrayList<>(size - 1);
+            int previous = first;
+            for (int i = 1; i < size; i++) {
+                int value = values[((head + i) % times.length) * metrics.length + m];
+                deltas.add(value - previous);
+                previous = value;
+            }
+            metricHistories.add(MetricHistoryAvro.newBuilder()
+                    .setMetric(metrics[m])
+                    .setFirst(first)
+                    .setDeltas(deltas)
+                    .build());
+        }
+        return SensorHistoryAvro.newBuilder()
+                .setFirstTimestamp(Instant.ofEpochMilli(firstTime))
+                .setTimestampDeltas(timestampDeltas)
+                .setMetrics(metricHistories)
+                .build();
+    }
+
+    /**
+     * Восстанавливает буфер из истории в снапшоте, оставляя не больше {@code capacity} последних показаний.
+     *
+     * @return {@code null}, если показатели в истории не совпадают с показателями датчика
+     */
+    static ReadingRing fromAvro(SensorHistoryAvro history, RollupMetricAvro[] metrics, int capacity) {
+        List<MetricHistoryAvro> metricHistories = history.getMetrics();
+        if (metricHistories.size() != metrics.length) {
+            return null;
+        }
+        for (int m = 0; m < metrics.length; m++) {
+            if (metricHistories.get(m).getMetric() != metrics[m]) {
+                return null;
+            }
+        }
+        ReadingRing ring = new ReadingRing(metrics, capacity);
+        int[] reading = new int[metrics.length];
+        for (int m = 0; m < metrics.length; m++) {
+            reading[m] = metricHistories.get(m).getFirst();
+        }
+        long time = history.getFirstTimestamp().toEpochMilli();
+        ring.add(time, reading);
+        List<Long> timestampDeltas = history.getTimestampDeltas();
+        for (int i = 0; i < timestampDeltas.size(); i++) {
+            time += timestampDeltas.get(i);
+            for (int m = 0; m < metrics.length; m++) {
+                reading[m] += metricHistories.get(m).getDeltas().get(i);
+            }
+            ring.add(time, reading);
+        }
+        return ring;
+    }
+}
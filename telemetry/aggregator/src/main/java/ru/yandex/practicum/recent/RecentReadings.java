@@ -0,0 +1,130 @@
+package ru.yandex.practicum.recent;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.RollupMetricAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorHistoryAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+import ru.yandex.practicum.rollup.SensorMetrics;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ведёт историю последних показаний датчиков для снапшотов: у каждого датчика кольцевой буфер
+ * фиксированного размера, длина задаётся по типу датчика. В историю попадают показания,
+ * изменившие состояние датчика, то есть те, после которых снапшот записывается.
+ * <p>
+ * В памяти держатся буферы не больше {@code max-hubs} хабов, давно не присылавших событий хабы вытесняются.
+ * Буфер вытесненного хаба, как и после перезапуска или переезда задачи Kafka Streams, восстанавливается
+ * из истории в снапшоте. Объект не потокобезопасен и принадлежит одному потоку.
+ */
+@Slf4j
+public class RecentReadings {
+    private final int[] capacities = new int[DeviceTypeAvro.values().length];
+    private final Map<String, Map<String, ReadingRing>> hubs;
+    private final int[] reading = new int[SensorMetrics.MAX_METRICS];
+
+    public RecentReadings(RecentReadingsProperties properties) {
+        properties.getReadings().forEach((type, readings) -> {
+            if (readings < 0 || readings > RecentReadingsProperties.MAX_READINGS) {
+                throw new IllegalArgumentException("Длина истории датчиков " + type + " должна быть от 0 до "
+                        + RecentReadingsProperties.MAX_READINGS + ": " + readings);
+            }
+            capacities[type.ordinal()] = readings;
+        });
+        int maxHubs = properties.getMaxHubs();
+        this.hubs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, ReadingRing>> eldest) {
+                return size() > maxHubs;
+            }
+        };
+    }
+
+    /**
+     * Пишет в журнал, сколько байт история добавляет к снапшоту на датчик каждого типа.
+     */
+    public static void logBounds(RecentReadingsProperties properties) {
+        properties.getReadings().forEach((type, readings) -> {
+            if (readings > 0) {
+                log.info("История показаний датчиков {}: {} показаний, не больше {} байт на датчик",
+                        type, readings, maxEncodedBytes(readings, maxMetrics(type)));
+            }
+        });
+    }
+
+    /**
+     * Добавляет показание события в историю датчика.
+     *
+     * @param previous состояние датчика в снапшоте до события, из него восстанавливается история
+     * @return история для нового состояния датчика или {@code null}, если для датчиков этого типа она не ведётся
+     */
+    public SensorHistoryAvro record(SensorEventAvro event, SensorStateAvro previous) {
+        Object payload = event.getPayload();
+        int capacity = capacities[deviceTypeOf(payload).ordinal()];
+        if (capacity == 0) {
+            return null;
+        }
+        RollupMetricAvro[] metrics = SensorMetrics.metricsOf(payload);
+        Map<String, ReadingRing> sensors = hubs.computeIfAbsent(event.getHubId(), ignored -> new HashMap<>());
+        ReadingRing ring = sensors.get(event.getId());
+        if (ring == null || ring.metrics() != metrics || ring.capacity() != capacity) {
+            ring = restore(previous, metrics, capacity);
+            sensors.put(event.getId(), ring);
+        }
+        SensorMetrics.valuesOf(payload, reading);
+        ring.add(event.getTimestamp().toEpochMilli(), reading);
+        return ring.toAvro();
+    }
+
+    private ReadingRing restore(SensorStateAvro previous, RollupMetricAvro[] metrics, int capacity) {
+        if (previous != null && previous.getHistory() != null) {
+            ReadingRing ring = ReadingRing.fromAvro(previous.getHistory(), metrics, capacity);
+            if (ring != null) {
+                return ring;
+            }
+        }
+        ReadingRing ring = new ReadingRing(metrics, capacity);
+        if (previous != null && SensorMetrics.metricsOf(previous.getData()) == metrics) {
+            // истории в снапшоте нет, но текущее состояние - тоже показание
+            SensorMetrics.valuesOf(previous.getData(), reading);
+            ring.add(previous.getTimestamp().toEpochMilli(), reading);
+        }
+        return ring;
+    }
+
+    private static DeviceTypeAvro deviceTypeOf(Object payload) {
+        return switch (payload) {
+            case ClimateSensorAvro ignored -> DeviceTypeAvro.CLIMATE_SENSOR;
+            case LightSensorAvro ignored -> DeviceTypeAvro.LIGHT_SENSOR;
+            case MotionSensorAvro ignored -> DeviceTypeAvro.MOTION_SENSOR;
+            case SwitchSensorAvro ignored -> DeviceTypeAvro.SWITCH_SENSOR;
+            case TemperatureSensorAvro ignored -> DeviceTypeAvro.TEMPERATURE_SENSOR;
+            default -> throw new IllegalArgumentException("Неизвестный тип показаний: " + payload.getClass());
+        };
+    }
+
+    private static int maxMetrics(DeviceTypeAvro type) {
+        return switch (type) {
+            case CLIMATE_SENSOR, MOTION_SENSOR -> 3;
+            case LIGHT_SENSOR, TEMPERATURE_SENSOR -> 2;
+            case SWITCH_SENSOR -> 1;
+        };
+    }
+
+    /**
+     * Верхняя граница размера истории в Avro: признак union и время первого показания, по блоку и концу
+     * на каждый массив, varint разности времени до 10 байт, перечисление, первое значение и разности значений до 5 байт.
+     */
+    static int maxEncodedBytes(int readings, int metrics) {
+        return 16 + 10 * (readings - 1) + metrics * (9 + 5 * (readings - 1));
+    }
+}
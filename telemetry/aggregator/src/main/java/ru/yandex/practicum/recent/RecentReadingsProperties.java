@@ -0,0 +1,42 @@
+package ru.yandex.practicum.recent;
+
+import lombok.Getter;
+import lombok.Setter;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Настройки истории последних показаний датчиков в снапшоте.
+ * <p>
+ * История датчика из N показаний с M показателями добавляет к снапшоту не больше
+ * {@code 16 + 10 * (N - 1) + M * (9 + 5 * (N - 1))} байт, обычно в несколько раз меньше:
+ * разности времени и значений соседних показаний кодируются varint.
+ */
+@Getter
+@Setter
+public class RecentReadingsProperties {
+    /**
+     * Наибольшая длина истории одного датчика.
+     */
+    public static final int MAX_READINGS = 256;
+
+    private boolean enabled = false;
+
+    /**
+     * Сколько последних показаний хранить для датчиков каждого типа; 0 - не хранить.
+     */
+    private Map<DeviceTypeAvro, Integer> readings = new EnumMap<>(Map.of(
+            DeviceTypeAvro.CLIMATE_SENSOR, 16,
+            DeviceTypeAvro.TEMPERATURE_SENSOR, 16,
+            DeviceTypeAvro.LIGHT_SENSOR, 8,
+            DeviceTypeAvro.MOTION_SENSOR, 8,
+            DeviceTypeAvro.SWITCH_SENSOR, 0));
+
+    /**
+     * Сколько хабов держать в памяти в виде кольцевых буферов. История остальных
+     * восстанавливается из снапшота при следующем событии хаба.
+     */
+    private int maxHubs = 100_000;
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.reorder;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Смещения записей, события которых ещё ждут в буфере упорядочивания, по партициям.
+ * Смещение партиции фиксируется не дальше самого раннего из них, поэтому после падения
+ * события из буфера будут прочитаны снова. В одной записи бывает несколько событий пачки,
+ * поэтому у смещения есть счётчик. Объект принадлежит потоку обработки, как и буфер.
+ */
+public class HeldOffsets {
+    private final Map<TopicPartition, TreeMap<Long, Integer>> partitions = new HashMap<>();
+
+    public void hold(TopicPartition partition, long offset) {
+        partitions.computeIfAbsent(partition, ignored -> new TreeMap<>()).merge(offset, 1, Integer::sum);
+    }
+
+    public void release(TopicPartition partition, long offset) {
+        TreeMap<Long, Integer> offsets = partitions.get(partition);
+        if (offsets == null) {
+            return;
+        }
+        offsets.computeIfPresent(offset, (ignored, count) -> count == 1 ? null : count - 1);
+        if (offsets.isEmpty()) {
+            partitions.remove(partition);
+        }
+    }
+
+    /**
+     * @return самое раннее придержанное смещение партиции или -1
+     */
+    public long lowest(TopicPartition partition) {
+        TreeMap<Long, Integer> offsets = partitions.get(partition);
+        return offsets == null ? -1 : offsets.firstKey();
+    }
+
+    public void forget(Collection<TopicPartition> revoked) {
+        revoked.forEach(partitions::remove);
+    }
+}
@@ -0,0 +1,302 @@
+package ru.yandex.practicum.reorder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Выстраивает события каждого хаба по времени событий. Событие ждёт в буфере хаба, пока водяной знак хаба -
+ * самое позднее время его событий минус допуск {@code lateness} - не пройдёт время события; тогда события
+ * выпускаются в порядке времени, а при равном времени - в порядке прихода.
+ * <p>
+ * Событие, пришедшее раньше уже выпущенного водяного знака, отбрасывается и попадает в метрику опоздавших.
+ * Память ограничена: у хаба не больше {@code max-events-per-hub} событий, у всех хабов вместе -
+ * не больше {@code max-events}. При переполнении буфера хаба досрочно выпускается его самое раннее событие,
+ * при переполнении общего буфера - самое раннее событие среди всех хабов: так дольше ждут события, которым
+ * ещё далеко до водяного знака. Поиск такого хаба проходит по всем хабам, но нужен только при переполнении.
+ * Замолчавший хаб выпускается целиком по часам сервиса, но его водяной знак помнится ещё
+ * {@code watermark-retention}, чтобы отставшие события хаба после выпуска тоже считались опоздавшими.
+ * <p>
+ * Буфер хаба - двоичная куча на массивах примитивных ключей, без упаковки времени в объекты.
+ * Объект не потокобезопасен и принадлежит одному потоку.
+ *
+ * @param <T> событие вместе с тем, что нужно для его применения, например контекстом трассировки
+ */
+public class ReorderBuffer<T> {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final long lateness;
+    private final long idleFlush;
+    private final long watermarkRetention;
+    private final long flushInterval;
+    private final int maxEventsPerHub;
+    private final int maxEvents;
+    private final Consumer<T> sink;
+    private final Map<String, HubQueue> hubs = new HashMap<>();
+    private final Counter released;
+    private final Counter forced;
+    private final Counter late;
+    private final Counter discarded;
+    private int buffered;
+    private long nextFlush;
+
+    /**
+     * @param sink получает события в порядке времени событий хаба
+     */
+    public ReorderBuffer(ReorderProperties properties, Consumer<T> sink, MeterRegistry meterRegistry) {
+        this.lateness = properties.getLateness().toMillis();
+        this.idleFlush = properties.getIdleFlush().toMillis();
+        this.watermarkRetention = properties.getWatermarkRetention().toMillis();
+        this.flushInterval = properties.getFlushInterval().toMillis();
+        this.maxEventsPerHub = properties.getMaxEventsPerHub();
+        this.maxEvents = properties.getMaxEvents();
+        this.sink = sink;
+        this.released = eventsCounter(meterRegistry, "released", "События, выпущенные по водяному знаку хаба");
+        this.forced = eventsCounter(meterRegistry, "forced",
+                "События, выпущенные досрочно: буфер переполнен или хаб замолчал");
+        this.late = eventsCounter(meterRegistry, "late",
+                "События, пришедшие позже выпущенного водяного знака хаба и отброшенные");
+        this.discarded = eventsCounter(meterRegistry, "discarded",
+                "События, убранные из буфера без выпуска, например после отзыва их партиции");
+    }
+
+    private static Counter eventsCounter(MeterRegistry meterRegistry, String result, String description) {
+        return Counter.builder("telemetry.aggregator.reorder.events")
+                .description(description)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Кладёт событие в буфер хаба и выпускает события, которые прошёл водяной знак.
+     *
+     * @param eventTime время события в миллисекундах
+     * @param now       текущее время сервиса в миллисекундах
+     * @return {@code false}, если событие опоздало и отброшено
+     */
+    public boolean add(String hubId, long eventTime, T event, long now) {
+        HubQueue hub = hubs.computeIfAbsent(hubId, ignored -> new HubQueue());
+        hub.lastEventAt = now;
+        if (eventTime < hub.emittedWatermark) {
+            late.increment();
+            return false;
+        }
+        hub.push(eventTime, event);
+        buffered++;
+        if (hub.size > maxEventsPerHub) {
+            releaseFirst(hub, forced);
+        } else if (buffered > maxEvents) {
+            releaseFirst(earliestHub(), forced);
+        }
+        hub.maxTime = Math.max(hub.maxTime, eventTime);
+        releaseUpTo(hub, hub.maxTime - lateness);
+        return true;
+    }
+
+    /**
+     * Выпускает хабы, замолчавшие дольше {@code idle-flush}, если с прошлой проверки прошло
+     * не меньше {@code flush-interval}.
+     */
+    public void expireIfDue(long now) {
+        if (now >= nextFlush) {
+            expire(now);
+            nextFlush = now + flushInterval;
+        }
+    }
+
+    /**
+     * Выпускает хабы, замолчавшие дольше {@code idle-flush}, и забывает хабы, замолчавшие
+     * дольше {@code watermark-retention}.
+     */
+    public void expire(long now) {
+        Iterator<HubQueue> iterator = hubs.values().iterator();
+        while (iterator.hasNext()) {
+            HubQueue hub = iterator.next();
+            long idle = now - hub.lastEventAt;
+            if (idle < idleFlush) {
+                continue;
+            }
+            while (hub.size > 0) {
+                releaseFirst(hub, forced);
+            }
+            if (idle >= watermarkRetention) {
+                iterator.remove();
+            } else {
+                // от хаба остаётся водяной знак, массивы кучи возвращаются к начальному размеру
+                hub.shrink();
+            }
+        }
+    }
+
+    /**
+     * Выпускает все события всех хабов, например перед остановкой.
+     */
+    public void flush() {
+        for (HubQueue hub : hubs.values()) {
+            while (hub.size > 0) {
+                releaseFirst(hub, forced);
+            }
+        }
+        hubs.clear();
+    }
+
+    /**
+     * Убирает из буфера подходящие события, не выпуская их. Порядок остальных событий не меняется.
+     */
+    public void discard(Predicate<T> filter) {
+        Iterator<HubQueue> iterator = hubs.values().iterator();
+        while (iterator.hasNext()) {
+            HubQueue hub = iterator.next();
+            int before = hub.size;
+            List<Long> keptTimes = new ArrayList<>(hub.size);
+            List<T> kept = new ArrayList<>(hub.size);
+            while (hub.size > 0) {
+                long time = hub.times[0];
+                T event = hub.pop();
+                if (filter.test(event)) {
+                    buffered--;
+                    discarded.increment();
+                } else {
+                    keptTimes.add(time);
+                    kept.add(event);
+                }
+            }
+            for (int i = 0; i < kept.size(); i++) {
+                hub.push(keptTimes.get(i), kept.get(i));
+            }
+            if (hub.size == 0 && before > 0) {
+                // события хаба лежат в одной партиции: хаб ушёл вместе с ней
+                iterator.remove();
+            }
+        }
+    }
+
+    public int buffered() {
+        return buffered;
+    }
+
+    private HubQueue earliestHub() {
+        HubQueue earliest = null;
+        for (HubQueue hub : hubs.values()) {
+            if (hub.size > 0 && (earliest == null || hub.times[0] < earliest.times[0])) {
+                earliest = hub;
+            }
+        }
+        return earliest;
+    }
+
+    private void releaseUpTo(HubQueue hub, long watermark) {
+        while (hub.size > 0 && hub.times[0] <= watermark) {
+            releaseFirst(hub, released);
+        }
+        hub.emittedWatermark = Math.max(hub.emittedWatermark, watermark);
+    }
+
+    private void releaseFirst(HubQueue hub, Counter counter) {
+        long time = hub.times[0];
+        T event = hub.pop();
+        buffered--;
+        // более раннее событие после выпущенного уже не встанет по порядку
+        hub.emittedWatermark = Math.max(hub.emittedWatermark, time);
+        counter.increment();
+        sink.accept(event);
+    }
+
+    /**
+     * Куча событий хаба: время события и номер прихода лежат в примитивных массивах,
+     * сами события - в параллельном массиве объектов.
+     */
+    private final class HubQueue {
+        private long[] times = new long[INITIAL_CAPACITY];
+        private long[] sequences = new long[INITIAL_CAPACITY];
+        private Object[] events = new Object[INITIAL_CAPACITY];
+        private int size;
+        private long nextSequence;
+        private long maxTime = Long.MIN_VALUE;
+        private long emittedWatermark = Long.MIN_VALUE;
+        private long lastEventAt;
+
+        private void push(long time, T event) {
+            if (size == times.length) {
+                int capacity = Math.min(times.length * 2, maxEventsPerHub + 1);
+                times = Arrays.copyOf(times, capacity);
+                sequences = Arrays.copyOf(sequences, capacity);
+                events = Arrays.copyOf(events, capacity);
+            }
+            int i = size++;
+            long sequence = nextSequence++;
+            // просеивание вверх
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!less(time, sequence, times[parent], sequences[parent])) {
+                    break;
+                }
+                move(parent, i);
+                i = parent;
+            }
+            set(i, time, sequence, event);
+        }
+
+        private void shrink() {
+            if (times.length > INITIAL_CAPACITY) {
+                times = new long[INITIAL_CAPACITY];
+                sequences = new long[INITIAL_CAPACITY];
+                events = new Object[INITIAL_CAPACITY];
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private T pop() {
+            T first = (T) events[0];
+            int last = --size;
+            long time = times[last];
+            long sequence = sequences[last];
+            Object event = events[last];
+            events[last] = null;
+            if (last > 0) {
+                // просеивание вниз
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= last) {
+                        break;
+                    }
+                    if (child + 1 < last && less(times[child + 1], sequences[child + 1], times[child], sequences[child])) {
+                        child++;
+                    }
+                    if (!less(times[child], sequences[child], time, sequence)) {
+                        break;
+                    }
+                    move(child, i);
+                    i = child;
+                }
+                set(i, time, sequence, event);
+            }
+            return first;
+        }
+
+        private void move(int from, int to) {
+            times[to] = times[from];
+            sequences[to] = sequences[from];
+            events[to] = events[from];
+        }
+
+        private void set(int i, long time, long sequence, Object event) {
+            times[i] = time;
+            sequences[i] = sequence;
+            events[i] = event;
+        }
+
+        private static boolean less(long time, long sequence, long otherTime, long otherSequence) {
+            return time < otherTime || (time == otherTime && sequence < otherSequence);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.reorder;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки буфера, который выстраивает события хаба по времени событий перед обновлением снапшота.
+ */
+@Getter
+@Setter
+public class ReorderProperties {
+    /**
+     * Буфер задерживает каждое событие на {@code lateness}, поэтому по умолчанию выключен.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Сколько событие ждёт более ранних событий хаба. Водяной знак хаба - самое позднее время
+     * событий хаба минус это значение; события до водяного знака выпускаются по порядку.
+     */
+    private Duration lateness = Duration.ofSeconds(2);
+
+    /**
+     * Если от хаба давно нет событий, его буфер выпускается целиком по часам сервиса.
+     */
+    private Duration idleFlush = Duration.ofSeconds(5);
+
+    /**
+     * Сколько помнить водяной знак замолчавшего хаба после его последнего события. Пока он помнится,
+     * события хаба раньше уже выпущенных считаются опоздавшими, а не выпускаются не по порядку.
+     */
+    private Duration watermarkRetention = Duration.ofHours(1);
+
+    /**
+     * Как часто проверяются замолчавшие хабы.
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    /**
+     * Предельное число событий в буфере одного хаба. При переполнении раньше срока выпускается самое раннее.
+     */
+    private int maxEventsPerHub = 1024;
+
+    /**
+     * Предельное число событий в буфере всех хабов экземпляра.
+     */
+    private int maxEvents = 1_000_000;
+}
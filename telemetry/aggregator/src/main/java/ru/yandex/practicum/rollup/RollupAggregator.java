@@ -0,0 +1,248 @@
+package ru.yandex.practicum.rollup;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.yandex.practicum.kafka.telemetry.event.RollupMetricAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorRollupAvro;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Считает count/sum/min/max показателей датчиков по неперекрывающимся окнам времени событий.
+ * Сами события не хранятся: у каждого датчика на каждый показатель и длительность окна есть
+ * несколько ячеек с примитивными накопителями, по ячейке на окно, ещё не закрытое с учётом допуска.
+ * <p>
+ * Время событий у каждого хаба своё: окно закрывается, когда самое позднее событие хаба ушло
+ * за конец окна больше чем на допуск опоздания, либо когда хаб замолчал: от него не было событий
+ * дольше {@code idle-close} по часам сервиса. Время событий и часы сервиса не сравниваются между собой,
+ * поэтому при догоняющем чтении отставшего топика окна не закрываются раньше времени.
+ * Событие в уже закрытое окно не учитывается. Объект не потокобезопасен и принадлежит одному потоку.
+ */
+public class RollupAggregator {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long[] windowSizes;
+    private final long allowedLateness;
+    private final long idleClose;
+    private final long flushInterval;
+    private final long evictAfter;
+    private final int slots;
+    private final Consumer<SensorRollupAvro> sink;
+    private final Map<String, HubRollups> hubs = new HashMap<>();
+    private final Counter emitted;
+    private final Counter late;
+    private final int[] values = new int[SensorMetrics.MAX_METRICS];
+    private long nextFlush;
+
+    /**
+     * @param sink получает статистику каждого закрытого окна
+     */
+    public RollupAggregator(RollupProperties properties, Consumer<SensorRollupAvro> sink, MeterRegistry meterRegistry) {
+        this.windowSizes = properties.getWindows().stream().mapToLong(Duration::toMillis).toArray();
+        this.allowedLateness = properties.getAllowedLateness().toMillis();
+        this.idleClose = properties.getIdleClose().toMillis();
+        this.flushInterval = properties.getFlushInterval().toMillis();
+        long maxWindow = Arrays.stream(windowSizes).max().orElse(0);
+        this.evictAfter = maxWindow + allowedLateness + idleClose;
+        // окно, ещё открытое по допуску, и следующие за ним должны занимать разные ячейки
+        int maxSlots = 1;
+        for (long size : windowSizes) {
+            maxSlots = Math.max(maxSlots, 1 + (int) ((allowedLateness + size - 1) / size));
+        }
+        this.slots = maxSlots;
+        this.sink = sink;
+        this.emitted = Counter.builder("telemetry.aggregator.rollups")
+                .description("Окна статистики показателей датчиков, закрытые и переданные на запись")
+                .tag("result", "emitted")
+                .register(meterRegistry);
+        this.late = Counter.builder("telemetry.aggregator.rollups")
+                .description("Показания, пришедшие хотя бы в одно уже закрытое окно статистики")
+                .tag("result", "late")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Учитывает событие датчика во всех окнах.
+     *
+     * @param now текущее время сервиса в миллисекундах
+     */
+    public void add(SensorEventAvro event, long now) {
+        HubRollups hub = hubs.computeIfAbsent(event.getHubId(), HubRollups::new);
+        long time = event.getTimestamp().toEpochMilli();
+        hub.watermark = Math.max(hub.watermark, time);
+        hub.lastEventAt = now;
+
+        Object payload = event.getPayload();
+        RollupMetricAvro[] metrics = SensorMetrics.metricsOf(payload);
+        SensorRollups sensor = hub.sensors.get(event.getId());
+        if (sensor == null || sensor.metrics != metrics) {
+            if (sensor != null) {
+                // датчик с тем же идентификатором сменил тип: его окна закрываются досрочно
+                closeAll(hub, sensor);
+            }
+            sensor = new SensorRollups(event.getId(), metrics, metrics.length * windowSizes.length * slots);
+            hub.sensors.put(event.getId(), sensor);
+        }
+
+        int count = SensorMetrics.valuesOf(payload, values);
+        boolean late = false;
+        for (int metric = 0; metric < count; metric++) {
+            late |= accumulate(hub, sensor, metric, time, values[metric]);
+        }
+        // показание считается опоздавшим один раз, сколько бы окон и показателей оно ни пропустило
+        if (late) {
+            this.late.increment();
+        }
+    }
+
+    /**
+     * Закрывает окна, если с прошлой проверки прошло не меньше {@code flush-interval}.
+     */
+    public void expireIfDue(long now) {
+        if (now >= nextFlush) {
+            expire(now);
+            nextFlush = now + flushInterval;
+        }
+    }
+
+    /**
+     * Закрывает окна, которые ушли за допуск по времени событий хаба, и все окна замолчавших хабов,
+     * и забывает хабы, у которых давно нет ни событий, ни открытых окон.
+     */
+    public void expire(long now) {
+        Iterator<HubRollups> iterator = hubs.values().iterator();
+        while (iterator.hasNext()) {
+            HubRollups hub = iterator.next();
+            boolean idle = now - hub.lastEventAt >= idleClose;
+            boolean open = false;
+            for (SensorRollups sensor : hub.sensors.values()) {
+                for (int i = 0; i < sensor.starts.length; i++) {
+                    if (sensor.starts[i] == EMPTY) {
+                        continue;
+                    }
+                    long closesAt = sensor.starts[i] + windowSizes[windowOf(i)] + allowedLateness;
+                    if (idle || closesAt <= hub.watermark) {
+                        emit(hub.hubId, sensor, i);
+                    } else {
+                        open = true;
+                    }
+                }
+            }
+            if (!open && now - hub.lastEventAt > evictAfter) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public int trackedHubs() {
+        return hubs.size();
+    }
+
+    /**
+     * @return {@code true}, если показание не попало хотя бы в одно окно, потому что оно уже закрыто
+     */
+    private boolean accumulate(HubRollups hub, SensorRollups sensor, int metric, long time, int value) {
+        boolean late = false;
+        for (int window = 0; window < windowSizes.length; window++) {
+            long size = windowSizes[window];
+            long number = Math.floorDiv(time, size);
+            long start = number * size;
+            if (start + size + allowedLateness <= hub.watermark) {
+                late = true;
+                continue;
+            }
+            int i = (metric * windowSizes.length + window) * slots + (int) Math.floorMod(number, slots);
+            if (sensor.starts[i] != start) {
+                // в ячейке может быть только окно, вышедшее за допуск: число ячеек это гарантирует
+                if (sensor.starts[i] != EMPTY) {
+                    emit(hub.hubId, sensor, i);
+                }
+                sensor.starts[i] = start;
+                sensor.counts[i] = 0;
+                sensor.sums[i] = 0;
+                sensor.mins[i] = Integer.MAX_VALUE;
+                sensor.maxs[i] = Integer.MIN_VALUE;
+            }
+            sensor.counts[i]++;
+            sensor.sums[i] += value;
+            sensor.mins[i] = Math.min(sensor.mins[i], value);
+            sensor.maxs[i] = Math.max(sensor.maxs[i], value);
+        }
+        return late;
+    }
+
+    private void closeAll(HubRollups hub, SensorRollups sensor) {
+        for (int i = 0; i < sensor.starts.length; i++) {
+            if (sensor.starts[i] != EMPTY) {
+                emit(hub.hubId, sensor, i);
+            }
+        }
+    }
+
+    private void emit(String hubId, SensorRollups sensor, int i) {
+        long size = windowSizes[windowOf(i)];
+        long start = sensor.starts[i];
+        long count = sensor.counts[i];
+        sensor.starts[i] = EMPTY;
+        sink.accept(SensorRollupAvro.newBuilder()
+                .setHubId(hubId)
+                .setSensorId(sensor.sensorId)
+                .setMetric(sensor.metrics[i / (windowSizes.length * slots)])
+                .setWindowSize(size)
+                .setWindowStart(Instant.ofEpochMilli(start))
+                .setWindowEnd(Instant.ofEpochMilli(start + size))
+                .setCount(count)
+                .setSum(sensor.sums[i])
+                .setAvg((double) sensor.sums[i] / count)
+                .setMin(sensor.mins[i])
+                .setMax(sensor.maxs[i])
+                .build());
+        emitted.increment();
+    }
+
+    private int windowOf(int i) {
+        return (i / slots) % windowSizes.length;
+    }
+
+    private static final class HubRollups {
+        private final String hubId;
+        private final Map<String, SensorRollups> sensors = new HashMap<>();
+        private long watermark = Long.MIN_VALUE;
+        private long lastEventAt;
+
+        private HubRollups(String hubId) {
+            this.hubId = hubId;
+        }
+    }
+
+    /**
+     * Накопители одного датчика. Индекс ячейки: (показатель * число окон + окно) * число ячеек + ячейка.
+     */
+    private static final class SensorRollups {
+        private final String sensorId;
+        private final RollupMetricAvro[] metrics;
+        private final long[] starts;
+        private final long[] counts;
+        private final long[] sums;
+        private final int[] mins;
+        private final int[] maxs;
+
+        private SensorRollups(String sensorId, RollupMetricAvro[] metrics, int cells) {
+            this.sensorId = sensorId;
+            this.metrics = metrics;
+            this.starts = new long[cells];
+            this.counts = new long[cells];
+            this.sums = new long[cells];
+            this.mins = new int[cells];
+            this.maxs = new int[cells];
+            Arrays.fill(starts, EMPTY);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.rollup;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Настройки статистики показателей датчиков по окнам времени событий.
+ */
+@Getter
+@Setter
+public class RollupProperties {
+    private boolean enabled = true;
+
+    private String topic = "telemetry.sensors.rollups.v1";
+
+    /**
+     * Длительности неперекрывающихся окон. Окна выровнены по эпохе: минутное окно начинается в :00 секунд.
+     */
+    private List<Duration> windows = List.of(Duration.ofMinutes(1), Duration.ofHours(1));
+
+    /**
+     * Сколько окно остаётся открытым после своего конца по времени событий хаба. Событие,
+     * пришедшее позже, не учитывается и попадает в метрику опоздавших.
+     */
+    private Duration allowedLateness = Duration.ofSeconds(30);
+
+    /**
+     * Если от хаба нет событий дольше этого времени по часам сервиса, его открытые окна закрываются:
+     * по времени событий они бы закрылись только со следующим событием хаба.
+     */
+    private Duration idleClose = Duration.ofMinutes(1);
+
+    /**
+     * Как часто проверяются окна, которые пора закрыть.
+     */
+    private Duration flushInterval = Duration.ofSeconds(5);
+}
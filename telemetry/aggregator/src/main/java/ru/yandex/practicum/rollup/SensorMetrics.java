@@ -0,0 +1,92 @@
+package ru.yandex.practicum.rollup;
+
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.RollupMetricAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+/**
+ * Показатели датчиков каждого типа и их значения в показаниях. Булевы показатели передаются как 0 и 1.
+ * Показатели типа всегда идут в одном порядке, так что индекс показателя можно использовать в массивах.
+ */
+public final class SensorMetrics {
+    /**
+     * Наибольшее число показателей у одного типа датчика.
+     */
+    public static final int MAX_METRICS = 3;
+
+    private static final RollupMetricAvro[] CLIMATE_METRICS =
+            {RollupMetricAvro.TEMPERATURE_C, RollupMetricAvro.HUMIDITY, RollupMetricAvro.CO2_LEVEL};
+    private static final RollupMetricAvro[] LIGHT_METRICS =
+            {RollupMetricAvro.LUMINOSITY, RollupMetricAvro.LINK_QUALITY};
+    private static final RollupMetricAvro[] MOTION_METRICS =
+            {RollupMetricAvro.MOTION, RollupMetricAvro.LINK_QUALITY, RollupMetricAvro.VOLTAGE};
+    private static final RollupMetricAvro[] SWITCH_METRICS = {RollupMetricAvro.SWITCH_STATE};
+    private static final RollupMetricAvro[] TEMPERATURE_METRICS =
+            {RollupMetricAvro.TEMPERATURE_C, RollupMetricAvro.TEMPERATURE_F};
+
+    private SensorMetrics() {
+    }
+
+    /**
+     * Возвращает общий для всех вызовов массив: его нельзя изменять, зато его можно сравнивать по ссылке,
+     * чтобы заметить смену типа датчика.
+     */
+    public static RollupMetricAvro[] metricsOf(Object payload) {
+        return switch (payload) {
+            case ClimateSensorAvro ignored -> CLIMATE_METRICS;
+            case LightSensorAvro ignored -> LIGHT_METRICS;
+            case MotionSensorAvro ignored -> MOTION_METRICS;
+            case SwitchSensorAvro ignored -> SWITCH_METRICS;
+            case TemperatureSensorAvro ignored -> TEMPERATURE_METRICS;
+            default -> throw new IllegalArgumentException("Неизвестный тип показаний: " + payload.getClass());
+        };
+    }
+
+    /**
+     * Записывает значения показателей в {@code values} в порядке {@link #metricsOf(Object)}.
+     *
+     * @param values массив длиной не меньше {@link #MAX_METRICS}
+     * @return число показателей
+     */
+    public static int valuesOf(Object payload, int[] values) {
+        switch (payload) {
+            case ClimateSensorAvro climate -> {
+                values[0] = climate.getTemperatureC();
+                values[1] = climate.getHumidity();
+                values[2] = climate.getCo2Level();
+                return 3;
+            }
+            case LightSensorAvro light -> {
+                values[0] = light.getLuminosity();
+                values[1] = light.getLinkQuality();
+                return 2;
+            }
+            case MotionSensorAvro motion -> {
+                values[0] = motion.getMotion() ? 1 : 0;
+                values[1] = motion.getLinkQuality();
+                values[2] = motion.getVoltage();
+                return 3;
+            }
+            case SwitchSensorAvro switchSensor -> {
+                values[0] = switchSensor.getState() ? 1 : 0;
+                return 1;
+            }
+            case TemperatureSensorAvro temperature -> {
+                values[0] = temperature.getTemperatureC();
+                values[1] = temperature.getTemperatureF();
+                return 2;
+            }
+            default -> throw new IllegalArgumentException("Неизвестный тип показаний: " + payload.getClass());
+        }
+    }
+
+    /**
+     * Показатели, которые принимают только значения 0 и 1.
+     */
+    public static boolean isBoolean(RollupMetricAvro metric) {
+        return metric == RollupMetricAvro.MOTION || metric == RollupMetricAvro.SWITCH_STATE;
+    }
+}
@@ -0,0 +1,107 @@
+package ru.yandex.practicum.state;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.MemberDescription;
+import org.apache.kafka.common.TopicPartition;
+import ru.yandex.practicum.telemetry.common.kafka.topology.HubPartitioner;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Владелец хаба для цикла потребителя: распределение партиций берётся из описания группы потребителей,
+ * а адрес экземпляра - из идентификатора клиента вида {@code aggregator@host:port}.
+ * Описание группы запрашивается не чаще {@code ownership-refresh}; до ответа используется прежнее.
+ */
+@Slf4j
+public class ConsumerGroupOwnerLocator implements OwnerLocator, AutoCloseable {
+    public static final String CLIENT_ID_SEPARATOR = "@";
+
+    private final Admin admin;
+    private final String groupId;
+    private final String topic;
+    private final String self;
+    private final long refreshMillis;
+    private final Duration timeout;
+    private volatile Ownership ownership = new Ownership(Map.of(), 0, 0);
+
+    public ConsumerGroupOwnerLocator(Admin admin, String groupId, String topic, StateProperties properties) {
+        this.admin = admin;
+        this.groupId = groupId;
+        this.topic = topic;
+        this.self = properties.getAdvertisedEndpoint();
+        this.refreshMillis = properties.getOwnershipRefresh().toMillis();
+        this.timeout = properties.getForwardTimeout();
+    }
+
+    public static String clientId(String prefix, String advertisedEndpoint) {
+        return prefix + CLIENT_ID_SEPARATOR + advertisedEndpoint;
+    }
+
+    @Override
+    public Optional<String> remoteOwner(String hubId) {
+        Ownership current = ownership;
+        if (System.currentTimeMillis() - current.refreshedAt() >= refreshMillis) {
+            current = refresh();
+        }
+        if (current.partitions() == 0) {
+            return Optional.empty();
+        }
+        String owner = current.owners().get(HubPartitioner.partitionFor(hubId, current.partitions()));
+        return owner == null || owner.equals(self) ? Optional.empty() : Optional.of(owner);
+    }
+
+    private synchronized Ownership refresh() {
+        Ownership current = ownership;
+        long now = System.currentTimeMillis();
+        if (now - current.refreshedAt() < refreshMillis) {
+            // другой поток уже обновил распределение
+            return current;
+        }
+        try {
+            int partitions = admin.describeTopics(List.of(topic)).allTopicNames()
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS).get(topic).partitions().size();
+            ConsumerGroupDescription group = admin.describeConsumerGroups(List.of(groupId)).all()
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS).get(groupId);
+            Map<Integer, String> owners = new HashMap<>();
+            for (MemberDescription member : group.members()) {
+                int separator = member.clientId().indexOf(CLIENT_ID_SEPARATOR);
+                if (separator < 0) {
+                    continue;
+                }
+                String endpoint = member.clientId().substring(separator + 1);
+                for (TopicPartition partition : member.assignment().topicPartitions()) {
+                    if (partition.topic().equals(topic)) {
+                        owners.put(partition.partition(), endpoint);
+                    }
+                }
+            }
+            current = new Ownership(Map.copyOf(owners), partitions, now);
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Не удалось получить распределение партиций группы {}: {}", groupId, e.getMessage());
+            // следующая попытка - через тот же интервал, до неё запросы обслуживаются по прежнему распределению
+            current = new Ownership(current.owners(), current.partitions(), now);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return current;
+        }
+        ownership = current;
+        return current;
+    }
+
+    @Override
+    public void close() {
+        admin.close(timeout);
+    }
+
+    private record Ownership(Map<Integer, String> owners, int partitions, long refreshedAt) {
+    }
+}
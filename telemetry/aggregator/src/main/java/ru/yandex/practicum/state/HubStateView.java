@@ -0,0 +1,19 @@
+package ru.yandex.practicum.state;
+
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Состояние хаба в ответах HTTP.
+ */
+public record HubStateView(String hubId, Instant timestamp, Map<String, SensorStateView> sensors) {
+
+    public static HubStateView of(SensorsSnapshotAvro snapshot) {
+        Map<String, SensorStateView> sensors = new TreeMap<>();
+        snapshot.getSensorsState().forEach((sensorId, state) -> sensors.put(sensorId, SensorStateView.of(state)));
+        return new HubStateView(snapshot.getHubId(), snapshot.getTimestamp(), sensors);
+    }
+}
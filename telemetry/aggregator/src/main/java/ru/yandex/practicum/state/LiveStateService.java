@@ -0,0 +1,59 @@
+package ru.yandex.practicum.state;
+
+import deserializer.SensorsSnapshotDeserializer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.util.Optional;
+
+/**
+ * Текущее состояние хаба: из опубликованных снапшотов этого экземпляра или, если хаб
+ * обрабатывает другой экземпляр, по внутреннему HTTP-запросу к нему. Владелец отвечает
+ * снапшотом в двоичном Avro и сам запрос дальше не пересылает.
+ */
+@Slf4j
+public class LiveStateService {
+    public static final String INTERNAL_PATH = "/internal/state/hubs/{hubId}";
+
+    private final LiveStateView view;
+    private final OwnerLocator ownerLocator;
+    private final RestClient restClient;
+    private final SensorsSnapshotDeserializer deserializer = new SensorsSnapshotDeserializer();
+
+    public LiveStateService(LiveStateView view, OwnerLocator ownerLocator, RestClient restClient) {
+        this.view = view;
+        this.ownerLocator = ownerLocator;
+        this.restClient = restClient;
+    }
+
+    public Optional<SensorsSnapshotAvro> hubState(String hubId) {
+        Optional<String> owner = ownerLocator.remoteOwner(hubId);
+        if (owner.isEmpty()) {
+            return view.get(hubId);
+        }
+        try {
+            byte[] body = restClient.get()
+                    .uri("http://" + owner.get() + INTERNAL_PATH, hubId)
+                    .retrieve()
+                    .onStatus(status -> status.value() == HttpStatus.NOT_FOUND.value(), (request, response) -> {
+                    })
+                    .body(byte[].class);
+            return body == null || body.length == 0
+                    ? Optional.empty()
+                    : Optional.of(deserializer.deserialize(null, body));
+        } catch (RestClientException e) {
+            throw new OwnerUnavailableException("Экземпляр " + owner.get() + ", обрабатывающий хаб " + hubId
+                    + ", не ответил: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Состояние хаба только из памяти этого экземпляра, без пересылки.
+     */
+    public Optional<SensorsSnapshotAvro> localHubState(String hubId) {
+        return view.get(hubId);
+    }
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.state;
+
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Опубликованные снапшоты хабов для запросов текущего состояния.
+ * <p>
+ * Хранилище снапшотов меняет снапшот на месте и принадлежит потоку обработки, поэтому читать его
+ * из потоков запросов нельзя. После каждого изменения поток обработки публикует сюда неизменяемую
+ * копию: новый объект снапшота с неизменяемым словарём состояний. Сами состояния датчиков при
+ * обновлении не меняются, а заменяются новыми, поэтому копируется только словарь. Чтение - это
+ * {@code get} из {@link ConcurrentHashMap}, без блокировок и без ожидания потока обработки.
+ */
+public class LiveStateView {
+    private final Map<String, SensorsSnapshotAvro> hubs = new ConcurrentHashMap<>();
+
+    public void publish(SensorsSnapshotAvro snapshot) {
+        hubs.put(snapshot.getHubId(), SensorsSnapshotAvro.newBuilder()
+                .setHubId(snapshot.getHubId())
+                .setTimestamp(snapshot.getTimestamp())
+                .setSensorsState(Map.copyOf(snapshot.getSensorsState()))
+                .build());
+    }
+
+    public Optional<SensorsSnapshotAvro> get(String hubId) {
+        return Optional.ofNullable(hubs.get(hubId));
+    }
+
+    public int size() {
+        return hubs.size();
+    }
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.state;
+
+import java.util.Optional;
+
+/**
+ * Определяет, какой экземпляр агрегатора обрабатывает партицию хаба.
+ */
+public interface OwnerLocator {
+
+    /**
+     * Адрес HTTP ({@code host:port}) другого экземпляра, который обрабатывает хаб.
+     * Пустой результат - хаб обрабатывает этот экземпляр или владелец сейчас неизвестен,
+     * например во время перебалансировки; тогда запрос обслуживается локально.
+     */
+    Optional<String> remoteOwner(String hubId);
+}
@@ -0,0 +1,10 @@
+package ru.yandex.practicum.state;
+
+/**
+ * Экземпляр, который обрабатывает хаб, не ответил на запрос состояния.
+ */
+public class OwnerUnavailableException extends RuntimeException {
+    public OwnerUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.state;
+
+import org.apache.avro.specific.SpecificRecordBase;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Состояние датчика в ответах HTTP: тип показаний и их значения под именами полей схемы Avro.
+ */
+public record SensorStateView(Instant timestamp, String type, Map<String, Object> values) {
+
+    public static SensorStateView of(SensorStateAvro state) {
+        SpecificRecordBase data = (SpecificRecordBase) state.getData();
+        Map<String, Object> values = new LinkedHashMap<>();
+        data.getSchema().getFields().forEach(field -> values.put(field.name(), data.get(field.pos())));
+        return new SensorStateView(state.getTimestamp(), data.getSchema().getName(), values);
+    }
+}
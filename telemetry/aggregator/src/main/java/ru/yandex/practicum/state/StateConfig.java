@@ -0,0 +1,48 @@
+package ru.yandex.practicum.state;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.util.Properties;
+
+@Configuration
+public class StateConfig {
+
+    @Bean
+    @ConfigurationProperties("aggregator.state")
+    public StateProperties stateProperties() {
+        return new StateProperties();
+    }
+
+    @Bean
+    public LiveStateView liveStateView() {
+        return new LiveStateView();
+    }
+
+    @Bean
+    public LiveStateService liveStateService(LiveStateView view, OwnerLocator ownerLocator,
+                                             StateProperties properties, RestClient.Builder restClientBuilder) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(properties.getForwardTimeout());
+        requestFactory.setReadTimeout(properties.getForwardTimeout());
+        return new LiveStateService(view, ownerLocator, restClientBuilder.requestFactory(requestFactory).build());
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "aggregator.engine", havingValue = "loop", matchIfMissing = true)
+    public ConsumerGroupOwnerLocator consumerGroupOwnerLocator(StateProperties properties,
+                                                               @Value("${kafka.bootstrap-servers}") String bootstrapServers,
+                                                               @Value("${kafka.group-id}") String groupId,
+                                                               @Value("${kafka.input-topic}") String inputTopic) {
+        Properties config = new Properties();
+        config.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        return new ConsumerGroupOwnerLocator(Admin.create(config), groupId, inputTopic, properties);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.state;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import net.devh.boot.grpc.server.service.GrpcService;
+import ru.yandex.practicum.grpc.telemetry.aggregator.HubStateProto;
+import ru.yandex.practicum.grpc.telemetry.aggregator.HubStateRequest;
+import ru.yandex.practicum.grpc.telemetry.aggregator.SensorStateProto;
+import ru.yandex.practicum.grpc.telemetry.aggregator.SensorStateQueryGrpc;
+import ru.yandex.practicum.grpc.telemetry.aggregator.SensorStateRequest;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.util.Optional;
+
+/**
+ * Запросы текущего состояния датчиков по gRPC.
+ */
+@GrpcService
+public class StateGrpcController extends SensorStateQueryGrpc.SensorStateQueryImplBase {
+    private final LiveStateService stateService;
+
+    public StateGrpcController(LiveStateService stateService) {
+        this.stateService = stateService;
+    }
+
+    @Override
+    public void getHubState(HubStateRequest request, StreamObserver<HubStateProto> responseObserver) {
+        Optional<SensorsSnapshotAvro> snapshot = find(request.getHubId(), responseObserver);
+        if (snapshot == null) {
+            return;
+        }
+        if (snapshot.isEmpty()) {
+            responseObserver.onError(Status.NOT_FOUND
+                    .withDescription("Нет состояния хаба " + request.getHubId())
+                    .asRuntimeException());
+            return;
+        }
+        responseObserver.onNext(StateProtoMapper.toProto(snapshot.get()));
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getSensorState(SensorStateRequest request, StreamObserver<SensorStateProto> responseObserver) {
+        Optional<SensorsSnapshotAvro> snapshot = find(request.getHubId(), responseObserver);
+        if (snapshot == null) {
+            return;
+        }
+        SensorStateAvro state = snapshot.map(s -> s.getSensorsState().get(request.getSensorId())).orElse(null);
+        if (state == null) {
+            responseObserver.onError(Status.NOT_FOUND
+                    .withDescription("Нет состояния датчика " + request.getSensorId() + " хаба " + request.getHubId())
+                    .asRuntimeException());
+            return;
+        }
+        responseObserver.onNext(StateProtoMapper.toProto(request.getSensorId(), state));
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Снапшот хаба или {@code null}, если клиенту уже отправлена ошибка.
+     */
+    private Optional<SensorsSnapshotAvro> find(String hubId, StreamObserver<?> responseObserver) {
+        if (hubId.isBlank()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Нужен идентификатор хаба")
+                    .asRuntimeException());
+            return null;
+        }
+        try {
+            return stateService.hubState(hubId);
+        } catch (OwnerUnavailableException e) {
+            responseObserver.onError(Status.UNAVAILABLE.withDescription(e.getMessage()).asRuntimeException());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.state;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import serializer.GeneralAvroSerializer;
+
+/**
+ * Запросы текущего состояния датчиков по HTTP и внутренний запрос, которым экземпляры
+ * получают состояние хаба друг у друга.
+ */
+@RestController
+public class StateHttpController {
+    private static final MediaType AVRO = MediaType.parseMediaType("application/avro");
+
+    private final LiveStateService stateService;
+    // сериализатор хранит encoder между вызовами, а запросы обслуживают разные потоки
+    private final ThreadLocal<GeneralAvroSerializer> serializer = ThreadLocal.withInitial(GeneralAvroSerializer::new);
+
+    public StateHttpController(LiveStateService stateService) {
+        this.stateService = stateService;
+    }
+
+    @GetMapping("/api/v1/state/hubs/{hubId}")
+    public ResponseEntity<HubStateView> hubState(@PathVariable String hubId) {
+        return stateService.hubState(hubId)
+                .map(HubStateView::of)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/api/v1/state/hubs/{hubId}/sensors/{sensorId}")
+    public ResponseEntity<SensorStateView> sensorState(@PathVariable String hubId, @PathVariable String sensorId) {
+        SensorStateAvro state = stateService.hubState(hubId)
+                .map(snapshot -> snapshot.getSensorsState().get(sensorId))
+                .orElse(null);
+        return state == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(SensorStateView.of(state));
+    }
+
+    /**
+     * Снапшот хаба из памяти этого экземпляра в двоичном Avro, без пересылки владельцу.
+     */
+    @GetMapping(LiveStateService.INTERNAL_PATH)
+    public ResponseEntity<byte[]> localHubState(@PathVariable String hubId) {
+        return stateService.localHubState(hubId)
+                .map(snapshot -> ResponseEntity.ok().contentType(AVRO).body(serializer.get().serialize(null, snapshot)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @ExceptionHandler(OwnerUnavailableException.class)
+    public ResponseEntity<String> ownerUnavailable(OwnerUnavailableException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+    }
+}
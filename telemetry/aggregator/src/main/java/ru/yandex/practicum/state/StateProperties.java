@@ -0,0 +1,29 @@
+package ru.yandex.practicum.state;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки запросов текущего состояния хабов.
+ */
+@Getter
+@Setter
+public class StateProperties {
+    /**
+     * Адрес HTTP этого экземпляра ({@code host:port}), по которому к нему обращаются соседи.
+     * Передаётся в Kafka в идентификаторе клиента потребителя или в {@code application.server} Kafka Streams.
+     */
+    private String advertisedEndpoint = "localhost:8082";
+
+    /**
+     * Как долго используется известное распределение партиций по экземплярам, прежде чем запросить его снова.
+     */
+    private Duration ownershipRefresh = Duration.ofSeconds(5);
+
+    /**
+     * Сколько ждать ответа экземпляра-владельца.
+     */
+    private Duration forwardTimeout = Duration.ofSeconds(2);
+}
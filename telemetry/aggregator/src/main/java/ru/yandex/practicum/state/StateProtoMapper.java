@@ -0,0 +1,72 @@
+package ru.yandex.practicum.state;
+
+import com.google.protobuf.Timestamp;
+import ru.yandex.practicum.grpc.telemetry.aggregator.HubStateProto;
+import ru.yandex.practicum.grpc.telemetry.aggregator.SensorStateProto;
+import ru.yandex.practicum.grpc.telemetry.event.ClimateSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.LightSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.MotionSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.SwitchSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.TemperatureSensorProto;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Преобразует состояние из снапшота Avro в ответы gRPC.
+ */
+public final class StateProtoMapper {
+
+    private StateProtoMapper() {
+    }
+
+    public static HubStateProto toProto(SensorsSnapshotAvro snapshot) {
+        HubStateProto.Builder builder = HubStateProto.newBuilder()
+                .setHubId(snapshot.getHubId())
+                .setTimestamp(toTimestamp(snapshot.getTimestamp()));
+        for (Map.Entry<String, SensorStateAvro> entry : snapshot.getSensorsState().entrySet()) {
+            builder.putSensors(entry.getKey(), toProto(entry.getKey(), entry.getValue()));
+        }
+        return builder.build();
+    }
+
+    public static SensorStateProto toProto(String sensorId, SensorStateAvro state) {
+        SensorStateProto.Builder builder = SensorStateProto.newBuilder()
+                .setSensorId(sensorId)
+                .setTimestamp(toTimestamp(state.getTimestamp()));
+        switch (state.getData()) {
+            case ClimateSensorAvro climate -> builder.setClimateSensor(ClimateSensorProto.newBuilder()
+                    .setTemperatureC(climate.getTemperatureC())
+                    .setHumidity(climate.getHumidity())
+                    .setCo2Level(climate.getCo2Level()));
+            case LightSensorAvro light -> builder.setLightSensor(LightSensorProto.newBuilder()
+                    .setLinkQuality(light.getLinkQuality())
+                    .setLuminosity(light.getLuminosity()));
+            case MotionSensorAvro motion -> builder.setMotionSensor(MotionSensorProto.newBuilder()
+                    .setLinkQuality(motion.getLinkQuality())
+                    .setMotion(motion.getMotion())
+                    .setVoltage(motion.getVoltage()));
+            case SwitchSensorAvro switchSensor -> builder.setSwitchSensor(SwitchSensorProto.newBuilder()
+                    .setState(switchSensor.getState()));
+            case TemperatureSensorAvro temperature -> builder.setTemperatureSensor(TemperatureSensorProto.newBuilder()
+                    .setTemperatureC(temperature.getTemperatureC())
+                    .setTemperatureF(temperature.getTemperatureF()));
+            default -> throw new IllegalArgumentException("Неизвестный тип показаний: " + state.getData().getClass());
+        }
+        return builder.build();
+    }
+
+    private static Timestamp toTimestamp(Instant instant) {
+        return Timestamp.newBuilder()
+                .setSeconds(instant.getEpochSecond())
+                .setNanos(instant.getNano())
+                .build();
+    }
+}
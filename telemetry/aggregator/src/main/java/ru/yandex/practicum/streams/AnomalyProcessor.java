@@ -0,0 +1,45 @@
+package ru.yandex.practicum.streams;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import ru.yandex.practicum.anomaly.AnomalyDetector;
+import ru.yandex.practicum.anomaly.AnomalyProperties;
+import ru.yandex.practicum.kafka.telemetry.event.SensorAnomalyAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+
+/**
+ * Поиск аномалий в топологии Kafka Streams. Средние и дисперсии датчиков живут в памяти задачи
+ * и в журнал изменений не пишутся: после переезда задачи статистика набирается заново.
+ */
+class AnomalyProcessor implements Processor<String, SensorEventAvro, String, SensorAnomalyAvro> {
+    private final AnomalyProperties properties;
+    private final MeterRegistry meterRegistry;
+    private ProcessorContext<String, SensorAnomalyAvro> context;
+    private AnomalyDetector detector;
+
+    AnomalyProcessor(AnomalyProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void init(ProcessorContext<String, SensorAnomalyAvro> context) {
+        this.context = context;
+        this.detector = new AnomalyDetector(properties, this::forward, meterRegistry);
+        context.schedule(properties.getFlushInterval(), PunctuationType.WALL_CLOCK_TIME, detector::expire);
+    }
+
+    @Override
+    public void process(Record<String, SensorEventAvro> record) {
+        if (record.value() != null) {
+            detector.add(record.value(), context.currentSystemTimeMs());
+        }
+    }
+
+    private void forward(SensorAnomalyAvro anomaly) {
+        context.forward(new Record<>(anomaly.getHubId(), anomaly, context.currentSystemTimeMs()));
+    }
+}
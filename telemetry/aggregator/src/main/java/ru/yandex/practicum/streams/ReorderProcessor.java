@@ -0,0 +1,136 @@
+package ru.yandex.practicum.streams;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import ru.yandex.practicum.kafka.telemetry.event.BatchedSensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.reorder.ReorderBuffer;
+import ru.yandex.practicum.reorder.ReorderProperties;
+import tracing.TraceContext;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Выстраивает события хаба по времени событий в топологии Kafka Streams. Порядок держит буфер в памяти,
+ * а каждое ждущее в нём событие вместе с контекстом трассировки лежит и в хранилище {@link #STORE}
+ * с журналом изменений. Смещение записи Kafka Streams фиксирует, как только запись обработана, поэтому
+ * при падении и переезде задачи события из буфера восстанавливаются из хранилища, а не теряются;
+ * обработку после отзыва задачи продолжает её новый владелец.
+ */
+class ReorderProcessor implements Processor<String, SensorEventAvro, String, SensorEventAvro> {
+    static final String STORE = "reorder-buffer";
+
+    private final ReorderProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final List<Buffered> restoredReleases = new ArrayList<>();
+    private ProcessorContext<String, SensorEventAvro> context;
+    private KeyValueStore<String, BatchedSensorEventAvro> store;
+    private ReorderBuffer<Buffered> buffer;
+    private long nextSequence;
+    private boolean restoring;
+
+    ReorderProcessor(ReorderProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void init(ProcessorContext<String, SensorEventAvro> context) {
+        this.context = context;
+        this.store = context.getStateStore(STORE);
+        this.buffer = new ReorderBuffer<>(properties, this::release, meterRegistry);
+        restore();
+        // по часам, а не по времени потока: буфер замолчавшего хаба тоже должен выпускаться
+        context.schedule(properties.getFlushInterval(), PunctuationType.WALL_CLOCK_TIME, now -> {
+            forwardRestored();
+            buffer.expire(now);
+        });
+    }
+
+    @Override
+    public void process(Record<String, SensorEventAvro> record) {
+        forwardRestored();
+        SensorEventAvro event = record.value();
+        if (event == null) {
+            return;
+        }
+        String key = key(event.getHubId(), nextSequence++);
+        BatchedSensorEventAvro entry = BatchedSensorEventAvro.newBuilder().setEvent(event).build();
+        TraceContext.fromHeaders(record.headers()).ifPresent(trace -> {
+            entry.setTraceId(trace.traceId());
+            entry.setIngestedAt(Instant.ofEpochMilli(trace.ingestedAt()));
+        });
+        // в хранилище до добавления: буфер может сразу выпустить событие и удалить его оттуда
+        store.put(key, entry);
+        if (!buffer.add(event.getHubId(), event.getTimestamp().toEpochMilli(), new Buffered(key, record),
+                context.currentSystemTimeMs())) {
+            store.delete(key);
+        }
+    }
+
+    /**
+     * Возвращает в буфер события, которые ждали в нём до перезапуска или переезда задачи.
+     * Ключи хранилища упорядочены по номеру прихода внутри хаба, поэтому порядок равных по времени сохраняется.
+     */
+    private void restore() {
+        restoring = true;
+        long now = context.currentSystemTimeMs();
+        try (KeyValueIterator<String, BatchedSensorEventAvro> iterator = store.all()) {
+            while (iterator.hasNext()) {
+                KeyValue<String, BatchedSensorEventAvro> stored = iterator.next();
+                SensorEventAvro event = stored.value.getEvent();
+                RecordHeaders headers = new RecordHeaders();
+                TraceContext.fromBatched(stored.value).ifPresent(trace -> trace.writeTo(headers));
+                Record<String, SensorEventAvro> record =
+                        new Record<>(event.getHubId(), event, event.getTimestamp().toEpochMilli(), headers);
+                nextSequence = Math.max(nextSequence, sequence(stored.key) + 1);
+                if (!buffer.add(event.getHubId(), event.getTimestamp().toEpochMilli(),
+                        new Buffered(stored.key, record), now)) {
+                    store.delete(stored.key);
+                }
+            }
+        } finally {
+            restoring = false;
+        }
+    }
+
+    private void release(Buffered buffered) {
+        if (restoring) {
+            // из init() передавать записи дальше нельзя: они уйдут с первой обработкой или проверкой буфера
+            restoredReleases.add(buffered);
+            return;
+        }
+        store.delete(buffered.key());
+        context.forward(buffered.record());
+    }
+
+    private void forwardRestored() {
+        if (restoredReleases.isEmpty()) {
+            return;
+        }
+        List<Buffered> released = List.copyOf(restoredReleases);
+        restoredReleases.clear();
+        released.forEach(this::release);
+    }
+
+    private static String key(String hubId, long sequence) {
+        // номер фиксированной длины, чтобы строковые ключи хаба шли в порядке прихода
+        return String.format("%s/%019d", hubId, sequence);
+    }
+
+    private static long sequence(String key) {
+        return Long.parseLong(key.substring(key.lastIndexOf('/') + 1));
+    }
+
+    private record Buffered(String key, Record<String, SensorEventAvro> record) {
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.streams;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorRollupAvro;
+import ru.yandex.practicum.rollup.RollupAggregator;
+import ru.yandex.practicum.rollup.RollupProperties;
+
+/**
+ * Статистика показателей по окнам в топологии Kafka Streams. Накопители открытых окон живут
+ * в памяти задачи и в журнал изменений не пишутся: при переезде задачи на другой экземпляр
+ * незакрытые окна теряются, а закрытые уже записаны в топик статистики.
+ */
+class RollupProcessor implements Processor<String, SensorEventAvro, String, SensorRollupAvro> {
+    private final RollupProperties properties;
+    private final MeterRegistry meterRegistry;
+    private ProcessorContext<String, SensorRollupAvro> context;
+    private RollupAggregator rollups;
+
+    RollupProcessor(RollupProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void init(ProcessorContext<String, SensorRollupAvro> context) {
+        this.context = context;
+        this.rollups = new RollupAggregator(properties, this::forward, meterRegistry);
+        // по часам, а не по времени потока: окна молчащих хабов тоже должны закрываться
+        context.schedule(properties.getFlushInterval(), PunctuationType.WALL_CLOCK_TIME, rollups::expire);
+    }
+
+    @Override
+    public void process(Record<String, SensorEventAvro> record) {
+        if (record.value() != null) {
+            rollups.add(record.value(), context.currentSystemTimeMs());
+        }
+    }
+
+    private void forward(SensorRollupAvro rollup) {
+        context.forward(new Record<>(rollup.getHubId(), rollup, context.currentSystemTimeMs()));
+    }
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.streams;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import ru.yandex.practicum.kafka.telemetry.event.BatchedSensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import tracing.TraceContext;
+
+/**
+ * Разворачивает пачку событий хаба в отдельные события. Контекст трассировки каждого события
+ * переносится в заголовки, как у одиночной записи топика датчиков, поэтому следующие процессоры
+ * не отличают события из пачки от одиночных.
+ */
+class SensorEventUnpackProcessor implements Processor<String, SensorEventBatchAvro, String, SensorEventAvro> {
+    private ProcessorContext<String, SensorEventAvro> context;
+
+    @Override
+    public void init(ProcessorContext<String, SensorEventAvro> context) {
+        this.context = context;
+    }
+
+    @Override
+    public void process(Record<String, SensorEventBatchAvro> record) {
+        if (record.value() == null) {
+            return;
+        }
+        for (BatchedSensorEventAvro entry : record.value().getEvents()) {
+            RecordHeaders headers = new RecordHeaders();
+            TraceContext.fromBatched(entry).ifPresent(trace -> trace.writeTo(headers));
+            context.forward(new Record<>(record.key(), entry.getEvent(), record.timestamp(), headers));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ru.yandex.practicum.streams;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import ru.yandex.practicum.SnapshotStorage;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.profiling.SnapshotUpdateEvent;
+import ru.yandex.practicum.recent.RecentReadings;
+import ru.yandex.practicum.recent.RecentReadingsProperties;
+import ru.yandex.practicum.state.LiveStateView;
+import ru.yandex.practicum.telemetry.common.hitters.HeavyHitters;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
+import tracing.TraceContext;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обновляет снапшот хаба в хранилище состояния по тем же правилам, что и {@link SnapshotStorage}:
+ * устаревшие и повторные события снапшот не меняют и дальше не передаются.
+ * Экземпляр процессора создаётся на задачу Kafka Streams и используется одним потоком.
+ */
+@Slf4j
+class SnapshotAggregationProcessor implements Processor<String, SensorEventAvro, String, SensorsSnapshotAvro> {
+    private final SnapshotStorage snapshotStorage;
+    private final LiveStateView liveStateView;
+    private final HeavyHitters heavyHitters;
+    private final RecentReadings recentReadings;
+    private final LogSampler logSampler;
+    private final Timer stageLatency;
+    private final Counter snapshotsEmitted;
+    private ProcessorContext<String, SensorsSnapshotAvro> context;
+    private KeyValueStore<String, SensorsSnapshotAvro> store;
+
+    /**
+     * @param heavyHitters учёт самых частых хабов и датчиков или {@code null}, если он выключен
+     */
+    SnapshotAggregationProcessor(SnapshotStorage snapshotStorage, LiveStateView liveStateView,
+                                 HeavyHitters heavyHitters, RecentReadingsProperties recentReadingsProperties,
+                                 MeterRegistry meterRegistry, LogSampler logSampler) {
+        this.snapshotStorage = snapshotStorage;
+        this.liveStateView = liveStateView;
+        this.heavyHitters = heavyHitters;
+        // история показаний своя у каждой задачи и восстанавливается из снапшотов хранилища состояния
+        this.recentReadings = recentReadingsProperties.isEnabled() ? new RecentReadings(recentReadingsProperties) : null;
+        this.logSampler = logSampler;
+        // те же метрики, что у цикла потребителя, чтобы движки сравнивались на одних графиках
+        this.stageLatency = Timer.builder("telemetry.pipeline.stage.latency")
+                .description("Задержка от приёма события коллектором до выхода из стадии")
+                .tag("stage", "aggregator")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.snapshotsEmitted = Counter.builder("telemetry.aggregator.snapshots.emitted")
+                .description("Снапшоты, записанные агрегатором в Kafka")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void init(ProcessorContext<String, SensorsSnapshotAvro> context) {
+        this.context = context;
+        this.store = context.getStateStore(SnapshotTopology.SNAPSHOT_STORE);
+    }
+
+    @Override
+    public void process(Record<String, SensorEventAvro> record) {
+        SensorEventAvro event = record.value();
+        if (event == null) {
+            return;
+        }
+        if (logSampler.sample(log)) {
+            log.debug("ключ = {}, значение: {}", record.key(), event);
+        }
+        if (heavyHitters != null) {
+            heavyHitters.recordSensor(event.getHubId(), event.getId(), System.currentTimeMillis());
+        }
+        TraceContext trace = TraceContext.fromHeaders(record.headers()).orElse(null);
+        SnapshotUpdateEvent updateEvent = new SnapshotUpdateEvent();
+        updateEvent.begin();
+        Optional<SensorsSnapshotAvro> mayBeSnapshot =
+                snapshotStorage.apply(store.get(event.getHubId()), event, trace, recentReadings);
+        updateEvent.end();
+        if (updateEvent.shouldCommit()) {
+            updateEvent.hubId = event.getHubId();
+            updateEvent.sensorId = event.getId();
+            updateEvent.payloadType = event.getPayload().getClass().getSimpleName();
+            updateEvent.changed = mayBeSnapshot.isPresent();
+            updateEvent.commit();
+        }
+
+        if (mayBeSnapshot.isPresent()) {
+            SensorsSnapshotAvro snapshot = mayBeSnapshot.get();
+            store.put(event.getHubId(), snapshot);
+            liveStateView.publish(snapshot);
+            // снапшот пишется без заголовков трассировки, как и в цикле потребителя:
+            // контекст трассировки уже лежит в состоянии датчика
+            context.forward(new Record<>(event.getHubId(), snapshot, record.timestamp(), new RecordHeaders()));
+            snapshotsEmitted.increment();
+            if (trace != null) {
+                stageLatency.record(trace.elapsedMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.streams;
+
+import deserializer.BaseAvroDeserializer;
+import deserializer.SensorAnomalyDeserializer;
+import deserializer.SensorEventBatchDeserializer;
+import deserializer.SensorRollupDeserializer;
+import deserializer.SensorsSnapshotDeserializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.state.Stores;
+import ru.yandex.practicum.SnapshotStorage;
+import ru.yandex.practicum.anomaly.AnomalyProperties;
+import ru.yandex.practicum.kafka.telemetry.event.BatchedSensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.recent.RecentReadings;
+import ru.yandex.practicum.recent.RecentReadingsProperties;
+import ru.yandex.practicum.reorder.ReorderProperties;
+import ru.yandex.practicum.rollup.RollupProperties;
+import ru.yandex.practicum.state.LiveStateView;
+import ru.yandex.practicum.telemetry.common.hitters.HeavyHitters;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
+import serializer.GeneralAvroSerializer;
+
+/**
+ * Топология агрегации: события датчиков, ключ - идентификатор хаба, проходят через процессор
+ * с хранилищем снапшотов по хабу, изменившиеся снапшоты пишутся в топик снапшотов.
+ * <p>
+ * Хранилище ведёт журнал изменений в служебном компактном топике, из него состояние
+ * восстанавливается после перезапуска и на резервных копиях. Ключи записей не меняются,
+ * поэтому перераспределения нет, а снапшоты хаба попадают в партицию с тем же номером,
+ * что и его события: хеш строкового ключа совпадает с хешем {@code HubPartitioner}.
+ * <p>
+ * Если включено упорядочивание, события хаба сначала проходят через {@link ReorderProcessor}
+ * и дальше идут в порядке времени событий; ждущие события лежат в его хранилище с журналом изменений.
+ * <p>
+ * Если статистика по окнам включена, те же события параллельно проходят через {@link RollupProcessor},
+ * и закрытые окна пишутся в топик статистики. Так же устроен поиск аномалий: {@link AnomalyProcessor}
+ * пишет найденные аномалии в свой топик.
+ */
+public final class SnapshotTopology {
+    public static final String SNAPSHOT_STORE = "hub-snapshots";
+
+    private SnapshotTopology() {
+    }
+
+    public static Topology build(String inputTopic, String outputTopic, SnapshotStorage snapshotStorage,
+                                 RollupProperties rollupProperties, AnomalyProperties anomalyProperties,
+                                 ReorderProperties reorderProperties,
+                                 RecentReadingsProperties recentReadingsProperties, LiveStateView liveStateView,
+                                 HeavyHitters heavyHitters, MeterRegistry meterRegistry, LogSampler logSampler) {
+        Serde<SensorEventBatchAvro> batchSerde = avroSerde(new SensorEventBatchDeserializer());
+        Serde<SensorsSnapshotAvro> snapshotSerde = avroSerde(new SensorsSnapshotDeserializer());
+
+        StreamsBuilder builder = new StreamsBuilder();
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(SNAPSHOT_STORE), Serdes.String(), snapshotSerde));
+        // в топике датчиков встречаются и одиночные события, и пачки событий хаба: дальше идут отдельные события
+        KStream<String, SensorEventAvro> events = builder.stream(inputTopic, Consumed.with(Serdes.String(), batchSerde))
+                .process(SensorEventUnpackProcessor::new);
+        if (reorderProperties.isEnabled()) {
+            // ждущие в буфере события хранятся с журналом изменений и переживают перезапуск задачи
+            builder.addStateStore(Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(ReorderProcessor.STORE),
+                    Serdes.String(), avroSerde(new BaseAvroDeserializer<>(BatchedSensorEventAvro.getClassSchema()))));
+            events = events.process(() -> new ReorderProcessor(reorderProperties, meterRegistry),
+                    ReorderProcessor.STORE);
+        }
+        if (recentReadingsProperties.isEnabled()) {
+            RecentReadings.logBounds(recentReadingsProperties);
+        }
+        events.process(() -> new SnapshotAggregationProcessor(snapshotStorage, liveStateView, heavyHitters,
+                                recentReadingsProperties, meterRegistry, logSampler),
+                        SNAPSHOT_STORE)
+                .to(outputTopic, Produced.with(Serdes.String(), snapshotSerde));
+        if (rollupProperties.isEnabled()) {
+            events.process(() -> new RollupProcessor(rollupProperties, meterRegistry))
+                    .to(rollupProperties.getTopic(),
+                            Produced.with(Serdes.String(), avroSerde(new SensorRollupDeserializer())));
+        }
+        if (anomalyProperties.isEnabled()) {
+            events.process(() -> new AnomalyProcessor(anomalyProperties, meterRegistry))
+                    .to(anomalyProperties.getTopic(),
+                            Produced.with(Serdes.String(), avroSerde(new SensorAnomalyDeserializer())));
+        }
+        return builder.build();
+    }
+
+    private static <T extends SpecificRecordBase> Serde<T> avroSerde(Deserializer<T> deserializer) {
+        // serde общий для всех потоков Kafka Streams, а сериализатор хранит encoder между вызовами
+        ThreadLocal<GeneralAvroSerializer> serializers = ThreadLocal.withInitial(GeneralAvroSerializer::new);
+        return Serdes.serdeFrom((topic, data) -> serializers.get().serialize(topic, data), deserializer);
+    }
+}
@@ -0,0 +1,122 @@
+package ru.yandex.practicum.streams;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.kafka.KafkaStreamsMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyQueryMetadata;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.errors.LogAndContinueExceptionHandler;
+import org.apache.kafka.streams.errors.StreamsUncaughtExceptionHandler;
+import org.apache.kafka.streams.state.HostInfo;
+import ru.yandex.practicum.AggregationEngine;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopologyProperties;
+
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Движок агрегации на Kafka Streams. Состояние хранится в RocksDB и журнале изменений, поэтому
+ * экземпляр, получивший партиции упавшего соседа, продолжает с его снапшотов, а не с пустых.
+ */
+@Slf4j
+public class StreamsAggregationEngine implements AggregationEngine {
+    private final Topology topology;
+    private final Properties config;
+    private final StreamsEngineProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile KafkaStreams streams;
+    private KafkaStreamsMetrics streamsMetrics;
+
+    public StreamsAggregationEngine(Topology topology, String bootstrapServers, TopologyProperties topologyProperties,
+                                    StreamsEngineProperties properties, String advertisedEndpoint,
+                                    MeterRegistry meterRegistry) {
+        this.topology = topology;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.config = streamsConfig(bootstrapServers, topologyProperties, properties, advertisedEndpoint);
+    }
+
+    static Properties streamsConfig(String bootstrapServers, TopologyProperties topology,
+                                    StreamsEngineProperties properties, String advertisedEndpoint) {
+        Properties config = new Properties();
+        config.put(StreamsConfig.APPLICATION_ID_CONFIG, properties.getApplicationId());
+        config.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(StreamsConfig.STATE_DIR_CONFIG, properties.getStateDir());
+        config.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, properties.getStreamThreads());
+        config.put(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG, properties.getStandbyReplicas());
+        config.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, properties.getProcessingGuarantee());
+        config.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, properties.getCommitInterval().toMillis());
+        // служебные топики с тем же фактором репликации, что и остальные топики телеметрии
+        config.put(StreamsConfig.REPLICATION_FACTOR_CONFIG, (int) topology.getReplicationFactor());
+        // повреждённое событие пропускается, как в цикле потребителя
+        config.put(StreamsConfig.DEFAULT_DESERIALIZATION_EXCEPTION_HANDLER_CLASS_CONFIG,
+                LogAndContinueExceptionHandler.class);
+        // адрес для запросов состояния: соседи узнают его из метаданных Kafka Streams
+        config.put(StreamsConfig.APPLICATION_SERVER_CONFIG, advertisedEndpoint);
+        if (topology.getInstanceId() != null && !topology.getInstanceId().isBlank()) {
+            config.put(StreamsConfig.mainConsumerPrefix(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG),
+                    topology.getInstanceId());
+        }
+        return config;
+    }
+
+    @Override
+    public void start() {
+        streams = new KafkaStreams(topology, config);
+        streamsMetrics = new KafkaStreamsMetrics(streams);
+        streamsMetrics.bindTo(meterRegistry);
+        streams.setStateListener((newState, oldState) -> {
+            log.info("Kafka Streams: {} -> {}", oldState, newState);
+            if (newState == KafkaStreams.State.NOT_RUNNING || newState == KafkaStreams.State.ERROR) {
+                stopped.countDown();
+            }
+        });
+        // поток, упавший на ошибке обработки, заменяется новым, задачи переназначаются без остановки экземпляра
+        streams.setUncaughtExceptionHandler(exception -> {
+            log.error("Ошибка в потоке Kafka Streams, поток будет заменён", exception);
+            return StreamsUncaughtExceptionHandler.StreamThreadExceptionResponse.REPLACE_THREAD;
+        });
+        log.info("Запускаем агрегацию на Kafka Streams:\n{}", topology.describe());
+        streams.start();
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Адрес ({@code host:port}) экземпляра, который ведёт активную задачу партиции хаба.
+     * Пусто, пока Kafka Streams не запущен или идёт перебалансировка.
+     */
+    Optional<String> activeHost(String hubId) {
+        KafkaStreams current = streams;
+        if (current == null || current.state() != KafkaStreams.State.RUNNING) {
+            return Optional.empty();
+        }
+        KeyQueryMetadata metadata = current.queryMetadataForKey(
+                SnapshotTopology.SNAPSHOT_STORE, hubId, Serdes.String().serializer());
+        if (metadata == null || KeyQueryMetadata.NOT_AVAILABLE.equals(metadata)) {
+            return Optional.empty();
+        }
+        HostInfo host = metadata.activeHost();
+        return Optional.of(host.host() + ":" + host.port());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (streams != null) {
+            streams.close(properties.getCloseTimeout());
+            streamsMetrics.close();
+            log.info("Kafka Streams остановлен");
+        }
+        stopped.countDown();
+    }
+}
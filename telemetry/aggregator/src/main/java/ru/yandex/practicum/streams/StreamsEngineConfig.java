@@ -0,0 +1,65 @@
+package ru.yandex.practicum.streams;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import ru.yandex.practicum.SnapshotStorage;
+import ru.yandex.practicum.anomaly.AnomalyProperties;
+import ru.yandex.practicum.recent.RecentReadingsProperties;
+import ru.yandex.practicum.reorder.ReorderProperties;
+import ru.yandex.practicum.rollup.RollupProperties;
+import ru.yandex.practicum.state.LiveStateView;
+import ru.yandex.practicum.state.OwnerLocator;
+import ru.yandex.practicum.state.StateProperties;
+import ru.yandex.practicum.telemetry.common.hitters.HeavyHitters;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopologyProperties;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
+
+@Configuration
+@ConditionalOnProperty(name = "aggregator.engine", havingValue = "streams")
+public class StreamsEngineConfig {
+
+    @Bean
+    @ConfigurationProperties("aggregator.streams")
+    StreamsEngineProperties streamsEngineProperties() {
+        return new StreamsEngineProperties();
+    }
+
+    /**
+     * Создаётся после {@code topicProvisioner}: Kafka Streams не запускается без входного топика.
+     */
+    @Bean
+    @DependsOn("topicProvisioner")
+    StreamsAggregationEngine streamsAggregationEngine(StreamsEngineProperties properties,
+                                                      TopologyProperties topologyProperties,
+                                                      SnapshotStorage snapshotStorage,
+                                                      RollupProperties rollupProperties,
+                                                      AnomalyProperties anomalyProperties,
+                                                      ReorderProperties reorderProperties,
+                                                      RecentReadingsProperties recentReadingsProperties,
+                                                      StateProperties stateProperties,
+                                                      LiveStateView liveStateView,
+                                                      ObjectProvider<HeavyHitters> heavyHitters,
+                                                      MeterRegistry meterRegistry,
+                                                      LogSampler logSampler,
+                                                      @Value("${kafka.bootstrap-servers}") String bootstrapServers,
+                                                      @Value("${kafka.input-topic}") String inputTopic,
+                                                      @Value("${kafka.output-topic}") String outputTopic) {
+        return new StreamsAggregationEngine(
+                SnapshotTopology.build(inputTopic, outputTopic, snapshotStorage, rollupProperties,
+                        anomalyProperties, reorderProperties, recentReadingsProperties, liveStateView,
+                        heavyHitters.getIfAvailable(), meterRegistry, logSampler),
+                bootstrapServers, topologyProperties, properties, stateProperties.getAdvertisedEndpoint(),
+                meterRegistry);
+    }
+
+    @Bean
+    OwnerLocator streamsOwnerLocator(StreamsAggregationEngine engine, StateProperties stateProperties) {
+        return new StreamsOwnerLocator(engine, stateProperties.getAdvertisedEndpoint());
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.streams;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки движка агрегации на Kafka Streams.
+ */
+@Getter
+@Setter
+public class StreamsEngineProperties {
+    /**
+     * Идентификатор приложения Kafka Streams: группа потребителей и префикс служебных топиков.
+     */
+    private String applicationId = "telemetry.aggregator.streams";
+
+    /**
+     * Каталог локальных хранилищ состояния. После перезапуска с тем же каталогом хранилище
+     * догоняет журнал изменений с сохранённого смещения, а не восстанавливается целиком.
+     */
+    private String stateDir = System.getProperty("java.io.tmpdir") + "/aggregator-streams";
+
+    private int streamThreads = 1;
+
+    /**
+     * Число резервных копий хранилища на других экземплярах. Резервная копия читает журнал изменений
+     * постоянно, поэтому при отказе экземпляра его партиции переходят без полного восстановления.
+     */
+    private int standbyReplicas = 1;
+
+    /**
+     * {@code at_least_once} или {@code exactly_once_v2}.
+     */
+    private String processingGuarantee = "at_least_once";
+
+    /**
+     * Как часто фиксируются смещения и сбрасываются хранилища; от этого зависит объём повторной
+     * обработки после сбоя.
+     */
+    private Duration commitInterval = Duration.ofSeconds(1);
+
+    /**
+     * Сколько ждать остановки потоков при закрытии приложения.
+     */
+    private Duration closeTimeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.streams;
+
+import ru.yandex.practicum.state.OwnerLocator;
+
+import java.util.Optional;
+
+/**
+ * Владелец хаба для Kafka Streams: метаданные хранилища снапшотов знают, какой экземпляр
+ * ведёт активную задачу партиции, а его адрес - это {@code application.server} экземпляра.
+ */
+class StreamsOwnerLocator implements OwnerLocator {
+    private final StreamsAggregationEngine engine;
+    private final String self;
+
+    StreamsOwnerLocator(StreamsAggregationEngine engine, String advertisedEndpoint) {
+        this.engine = engine;
+        this.self = advertisedEndpoint;
+    }
+
+    @Override
+    public Optional<String> remoteOwner(String hubId) {
+        return engine.activeHost(hubId).filter(endpoint -> !endpoint.equals(self));
+    }
+}
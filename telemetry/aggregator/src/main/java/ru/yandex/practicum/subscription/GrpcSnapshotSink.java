@@ -0,0 +1,38 @@
+package ru.yandex.practicum.subscription;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import ru.yandex.practicum.grpc.telemetry.aggregator.HubStateProto;
+
+/**
+ * Подписка по gRPC. Сообщение отправляется, только когда вызов готов его принять,
+ * поэтому буферы HTTP/2 медленного клиента не растут; готовность будит поток подписки.
+ */
+class GrpcSnapshotSink implements SnapshotSink {
+    private final ServerCallStreamObserver<HubStateProto> call;
+
+    GrpcSnapshotSink(ServerCallStreamObserver<HubStateProto> call) {
+        this.call = call;
+    }
+
+    @Override
+    public boolean ready() {
+        return call.isReady();
+    }
+
+    @Override
+    public void send(SnapshotUpdate update) {
+        call.onNext(update.proto());
+    }
+
+    @Override
+    public void heartbeat() {
+        // разрыв соединения gRPC замечает сам и вызывает обработчик отмены
+    }
+
+    @Override
+    public void complete() {
+        if (!call.isCancelled()) {
+            call.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package ru.yandex.practicum.subscription;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.state.LiveStateService;
+import ru.yandex.practicum.state.OwnerUnavailableException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Рассылает снапшоты хабов подписчикам. Один потребитель без группы читает все партиции
+ * топика снапшотов с конца и раскладывает каждый снапшот по подпискам его хаба; сколько бы
+ * ни было подписчиков, нагрузка на Kafka от экземпляра - один потребитель.
+ * <p>
+ * Поток чтения не ждёт клиентов: снапшот кладётся в ячейку хаба каждой подписки, а отправляет его
+ * виртуальный поток подписки. Текущее состояние при подписке берётся из {@link LiveStateService},
+ * так что клиент сразу видит хабы, даже если они давно не менялись.
+ */
+@Slf4j
+public class SnapshotFanout implements Runnable, AutoCloseable {
+    private static final Duration METADATA_RETRY = Duration.ofSeconds(1);
+
+    private final Consumer<String, SensorsSnapshotAvro> consumer;
+    private final String topic;
+    private final SubscriptionProperties properties;
+    private final LiveStateService stateService;
+    private final Map<String, Set<Subscription>> byHub = new ConcurrentHashMap<>();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong ids = new AtomicLong();
+    private final Counter sent;
+    private final Counter conflated;
+    private final Counter rejected;
+    private volatile boolean running = true;
+    private Thread thread;
+
+    public SnapshotFanout(Consumer<String, SensorsSnapshotAvro> consumer, String topic,
+                          SubscriptionProperties properties, LiveStateService stateService,
+                          MeterRegistry meterRegistry) {
+        this.consumer = consumer;
+        this.topic = topic;
+        this.properties = properties;
+        this.stateService = stateService;
+        Gauge.builder("telemetry.aggregator.subscribers", active, AtomicInteger::get)
+                .description("Открытые подписки на снапшоты хабов")
+                .register(meterRegistry);
+        this.sent = updatesCounter(meterRegistry, "sent", "Снапшоты, отправленные подписчикам");
+        this.conflated = updatesCounter(meterRegistry, "conflated",
+                "Снапшоты, заменённые более новыми до отправки медленному подписчику");
+        this.rejected = Counter.builder("telemetry.aggregator.subscriptions.rejected")
+                .description("Подписки, отклонённые из-за предела числа подписчиков")
+                .register(meterRegistry);
+    }
+
+    private static Counter updatesCounter(MeterRegistry meterRegistry, String result, String description) {
+        return Counter.builder("telemetry.aggregator.subscription.updates")
+                .description(description)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public void start() {
+        thread = new Thread(this, "snapshot-fanout");
+        thread.start();
+    }
+
+    /**
+     * Можно ли подписаться на такой набор хабов: он не пуст и не больше {@code max-hubs-per-subscription}.
+     */
+    boolean acceptsHubs(Set<String> hubs) {
+        return !hubs.isEmpty() && hubs.size() <= properties.getMaxHubsPerSubscription()
+                && hubs.stream().noneMatch(String::isBlank);
+    }
+
+    /**
+     * Открывает подписку и запускает её поток отправки.
+     *
+     * @return пусто, если достигнут предел числа подписчиков
+     */
+    Optional<Subscription> subscribe(Set<String> hubs, SnapshotSink sink) {
+        if (active.incrementAndGet() > properties.getMaxSubscribers()) {
+            active.decrementAndGet();
+            rejected.increment();
+            return Optional.empty();
+        }
+        Subscription subscription = new Subscription(ids.incrementAndGet(), Set.copyOf(hubs), sink, this,
+                properties.getHeartbeat().toNanos());
+        subscriptions.add(subscription);
+        for (String hubId : subscription.hubs()) {
+            // пустое множество удаляется из словаря в unregister, поэтому добавление - внутри compute
+            byHub.compute(hubId, (key, set) -> {
+                Set<Subscription> result = set == null ? ConcurrentHashMap.newKeySet() : set;
+                result.add(subscription);
+                return result;
+            });
+        }
+        subscription.start();
+        return Optional.of(subscription);
+    }
+
+    void unregister(Subscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        active.decrementAndGet();
+        for (String hubId : subscription.hubs()) {
+            byHub.computeIfPresent(hubId, (key, set) -> {
+                set.remove(subscription);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    /**
+     * Текущее состояние хабов подписки. Вызывается из потока подписки и может ждать соседний экземпляр.
+     */
+    List<SnapshotUpdate> currentState(Set<String> hubs) {
+        List<SnapshotUpdate> result = new ArrayList<>(hubs.size());
+        for (String hubId : hubs) {
+            try {
+                stateService.hubState(hubId).map(SnapshotUpdate::new).ifPresent(result::add);
+            } catch (OwnerUnavailableException e) {
+                // клиент получит хаб со следующим изменением
+                log.debug("Нет текущего состояния хаба {} для подписки: {}", hubId, e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    void sent() {
+        sent.increment();
+    }
+
+    void conflated() {
+        conflated.increment();
+    }
+
+    @Override
+    public void run() {
+        try {
+            List<TopicPartition> partitions = awaitPartitions();
+            consumer.assign(partitions);
+            // подписчикам нужны только новые снапшоты, текущие берутся из памяти агрегатора
+            consumer.seekToEnd(partitions);
+            log.info("Рассылка снапшотов из партиций {}", partitions);
+            while (running) {
+                for (ConsumerRecord<String, SensorsSnapshotAvro> record : consumer.poll(properties.getPollTimeout())) {
+                    if (record.value() == null) {
+                        continue;
+                    }
+                    Set<Subscription> subscribers = byHub.get(record.value().getHubId());
+                    if (subscribers == null) {
+                        continue;
+                    }
+                    SnapshotUpdate update = new SnapshotUpdate(record.value());
+                    for (Subscription subscription : subscribers) {
+                        subscription.offer(update);
+                    }
+                }
+            }
+        } catch (WakeupException ignored) {
+            // остановка через close()
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Ошибка в цикле рассылки снапшотов", e);
+        } finally {
+            consumer.close();
+        }
+    }
+
+    private List<TopicPartition> awaitPartitions() throws InterruptedException {
+        while (running) {
+            List<PartitionInfo> infos = consumer.partitionsFor(topic);
+            if (infos != null && !infos.isEmpty()) {
+                return infos.stream()
+                        .map(info -> new TopicPartition(info.topic(), info.partition()))
+                        .toList();
+            }
+            log.info("Топик {} ещё не создан, ждём", topic);
+            Thread.sleep(METADATA_RETRY);
+        }
+        return List.of();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        consumer.wakeup();
+        if (thread != null) {
+            thread.join();
+        }
+        subscriptions.forEach(Subscription::close);
+    }
+}
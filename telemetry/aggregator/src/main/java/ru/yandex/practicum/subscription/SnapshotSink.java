@@ -0,0 +1,23 @@
+package ru.yandex.practicum.subscription;
+
+import java.io.IOException;
+
+/**
+ * Соединение подписчика. Методы вызываются только из потока отправки его подписки.
+ */
+interface SnapshotSink {
+
+    /**
+     * Можно ли отправить снапшот, не накапливая его в буферах транспорта.
+     */
+    boolean ready();
+
+    void send(SnapshotUpdate update) throws IOException;
+
+    /**
+     * Отправляет сообщение, по которому транспорт замечает разорванное соединение, если оно ему нужно.
+     */
+    void heartbeat() throws IOException;
+
+    void complete();
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.subscription;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.yandex.practicum.grpc.telemetry.aggregator.HubStateProto;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.state.HubStateView;
+import ru.yandex.practicum.state.StateProtoMapper;
+
+/**
+ * Снапшот хаба для рассылки. Один объект получают все подписчики хаба, поэтому ответ в JSON
+ * и сообщение gRPC строятся один раз, при первой отправке. Гонка при первом обращении безвредна:
+ * в худшем случае два потока построят одинаковые ответы.
+ */
+final class SnapshotUpdate {
+    private final SensorsSnapshotAvro snapshot;
+    private volatile String json;
+    private volatile HubStateProto proto;
+
+    SnapshotUpdate(SensorsSnapshotAvro snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    String hubId() {
+        return snapshot.getHubId();
+    }
+
+    long timestamp() {
+        return snapshot.getTimestamp().toEpochMilli();
+    }
+
+    String json(ObjectMapper objectMapper) throws JsonProcessingException {
+        String result = json;
+        if (result == null) {
+            result = objectMapper.writeValueAsString(HubStateView.of(snapshot));
+            json = result;
+        }
+        return result;
+    }
+
+    HubStateProto proto() {
+        HubStateProto result = proto;
+        if (result == null) {
+            result = StateProtoMapper.toProto(snapshot);
+            proto = result;
+        }
+        return result;
+    }
+}
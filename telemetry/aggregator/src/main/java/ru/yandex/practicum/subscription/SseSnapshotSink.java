@@ -0,0 +1,48 @@
+package ru.yandex.practicum.subscription;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * Подписка по SSE. Запись в ответ блокирует поток подписки, пока клиент не примет данные:
+ * поток виртуальный, а снапшоты, пришедшие за это время, заменяют друг друга в буфере подписки.
+ */
+class SseSnapshotSink implements SnapshotSink {
+    private final SseEmitter emitter;
+    private final ObjectMapper objectMapper;
+
+    SseSnapshotSink(SseEmitter emitter, ObjectMapper objectMapper) {
+        this.emitter = emitter;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean ready() {
+        return true;
+    }
+
+    @Override
+    public void send(SnapshotUpdate update) throws IOException {
+        emitter.send(SseEmitter.event()
+                .name("snapshot")
+                .id(update.hubId() + "@" + update.timestamp())
+                .data(update.json(objectMapper), MediaType.APPLICATION_JSON));
+    }
+
+    @Override
+    public void heartbeat() throws IOException {
+        emitter.send(SseEmitter.event().comment("ping"));
+    }
+
+    @Override
+    public void complete() {
+        try {
+            emitter.complete();
+        } catch (IllegalStateException ignored) {
+            // ответ уже завершён: клиент отключился или истёк срок потока
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.subscription;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Подписка одного клиента. Буфер - по ячейке на хаб: новый снапшот хаба заменяет ещё не
+ * отправленный, поэтому буфер не больше числа хабов подписки, а медленный клиент получает
+ * последнее состояние, а не очередь устаревших.
+ * <p>
+ * Отправкой занимается свой виртуальный поток: поток чтения Kafka только кладёт снапшот в ячейку
+ * и будит его, поэтому медленный клиент не задерживает ни чтение, ни других подписчиков.
+ * Пока транспорт не готов принять следующее сообщение, поток спит.
+ */
+@Slf4j
+final class Subscription implements Runnable {
+    private final long id;
+    private final Set<String> hubs;
+    private final SnapshotSink sink;
+    private final SnapshotFanout fanout;
+    private final long heartbeatNanos;
+    private final Map<String, SnapshotUpdate> pending = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+    private volatile Thread writer;
+
+    Subscription(long id, Set<String> hubs, SnapshotSink sink, SnapshotFanout fanout, long heartbeatNanos) {
+        this.id = id;
+        this.hubs = hubs;
+        this.sink = sink;
+        this.fanout = fanout;
+        this.heartbeatNanos = heartbeatNanos;
+    }
+
+    Set<String> hubs() {
+        return hubs;
+    }
+
+    void start() {
+        writer = Thread.ofVirtual().name("snapshot-subscriber-" + id).start(this);
+    }
+
+    /**
+     * Вызывается потоком чтения Kafka; не блокируется.
+     */
+    void offer(SnapshotUpdate update) {
+        if (closed) {
+            return;
+        }
+        if (pending.put(update.hubId(), update) != null) {
+            fanout.conflated();
+        }
+        wake();
+    }
+
+    /**
+     * Будит поток отправки, например когда транспорт снова готов принимать сообщения.
+     */
+    void wake() {
+        Thread thread = writer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    void close() {
+        closed = true;
+        wake();
+    }
+
+    @Override
+    public void run() {
+        try {
+            // изменения, пришедшие во время загрузки, новее текущего состояния и не заменяются им
+            for (SnapshotUpdate initial : fanout.currentState(hubs)) {
+                pending.putIfAbsent(initial.hubId(), initial);
+            }
+            long lastWrite = System.nanoTime();
+            while (!closed) {
+                if (!pending.isEmpty() && sink.ready()) {
+                    drain();
+                    lastWrite = System.nanoTime();
+                    continue;
+                }
+                LockSupport.parkNanos(this, heartbeatNanos);
+                if (!closed && System.nanoTime() - lastWrite >= heartbeatNanos) {
+                    sink.heartbeat();
+                    lastWrite = System.nanoTime();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Подписка {} закрыта: {}", id, e.getMessage());
+        } finally {
+            closed = true;
+            fanout.unregister(this);
+            sink.complete();
+        }
+    }
+
+    private void drain() throws IOException {
+        for (String hubId : pending.keySet()) {
+            SnapshotUpdate update = pending.remove(hubId);
+            if (update != null) {
+                sink.send(update);
+                fanout.sent();
+            }
+            if (closed || !sink.ready()) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.subscription;
+
+import deserializer.SensorsSnapshotDeserializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.kafka.KafkaClientMetrics;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.state.LiveStateService;
+
+import java.util.Properties;
+
+@Configuration
+public class SubscriptionConfig {
+
+    @Bean
+    @ConfigurationProperties("aggregator.subscriptions")
+    public SubscriptionProperties subscriptionProperties() {
+        return new SubscriptionProperties();
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @DependsOn("topicProvisioner")
+    public SnapshotFanout snapshotFanout(SubscriptionProperties properties, LiveStateService stateService,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${kafka.bootstrap-servers}") String bootstrapServers,
+                                         @Value("${kafka.output-topic}") String outputTopic) {
+        Properties config = new Properties();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, SensorsSnapshotDeserializer.class.getName());
+        // партиции назначаются вручную, чтение всегда начинается с конца
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        KafkaConsumer<String, SensorsSnapshotAvro> consumer = new KafkaConsumer<>(config);
+        new KafkaClientMetrics(consumer).bindTo(meterRegistry);
+        return new SnapshotFanout(consumer, outputTopic, properties, stateService, meterRegistry);
+    }
+}
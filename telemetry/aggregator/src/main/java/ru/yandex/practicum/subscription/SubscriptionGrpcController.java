@@ -0,0 +1,49 @@
+package ru.yandex.practicum.subscription;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import net.devh.boot.grpc.server.service.GrpcService;
+import ru.yandex.practicum.grpc.telemetry.aggregator.HubStateProto;
+import ru.yandex.practicum.grpc.telemetry.aggregator.SensorStateStreamGrpc;
+import ru.yandex.practicum.grpc.telemetry.aggregator.SubscribeRequest;
+
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Подписка на снапшоты хабов по gRPC.
+ */
+@GrpcService
+public class SubscriptionGrpcController extends SensorStateStreamGrpc.SensorStateStreamImplBase {
+    private final SnapshotFanout fanout;
+    private final SubscriptionProperties properties;
+
+    public SubscriptionGrpcController(SnapshotFanout fanout, SubscriptionProperties properties) {
+        this.fanout = fanout;
+        this.properties = properties;
+    }
+
+    @Override
+    public void subscribe(SubscribeRequest request, StreamObserver<HubStateProto> responseObserver) {
+        ServerCallStreamObserver<HubStateProto> call = (ServerCallStreamObserver<HubStateProto>) responseObserver;
+        Set<String> hubs = new LinkedHashSet<>(request.getHubIdsList());
+        if (!fanout.acceptsHubs(hubs)) {
+            call.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Нужно от 1 до " + properties.getMaxHubsPerSubscription()
+                            + " идентификаторов хабов")
+                    .asRuntimeException());
+            return;
+        }
+        Optional<Subscription> subscription = fanout.subscribe(hubs, new GrpcSnapshotSink(call));
+        if (subscription.isEmpty()) {
+            call.onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription("Достигнут предел числа подписчиков")
+                    .asRuntimeException());
+            return;
+        }
+        call.setOnReadyHandler(subscription.get()::wake);
+        call.setOnCancelHandler(subscription.get()::close);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.subscription;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Подписка на снапшоты хабов по SSE, например
+ * {@code /api/v1/state/stream?hubId=hub-1&hubId=hub-2}. Каждое событие {@code snapshot} -
+ * состояние хаба в том же JSON, что отдаёт {@code GET /api/v1/state/hubs/{hubId}}.
+ */
+@RestController
+public class SubscriptionHttpController {
+    private final SnapshotFanout fanout;
+    private final SubscriptionProperties properties;
+    private final ObjectMapper objectMapper;
+
+    public SubscriptionHttpController(SnapshotFanout fanout, SubscriptionProperties properties,
+                                      ObjectMapper objectMapper) {
+        this.fanout = fanout;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping(path = "/api/v1/state/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam("hubId") List<String> hubIds) {
+        Set<String> hubs = new LinkedHashSet<>(hubIds);
+        if (!fanout.acceptsHubs(hubs)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Нужно от 1 до " + properties.getMaxHubsPerSubscription() + " идентификаторов хабов");
+        }
+        SseEmitter emitter = new SseEmitter(properties.getSseTimeout().toMillis());
+        Subscription subscription = fanout.subscribe(hubs, new SseSnapshotSink(emitter, objectMapper))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Достигнут предел числа подписчиков"));
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(e -> subscription.close());
+        return emitter;
+    }
+}
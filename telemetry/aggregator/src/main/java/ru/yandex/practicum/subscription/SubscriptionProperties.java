@@ -0,0 +1,35 @@
+package ru.yandex.practicum.subscription;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки подписок на снапшоты хабов.
+ */
+@Getter
+@Setter
+public class SubscriptionProperties {
+    /**
+     * Сколько подписчиков одновременно обслуживает экземпляр; следующим отказывается.
+     */
+    private int maxSubscribers = 20000;
+
+    /**
+     * Сколько хабов можно указать в одной подписке.
+     */
+    private int maxHubsPerSubscription = 100;
+
+    /**
+     * Как часто отправлять клиенту SSE комментарий, если изменений нет: так замечается разорванное соединение.
+     */
+    private Duration heartbeat = Duration.ofSeconds(15);
+
+    /**
+     * Сколько живёт поток SSE; затем клиент переподключается сам.
+     */
+    private Duration sseTimeout = Duration.ofMinutes(30);
+
+    private Duration pollTimeout = Duration.ofMillis(500);
+}
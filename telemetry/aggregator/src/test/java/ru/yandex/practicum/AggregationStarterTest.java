@@ -0,0 +1,170 @@
+package ru.yandex.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.anomaly.AnomalyProperties;
+import ru.yandex.practicum.kafka.telemetry.event.BatchedSensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.RollupMetricAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorRollupAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+import ru.yandex.practicum.recent.RecentReadingsProperties;
+import ru.yandex.practicum.reorder.ReorderProperties;
+import ru.yandex.practicum.rollup.RollupProperties;
+import ru.yandex.practicum.state.LiveStateView;
+import ru.yandex.practicum.telemetry.common.hitters.HeavyHitters;
+import ru.yandex.practicum.telemetry.common.kafka.consumer.ConsumerEngineProperties;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AggregationStarterTest {
+    private static final String INPUT = "telemetry.sensors.v1";
+    private static final String OUTPUT = "telemetry.snapshots.v1";
+    private static final TopicPartition PARTITION = new TopicPartition(INPUT, 0);
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final MockConsumer<String, SensorEventBatchAvro> consumer =
+            new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    private final List<SensorsSnapshotAvro> snapshots = new CopyOnWriteArrayList<>();
+    private final List<SensorRollupAvro> rollups = new CopyOnWriteArrayList<>();
+    private final MockProducer<String, SpecificRecordBase> producer =
+            new MockProducer<>(true, new StringSerializer(), (topic, value) -> new byte[0]) {
+                @Override
+                public synchronized Future<RecordMetadata> send(ProducerRecord<String, SpecificRecordBase> record,
+                                                                Callback callback) {
+                    // хранилище меняет снапшот на месте, поэтому запоминаем копию на момент отправки
+                    if (record.value() instanceof SensorsSnapshotAvro snapshot) {
+                        snapshots.add(SensorsSnapshotAvro.newBuilder(snapshot).build());
+                    } else if (record.value() instanceof SensorRollupAvro rollup) {
+                        rollups.add(rollup);
+                    }
+                    return super.send(record, callback);
+                }
+            };
+    private final RollupProperties rollup = new RollupProperties();
+    private final ReorderProperties reorder = new ReorderProperties();
+    private final AnomalyProperties anomaly = new AnomalyProperties();
+    private AggregationStarter starter;
+    private Thread thread;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (starter != null) {
+            starter.stop();
+            thread.join();
+        }
+    }
+
+    @Test
+    void releasesReorderedEventsOfQuietHubWithoutNewRecords() throws InterruptedException {
+        rollup.setEnabled(false);
+        anomaly.setEnabled(false);
+        reorder.setEnabled(true);
+        reorder.setLateness(Duration.ofSeconds(30));
+        reorder.setIdleFlush(Duration.ofMillis(100));
+        reorder.setFlushInterval(Duration.ofMillis(10));
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(List.of(PARTITION));
+            consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+            consumer.addRecord(record(0, temperature(START.plusSeconds(10), 22)));
+            consumer.addRecord(record(1, temperature(START.plusSeconds(2), 21)));
+        });
+        start();
+
+        // больше записей нет: буфер замолчавшего хаба выпускает только периодическое действие движка
+        awaitTrue(() -> snapshots.size() == 2);
+        assertThat(snapshots).extracting(snapshot -> snapshot.getSensorsState().get("t-1").getTimestamp())
+                .containsExactly(START.plusSeconds(2), START.plusSeconds(10));
+        awaitTrue(() -> committed() == 2);
+    }
+
+    @Test
+    void closesRollupWindowsOfQuietHubWithoutNewRecords() throws InterruptedException {
+        anomaly.setEnabled(false);
+        rollup.setWindows(List.of(Duration.ofMinutes(1)));
+        rollup.setIdleClose(Duration.ofMillis(100));
+        rollup.setFlushInterval(Duration.ofMillis(10));
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(List.of(PARTITION));
+            consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+            consumer.addRecord(record(0, temperature(START.plusSeconds(5), 20)));
+            consumer.addRecord(record(1, temperature(START.plusSeconds(15), 24)));
+        });
+        start();
+
+        // по времени событий окно ещё открыто, его закрывает периодическое действие движка
+        awaitTrue(() -> !rollups.isEmpty());
+        SensorRollupAvro closed = rollups.stream()
+                .filter(rollup -> rollup.getMetric() == RollupMetricAvro.TEMPERATURE_C)
+                .findFirst()
+                .orElseThrow();
+        assertThat(closed.getCount()).isEqualTo(2);
+        assertThat(closed.getMin()).isEqualTo(20);
+        assertThat(closed.getMax()).isEqualTo(24);
+    }
+
+    private void start() {
+        ConsumerEngineProperties engineProperties = new ConsumerEngineProperties();
+        engineProperties.setPollTimeout(Duration.ofMillis(10));
+        engineProperties.setCommitInterval(Duration.ofMillis(10));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        starter = new AggregationStarter(consumer, producer, new SnapshotStorage(meterRegistry), new LiveStateView(),
+                rollup, reorder, anomaly, new RecentReadingsProperties(), engineProperties, meterRegistry,
+                new LogSampler(1), new StaticListableBeanFactory().getBeanProvider(HeavyHitters.class));
+        ReflectionTestUtils.setField(starter, "inputTopic", INPUT);
+        ReflectionTestUtils.setField(starter, "outputTopic", OUTPUT);
+        thread = Thread.ofPlatform().start(starter::start);
+    }
+
+    private long committed() {
+        OffsetAndMetadata offset = consumer.committed(Set.of(PARTITION)).get(PARTITION);
+        return offset == null ? -1 : offset.offset();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("условие не выполнилось за 5 секунд").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static ConsumerRecord<String, SensorEventBatchAvro> record(long offset, SensorEventAvro event) {
+        SensorEventBatchAvro batch = SensorEventBatchAvro.newBuilder()
+                .setHubId(event.getHubId())
+                .setEvents(List.of(BatchedSensorEventAvro.newBuilder().setEvent(event).build()))
+                .build();
+        return new ConsumerRecord<>(INPUT, 0, offset, event.getHubId(), batch);
+    }
+
+    private static SensorEventAvro temperature(Instant timestamp, int celsius) {
+        return new SensorEventAvro("t-1", "hub-1", timestamp, new TemperatureSensorAvro(celsius, celsius * 9 / 5 + 32));
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotStorageTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SnapshotStorage storage = new SnapshotStorage(meterRegistry);
+
+    @Test
+    void registersUpdateCounterForEveryResult() {
+        assertThat(meterRegistry.get("telemetry.aggregator.updates").counters())
+                .extracting(counter -> counter.getId().getTag("result"))
+                .containsExactlyInAnyOrder("applied", "duplicate", "stale");
+        assertThat(meterRegistry.get("telemetry.aggregator.updates").tag("result", "applied").counter().getId()
+                .getDescription()).isNotBlank();
+    }
+
+    @Test
+    void countsAppliedDuplicateAndStaleEvents() {
+        assertThat(storage.updateState(temperature(2_000, 20))).isPresent();
+        assertThat(storage.updateState(temperature(3_000, 21))).isPresent();
+        // те же показания позже - не изменение
+        assertThat(storage.updateState(temperature(4_000, 21))).isEmpty();
+        // показание старше сохранённого
+        assertThat(storage.updateState(temperature(1_000, 25))).isEmpty();
+
+        assertThat(updates("applied").count()).isEqualTo(2);
+        assertThat(updates("duplicate").count()).isEqualTo(1);
+        assertThat(updates("stale").count()).isEqualTo(1);
+    }
+
+    private Counter updates(String result) {
+        return meterRegistry.get("telemetry.aggregator.updates").tag("result", result).counter();
+    }
+
+    private static SensorEventAvro temperature(long time, int celsius) {
+        return new SensorEventAvro("t-1", "hub-1", Instant.ofEpochMilli(time),
+                new TemperatureSensorAvro(celsius, celsius * 9 / 5 + 32));
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.anomaly;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.AnomalyKindAvro;
+import ru.yandex.practicum.kafka.telemetry.event.RollupMetricAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorAnomalyAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnomalyDetectorTest {
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final List<SensorAnomalyAvro> anomalies = new ArrayList<>();
+
+    @Test
+    void reportsFlatlineOnceAfterDurationOfSparseReadings() {
+        AnomalyDetector detector = detector(Duration.ofMinutes(10));
+
+        // одинаковые показания после дедупликации в коллекторе приходят не чаще раза в 30 секунд
+        for (int i = 0; i <= 30; i++) {
+            detector.add(temperature(START.plusSeconds(30L * i), 21), 0);
+        }
+
+        assertThat(anomalies).hasSize(1);
+        SensorAnomalyAvro anomaly = anomalies.getFirst();
+        assertThat(anomaly.getKind()).isEqualTo(AnomalyKindAvro.FLATLINE);
+        assertThat(anomaly.getMetric()).isEqualTo(RollupMetricAvro.TEMPERATURE_C);
+        assertThat(anomaly.getTimestamp()).isEqualTo(START.plus(Duration.ofMinutes(10)));
+        assertThat(anomaly.getScore()).isEqualTo(600.0);
+    }
+
+    @Test
+    void restartsFlatlineTimerWhenValueChanges() {
+        AnomalyDetector detector = detector(Duration.ofMinutes(10));
+
+        detector.add(temperature(START, 21), 0);
+        detector.add(temperature(START.plus(Duration.ofMinutes(9)), 21), 0);
+        detector.add(temperature(START.plus(Duration.ofMinutes(10)), 22), 0);
+        detector.add(temperature(START.plus(Duration.ofMinutes(19)), 22), 0);
+        assertThat(anomalies).isEmpty();
+
+        detector.add(temperature(START.plus(Duration.ofMinutes(20)), 22), 0);
+        assertThat(anomalies).extracting(SensorAnomalyAvro::getKind).containsExactly(AnomalyKindAvro.FLATLINE);
+    }
+
+    private AnomalyDetector detector(Duration flatlineDuration) {
+        AnomalyProperties properties = new AnomalyProperties();
+        properties.setFlatlineDuration(flatlineDuration);
+        return new AnomalyDetector(properties, anomalies::add, new SimpleMeterRegistry());
+    }
+
+    private static SensorEventAvro temperature(Instant timestamp, int celsius) {
+        return new SensorEventAvro("t-1", "hub-1", timestamp, new TemperatureSensorAvro(celsius, celsius * 9 / 5 + 32));
+    }
+}
@@ -0,0 +1,115 @@
+package ru.yandex.practicum.recent;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.MetricHistoryAvro;
+import ru.yandex.practicum.kafka.telemetry.event.RollupMetricAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorHistoryAvro;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadingRingTest {
+    private static final RollupMetricAvro[] TEMPERATURE =
+            {RollupMetricAvro.TEMPERATURE_C, RollupMetricAvro.TEMPERATURE_F};
+
+    @Test
+    void encodesFirstReadingAndDeltas() {
+        ReadingRing ring = new ReadingRing(TEMPERATURE, 4);
+        ring.add(1_000, new int[]{20, 68});
+        ring.add(1_500, new int[]{22, 71});
+        ring.add(4_000, new int[]{19, 66});
+
+        SensorHistoryAvro history = ring.toAvro();
+
+        assertThat(history.getFirstTimestamp()).isEqualTo(Instant.ofEpochMilli(1_000));
+        assertThat(history.getTimestampDeltas()).containsExactly(500L, 2_500L);
+        assertThat(history.getMetrics()).containsExactly(
+                new MetricHistoryAvro(RollupMetricAvro.TEMPERATURE_C, 20, List.of(2, -3)),
+                new MetricHistoryAvro(RollupMetricAvro.TEMPERATURE_F, 68, List.of(3, -5)));
+        assertThat(ReadingRing.fromAvro(history, TEMPERATURE, 4).toAvro()).isEqualTo(history);
+    }
+
+    @Test
+    void keepsLatestReadingsAfterWrapAround() {
+        ReadingRing ring = new ReadingRing(TEMPERATURE, 3);
+        for (int i = 0; i < 8; i++) {
+            ring.add(1_000L * i, new int[]{i, 100 + i});
+        }
+
+        SensorHistoryAvro history = ring.toAvro();
+
+        assertThat(times(history)).containsExactly(5_000L, 6_000L, 7_000L);
+        assertThat(values(history, 0)).containsExactly(5, 6, 7);
+        assertThat(values(history, 1)).containsExactly(105, 106, 107);
+        assertThat(ReadingRing.fromAvro(history, TEMPERATURE, 3).toAvro()).isEqualTo(history);
+    }
+
+    @Test
+    void wrapsIntDeltasOfExtremeValuesAndRestoresThem() {
+        ReadingRing ring = new ReadingRing(TEMPERATURE, 8);
+        int[] celsius = {0, Integer.MAX_VALUE, Integer.MIN_VALUE, 0, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        for (int i = 0; i < celsius.length; i++) {
+            ring.add(Long.MAX_VALUE / 2 + i, new int[]{celsius[i], -celsius[i]});
+        }
+
+        SensorHistoryAvro history = ring.toAvro();
+
+        // разность MAX - MIN переполняет int, но сумма при восстановлении переполняется обратно
+        assertThat(history.getMetrics().getFirst().getDeltas())
+                .containsExactly(Integer.MAX_VALUE, 1, Integer.MIN_VALUE, Integer.MIN_VALUE, -1);
+        assertThat(values(history, 0)).containsExactly(0, Integer.MAX_VALUE, Integer.MIN_VALUE, 0,
+                Integer.MIN_VALUE, Integer.MAX_VALUE);
+        assertThat(ReadingRing.fromAvro(history, TEMPERATURE, 8).toAvro()).isEqualTo(history);
+    }
+
+    @Test
+    void restoresOnlyLastReadingsThatFitCapacity() {
+        ReadingRing ring = new ReadingRing(TEMPERATURE, 5);
+        for (int i = 0; i < 5; i++) {
+            ring.add(1_000L * i, new int[]{i, i * 2});
+        }
+
+        ReadingRing smaller = ReadingRing.fromAvro(ring.toAvro(), TEMPERATURE, 2);
+
+        assertThat(smaller.capacity()).isEqualTo(2);
+        assertThat(times(smaller.toAvro())).containsExactly(3_000L, 4_000L);
+        assertThat(values(smaller.toAvro(), 1)).containsExactly(6, 8);
+    }
+
+    @Test
+    void rejectsHistoryOfOtherMetrics() {
+        ReadingRing ring = new ReadingRing(TEMPERATURE, 2);
+        ring.add(1_000, new int[]{20, 68});
+
+        RollupMetricAvro[] light = {RollupMetricAvro.LUMINOSITY, RollupMetricAvro.LINK_QUALITY};
+        assertThat(ReadingRing.fromAvro(ring.toAvro(), light, 2)).isNull();
+        assertThat(ReadingRing.fromAvro(ring.toAvro(), new RollupMetricAvro[]{RollupMetricAvro.TEMPERATURE_C}, 2))
+                .isNull();
+    }
+
+    static List<Long> times(SensorHistoryAvro history) {
+        List<Long> times = new ArrayList<>();
+        long time = history.getFirstTimestamp().toEpochMilli();
+        times.add(time);
+        for (long delta : history.getTimestampDeltas()) {
+            time += delta;
+            times.add(time);
+        }
+        return times;
+    }
+
+    static List<Integer> values(SensorHistoryAvro history, int metric) {
+        MetricHistoryAvro metricHistory = history.getMetrics().get(metric);
+        List<Integer> values = new ArrayList<>();
+        int value = metricHistory.getFirst();
+        values.add(value);
+        for (int delta : metricHistory.getDeltas()) {
+            value += delta;
+            values.add(value);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,152 @@
+package ru.yandex.practicum.recent;
+
+import deserializer.SensorsSnapshotDeserializer;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MetricHistoryAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.RollupMetricAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorHistoryAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+import serializer.GeneralAvroSerializer;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.yandex.practicum.recent.ReadingRingTest.times;
+import static ru.yandex.practicum.recent.ReadingRingTest.values;
+
+class RecentReadingsTest {
+    private final RecentReadingsProperties properties = new RecentReadingsProperties();
+
+    @Test
+    void storesBooleansAsZeroAndOne() {
+        properties.getReadings().put(DeviceTypeAvro.SWITCH_SENSOR, 4);
+        RecentReadings readings = new RecentReadings(properties);
+
+        readings.record(event("m-1", 1_000, new MotionSensorAvro(90, true, 220)), null);
+        SensorHistoryAvro motion = readings.record(event("m-1", 2_000, new MotionSensorAvro(85, false, 220)), null);
+        readings.record(event("s-1", 1_000, new SwitchSensorAvro(false)), null);
+        SensorHistoryAvro switchState = readings.record(event("s-1", 2_000, new SwitchSensorAvro(true)), null);
+
+        assertThat(motion.getMetrics()).containsExactly(
+                new MetricHistoryAvro(RollupMetricAvro.MOTION, 1, List.of(-1)),
+                new MetricHistoryAvro(RollupMetricAvro.LINK_QUALITY, 90, List.of(-5)),
+                new MetricHistoryAvro(RollupMetricAvro.VOLTAGE, 220, List.of(0)));
+        assertThat(switchState.getMetrics()).containsExactly(
+                new MetricHistoryAvro(RollupMetricAvro.SWITCH_STATE, 0, List.of(1)));
+    }
+
+    @Test
+    void skipsSensorTypesWithoutHistory() {
+        RecentReadings readings = new RecentReadings(properties);
+
+        assertThat(readings.record(event("s-1", 1_000, new SwitchSensorAvro(true)), null)).isNull();
+    }
+
+    @Test
+    void restoresEvictedHubFromSnapshotHistory() {
+        properties.setMaxHubs(1);
+        RecentReadings readings = new RecentReadings(properties);
+        readings.record(event("t-1", 1_000, new TemperatureSensorAvro(20, 68)), null);
+        SensorHistoryAvro beforeEviction = readings.record(event("t-1", 2_000, new TemperatureSensorAvro(21, 69)),
+                null);
+
+        // второй хаб вытесняет буфер первого, история первого остаётся только в снапшоте
+        readings.record(event("hub-2", "t-1", 1_000, new TemperatureSensorAvro(5, 41)), null);
+        SensorStateAvro previous = state(2_000, new TemperatureSensorAvro(21, 69), beforeEviction);
+        SensorHistoryAvro restored = readings.record(event("t-1", 3_000, new TemperatureSensorAvro(22, 71)),
+                previous);
+
+        assertThat(times(restored)).containsExactly(1_000L, 2_000L, 3_000L);
+        assertThat(values(restored, 0)).containsExactly(20, 21, 22);
+    }
+
+    @Test
+    void seedsHistoryWithCurrentStateWhenSnapshotHasNone() {
+        RecentReadings readings = new RecentReadings(properties);
+        SensorStateAvro previous = state(1_000, new TemperatureSensorAvro(20, 68), null);
+
+        SensorHistoryAvro history = readings.record(event("t-1", 2_000, new TemperatureSensorAvro(21, 69)),
+                previous);
+
+        assertThat(times(history)).containsExactly(1_000L, 2_000L);
+        assertThat(values(history, 1)).containsExactly(68, 69);
+    }
+
+    @Test
+    void restartsHistoryWhenSensorChangesType() {
+        RecentReadings readings = new RecentReadings(properties);
+        readings.record(event("t-1", 1_000, new TemperatureSensorAvro(20, 68)), null);
+        SensorStateAvro previous = state(1_000, new TemperatureSensorAvro(20, 68), null);
+
+        SensorHistoryAvro history = readings.record(event("t-1", 2_000, new ClimateSensorAvro(20, 40, 600)),
+                previous);
+
+        assertThat(history.getTimestampDeltas()).isEmpty();
+        assertThat(history.getMetrics()).extracting(MetricHistoryAvro::getMetric).containsExactly(
+                RollupMetricAvro.TEMPERATURE_C, RollupMetricAvro.HUMIDITY, RollupMetricAvro.CO2_LEVEL);
+    }
+
+    @Test
+    void rejectsHistoryLongerThanLimit() {
+        properties.setReadings(new EnumMap<>(Map.of(DeviceTypeAvro.LIGHT_SENSOR,
+                RecentReadingsProperties.MAX_READINGS + 1)));
+
+        assertThatThrownBy(() -> new RecentReadings(properties)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void survivesSnapshotSerializationWithinSizeBound() {
+        properties.getReadings().put(DeviceTypeAvro.CLIMATE_SENSOR, RecentReadingsProperties.MAX_READINGS);
+        RecentReadings readings = new RecentReadings(properties);
+        int[] extremes = {Integer.MIN_VALUE, Integer.MAX_VALUE};
+        SensorHistoryAvro history = null;
+        // больше показаний, чем помещается в буфер, и наибольшие по модулю разности значений и времени
+        for (int i = 0; i < RecentReadingsProperties.MAX_READINGS + 10; i++) {
+            int value = extremes[i % 2];
+            history = readings.record(event("c-1", (long) i * Integer.MAX_VALUE,
+                    new ClimateSensorAvro(value, -value, value)), null);
+        }
+        SensorsSnapshotAvro snapshot = SensorsSnapshotAvro.newBuilder()
+                .setHubId("hub-1")
+                .setTimestamp(Instant.ofEpochMilli(1_000))
+                .setSensorsState(Map.of("c-1", state(1_000, new ClimateSensorAvro(0, 0, 0), history)))
+                .build();
+
+        byte[] data = new GeneralAvroSerializer().serialize("telemetry.snapshots.v1", snapshot);
+        SensorHistoryAvro read = new SensorsSnapshotDeserializer().deserialize("telemetry.snapshots.v1", data)
+                .getSensorsState().get("c-1").getHistory();
+
+        assertThat(read).isEqualTo(history);
+        assertThat(values(read, 0)).hasSize(RecentReadingsProperties.MAX_READINGS)
+                .containsOnly(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        assertThat(new GeneralAvroSerializer().serialize(null, history))
+                .hasSizeLessThanOrEqualTo(RecentReadings.maxEncodedBytes(RecentReadingsProperties.MAX_READINGS, 3));
+    }
+
+    private static SensorEventAvro event(String sensorId, long time, Object payload) {
+        return event("hub-1", sensorId, time, payload);
+    }
+
+    private static SensorEventAvro event(String hubId, String sensorId, long time, Object payload) {
+        return new SensorEventAvro(sensorId, hubId, Instant.ofEpochMilli(time), payload);
+    }
+
+    private static SensorStateAvro state(long time, Object data, SensorHistoryAvro history) {
+        return SensorStateAvro.newBuilder()
+                .setTimestamp(Instant.ofEpochMilli(time))
+                .setData(data)
+                .setHistory(history)
+                .build();
+    }
+}
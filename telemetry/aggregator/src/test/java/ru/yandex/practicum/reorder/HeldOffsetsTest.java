@@ -0,0 +1,59 @@
+package ru.yandex.practicum.reorder;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeldOffsetsTest {
+    private static final TopicPartition FIRST = new TopicPartition("telemetry.sensors.v1", 0);
+    private static final TopicPartition SECOND = new TopicPartition("telemetry.sensors.v1", 1);
+
+    private final HeldOffsets held = new HeldOffsets();
+
+    @Test
+    void reportsLowestHeldOffsetPerPartition() {
+        assertThat(held.lowest(FIRST)).isEqualTo(-1);
+
+        held.hold(FIRST, 7);
+        held.hold(FIRST, 3);
+        held.hold(SECOND, 10);
+
+        assertThat(held.lowest(FIRST)).isEqualTo(3);
+        assertThat(held.lowest(SECOND)).isEqualTo(10);
+
+        held.release(FIRST, 3);
+        assertThat(held.lowest(FIRST)).isEqualTo(7);
+        held.release(FIRST, 7);
+        assertThat(held.lowest(FIRST)).isEqualTo(-1);
+    }
+
+    @Test
+    void holdsOffsetUntilEveryEventOfRecordIsReleased() {
+        // в одной записи пачки несколько событий
+        held.hold(FIRST, 5);
+        held.hold(FIRST, 5);
+        held.hold(FIRST, 8);
+
+        held.release(FIRST, 5);
+        assertThat(held.lowest(FIRST)).isEqualTo(5);
+        held.release(FIRST, 5);
+        assertThat(held.lowest(FIRST)).isEqualTo(8);
+    }
+
+    @Test
+    void ignoresUnknownReleasesAndForgetsRevokedPartitions() {
+        held.release(FIRST, 1);
+        held.hold(FIRST, 4);
+        held.hold(SECOND, 9);
+        held.release(FIRST, 2);
+        assertThat(held.lowest(FIRST)).isEqualTo(4);
+
+        held.forget(List.of(FIRST));
+
+        assertThat(held.lowest(FIRST)).isEqualTo(-1);
+        assertThat(held.lowest(SECOND)).isEqualTo(9);
+    }
+}
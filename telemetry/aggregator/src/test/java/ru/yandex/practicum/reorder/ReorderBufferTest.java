@@ -0,0 +1,161 @@
+package ru.yandex.practicum.reorder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReorderBufferTest {
+    private final List<String> released = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReorderProperties properties = new ReorderProperties();
+
+    @Test
+    void releasesEventsInTimeOrderOnceWatermarkPasses() {
+        ReorderBuffer<String> buffer = buffer();
+
+        buffer.add("hub-1", 1_000, "a", 0);
+        buffer.add("hub-1", 500, "b", 0);
+        buffer.add("hub-1", 1_000, "c", 0);
+        assertThat(released).isEmpty();
+
+        // водяной знак 3500 - 2000 = 1500 прошёл первые три события; равное время - в порядке прихода
+        buffer.add("hub-1", 3_500, "d", 0);
+        assertThat(released).containsExactly("b", "a", "c");
+        assertThat(buffer.buffered()).isEqualTo(1);
+        assertThat(count("released")).isEqualTo(3);
+    }
+
+    @Test
+    void dropsEventsBehindReleasedWatermark() {
+        ReorderBuffer<String> buffer = buffer();
+
+        buffer.add("hub-1", 5_000, "a", 0);
+        assertThat(buffer.add("hub-1", 3_500, "within-lateness", 0)).isTrue();
+        assertThat(buffer.add("hub-1", 2_999, "late", 0)).isFalse();
+        // у другого хаба свой водяной знак
+        assertThat(buffer.add("hub-2", 1, "other-hub", 0)).isTrue();
+
+        assertThat(count("late")).isEqualTo(1);
+        buffer.flush();
+        assertThat(released).containsExactlyInAnyOrder("within-lateness", "a", "other-hub");
+        assertThat(released.indexOf("within-lateness")).isLessThan(released.indexOf("a"));
+    }
+
+    @Test
+    void forceReleasesEarliestEventWhenHubBufferIsFull() {
+        properties.setMaxEventsPerHub(3);
+        ReorderBuffer<String> buffer = buffer();
+
+        buffer.add("hub-1", 400, "d", 0);
+        buffer.add("hub-1", 100, "a", 0);
+        buffer.add("hub-1", 300, "c", 0);
+        buffer.add("hub-1", 200, "b", 0);
+
+        assertThat(released).containsExactly("a");
+        assertThat(count("forced")).isEqualTo(1);
+        // досрочно выпущенное событие двигает водяной знак
+        assertThat(buffer.add("hub-1", 50, "late", 0)).isFalse();
+    }
+
+    @Test
+    void forceReleasesGloballyEarliestEventWhenTotalBufferIsFull() {
+        properties.setMaxEvents(3);
+        ReorderBuffer<String> buffer = buffer();
+
+        buffer.add("hub-1", 100, "hub-1:100", 0);
+        buffer.add("hub-2", 900, "hub-2:900", 0);
+        buffer.add("hub-2", 950, "hub-2:950", 0);
+        // переполнение вызвал hub-2, но выпускается самое раннее событие всех хабов
+        buffer.add("hub-2", 980, "hub-2:980", 0);
+
+        assertThat(released).containsExactly("hub-1:100");
+        assertThat(buffer.buffered()).isEqualTo(3);
+        assertThat(count("forced")).isEqualTo(1);
+
+        buffer.add("hub-3", 50, "hub-3:50", 0);
+        assertThat(released).containsExactly("hub-1:100", "hub-3:50");
+    }
+
+    @Test
+    void flushesIdleHubButKeepsItsWatermark() {
+        properties.setIdleFlush(Duration.ofSeconds(5));
+        properties.setWatermarkRetention(Duration.ofMinutes(1));
+        ReorderBuffer<String> buffer = buffer();
+
+        buffer.add("hub-1", 1_000, "a", 0);
+        buffer.add("hub-1", 2_000, "b", 0);
+        buffer.add("hub-2", 1_000, "active", 4_000);
+        buffer.expire(4_999);
+        assertThat(released).isEmpty();
+
+        buffer.expire(5_000);
+        assertThat(released).containsExactly("a", "b");
+        assertThat(buffer.buffered()).isEqualTo(1);
+
+        // отставшее событие замолчавшего хаба не выпускается после более позднего
+        assertThat(buffer.add("hub-1", 1_500, "late", 10_000)).isFalse();
+        assertThat(count("late")).isEqualTo(1);
+    }
+
+    @Test
+    void forgetsWatermarkAfterRetention() {
+        properties.setIdleFlush(Duration.ofSeconds(5));
+        properties.setWatermarkRetention(Duration.ofMinutes(1));
+        ReorderBuffer<String> buffer = buffer();
+
+        buffer.add("hub-1", 2_000, "a", 0);
+        buffer.expire(59_999);
+        assertThat(buffer.add("hub-1", 1_000, "late", 59_999)).isFalse();
+
+        buffer.expire(119_999);
+        assertThat(buffer.add("hub-1", 1_000, "after-retention", 119_999)).isTrue();
+    }
+
+    @Test
+    void expiresOnlyAfterFlushInterval() {
+        properties.setIdleFlush(Duration.ofSeconds(5));
+        properties.setFlushInterval(Duration.ofSeconds(1));
+        ReorderBuffer<String> buffer = buffer();
+
+        buffer.add("hub-1", 1_000, "a", 0);
+        buffer.expireIfDue(4_500);
+        // хаб замолчал, но следующая проверка только через секунду после предыдущей
+        buffer.expireIfDue(5_000);
+        assertThat(released).isEmpty();
+
+        buffer.expireIfDue(5_500);
+        assertThat(released).containsExactly("a");
+    }
+
+    @Test
+    void discardsMatchingEventsWithoutReleasingThem() {
+        ReorderBuffer<String> buffer = buffer();
+
+        buffer.add("hub-1", 300, "keep-300", 0);
+        buffer.add("hub-1", 100, "drop-100", 0);
+        buffer.add("hub-1", 200, "keep-200", 0);
+        buffer.add("hub-2", 100, "drop-hub-2", 0);
+
+        buffer.discard(event -> event.startsWith("drop"));
+
+        assertThat(released).isEmpty();
+        assertThat(buffer.buffered()).isEqualTo(2);
+        assertThat(count("discarded")).isEqualTo(2);
+        buffer.flush();
+        assertThat(released).containsExactly("keep-200", "keep-300");
+        assertThat(buffer.buffered()).isZero();
+    }
+
+    private ReorderBuffer<String> buffer() {
+        return new ReorderBuffer<>(properties, released::add, meterRegistry);
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("telemetry.aggregator.reorder.events").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,241 @@
+package ru.yandex.practicum.rollup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.RollupMetricAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorRollupAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class RollupAggregatorTest {
+    private final List<SensorRollupAvro> rollups = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RollupProperties properties = new RollupProperties();
+
+    @Test
+    void alignsWindowsOfEverySizeToEpoch() {
+        properties.setWindows(List.of(Duration.ofSeconds(1), Duration.ofSeconds(10)));
+        properties.setAllowedLateness(Duration.ZERO);
+        RollupAggregator aggregator = aggregator();
+
+        aggregator.add(temperature(0, 20), 0);
+        aggregator.add(temperature(999, 22), 0);
+        aggregator.add(temperature(1_000, 30), 0);
+        aggregator.add(temperature(9_999, 10), 0);
+        aggregator.add(temperature(10_000, 40), 0);
+        aggregator.expire(0);
+
+        // окно [0, 1000) включает 999 и не включает 1000
+        assertThat(rollups(RollupMetricAvro.TEMPERATURE_C, 1_000))
+                .extracting(r -> r.getWindowStart().toEpochMilli(), r -> r.getWindowEnd().toEpochMilli(),
+                        SensorRollupAvro::getCount)
+                .containsExactlyInAnyOrder(tuple(0L, 1_000L, 2L), tuple(1_000L, 2_000L, 1L),
+                        tuple(9_000L, 10_000L, 1L));
+        assertThat(rollups(RollupMetricAvro.TEMPERATURE_C, 10_000))
+                .extracting(r -> r.getWindowStart().toEpochMilli(), SensorRollupAvro::getCount)
+                .containsExactly(tuple(0L, 4L));
+        assertThat(count("emitted")).isEqualTo(8);
+    }
+
+    @Test
+    void computesCountSumMinMaxAndAverage() {
+        properties.setWindows(List.of(Duration.ofMinutes(1)));
+        RollupAggregator aggregator = aggregator();
+
+        aggregator.add(temperature(1_000, 20), 0);
+        aggregator.add(temperature(2_000, -5), 0);
+        aggregator.add(temperature(3_000, 30), 0);
+        aggregator.expire(properties.getIdleClose().toMillis());
+
+        SensorRollupAvro celsius = rollups(RollupMetricAvro.TEMPERATURE_C, 60_000).getFirst();
+        assertThat(celsius.getHubId()).isEqualTo("hub-1");
+        assertThat(celsius.getSensorId()).isEqualTo("t-1");
+        assertThat(celsius.getCount()).isEqualTo(3);
+        assertThat(celsius.getSum()).isEqualTo(45);
+        assertThat(celsius.getMin()).isEqualTo(-5);
+        assertThat(celsius.getMax()).isEqualTo(30);
+        assertThat(celsius.getAvg()).isEqualTo(15.0);
+        SensorRollupAvro fahrenheit = rollups(RollupMetricAvro.TEMPERATURE_F, 60_000).getFirst();
+        assertThat(fahrenheit.getMin()).isEqualTo(23);
+        assertThat(fahrenheit.getMax()).isEqualTo(86);
+    }
+
+    @Test
+    void acceptsLateReadingWithinAllowedLatenessAndCountsLaterOnesOnce() {
+        properties.setWindows(List.of(Duration.ofSeconds(1), Duration.ofSeconds(2)));
+        properties.setAllowedLateness(Duration.ofMillis(500));
+        RollupAggregator aggregator = aggregator();
+
+        aggregator.add(temperature(100, 1), 0);
+        aggregator.add(temperature(1_400, 2), 0);
+        // окно [0, 1000) открыто до водяного знака 1500
+        aggregator.add(temperature(900, 3), 0);
+        aggregator.add(temperature(1_600, 4), 0);
+        aggregator.expire(0);
+        assertThat(rollups(RollupMetricAvro.TEMPERATURE_C, 1_000))
+                .extracting(r -> r.getWindowStart().toEpochMilli(), SensorRollupAvro::getCount)
+                .containsExactly(tuple(0L, 2L));
+
+        // опоздало для секундного окна, но двухсекундное ещё открыто
+        aggregator.add(temperature(950, 5), 0);
+        assertThat(count("late")).isEqualTo(1);
+
+        // опоздало для обоих окон и обоих показателей - всё равно одно опоздавшее показание
+        aggregator.add(temperature(3_000, 6), 0);
+        aggregator.add(temperature(500, 7), 0);
+        assertThat(count("late")).isEqualTo(2);
+
+        aggregator.expire(properties.getIdleClose().toMillis());
+        assertThat(rollups(RollupMetricAvro.TEMPERATURE_C, 2_000))
+                .extracting(r -> r.getWindowStart().toEpochMilli(), SensorRollupAvro::getCount,
+                        SensorRollupAvro::getSum)
+                .containsExactlyInAnyOrder(tuple(0L, 5L, 15L), tuple(2_000L, 1L, 6L));
+    }
+
+    @Test
+    void closesWindowsOfIdleHubByServiceClock() {
+        properties.setWindows(List.of(Duration.ofMinutes(1)));
+        properties.setIdleClose(Duration.ofSeconds(10));
+        properties.setFlushInterval(Duration.ofSeconds(5));
+        RollupAggregator aggregator = aggregator();
+
+        aggregator.add(temperature(1_000, 20), 100_000);
+        aggregator.expireIfDue(109_999);
+        assertThat(rollups).isEmpty();
+
+        // хаб молчит 10 секунд, но следующая проверка только через 5 секунд после предыдущей
+        aggregator.expireIfDue(110_000);
+        assertThat(rollups).isEmpty();
+        aggregator.expireIfDue(114_999);
+        assertThat(rollups).hasSize(2);
+    }
+
+    @Test
+    void closesAllWindowsWhenSensorChangesType() {
+        properties.setWindows(List.of(Duration.ofMinutes(1), Duration.ofHours(1)));
+        RollupAggregator aggregator = aggregator();
+
+        aggregator.add(event(1_000, new SwitchSensorAvro(true)), 0);
+        aggregator.add(event(2_000, new SwitchSensorAvro(false)), 0);
+        assertThat(rollups).isEmpty();
+
+        aggregator.add(temperature(3_000, 20), 0);
+
+        assertThat(rollups)
+                .extracting(SensorRollupAvro::getMetric, SensorRollupAvro::getWindowSize, SensorRollupAvro::getCount,
+                        SensorRollupAvro::getSum)
+                .containsExactlyInAnyOrder(tuple(RollupMetricAvro.SWITCH_STATE, 60_000L, 2L, 1L),
+                        tuple(RollupMetricAvro.SWITCH_STATE, 3_600_000L, 2L, 1L));
+        aggregator.expire(properties.getIdleClose().toMillis());
+        assertThat(rollups(RollupMetricAvro.TEMPERATURE_C, 60_000)).singleElement()
+                .extracting(SensorRollupAvro::getCount).isEqualTo(1L);
+    }
+
+    @Test
+    void forgetsHubWithoutEventsAndOpenWindows() {
+        properties.setWindows(List.of(Duration.ofMinutes(1)));
+        properties.setAllowedLateness(Duration.ofSeconds(30));
+        properties.setIdleClose(Duration.ofMinutes(1));
+        RollupAggregator aggregator = aggregator();
+
+        aggregator.add(temperature(1_000, 20), 0);
+        aggregator.expire(60_000);
+        assertThat(rollups).hasSize(2);
+        // окна закрыты, но хаб помнится: иначе его опоздавшие показания открыли бы окна заново
+        assertThat(aggregator.trackedHubs()).isEqualTo(1);
+
+        aggregator.expire(150_000);
+        assertThat(aggregator.trackedHubs()).isEqualTo(1);
+        aggregator.expire(150_001);
+        assertThat(aggregator.trackedHubs()).isZero();
+    }
+
+    @Test
+    void matchesReferenceWhenSlotsAreReused() {
+        // секундному окну с допуском 2,5 секунды нужно четыре ячейки на показатель
+        properties.setWindows(List.of(Duration.ofSeconds(1), Duration.ofSeconds(3)));
+        properties.setAllowedLateness(Duration.ofMillis(2_500));
+        RollupAggregator aggregator = aggregator();
+        long lateness = properties.getAllowedLateness().toMillis();
+        long[] sizes = {1_000, 3_000};
+        Map<String, long[]> expected = new HashMap<>();
+        long watermark = Long.MIN_VALUE;
+        int late = 0;
+
+        Random random = new Random(42);
+        long base = 0;
+        for (int n = 0; n < 5_000; n++) {
+            base += random.nextInt(200);
+            long time = base - random.nextInt(3_000);
+            int value = random.nextInt(100);
+            aggregator.add(temperature(time, value), 0);
+            if (n % 50 == 0) {
+                aggregator.expire(0);
+            }
+
+            watermark = Math.max(watermark, time);
+            boolean missed = false;
+            for (long size : sizes) {
+                long start = Math.floorDiv(time, size) * size;
+                if (start + size + lateness <= watermark) {
+                    missed = true;
+                    continue;
+                }
+                long[] stats = expected.computeIfAbsent(size + "@" + start, key -> new long[2]);
+                stats[0]++;
+                stats[1] += value;
+            }
+            if (missed) {
+                late++;
+            }
+        }
+        aggregator.expire(properties.getIdleClose().toMillis());
+
+        Map<String, long[]> actual = new HashMap<>();
+        for (SensorRollupAvro rollup : rollups(RollupMetricAvro.TEMPERATURE_C)) {
+            long[] previous = actual.put(rollup.getWindowSize() + "@" + rollup.getWindowStart().toEpochMilli(),
+                    new long[]{rollup.getCount(), rollup.getSum()});
+            // окно выпускается один раз: ячейка не переиспользуется, пока её окно открыто
+            assertThat(previous).isNull();
+        }
+        assertThat(actual).containsOnlyKeys(expected.keySet());
+        expected.forEach((window, stats) -> assertThat(actual.get(window)).as(window).containsExactly(stats));
+        assertThat(count("late")).isEqualTo(late).isPositive();
+    }
+
+    private RollupAggregator aggregator() {
+        return new RollupAggregator(properties, rollups::add, meterRegistry);
+    }
+
+    private List<SensorRollupAvro> rollups(RollupMetricAvro metric) {
+        return rollups.stream().filter(rollup -> rollup.getMetric() == metric).toList();
+    }
+
+    private List<SensorRollupAvro> rollups(RollupMetricAvro metric, long windowSize) {
+        return rollups(metric).stream().filter(rollup -> rollup.getWindowSize() == windowSize).toList();
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("telemetry.aggregator.rollups").tag("result", result).counter().count();
+    }
+
+    private static SensorEventAvro temperature(long time, int celsius) {
+        return event(time, new TemperatureSensorAvro(celsius, celsius * 9 / 5 + 32));
+    }
+
+    private static SensorEventAvro event(long time, Object payload) {
+        return new SensorEventAvro("t-1", "hub-1", Instant.ofEpochMilli(time), payload);
+    }
+}
@@ -0,0 +1,143 @@
+package ru.yandex.practicum.state;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.DescribeConsumerGroupsResult;
+import org.apache.kafka.clients.admin.DescribeTopicsResult;
+import org.apache.kafka.clients.admin.MemberAssignment;
+import org.apache.kafka.clients.admin.MemberDescription;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.ConsumerGroupState;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.internals.KafkaFutureImpl;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.telemetry.common.kafka.topology.HubPartitioner;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConsumerGroupOwnerLocatorTest {
+    private static final String GROUP = "aggregator";
+    private static final String TOPIC = "telemetry.sensors.v1";
+    private static final Node NODE = new Node(0, "localhost", 9092);
+
+    private final Admin admin = mock(Admin.class);
+    private final StateProperties properties = new StateProperties();
+
+    @Test
+    void returnsEndpointOfInstanceOwningHubPartition() {
+        properties.setAdvertisedEndpoint("10.0.0.1:8082");
+        topicHasPartitions(2);
+        groupHasMembers(member("aggregator@10.0.0.1:8082", 0), member("aggregator@10.0.0.2:8082", 1));
+        ConsumerGroupOwnerLocator locator = new ConsumerGroupOwnerLocator(admin, GROUP, TOPIC, properties);
+
+        // партиция 1 назначена соседу, партиция 0 - этому экземпляру
+        assertThat(locator.remoteOwner(hubOnPartition(1, 2))).contains("10.0.0.2:8082");
+        assertThat(locator.remoteOwner(hubOnPartition(0, 2))).isEmpty();
+    }
+
+    @Test
+    void treatsUnassignedPartitionsAndForeignClientIdsAsLocal() {
+        topicHasPartitions(3);
+        groupHasMembers(member("aggregator@10.0.0.2:8082", 0), member("legacy-client", 1));
+        ConsumerGroupOwnerLocator locator = new ConsumerGroupOwnerLocator(admin, GROUP, TOPIC, properties);
+
+        assertThat(locator.remoteOwner(hubOnPartition(0, 3))).contains("10.0.0.2:8082");
+        assertThat(locator.remoteOwner(hubOnPartition(1, 3))).isEmpty();
+        assertThat(locator.remoteOwner(hubOnPartition(2, 3))).isEmpty();
+    }
+
+    @Test
+    void describesGroupOncePerRefreshInterval() {
+        properties.setOwnershipRefresh(Duration.ofMinutes(1));
+        topicHasPartitions(2);
+        groupHasMembers(member("aggregator@10.0.0.2:8082", 0), member("aggregator@10.0.0.2:8082", 1));
+        ConsumerGroupOwnerLocator locator = new ConsumerGroupOwnerLocator(admin, GROUP, TOPIC, properties);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(locator.remoteOwner("hub-" + i)).contains("10.0.0.2:8082");
+        }
+        verify(admin, times(1)).describeConsumerGroups(any());
+    }
+
+    @Test
+    void keepsPreviousOwnershipWhenGroupCannotBeDescribed() {
+        properties.setOwnershipRefresh(Duration.ZERO);
+        topicHasPartitions(1);
+        groupHasMembers(member("aggregator@10.0.0.2:8082", 0));
+        ConsumerGroupOwnerLocator locator = new ConsumerGroupOwnerLocator(admin, GROUP, TOPIC, properties);
+        assertThat(locator.remoteOwner("hub-1")).contains("10.0.0.2:8082");
+
+        KafkaFutureImpl<Map<String, ConsumerGroupDescription>> failed = new KafkaFutureImpl<>();
+        failed.completeExceptionally(new IllegalStateException("координатор группы недоступен"));
+        DescribeConsumerGroupsResult result = mock(DescribeConsumerGroupsResult.class);
+        when(result.all()).thenReturn(failed);
+        when(admin.describeConsumerGroups(any())).thenReturn(result);
+
+        assertThat(locator.remoteOwner("hub-1")).contains("10.0.0.2:8082");
+        verify(admin, times(2)).describeConsumerGroups(any());
+    }
+
+    @Test
+    void answersLocallyUntilTopicIsDescribed() {
+        KafkaFutureImpl<Map<String, TopicDescription>> failed = new KafkaFutureImpl<>();
+        failed.completeExceptionally(new IllegalStateException("брокер недоступен"));
+        DescribeTopicsResult result = mock(DescribeTopicsResult.class);
+        when(result.allTopicNames()).thenReturn(failed);
+        when(admin.describeTopics(anyCollection())).thenReturn(result);
+        ConsumerGroupOwnerLocator locator = new ConsumerGroupOwnerLocator(admin, GROUP, TOPIC, properties);
+
+        assertThat(locator.remoteOwner("hub-1")).isEmpty();
+    }
+
+    @Test
+    void buildsClientIdFromPrefixAndEndpoint() {
+        assertThat(ConsumerGroupOwnerLocator.clientId("aggregator", "10.0.0.1:8082"))
+                .isEqualTo("aggregator@10.0.0.1:8082");
+    }
+
+    private void topicHasPartitions(int partitions) {
+        List<TopicPartitionInfo> infos = IntStream.range(0, partitions)
+                .mapToObj(partition -> new TopicPartitionInfo(partition, NODE, List.of(NODE), List.of(NODE)))
+                .toList();
+        DescribeTopicsResult result = mock(DescribeTopicsResult.class);
+        when(result.allTopicNames())
+                .thenReturn(KafkaFuture.completedFuture(Map.of(TOPIC, new TopicDescription(TOPIC, false, infos))));
+        when(admin.describeTopics(anyCollection())).thenReturn(result);
+    }
+
+    private void groupHasMembers(MemberDescription... members) {
+        DescribeConsumerGroupsResult result = mock(DescribeConsumerGroupsResult.class);
+        when(result.all()).thenReturn(KafkaFuture.completedFuture(Map.of(GROUP, new ConsumerGroupDescription(GROUP,
+                false, List.of(members), "range", ConsumerGroupState.STABLE, NODE))));
+        when(admin.describeConsumerGroups(any())).thenReturn(result);
+    }
+
+    private static MemberDescription member(String clientId, int partition) {
+        return new MemberDescription(clientId + "-" + partition, clientId, "/10.0.0.1",
+                new MemberAssignment(Set.of(new TopicPartition(TOPIC, partition),
+                        new TopicPartition("telemetry.other.v1", partition + 1))));
+    }
+
+    private static String hubOnPartition(int partition, int partitions) {
+        return IntStream.iterate(0, i -> i + 1)
+                .mapToObj(i -> "hub-" + i)
+                .filter(hubId -> HubPartitioner.partitionFor(hubId, partitions) == partition)
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,118 @@
+package ru.yandex.practicum.state;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import serializer.GeneralAvroSerializer;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class LiveStateServiceTest {
+    private final LiveStateView view = new LiveStateView();
+    private final Map<String, String> owners = new HashMap<>();
+    private final RestClient.Builder restClientBuilder = RestClient.builder();
+    private final MockRestServiceServer server = MockRestServiceServer.bindTo(restClientBuilder).build();
+    private final LiveStateService service = new LiveStateService(view,
+            hubId -> Optional.ofNullable(owners.get(hubId)), restClientBuilder.build());
+
+    @Test
+    void readsLocalHubFromView() {
+        view.publish(snapshot("hub-1", 1_000));
+
+        assertThat(service.hubState("hub-1")).get()
+                .extracting(SensorsSnapshotAvro::getTimestamp).isEqualTo(Instant.ofEpochMilli(1_000));
+        assertThat(service.hubState("hub-2")).isEmpty();
+        server.verify();
+    }
+
+    @Test
+    void keepsPublishedSnapshotIndependentOfCaller() {
+        SensorsSnapshotAvro snapshot = snapshot("hub-1", 1_000);
+        snapshot.setSensorsState(new HashMap<>(snapshot.getSensorsState()));
+        view.publish(snapshot);
+
+        // агрегатор продолжает менять свой снапшот, опубликованная копия не меняется
+        snapshot.getSensorsState().remove("switch-1");
+        assertThat(view.get("hub-1").orElseThrow().getSensorsState()).containsOnlyKeys("switch-1");
+        assertThat(view.size()).isEqualTo(1);
+    }
+
+    @Test
+    void forwardsRequestToOwnerOfHub() {
+        owners.put("hub-1", "10.0.0.2:8082");
+        view.publish(snapshot("hub-1", 1_000));
+        server.expect(requestTo("http://10.0.0.2:8082/internal/state/hubs/hub-1"))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess(new GeneralAvroSerializer().serialize(null, snapshot("hub-1", 2_000)),
+                        MediaType.parseMediaType("application/avro")));
+
+        // свой устаревший снапшот не используется: состояние хаба знает только владелец
+        assertThat(service.hubState("hub-1")).get()
+                .extracting(SensorsSnapshotAvro::getTimestamp).isEqualTo(Instant.ofEpochMilli(2_000));
+        assertThat(service.localHubState("hub-1")).get()
+                .extracting(SensorsSnapshotAvro::getTimestamp).isEqualTo(Instant.ofEpochMilli(1_000));
+        server.verify();
+    }
+
+    @Test
+    void returnsEmptyWhenOwnerDoesNotKnowHub() {
+        owners.put("hub-1", "10.0.0.2:8082");
+        server.expect(requestTo("http://10.0.0.2:8082/internal/state/hubs/hub-1"))
+                .andRespond(withStatus(HttpStatus.NOT_FOUND));
+
+        assertThat(service.hubState("hub-1")).isEmpty();
+        server.verify();
+    }
+
+    @Test
+    void reportsUnavailableOwner() {
+        owners.put("hub-1", "10.0.0.2:8082");
+        server.expect(requestTo("http://10.0.0.2:8082/internal/state/hubs/hub-1")).andRespond(withServerError());
+
+        assertThatThrownBy(() -> service.hubState("hub-1"))
+                .isInstanceOf(OwnerUnavailableException.class)
+                .hasMessageContaining("10.0.0.2:8082");
+    }
+
+    @Test
+    void controllerAnswersNotFoundForUnknownHubOrSensor() {
+        view.publish(snapshot("hub-1", 1_000));
+        StateHttpController controller = new StateHttpController(service);
+
+        assertThat(controller.hubState("hub-1").getBody().sensors()).containsOnlyKeys("switch-1");
+        assertThat(controller.sensorState("hub-1", "switch-1").getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(controller.hubState("hub-2").getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(controller.sensorState("hub-1", "motion-1").getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(controller.sensorState("hub-2", "switch-1").getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(controller.localHubState("hub-2").getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    private static SensorsSnapshotAvro snapshot(String hubId, long timestamp) {
+        Instant time = Instant.ofEpochMilli(timestamp);
+        return SensorsSnapshotAvro.newBuilder()
+                .setHubId(hubId)
+                .setTimestamp(time)
+                .setSensorsState(Map.of("switch-1", SensorStateAvro.newBuilder()
+                        .setTimestamp(time)
+                        .setData(new SwitchSensorAvro(true))
+                        .build()))
+                .build();
+    }
+}
@@ -0,0 +1,216 @@
+package ru.yandex.practicum.streams;
+
+import deserializer.SensorEventBatchDeserializer;
+import deserializer.SensorsSnapshotDeserializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.test.TestRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.SnapshotStorage;
+import ru.yandex.practicum.anomaly.AnomalyProperties;
+import ru.yandex.practicum.kafka.telemetry.event.BatchedSensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+import ru.yandex.practicum.recent.RecentReadingsProperties;
+import ru.yandex.practicum.reorder.ReorderProperties;
+import ru.yandex.practicum.rollup.RollupProperties;
+import ru.yandex.practicum.state.LiveStateView;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
+import serializer.GeneralAvroSerializer;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotTopologyTest {
+    private static final String INPUT = "telemetry.sensors.v1";
+    private static final String OUTPUT = "telemetry.snapshots.v1";
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    @TempDir
+    Path stateDir;
+
+    private final LiveStateView liveStateView = new LiveStateView();
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, SpecificRecordBase> input;
+    private TestOutputTopic<String, SensorsSnapshotAvro> output;
+
+    @BeforeEach
+    void setUp() {
+        start(new ReorderProperties());
+    }
+
+    private void start(ReorderProperties reorder) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RollupProperties rollup = new RollupProperties();
+        rollup.setEnabled(false);
+        AnomalyProperties anomaly = new AnomalyProperties();
+        anomaly.setEnabled(false);
+
+        Properties config = new Properties();
+        config.put(StreamsConfig.APPLICATION_ID_CONFIG, "aggregator-test");
+        config.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        config.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(SnapshotTopology.build(INPUT, OUTPUT, new SnapshotStorage(meterRegistry),
+                rollup, anomaly, reorder, new RecentReadingsProperties(), liveStateView,
+                null, meterRegistry, new LogSampler(1)), config);
+        input = driver.createInputTopic(INPUT, new StringSerializer(), new GeneralAvroSerializer());
+        output = driver.createOutputTopic(OUTPUT, new StringDeserializer(), new SensorsSnapshotDeserializer());
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    void mergesSensorsOfHubIntoOneSnapshot() {
+        input.pipeInput("hub-1", temperature("t-1", "hub-1", START, 21));
+        input.pipeInput("hub-1", switchEvent("s-1", "hub-1", START.plusSeconds(1), true));
+
+        List<TestRecord<String, SensorsSnapshotAvro>> records = output.readRecordsToList();
+        assertThat(records).hasSize(2);
+        SensorsSnapshotAvro snapshot = records.get(1).value();
+        assertThat(snapshot.getSensorsState()).containsOnlyKeys("t-1", "s-1");
+        assertThat(snapshot.getTimestamp()).isEqualTo(START.plusSeconds(1));
+
+        KeyValueStore<String, SensorsSnapshotAvro> store = driver.getKeyValueStore(SnapshotTopology.SNAPSHOT_STORE);
+        assertThat(store.get("hub-1").getSensorsState()).containsOnlyKeys("t-1", "s-1");
+        assertThat(liveStateView.get("hub-1")).isPresent();
+    }
+
+    @Test
+    void keepsHubsApart() {
+        input.pipeInput("hub-1", temperature("t-1", "hub-1", START, 21));
+        input.pipeInput("hub-2", temperature("t-1", "hub-2", START, 25));
+
+        List<TestRecord<String, SensorsSnapshotAvro>> records = output.readRecordsToList();
+        assertThat(records).extracting(TestRecord::key).containsExactly("hub-1", "hub-2");
+        assertThat(records.get(1).value().getSensorsState()).containsOnlyKeys("t-1");
+    }
+
+    @Test
+    void suppressesDuplicateReading() {
+        input.pipeInput("hub-1", temperature("t-1", "hub-1", START, 21));
+        input.pipeInput("hub-1", temperature("t-1", "hub-1", START.plusSeconds(5), 21));
+
+        assertThat(output.readRecordsToList()).hasSize(1);
+    }
+
+    @Test
+    void suppressesStaleReading() {
+        input.pipeInput("hub-1", temperature("t-1", "hub-1", START.plusSeconds(10), 21));
+        input.pipeInput("hub-1", temperature("t-1", "hub-1", START, 30));
+
+        assertThat(output.readRecordsToList()).hasSize(1);
+        KeyValueStore<String, SensorsSnapshotAvro> store = driver.getKeyValueStore(SnapshotTopology.SNAPSHOT_STORE);
+        SensorsSnapshotAvro stored = store.get("hub-1");
+        assertThat(((TemperatureSensorAvro) stored.getSensorsState().get("t-1").getData()).getTemperatureC())
+                .isEqualTo(21);
+    }
+
+    @Test
+    void writesSnapshotKeyedByHubInAvro() {
+        input.pipeInput("hub-1", temperature("t-1", "hub-1", START, 21));
+
+        TestRecord<String, SensorsSnapshotAvro> record = output.readRecord();
+        assertThat(record.key()).isEqualTo("hub-1");
+        assertThat(record.headers().toArray()).isEmpty();
+        SensorsSnapshotAvro snapshot = record.value();
+        assertThat(snapshot.getHubId()).isEqualTo("hub-1");
+        assertThat(snapshot.getTimestamp()).isEqualTo(START);
+        SensorStateAvro state = snapshot.getSensorsState().get("t-1");
+        assertThat(state.getTimestamp()).isEqualTo(START);
+        assertThat(state.getData()).isEqualTo(new TemperatureSensorAvro(21, 69));
+    }
+
+    @Test
+    void unpacksBatchOfHubEvents() {
+        SensorEventBatchAvro batch = SensorEventBatchAvro.newBuilder()
+                .setHubId("hub-1")
+                .setEvents(List.of(batched(temperature("t-1", "hub-1", START, 21)),
+                        batched(switchEvent("s-1", "hub-1", START.plusSeconds(1), false))))
+                .build();
+        RecordHeaders headers = new RecordHeaders();
+        SensorEventBatchDeserializer.markBatch(headers);
+        input.pipeInput(new TestRecord<>("hub-1", batch, headers));
+
+        List<TestRecord<String, SensorsSnapshotAvro>> records = output.readRecordsToList();
+        assertThat(records).hasSize(2);
+        assertThat(records.get(1).value().getSensorsState()).containsOnlyKeys("t-1", "s-1");
+    }
+
+    @Test
+    void keepsReorderedEventsInStoreUntilReleased() {
+        driver.close();
+        ReorderProperties reorder = new ReorderProperties();
+        reorder.setEnabled(true);
+        reorder.setLateness(Duration.ofSeconds(30));
+        start(reorder);
+        KeyValueStore<String, BatchedSensorEventAvro> buffered = driver.getKeyValueStore(ReorderProcessor.STORE);
+
+        input.pipeInput("hub-1", temperature("t-1", "hub-1", START.plusSeconds(10), 22));
+        input.pipeInput("hub-1", temperature("t-1", "hub-1", START.plusSeconds(2), 21));
+        assertThat(output.isEmpty()).isTrue();
+        assertThat(buffered.approximateNumEntries()).isEqualTo(2);
+
+        input.pipeInput("hub-1", temperature("t-1", "hub-1", START.plusSeconds(60), 23));
+        List<TestRecord<String, SensorsSnapshotAvro>> records = output.readRecordsToList();
+        assertThat(records).extracting(record -> record.value().getSensorsState().get("t-1").getTimestamp())
+                .containsExactly(START.plusSeconds(2), START.plusSeconds(10));
+        assertThat(buffered.approximateNumEntries()).isEqualTo(1);
+    }
+
+    @Test
+    void releasesReorderedEventsOfQuietHubByWallClock() {
+        driver.close();
+        ReorderProperties reorder = new ReorderProperties();
+        reorder.setEnabled(true);
+        reorder.setLateness(Duration.ofSeconds(30));
+        reorder.setIdleFlush(Duration.ofSeconds(5));
+        start(reorder);
+        KeyValueStore<String, BatchedSensorEventAvro> buffered = driver.getKeyValueStore(ReorderProcessor.STORE);
+
+        input.pipeInput("hub-1", temperature("t-1", "hub-1", START.plusSeconds(10), 22));
+        input.pipeInput("hub-1", temperature("t-1", "hub-1", START.plusSeconds(2), 21));
+        assertThat(output.isEmpty()).isTrue();
+
+        // новых записей нет: буфер замолчавшего хаба выпускается по часам
+        driver.advanceWallClockTime(Duration.ofSeconds(6));
+        List<TestRecord<String, SensorsSnapshotAvro>> records = output.readRecordsToList();
+        assertThat(records).extracting(record -> record.value().getSensorsState().get("t-1").getTimestamp())
+                .containsExactly(START.plusSeconds(2), START.plusSeconds(10));
+        assertThat(buffered.approximateNumEntries()).isZero();
+    }
+
+    private static SensorEventAvro temperature(String id, String hubId, Instant timestamp, int celsius) {
+        return new SensorEventAvro(id, hubId, timestamp, new TemperatureSensorAvro(celsius, celsius * 9 / 5 + 32));
+    }
+
+    private static SensorEventAvro switchEvent(String id, String hubId, Instant timestamp, boolean state) {
+        return new SensorEventAvro(id, hubId, timestamp, new SwitchSensorAvro(state));
+    }
+
+    private static BatchedSensorEventAvro batched(SensorEventAvro event) {
+        return BatchedSensorEventAvro.newBuilder().setEvent(event).build();
+    }
+}
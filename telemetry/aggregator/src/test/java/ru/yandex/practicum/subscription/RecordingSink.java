@@ -0,0 +1,44 @@
+package ru.yandex.practicum.subscription;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Соединение подписчика для тестов: запоминает отправленное, готовность и ошибку отправки задаёт тест.
+ */
+class RecordingSink implements SnapshotSink {
+    final List<SnapshotUpdate> sent = new CopyOnWriteArrayList<>();
+    final AtomicInteger heartbeats = new AtomicInteger();
+    volatile boolean ready = true;
+    volatile boolean failOnSend;
+    volatile boolean completed;
+
+    @Override
+    public boolean ready() {
+        return ready;
+    }
+
+    @Override
+    public void send(SnapshotUpdate update) throws IOException {
+        if (failOnSend) {
+            throw new IOException("клиент отключился");
+        }
+        sent.add(update);
+    }
+
+    @Override
+    public void heartbeat() {
+        heartbeats.incrementAndGet();
+    }
+
+    @Override
+    public void complete() {
+        completed = true;
+    }
+
+    List<String> sentKeys() {
+        return sent.stream().map(update -> update.hubId() + "@" + update.timestamp()).toList();
+    }
+}
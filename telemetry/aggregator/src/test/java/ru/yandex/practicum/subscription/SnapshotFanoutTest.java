@@ -0,0 +1,69 @@
+package ru.yandex.practicum.subscription;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.state.LiveStateService;
+import ru.yandex.practicum.state.LiveStateView;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.subscription.SubscriptionTest.awaitTrue;
+import static ru.yandex.practicum.subscription.SubscriptionTest.snapshot;
+
+class SnapshotFanoutTest {
+    private static final String TOPIC = "telemetry.snapshots.v1";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+    private final MockConsumer<String, SensorsSnapshotAvro> consumer = new MockConsumer<>(OffsetResetStrategy.LATEST);
+    private final LiveStateView view = new LiveStateView();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SnapshotFanout fanout = new SnapshotFanout(consumer, TOPIC, new SubscriptionProperties(),
+            new LiveStateService(view, hubId -> Optional.empty(), null), meterRegistry);
+
+    @Test
+    void sendsCurrentStateThenRoutesNewSnapshotsByHub() throws InterruptedException {
+        Node node = new Node(0, "localhost", 9092);
+        consumer.updatePartitions(TOPIC,
+                List.of(new PartitionInfo(TOPIC, 0, node, new Node[]{node}, new Node[]{node})));
+        consumer.updateEndOffsets(Map.of(PARTITION, 0L));
+        view.publish(snapshot("hub-1", 1_000));
+        RecordingSink hub1 = new RecordingSink();
+        RecordingSink hub2 = new RecordingSink();
+        fanout.subscribe(Set.of("hub-1"), hub1).orElseThrow();
+        fanout.subscribe(Set.of("hub-2"), hub2).orElseThrow();
+        awaitTrue(() -> hub1.sent.size() == 1);
+        assertThat(hub1.sentKeys()).containsExactly("hub-1@1000");
+
+        fanout.start();
+        awaitTrue(() -> !consumer.assignment().isEmpty());
+        consumer.schedulePollTask(() -> {
+            consumer.addRecord(record(0, snapshot("hub-3", 1_500)));
+            consumer.addRecord(record(1, snapshot("hub-1", 2_000)));
+            consumer.addRecord(record(2, snapshot("hub-2", 2_500)));
+        });
+
+        awaitTrue(() -> hub1.sent.size() == 2 && hub2.sent.size() == 1);
+        assertThat(hub1.sentKeys()).containsExactly("hub-1@1000", "hub-1@2000");
+        assertThat(hub2.sentKeys()).containsExactly("hub-2@2500");
+
+        fanout.close();
+        assertThat(consumer.closed()).isTrue();
+        awaitTrue(() -> hub1.completed && hub2.completed);
+        assertThat(meterRegistry.get("telemetry.aggregator.subscribers").gauge().value()).isZero();
+    }
+
+    private static ConsumerRecord<String, SensorsSnapshotAvro> record(long offset, SensorsSnapshotAvro snapshot) {
+        return new ConsumerRecord<>(TOPIC, 0, offset, snapshot.getHubId(), snapshot);
+    }
+}
@@ -0,0 +1,220 @@
+package ru.yandex.practicum.subscription;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.grpc.telemetry.aggregator.HubStateProto;
+import ru.yandex.practicum.grpc.telemetry.aggregator.SubscribeRequest;
+import ru.yandex.practicum.state.LiveStateService;
+import ru.yandex.practicum.state.LiveStateView;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.yandex.practicum.subscription.SubscriptionTest.awaitTrue;
+import static ru.yandex.practicum.subscription.SubscriptionTest.snapshot;
+import static ru.yandex.practicum.subscription.SubscriptionTest.update;
+
+class SubscriptionAdaptersTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final SubscriptionProperties properties = new SubscriptionProperties();
+    private final LiveStateView view = new LiveStateView();
+    private final SnapshotFanout fanout = new SnapshotFanout(new MockConsumer<>(OffsetResetStrategy.LATEST),
+            "telemetry.snapshots.v1", properties, new LiveStateService(view, hubId -> Optional.empty(), null),
+            new SimpleMeterRegistry());
+
+    @AfterEach
+    void closeFanout() throws InterruptedException {
+        fanout.close();
+    }
+
+    @Test
+    void sseSinkSendsNamedEventWithHubStateJson() throws IOException {
+        RecordingEmitter emitter = new RecordingEmitter();
+        SseSnapshotSink sink = new SseSnapshotSink(emitter, objectMapper);
+
+        sink.send(update("hub-1", 1_000));
+        sink.heartbeat();
+
+        assertThat(emitter.events).hasSize(2);
+        String event = emitter.events.getFirst();
+        assertThat(event).startsWith("event:snapshot\nid:hub-1@1000\ndata:");
+        assertThat(event).contains("\"hubId\":\"hub-1\"", "\"switch-1\"");
+        assertThat(emitter.events.get(1)).isEqualTo(":ping\n\n");
+    }
+
+    @Test
+    void sseSinkIgnoresAlreadyCompletedResponse() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.failOnComplete = true;
+
+        new SseSnapshotSink(emitter, objectMapper).complete();
+
+        assertThat(emitter.completions).isEqualTo(1);
+    }
+
+    @Test
+    void grpcSubscriptionSendsOnlyWhenCallIsReady() throws InterruptedException {
+        view.publish(snapshot("hub-1", 1_000));
+        FakeCall call = new FakeCall();
+        call.ready = false;
+
+        new SubscriptionGrpcController(fanout, properties)
+                .subscribe(SubscribeRequest.newBuilder().addHubIds("hub-1").build(), call);
+        Thread.sleep(100);
+        assertThat(call.messages).isEmpty();
+
+        // gRPC вызывает обработчик готовности, когда клиент принял предыдущие сообщения
+        call.ready = true;
+        call.onReadyHandler.run();
+        awaitTrue(() -> call.messages.size() == 1);
+        HubStateProto state = call.messages.getFirst();
+        assertThat(state.getHubId()).isEqualTo("hub-1");
+        assertThat(state.getTimestamp().getSeconds()).isEqualTo(1);
+        assertThat(state.getSensorsMap()).containsOnlyKeys("switch-1");
+    }
+
+    @Test
+    void grpcCancelClosesSubscriptionWithoutCompletingCall() throws InterruptedException {
+        properties.setMaxSubscribers(1);
+        FakeCall call = new FakeCall();
+        SubscriptionGrpcController controller = new SubscriptionGrpcController(fanout, properties);
+        controller.subscribe(SubscribeRequest.newBuilder().addHubIds("hub-1").build(), call);
+
+        call.cancelled = true;
+        call.onCancelHandler.run();
+
+        awaitTrue(() -> fanout.subscribe(Set.of("hub-1"), new RecordingSink()).isPresent());
+        assertThat(call.completed).isFalse();
+    }
+
+    @Test
+    void grpcRejectsInvalidHubsAndSubscriberLimit() {
+        properties.setMaxSubscribers(1);
+        SubscriptionGrpcController controller = new SubscriptionGrpcController(fanout, properties);
+
+        FakeCall empty = new FakeCall();
+        controller.subscribe(SubscribeRequest.getDefaultInstance(), empty);
+        assertThat(Status.fromThrowable(empty.error).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+
+        controller.subscribe(SubscribeRequest.newBuilder().addHubIds("hub-1").build(), new FakeCall());
+        FakeCall overLimit = new FakeCall();
+        controller.subscribe(SubscribeRequest.newBuilder().addHubIds("hub-2").build(), overLimit);
+        assertThat(Status.fromThrowable(overLimit.error).getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+        assertThat(overLimit.onReadyHandler).isNull();
+    }
+
+    @Test
+    void httpRejectsInvalidHubsAndSubscriberLimit() {
+        properties.setMaxSubscribers(1);
+        properties.setMaxHubsPerSubscription(2);
+        SubscriptionHttpController controller = new SubscriptionHttpController(fanout, properties, objectMapper);
+
+        assertThatThrownBy(() -> controller.subscribe(List.of("hub-1", "hub-2", "hub-3")))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        assertThat(controller.subscribe(List.of("hub-1", "hub-1"))).isNotNull();
+        assertThatThrownBy(() -> controller.subscribe(List.of("hub-2")))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+    }
+
+    /**
+     * Ответ SSE без сервлета: запоминает события в том виде, в каком они ушли бы клиенту.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        final List<String> events = new CopyOnWriteArrayList<>();
+        volatile boolean failOnComplete;
+        volatile int completions;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            events.add(builder.build().stream()
+                    .map(part -> part.getData().toString())
+                    .collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completions++;
+            if (failOnComplete) {
+                throw new IllegalStateException("ответ уже завершён");
+            }
+        }
+    }
+
+    private static class FakeCall extends ServerCallStreamObserver<HubStateProto> {
+        final List<HubStateProto> messages = new CopyOnWriteArrayList<>();
+        volatile boolean ready = true;
+        volatile boolean cancelled;
+        volatile boolean completed;
+        volatile Throwable error;
+        volatile Runnable onReadyHandler;
+        volatile Runnable onCancelHandler;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReadyHandler = onReadyHandler;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+            this.onCancelHandler = onCancelHandler;
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+
+        @Override
+        public void onNext(HubStateProto value) {
+            messages.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package ru.yandex.practicum.subscription;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.state.LiveStateService;
+import ru.yandex.practicum.state.LiveStateView;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubscriptionTest {
+    private final SubscriptionProperties properties = new SubscriptionProperties();
+    private final LiveStateView view = new LiveStateView();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RecordingSink sink = new RecordingSink();
+    private SnapshotFanout fanout;
+
+    @AfterEach
+    void closeFanout() throws InterruptedException {
+        fanout.close();
+    }
+
+    @Test
+    void sendsCurrentStateOnSubscribe() throws InterruptedException {
+        view.publish(snapshot("hub-1", 1_000));
+        view.publish(snapshot("hub-3", 1_000));
+
+        fanout().subscribe(Set.of("hub-1", "hub-2"), sink).orElseThrow();
+
+        awaitTrue(() -> sink.sent.size() == 1);
+        assertThat(sink.sentKeys()).containsExactly("hub-1@1000");
+    }
+
+    @Test
+    void slowClientGetsOnlyLatestSnapshotOfEachHub() throws InterruptedException {
+        sink.ready = false;
+        Subscription subscription = fanout().subscribe(Set.of("hub-1", "hub-2"), sink).orElseThrow();
+
+        subscription.offer(update("hub-1", 2_000));
+        subscription.offer(update("hub-1", 3_000));
+        subscription.offer(update("hub-2", 2_500));
+        subscription.offer(update("hub-1", 4_000));
+        assertThat(sink.sent).isEmpty();
+
+        // транспорт снова готов: буфер подписки - по последнему снапшоту на хаб
+        sink.ready = true;
+        subscription.wake();
+        awaitTrue(() -> sink.sent.size() == 2);
+        assertThat(sink.sentKeys()).containsExactlyInAnyOrder("hub-1@4000", "hub-2@2500");
+        assertThat(count("conflated")).isEqualTo(2);
+        assertThat(count("sent")).isEqualTo(2);
+    }
+
+    @Test
+    void releasesSubscriptionOnClose() throws InterruptedException {
+        properties.setMaxSubscribers(1);
+        Subscription subscription = fanout().subscribe(Set.of("hub-1"), sink).orElseThrow();
+        assertThat(fanout.subscribe(Set.of("hub-1"), new RecordingSink())).isEmpty();
+        assertThat(subscribers()).isEqualTo(1);
+
+        subscription.close();
+        awaitTrue(() -> sink.completed);
+        awaitTrue(() -> subscribers() == 0);
+
+        subscription.offer(update("hub-1", 2_000));
+        assertThat(sink.sent).isEmpty();
+        assertThat(fanout.subscribe(Set.of("hub-1"), new RecordingSink())).isPresent();
+        assertThat(meterRegistry.get("telemetry.aggregator.subscriptions.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void closesSubscriptionWhenSendFails() throws InterruptedException {
+        sink.failOnSend = true;
+        Subscription subscription = fanout().subscribe(Set.of("hub-1"), sink).orElseThrow();
+
+        subscription.offer(update("hub-1", 2_000));
+
+        awaitTrue(() -> sink.completed);
+        awaitTrue(() -> subscribers() == 0);
+    }
+
+    @Test
+    void sendsHeartbeatWhileIdle() throws InterruptedException {
+        properties.setHeartbeat(Duration.ofMillis(20));
+        fanout().subscribe(Set.of("hub-1"), sink).orElseThrow();
+
+        awaitTrue(() -> sink.heartbeats.get() >= 2);
+        assertThat(sink.sent).isEmpty();
+    }
+
+    @Test
+    void validatesRequestedHubs() {
+        properties.setMaxHubsPerSubscription(2);
+        fanout();
+
+        assertThat(fanout.acceptsHubs(Set.of("hub-1", "hub-2"))).isTrue();
+        assertThat(fanout.acceptsHubs(Set.of())).isFalse();
+        assertThat(fanout.acceptsHubs(Set.of("hub-1", "hub-2", "hub-3"))).isFalse();
+        assertThat(fanout.acceptsHubs(Set.of(" "))).isFalse();
+    }
+
+    private SnapshotFanout fanout() {
+        // поток чтения Kafka не запускается: снапшоты кладутся в подписку напрямую
+        fanout = new SnapshotFanout(new MockConsumer<>(OffsetResetStrategy.LATEST), "telemetry.snapshots.v1",
+                properties, new LiveStateService(view, hubId -> Optional.empty(), null), meterRegistry);
+        return fanout;
+    }
+
+    private double subscribers() {
+        return meterRegistry.get("telemetry.aggregator.subscribers").gauge().value();
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("telemetry.aggregator.subscription.updates").tag("result", result).counter().count();
+    }
+
+    static SnapshotUpdate update(String hubId, long timestamp) {
+        return new SnapshotUpdate(snapshot(hubId, timestamp));
+    }
+
+    static SensorsSnapshotAvro snapshot(String hubId, long timestamp) {
+        Instant time = Instant.ofEpochMilli(timestamp);
+        return SensorsSnapshotAvro.newBuilder()
+                .setHubId(hubId)
+                .setTimestamp(time)
+                .setSensorsState(Map.of("switch-1", SensorStateAvro.newBuilder()
+                        .setTimestamp(time)
+                        .setData(new SwitchSensorAvro(true))
+                        .build()))
+                .build();
+    }
+
+    static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("условие не выполнилось за 5 секунд").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
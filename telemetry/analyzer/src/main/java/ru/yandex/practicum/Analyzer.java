@@ -1,9 +1,15 @@
 package ru.yandex.practicum;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
+import ru.yandex.practicum.telemetry.common.profiling.ContinuousRecording;
+import ru.yandex.practicum.telemetry.common.profiling.FlightRecorderProperties;
 
 @SpringBootApplication
 @ConfigurationPropertiesScan
@@ -12,4 +18,20 @@ public class Analyzer {
         ConfigurableApplicationContext context =
                 SpringApplication.run(Analyzer.class, args);
     }
-}
\ No newline at end of file
+
+    @Bean
+    LogSampler logSampler(@Value("${telemetry.logging.sample-rate:100}") int sampleRate) {
+        return new LogSampler(sampleRate);
+    }
+
+    @Bean
+    @ConfigurationProperties("telemetry.jfr")
+    FlightRecorderProperties flightRecorderProperties() {
+        return new FlightRecorderProperties();
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    ContinuousRecording continuousRecording(FlightRecorderProperties properties) {
+        return new ContinuousRecording(properties);
+    }
+}
@@ -3,6 +3,7 @@ package ru.yandex.practicum;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.hubconfig.HubConfigBootstrap;
 import ru.yandex.practicum.processors.HubEventProcessor;
 import ru.yandex.practicum.processors.SnapshotProcessor;
 
@@ -11,9 +12,14 @@ import ru.yandex.practicum.processors.SnapshotProcessor;
 public class AnalyzerRunner implements CommandLineRunner {
     final HubEventProcessor hubEventProcessor;
     final SnapshotProcessor snapshotProcessor;
+    final HubConfigBootstrap hubConfigBootstrap;
 
     @Override
     public void run(String... args) throws Exception {
+        // сценарии проверяются по конфигурациям хабов в памяти,
+        // поэтому сначала загружаем их из компактного топика
+        hubConfigBootstrap.run();
+
         // запускаем в отдельном потоке обработчик событий
         // от пользовательских хабов
         Thread hubEventsThread = new Thread(hubEventProcessor);
@@ -2,6 +2,8 @@ package ru.yandex.practicum.client;
 
 import com.google.protobuf.Empty;
 import com.google.protobuf.Timestamp;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
 import org.springframework.stereotype.Service;
@@ -10,54 +12,128 @@ import ru.yandex.practicum.grpc.telemetry.event.DeviceActionProto;
 import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
 import ru.yandex.practicum.grpc.telemetry.hubrouter.HubRouterControllerGrpc;
 import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
 import ru.yandex.practicum.model.Action;
+import ru.yandex.practicum.profiling.ActionSendEvent;
 
 import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 public class ScenarioActionProducer {
     private final HubRouterControllerGrpc.HubRouterControllerBlockingStub hubRouterStub;
+    private final Timer stageLatency;
+    private final Timer sendSuccess;
+    private final Timer sendFailure;
 
     public ScenarioActionProducer(
-            @GrpcClient("hub-router") HubRouterControllerGrpc.HubRouterControllerBlockingStub hubRouterStub) {
+            @GrpcClient("hub-router") HubRouterControllerGrpc.HubRouterControllerBlockingStub hubRouterStub,
+            MeterRegistry meterRegistry) {
         this.hubRouterStub = hubRouterStub;
+        // время от приёма исходного события коллектором до доставки действия в hub-router
+        this.stageLatency = Timer.builder("telemetry.pipeline.stage.latency")
+                .description("Задержка от приёма события коллектором до выхода из стадии")
+                .tag("stage", "analyzer")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.sendSuccess = sendTimer(meterRegistry, "success");
+        this.sendFailure = sendTimer(meterRegistry, "failure");
+    }
+
+    private static Timer sendTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("telemetry.analyzer.action.send")
+                .description("Время gRPC-вызова hub-router при отправке действия")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     public void sendAction(Action action) {
-        log.info("Зашли в метод sendAction");
-        DeviceActionRequest actionRequest = mapToActionRequest(action);
-        log.info("получили actionRequest");
+        sendAction(action, null);
+    }
+
+    /**
+     * Отправляет действие в hub-router.
+     *
+     * @param trigger состояние датчика, вызвавшее срабатывание сценария; может быть {@code null}
+     */
+    public void sendAction(Action action, SensorStateAvro trigger) {
+        send(mapToActionRequest(action.getScenario().getHubId(), action.getScenario().getName(),
+                action.getSensor().getId(), action.getType(), action.getValue(), trigger), trigger);
+    }
+
+    /**
+     * Отправляет действие сценария из конфигурации хаба в hub-router.
+     *
+     * @param trigger состояние датчика, вызвавшее срабатывание сценария; может быть {@code null}
+     */
+    public void sendAction(String hubId, String scenarioName, DeviceActionAvro action, SensorStateAvro trigger) {
+        send(mapToActionRequest(hubId, scenarioName, action.getSensorId(), action.getType(), action.getValue(),
+                trigger), trigger);
+    }
 
+    private void send(DeviceActionRequest actionRequest, SensorStateAvro trigger) {
+        Timer.Sample sample = Timer.start();
+        ActionSendEvent event = new ActionSendEvent();
+        event.begin();
         try {
             Empty response = hubRouterStub.handleDeviceAction(actionRequest);
-            log.info("Действие {} отправлено в hub-router", actionRequest);
-            if (response.isInitialized()) {
-                log.info("Получили ответ от хаба");
-            } else {
-                log.info("Нет ответа от хаба");
+            sample.stop(sendSuccess);
+            event.success = true;
+            log.debug("Действие {} отправлено в hub-router", actionRequest);
+            if (trigger != null && trigger.getIngestedAt() != null) {
+                stageLatency.record(
+                        System.currentTimeMillis() - trigger.getIngestedAt().toEpochMilli(), TimeUnit.MILLISECONDS);
+            }
+            if (!response.isInitialized()) {
+                log.debug("Нет ответа от хаба");
             }
         } catch (RuntimeException e) {
-            log.info("Поймали ошибку отправки в хаброутер");
+            sample.stop(sendFailure);
+            log.warn("Ошибка отправки действия в hub-router для хаба {}: {}",
+                    actionRequest.getHubId(), e.getMessage());
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.hubId = actionRequest.getHubId();
+                event.scenarioName = actionRequest.getScenarioName();
+                event.payloadType = actionRequest.getAction().getType().name();
+                event.bytes = actionRequest.getSerializedSize();
+                event.commit();
+            }
         }
     }
 
-    private DeviceActionRequest mapToActionRequest(Action action) {
-        log.info("Зашли в метод mapToActionRequest");
-        return DeviceActionRequest.newBuilder()
-                .setHubId(action.getScenario().getHubId())
-                .setScenarioName(action.getScenario().getName())
-                .setAction(DeviceActionProto.newBuilder()
-                        .setSensorId(action.getSensor().getId())
-                        .setType(mapActionType(action.getType()))
-                        .setValue(action.getValue())
-                        .build())
-                .setTimestamp(setTimestamp())
-                .build();
+    private DeviceActionRequest mapToActionRequest(String hubId, String scenarioName, String sensorId,
+                                                   ActionTypeAvro type, Integer value, SensorStateAvro trigger) {
+        DeviceActionProto.Builder action = DeviceActionProto.newBuilder()
+                .setSensorId(sensorId)
+                .setType(mapActionType(type));
+        // у действий без значения, например ACTIVATE, поле value не заполняется
+        if (value != null) {
+            action.setValue(value);
+        }
+        DeviceActionRequest.Builder builder = DeviceActionRequest.newBuilder()
+                .setHubId(hubId)
+                .setScenarioName(scenarioName)
+                .setAction(action)
+                .setTimestamp(mapToTimestamp(Instant.now()));
+
+        if (trigger != null) {
+            builder.setEventTimestamp(mapToTimestamp(trigger.getTimestamp()));
+            if (trigger.getTraceId() != null) {
+                builder.setTraceId(trigger.getTraceId());
+            }
+            if (trigger.getIngestedAt() != null) {
+                builder.setIngestedAt(mapToTimestamp(trigger.getIngestedAt()));
+            }
+        }
+        return builder.build();
     }
 
     private ActionTypeProto mapActionType(ActionTypeAvro actionType) {
-        log.info("мапим тип действия {}", actionType);
         return switch (actionType) {
             case ACTIVATE -> ActionTypeProto.ACTIVATE;
             case DEACTIVATE -> ActionTypeProto.DEACTIVATE;
@@ -66,11 +142,10 @@ public class ScenarioActionProducer {
         };
     }
 
-    private Timestamp setTimestamp() {
-        Instant instant = Instant.now();
+    private Timestamp mapToTimestamp(Instant instant) {
         return Timestamp.newBuilder()
                 .setSeconds(instant.getEpochSecond())
                 .setNanos(instant.getNano())
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -1,17 +1,40 @@
 package ru.yandex.practicum.config;
 
+import deserializer.HubConfigDeserializer;
 import deserializer.SensorsSnapshotDeserializer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import ru.yandex.practicum.feedback.ActionResultReader;
+import ru.yandex.practicum.feedback.AppliedActions;
+import ru.yandex.practicum.hubconfig.HubConfigPublisher;
+import ru.yandex.practicum.hubconfig.HubConfigReader;
+import ru.yandex.practicum.hubconfig.HubConfigStore;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
 import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.telemetry.common.kafka.consumer.ConsumerEngineProperties;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopicProvisioner;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopologyProperties;
+import serializer.GeneralAvroSerializer;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 @Getter
@@ -35,23 +58,104 @@ public class KafkaConfig {
     private String hubValueDeserializer;
 
     @Bean
-    public KafkaConsumer<String, SensorsSnapshotAvro> snapshotsConsumer() {
+    @ConfigurationProperties("kafka.consumer-engine")
+    public ConsumerEngineProperties consumerEngineProperties() {
+        return new ConsumerEngineProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("kafka.topology")
+    public TopologyProperties topologyProperties() {
+        return new TopologyProperties();
+    }
+
+    @Bean
+    @DependsOn("topicProvisioner")
+    public KafkaConsumer<String, SensorsSnapshotAvro> snapshotsConsumer(TopologyProperties topology) {
         Properties properties = new Properties();
         properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         properties.put(ConsumerConfig.GROUP_ID_CONFIG, snapshotGroupId);
         properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, keyDeserializer);
         properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, SensorsSnapshotDeserializer.class);
+        // снапшоты и события хаба с одинаковым номером партиции достаются одному экземпляру
+        topology.applyToConsumer(properties);
         return new KafkaConsumer<>(properties);
     }
 
     @Bean
-    public KafkaConsumer<String, HubEventAvro> hubsConsumer() {
+    @DependsOn("topicProvisioner")
+    public KafkaConsumer<String, HubEventAvro> hubsConsumer(TopologyProperties topology) {
         Properties properties = new Properties();
         properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         properties.put(ConsumerConfig.GROUP_ID_CONFIG, hubGroupId);
         properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, keyDeserializer);
         properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, hubValueDeserializer);
+        topology.applyToConsumer(properties);
         return new KafkaConsumer<>(properties);
     }
 
+    /**
+     * Топики хабов и снапшотов приводятся к общему числу партиций, как и в остальных сервисах.
+     * Компактный топик конфигураций хабов создаётся с тем же числом партиций, что и топик хабов,
+     * поэтому конфигурация хаба лежит в партиции с тем же номером, что и его события.
+     */
+    @Bean
+    public TopicProvisioner topicProvisioner(TopologyProperties topology,
+                                             @Value("${kafka.topics.hubs}") String hubsTopic,
+                                             @Value("${kafka.topics.snapshots}") String snapshotsTopic,
+                                             @Value("${kafka.topics.hub-config}") String hubConfigTopic) {
+        TopicProvisioner provisioner = new TopicProvisioner(bootstrapServers, topology);
+        provisioner.provision(List.of(hubsTopic, snapshotsTopic));
+        provisioner.provision(List.of(hubConfigTopic),
+                Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+        return provisioner;
+    }
+
+    @Bean(destroyMethod = "close")
+    @DependsOn("topicProvisioner")
+    public HubConfigPublisher hubConfigPublisher(TopologyProperties topology, MeterRegistry meterRegistry,
+                                                 @Value("${kafka.topics.hub-config}") String hubConfigTopic) {
+        Properties properties = new Properties();
+        properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, GeneralAvroSerializer.class.getName());
+        properties.put(ProducerConfig.ACKS_CONFIG, "all");
+        topology.applyToProducer(properties);
+        return new HubConfigPublisher(new KafkaProducer<>(properties), hubConfigTopic, meterRegistry);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @DependsOn("topicProvisioner")
+    public HubConfigReader hubConfigReader(HubConfigStore store, MeterRegistry meterRegistry,
+                                           @Value("${kafka.topics.hub-config}") String hubConfigTopic) {
+        Properties properties = new Properties();
+        properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, HubConfigDeserializer.class.getName());
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        properties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 5000);
+        Gauge.builder("telemetry.analyzer.hub-config.hubs", store, HubConfigStore::size)
+                .description("Хабы, конфигурация которых загружена в память")
+                .register(meterRegistry);
+        return new HubConfigReader(new KafkaConsumer<String, HubConfigAvro>(properties), store, hubConfigTopic);
+    }
+
+    /**
+     * Результаты действий читаются без группы консьюмеров, чтобы каждый экземпляр видел результаты
+     * всех хабов, а не только хабов партиций, назначенных ему в группе событий хабов.
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @DependsOn("topicProvisioner")
+    @ConditionalOnProperty(name = "analyzer.action-feedback.enabled", havingValue = "true", matchIfMissing = true)
+    public ActionResultReader actionResultReader(AppliedActions appliedActions,
+                                                 @Value("${kafka.topics.hubs}") String hubsTopic,
+                                                 @Value("${analyzer.action-feedback.ttl:10m}") Duration ttl) {
+        Properties properties = new Properties();
+        properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, keyDeserializer);
+        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, hubValueDeserializer);
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        return new ActionResultReader(new KafkaConsumer<String, HubEventAvro>(properties), appliedActions,
+                hubsTopic, ttl);
+    }
 }
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.feedback;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import ru.yandex.practicum.kafka.telemetry.event.ActionResultEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Читает результаты действий из топика хабов без группы консьюмеров и учитывает их в {@link AppliedActions}.
+ * Действия отправляет обработчик снапшотов, а события хабов читает другая группа, партиции которой
+ * достаются экземплярам независимо: через общую группу результат хаба мог бы попасть не тому экземпляру,
+ * который проверяет его действия. Поэтому каждый экземпляр читает результаты всех хабов сам, как и
+ * конфигурации хабов в {@code HubConfigReader}.
+ * <p>
+ * Чтение начинается с записей не старше {@code ttl}: более старые результаты таблица всё равно забыла бы.
+ */
+@Slf4j
+public class ActionResultReader implements AutoCloseable {
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    private final Consumer<String, HubEventAvro> consumer;
+    private final AppliedActions appliedActions;
+    private final String topic;
+    private final Duration lookback;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public ActionResultReader(Consumer<String, HubEventAvro> consumer, AppliedActions appliedActions,
+                              String topic, Duration lookback) {
+        this.consumer = consumer;
+        this.appliedActions = appliedActions;
+        this.topic = topic;
+        this.lookback = lookback;
+        this.thread = new Thread(this::run, "action-result-reader");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            List<TopicPartition> partitions = consumer.partitionsFor(topic).stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            seekToLookback(partitions);
+            log.info("Читаем результаты действий из топика {} за последние {}, партиций: {}",
+                    topic, lookback, partitions.size());
+
+            while (running) {
+                for (ConsumerRecord<String, HubEventAvro> record : consumer.poll(POLL_TIMEOUT)) {
+                    HubEventAvro event = record.value();
+                    if (event != null && event.getPayload() instanceof ActionResultEventAvro result) {
+                        appliedActions.record(event.getHubId(), result, event.getTimestamp());
+                    }
+                }
+            }
+        } catch (WakeupException ignored) {
+            // остановка через close()
+        } catch (Exception e) {
+            log.error("Чтение результатов действий из топика {} остановлено из-за ошибки, "
+                    + "уже применённые действия будут отправляться повторно", topic, e);
+        } finally {
+            running = false;
+            consumer.close();
+        }
+    }
+
+    private void seekToLookback(List<TopicPartition> partitions) {
+        long since = System.currentTimeMillis() - lookback.toMillis();
+        Map<TopicPartition, OffsetAndTimestamp> offsets = consumer.offsetsForTimes(partitions.stream()
+                .collect(Collectors.toMap(Function.identity(), partition -> since)));
+        for (TopicPartition partition : partitions) {
+            OffsetAndTimestamp offset = offsets.get(partition);
+            if (offset == null) {
+                // в партиции нет записей новее начала окна
+                consumer.seekToEnd(List.of(partition));
+            } else {
+                consumer.seek(partition, offset.offset());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        consumer.wakeup();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+}
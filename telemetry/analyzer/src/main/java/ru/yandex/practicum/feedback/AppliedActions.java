@@ -0,0 +1,94 @@
+package ru.yandex.practicum.feedback;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.ActionResultEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ActionStatusAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Действия, которые хабы уже применили, по результатам из топика хабов. Сценарий срабатывает на каждом
+ * подходящем снапшоте, и без этой таблицы анализатор отправлял бы одно и то же действие снова и снова.
+ * Таблицу на каждом экземпляре заполняет {@link ActionResultReader} результатами всех хабов.
+ * <p>
+ * На устройство хранится только последнее применённое действие: тип, значение и время. Ключ - хаб и
+ * устройство, а не хаб, устройство и действие, намеренно: действие над устройством отменяет предыдущие,
+ * и с отдельной записью на каждое действие повтор {@code ACTIVATE} подавлялся бы и после применённого
+ * следом {@code DEACTIVATE}, хотя устройство уже выключено. Сценарий в ключ тоже не входит: два сценария,
+ * требующие одного и того же от устройства, не должны отправлять его дважды. Действие
+ * не отправляется, если совпадает с ним и запись моложе {@code analyzer.action-feedback.ttl}: за это время
+ * состояние устройства могли поменять в обход сценариев, и после него действие отправляется снова.
+ * {@code INVERSE} не подавляется и стирает запись, как и неудавшаяся доставка: состояние устройства
+ * после них неизвестно.
+ */
+@Component
+public class AppliedActions {
+    private final boolean enabled;
+    private final long ttl;
+    private final Map<String, Map<String, AppliedAction>> hubs = new ConcurrentHashMap<>();
+    private final Counter suppressed;
+
+    public AppliedActions(@Value("${analyzer.action-feedback.enabled:true}") boolean enabled,
+                          @Value("${analyzer.action-feedback.ttl:10m}") Duration ttl,
+                          MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.ttl = ttl.toMillis();
+        this.suppressed = Counter.builder("telemetry.analyzer.actions.suppressed")
+                .description("Действия сценариев, не отправленные, потому что хаб их уже применил")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Учитывает результат выполнения действия хабом.
+     *
+     * @param reportedAt время результата
+     */
+    public void record(String hubId, ActionResultEventAvro result, Instant reportedAt) {
+        if (!enabled) {
+            return;
+        }
+        DeviceActionAvro action = result.getAction();
+        Map<String, AppliedAction> devices = hubs.computeIfAbsent(hubId, hub -> new ConcurrentHashMap<>());
+        if (result.getStatus() == ActionStatusAvro.APPLIED && action.getType() != ActionTypeAvro.INVERSE) {
+            devices.put(action.getSensorId(),
+                    new AppliedAction(action.getType(), action.getValue(), reportedAt.toEpochMilli()));
+        } else {
+            devices.remove(action.getSensorId());
+        }
+    }
+
+    /**
+     * @return {@code true}, если хаб уже применил такое же действие и отправлять его не нужно
+     */
+    public boolean suppress(String hubId, DeviceActionAvro action) {
+        if (!enabled || action.getType() == ActionTypeAvro.INVERSE) {
+            return false;
+        }
+        Map<String, AppliedAction> devices = hubs.get(hubId);
+        AppliedAction applied = devices == null ? null : devices.get(action.getSensorId());
+        if (applied == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - applied.appliedAt() > ttl) {
+            devices.remove(action.getSensorId(), applied);
+            return false;
+        }
+        if (applied.type() != action.getType() || !Objects.equals(applied.value(), action.getValue())) {
+            return false;
+        }
+        suppressed.increment();
+        return true;
+    }
+
+    private record AppliedAction(ActionTypeAvro type, Integer value, long appliedAt) {
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.handlers.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.ActionResultEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+
+/**
+ * Результаты действий в группе событий хабов только пропускаются: партиции этой группы не совпадают
+ * с партициями группы снапшотов, поэтому результаты на каждом экземпляре читает
+ * {@link ru.yandex.practicum.feedback.ActionResultReader}.
+ */
+@Component
+@Slf4j
+public class ActionResultHandler implements HubEventHandler {
+
+    @Override
+    public void handle(HubEventAvro event) {
+        ActionResultEventAvro result = (ActionResultEventAvro) event.getPayload();
+        log.debug("Хаб {} сообщил результат {} действия {} над устройством {}", event.getHubId(),
+                result.getStatus(), result.getAction().getType(), result.getAction().getSensorId());
+    }
+
+    @Override
+    public String getPayloadType() {
+        return ActionResultEventAvro.class.getSimpleName();
+    }
+}
@@ -1,55 +1,117 @@
 package ru.yandex.practicum.handlers.snapshot;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.client.ScenarioActionProducer;
+import ru.yandex.practicum.feedback.AppliedActions;
+import ru.yandex.practicum.hubconfig.HubConfigStore;
 import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
 import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
 import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
 import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioConditionAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
-import ru.yandex.practicum.model.Condition;
-import ru.yandex.practicum.model.Scenario;
-import ru.yandex.practicum.repository.ActionRepository;
-import ru.yandex.practicum.repository.ConditionRepository;
-import ru.yandex.practicum.repository.ScenarioRepository;
+import ru.yandex.practicum.profiling.SnapshotEvaluationEvent;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class SnapshotHandler {
-    private final ConditionRepository conditionRepository;
-    private final ScenarioRepository scenarioRepository;
-    private final ActionRepository actionRepository;
+    private final HubConfigStore hubConfigStore;
     private final ScenarioActionProducer scenarioActionProducer;
+    private final AppliedActions appliedActions;
+    private final DistributionSummary scenariosEvaluated;
+    private final DistributionSummary scenariosFired;
+    private final Timer evaluationLatency;
+
+    public SnapshotHandler(HubConfigStore hubConfigStore, ScenarioActionProducer scenarioActionProducer,
+                           AppliedActions appliedActions, MeterRegistry meterRegistry) {
+        this.hubConfigStore = hubConfigStore;
+        this.scenarioActionProducer = scenarioActionProducer;
+        this.appliedActions = appliedActions;
+        this.scenariosEvaluated = DistributionSummary.builder("telemetry.analyzer.scenarios.evaluated")
+                .description("Число сценариев, проверенных на одном снапшоте")
+                .register(meterRegistry);
+        this.scenariosFired = DistributionSummary.builder("telemetry.analyzer.scenarios.fired")
+                .description("Число сценариев, сработавших на одном снапшоте")
+                .register(meterRegistry);
+        // включает проверку сценариев хаба и отправку действий
+        this.evaluationLatency = Timer.builder("telemetry.analyzer.evaluation")
+                .description("Время обработки снапшота анализатором")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
     public void handleSnapshot(SensorsSnapshotAvro sensorsSnapshot) {
-        log.info("Зашли в метод handleSnapshot");
-        Map<String, SensorStateAvro> sensorStateMap = sensorsSnapshot.getSensorsState();
-        List<Scenario> scenarios = scenarioRepository.findByHubId(sensorsSnapshot.getHubId());
-        scenarios.stream()
-                .filter(scenario -> handleScenario(scenario, sensorStateMap))
-                .forEach(scenario -> {
-                    log.info("send actions from scenario with name {}", scenario.getName());
-                    sendScenarioActions(scenario);
-                });
+        handleSnapshot(sensorsSnapshot, 0);
     }
 
-    private Boolean handleScenario(Scenario scenario, Map<String, SensorStateAvro> sensorStateMap) {
-        List<Condition> conditions = conditionRepository.findAllByScenario(scenario);
-        log.info("получили список кондиций {} у сценария name = {}", conditions, scenario.getName());
+    /**
+     * @param bytes размер снапшота в сериализованном виде, попадает в событие JFR
+     */
+    public void handleSnapshot(SensorsSnapshotAvro sensorsSnapshot, int bytes) {
+        Timer.Sample sample = Timer.start();
+        SnapshotEvaluationEvent event = new SnapshotEvaluationEvent();
+        event.begin();
+        Map<String, SensorStateAvro> sensorStateMap = sensorsSnapshot.getSensorsState();
+        // сценарии берутся из конфигурации хаба в памяти, без обращения к базе
+        HubConfigAvro config = hubConfigStore.get(sensorsSnapshot.getHubId());
+        List<ScenarioAddedEventAvro> scenarios = config == null ? List.of() : config.getScenarios();
+        int fired = 0;
+        for (ScenarioAddedEventAvro scenario : scenarios) {
+            List<ScenarioConditionAvro> conditions = scenario.getConditions();
+            log.trace("получили список кондиций {} у сценария name = {}", conditions, scenario.getName());
+            if (handleScenario(conditions, sensorStateMap)) {
+                log.debug("Сработал сценарий {} хаба {}", scenario.getName(), sensorsSnapshot.getHubId());
+                fired++;
+                sendScenarioActions(sensorsSnapshot.getHubId(), scenario, findTrigger(conditions, sensorStateMap));
+            }
+        }
+        scenariosEvaluated.record(scenarios.size());
+        scenariosFired.record(fired);
+        sample.stop(evaluationLatency);
+        event.end();
+        if (event.shouldCommit()) {
+            event.hubId = sensorsSnapshot.getHubId();
+            event.payloadType = "SensorsSnapshotAvro";
+            event.bytes = bytes;
+            event.scenariosEvaluated = scenarios.size();
+            event.scenariosFired = fired;
+            event.commit();
+        }
+    }
 
+    private Boolean handleScenario(List<ScenarioConditionAvro> conditions, Map<String, SensorStateAvro> sensorStateMap) {
         return conditions.stream().noneMatch(condition -> !checkCondition(condition, sensorStateMap));
     }
 
-    private Boolean checkCondition(Condition condition, Map<String, SensorStateAvro> sensorStateMap) {
-        String sensorId = condition.getSensor().getId();
+    /**
+     * Событие, запустившее сценарий, — самое свежее из показаний датчиков, участвующих в условиях.
+     * Его контекст трассировки передаётся вместе с действиями в hub-router.
+     */
+    private SensorStateAvro findTrigger(List<ScenarioConditionAvro> conditions,
+                                        Map<String, SensorStateAvro> sensorStateMap) {
+        return conditions.stream()
+                .map(condition -> sensorStateMap.get(condition.getSensorId()))
+                .filter(Objects::nonNull)
+                .max(Comparator.comparing(SensorStateAvro::getTimestamp))
+                .orElse(null);
+    }
+
+    private Boolean checkCondition(ScenarioConditionAvro condition, Map<String, SensorStateAvro> sensorStateMap) {
+        String sensorId = condition.getSensorId();
         SensorStateAvro sensorState = sensorStateMap.get(sensorId);
         if (sensorState == null) {
             return false;
@@ -85,12 +147,15 @@ public class SnapshotHandler {
         }
     }
 
-    private Boolean handleOperation(Condition condition, Integer currentValue) {
+    private Boolean handleOperation(ScenarioConditionAvro condition, Integer currentValue) {
         ConditionOperationAvro operation = condition.getOperation();
-        Integer targetValue = condition.getValue();
+        Integer targetValue = conditionValue(condition.getValue());
+        if (targetValue == null) {
+            return false;
+        }
         switch (operation) {
             case EQUALS -> {
-                return targetValue == currentValue;
+                return targetValue.equals(currentValue);
             }
             case LOWER_THAN -> {
                 return currentValue < targetValue;
@@ -104,8 +169,22 @@ public class SnapshotHandler {
         }
     }
 
-    private void sendScenarioActions(Scenario scenario) {
-        log.info("Зашли в метод sendScenarioActions");
-        actionRepository.findAllByScenario(scenario).forEach(scenarioActionProducer::sendAction);
+    /**
+     * Значение условия в схеме - int или boolean; булевы датчики сравниваются как 1 и 0.
+     */
+    private Integer conditionValue(Object value) {
+        if (value instanceof Boolean bool) {
+            return bool ? 1 : 0;
+        }
+        return (Integer) value;
+    }
+
+    private void sendScenarioActions(String hubId, ScenarioAddedEventAvro scenario, SensorStateAvro trigger) {
+        for (DeviceActionAvro action : scenario.getActions()) {
+            // действие, которое хаб уже применил, повторно не отправляется
+            if (!appliedActions.suppress(hubId, action)) {
+                scenarioActionProducer.sendAction(hubId, scenario.getName(), action, trigger);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.hubconfig;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubDeviceAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioConditionAvro;
+import ru.yandex.practicum.model.Scenario;
+import ru.yandex.practicum.model.Sensor;
+import ru.yandex.practicum.repository.ActionRepository;
+import ru.yandex.practicum.repository.ConditionRepository;
+import ru.yandex.practicum.repository.ScenarioRepository;
+import ru.yandex.practicum.repository.SensorRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Заполняет конфигурации хабов при старте анализатора одним проходом по компактному топику.
+ * <p>
+ * Если топик пуст, а в базе уже есть устройства или сценарии (первый запуск после появления топика),
+ * конфигурации собираются из базы и записываются в топик. У таких конфигураций нет смещения
+ * и время равно началу эпохи, поэтому любая запись, основанная на событии хаба, считается новее.
+ */
+@Slf4j
+@Component
+public class HubConfigBootstrap {
+    private final HubConfigReader reader;
+    private final HubConfigStore store;
+    private final HubConfigPublisher publisher;
+    private final SensorRepository sensorRepository;
+    private final ScenarioRepository scenarioRepository;
+    private final ConditionRepository conditionRepository;
+    private final ActionRepository actionRepository;
+    private final Duration timeout;
+
+    public HubConfigBootstrap(HubConfigReader reader, HubConfigStore store, HubConfigPublisher publisher,
+                              SensorRepository sensorRepository, ScenarioRepository scenarioRepository,
+                              ConditionRepository conditionRepository, ActionRepository actionRepository,
+                              @Value("${analyzer.hub-config.bootstrap-timeout:2m}") Duration timeout) {
+        this.reader = reader;
+        this.store = store;
+        this.publisher = publisher;
+        this.sensorRepository = sensorRepository;
+        this.scenarioRepository = scenarioRepository;
+        this.conditionRepository = conditionRepository;
+        this.actionRepository = actionRepository;
+        this.timeout = timeout;
+    }
+
+    public void run() {
+        long started = System.nanoTime();
+        if (!reader.awaitCaughtUp(null, timeout)) {
+            log.error("Топик конфигураций хабов не прочитан за {}, анализатор стартует с {} хабами",
+                    timeout, store.size());
+            return;
+        }
+        log.info("Конфигурации {} хабов загружены из топика за {} мс",
+                store.size(), Duration.ofNanos(System.nanoTime() - started).toMillis());
+        if (store.size() == 0) {
+            seedFromDatabase();
+        }
+    }
+
+    private void seedFromDatabase() {
+        Map<String, List<HubDeviceAvro>> devices = new HashMap<>();
+        for (Sensor sensor : sensorRepository.findAll()) {
+            devices.computeIfAbsent(sensor.getHubId(), hub -> new ArrayList<>())
+                    .add(new HubDeviceAvro(sensor.getId(), null));
+        }
+        Map<String, List<ScenarioAddedEventAvro>> scenarios = new HashMap<>();
+        for (Scenario scenario : scenarioRepository.findAll()) {
+            scenarios.computeIfAbsent(scenario.getHubId(), hub -> new ArrayList<>()).add(toAvro(scenario));
+        }
+        if (devices.isEmpty() && scenarios.isEmpty()) {
+            return;
+        }
+
+        List<String> hubIds = new ArrayList<>(devices.keySet());
+        scenarios.keySet().stream().filter(hubId -> !devices.containsKey(hubId)).forEach(hubIds::add);
+        for (String hubId : hubIds) {
+            HubConfigAvro config = HubConfigAvro.newBuilder()
+                    .setHubId(hubId)
+                    .setUpdatedAt(Instant.EPOCH)
+                    .setSourcePartition(-1)
+                    .setSourceOffset(-1)
+                    .setDevices(devices.getOrDefault(hubId, List.of()))
+                    .setScenarios(scenarios.getOrDefault(hubId, List.of()))
+                    .build();
+            store.restore(config);
+            publisher.publish(config);
+        }
+        log.info("Топик конфигураций хабов пуст, конфигурации {} хабов перенесены из базы", hubIds.size());
+    }
+
+    private ScenarioAddedEventAvro toAvro(Scenario scenario) {
+        return ScenarioAddedEventAvro.newBuilder()
+                .setName(scenario.getName())
+                .setConditions(conditionRepository.findAllByScenario(scenario).stream()
+                        .map(condition -> ScenarioConditionAvro.newBuilder()
+                                .setSensorId(condition.getSensor().getId())
+                                .setType(condition.getType())
+                                .setOperation(condition.getOperation())
+                                .setValue(condition.getValue())
+                                .build())
+                        .toList())
+                .setActions(actionRepository.findAllByScenario(scenario).stream()
+                        .map(action -> DeviceActionAvro.newBuilder()
+                                .setSensorId(action.getSensor().getId())
+                                .setType(action.getType())
+                                .setValue(action.getValue())
+                                .build())
+                        .toList())
+                .build();
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.hubconfig;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+
+import java.time.Duration;
+
+/**
+ * Записывает текущую конфигурацию хаба в компактный топик с ключом - идентификатором хаба.
+ * Брокер хранит только последнюю запись каждого хаба, поэтому топик читается за время,
+ * зависящее от числа хабов, а не от длины истории топика хабов.
+ */
+@Slf4j
+public class HubConfigPublisher implements AutoCloseable {
+    private final Producer<String, SpecificRecordBase> producer;
+    private final String topic;
+    private final Counter errors;
+
+    public HubConfigPublisher(Producer<String, SpecificRecordBase> producer, String topic, MeterRegistry meterRegistry) {
+        this.producer = producer;
+        this.topic = topic;
+        this.errors = Counter.builder("telemetry.analyzer.hub-config.publish.errors")
+                .description("Конфигурации хабов, которые не удалось записать в компактный топик")
+                .register(meterRegistry);
+    }
+
+    public void publish(HubConfigAvro config) {
+        producer.send(new ProducerRecord<>(topic, config.getHubId(), config), (metadata, exception) -> {
+            if (exception != null) {
+                // топик догонит следующее событие этого хаба, до тех пор новые экземпляры получат старую версию
+                errors.increment();
+                log.warn("Не удалось записать конфигурацию хаба {} в топик {}", config.getHubId(), topic, exception);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        producer.close(Duration.ofSeconds(10));
+    }
+}
@@ -0,0 +1,164 @@
+package ru.yandex.practicum.hubconfig;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Читает компактный топик конфигураций хабов с начала и дальше следит за ним, применяя записи
+ * к {@link HubConfigStore}. Так экземпляр узнаёт об изменениях хабов, которые обрабатывает другой
+ * экземпляр, и получает их актуальную конфигурацию, когда партиции переходят к нему.
+ * <p>
+ * Консьюмер используется только потоком чтения. Ожидающие потоки передают ему запрос, поток
+ * запоминает текущие последние смещения нужных партиций и отпускает запрос, когда дочитает до них.
+ */
+@Slf4j
+public class HubConfigReader implements AutoCloseable {
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    private final Consumer<String, HubConfigAvro> consumer;
+    private final HubConfigStore store;
+    private final String topic;
+    private final Thread thread;
+    private final Queue<CatchUp> requests = new ConcurrentLinkedQueue<>();
+    private final List<CatchUp> waiting = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public HubConfigReader(Consumer<String, HubConfigAvro> consumer, HubConfigStore store, String topic) {
+        this.consumer = consumer;
+        this.store = store;
+        this.topic = topic;
+        this.thread = new Thread(this::run, "hub-config-reader");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Ждёт, пока будут прочитаны все записи, которые уже были в топике на момент вызова.
+     *
+     * @param partitions номера партиций; {@code null} - все партиции топика
+     * @return {@code false}, если не дождались за {@code timeout}
+     */
+    public boolean awaitCaughtUp(Collection<Integer> partitions, Duration timeout) {
+        if (!running) {
+            return false;
+        }
+        CatchUp request = new CatchUp(partitions);
+        requests.add(request);
+        try {
+            return request.done.await(timeout.toMillis(), TimeUnit.MILLISECONDS) && request.caughtUp;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Ждёт, пока будут дочитаны партиции с теми же номерами, что и партиции, назначенные консьюмеру
+     * топика хабов или снапшотов: все топики телеметрии раскладываются по партициям одинаково.
+     */
+    public void awaitAssigned(Collection<TopicPartition> assigned, Duration timeout) {
+        List<Integer> partitions = assigned.stream().map(TopicPartition::partition).distinct().toList();
+        if (!awaitCaughtUp(partitions, timeout)) {
+            log.warn("Конфигурации хабов партиций {} не дочитаны за {}, продолжаем с имеющимися", partitions, timeout);
+        }
+    }
+
+    private void run() {
+        try {
+            List<TopicPartition> partitions = consumer.partitionsFor(topic).stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            consumer.seekToBeginning(partitions);
+            log.info("Читаем конфигурации хабов из топика {}, партиций: {}", topic, partitions.size());
+
+            while (running) {
+                acceptRequests(partitions);
+                for (ConsumerRecord<String, HubConfigAvro> record : consumer.poll(POLL_TIMEOUT)) {
+                    if (record.value() != null) {
+                        store.restore(record.value());
+                    }
+                }
+                releaseCaughtUp();
+            }
+        } catch (WakeupException ignored) {
+            // остановка через close()
+        } catch (Exception e) {
+            log.error("Чтение топика конфигураций хабов {} остановлено из-за ошибки", topic, e);
+        } finally {
+            running = false;
+            waiting.forEach(CatchUp::fail);
+            requests.forEach(CatchUp::fail);
+            consumer.close();
+        }
+    }
+
+    private void acceptRequests(List<TopicPartition> partitions) {
+        for (CatchUp request = requests.peek(); request != null; request = requests.peek()) {
+            try {
+                request.targets = consumer.endOffsets(request.select(partitions));
+            } catch (RuntimeException e) {
+                log.warn("Не удалось получить последние смещения топика {}, повторим", topic, e);
+                return;
+            }
+            requests.poll();
+            waiting.add(request);
+        }
+    }
+
+    private void releaseCaughtUp() {
+        waiting.removeIf(request -> {
+            for (Map.Entry<TopicPartition, Long> target : request.targets.entrySet()) {
+                if (consumer.position(target.getKey()) < target.getValue()) {
+                    return false;
+                }
+            }
+            request.caughtUp = true;
+            request.done.countDown();
+            return true;
+        });
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        consumer.wakeup();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private static final class CatchUp {
+        final Collection<Integer> partitions;
+        final CountDownLatch done = new CountDownLatch(1);
+        Map<TopicPartition, Long> targets;
+        volatile boolean caughtUp;
+
+        CatchUp(Collection<Integer> partitions) {
+            this.partitions = partitions;
+        }
+
+        List<TopicPartition> select(List<TopicPartition> all) {
+            return partitions == null ? all : all.stream().filter(tp -> partitions.contains(tp.partition())).toList();
+        }
+
+        void fail() {
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ru.yandex.practicum.hubconfig;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.ActionResultEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceRemovedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubDeviceAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioRemovedEventAvro;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Конфигурации хабов в памяти анализатора: устройства и сценарии, по которым проверяются снапшоты.
+ * <p>
+ * Конфигурация помнит партицию и смещение последнего учтённого события топика хабов. Поэтому повторно
+ * прочитанные события и собственные записи, вернувшиеся из компактного топика, ничего не меняют,
+ * а запись другого экземпляра применяется, только если она новее. Записанная конфигурация не изменяется:
+ * каждое событие создаёт новую, и читатели снапшотов работают без блокировок.
+ * <p>
+ * Как и при записи в базу, условия и действия нового сценария сохраняются, только если все их датчики
+ * зарегистрированы на этом хабе, иначе сценарий не сработает на показаниях чужих или неизвестных устройств.
+ */
+@Component
+public class HubConfigStore {
+    private final Map<String, HubConfigAvro> configs = new ConcurrentHashMap<>();
+
+    /**
+     * @return конфигурация хаба или {@code null}, если хаб ничего не регистрировал
+     */
+    public HubConfigAvro get(String hubId) {
+        return configs.get(hubId);
+    }
+
+    /**
+     * Применяет событие хаба, прочитанное из топика хабов.
+     *
+     * @return новая конфигурация хаба или {@code null}, если событие уже учтено или не меняет конфигурацию
+     */
+    public HubConfigAvro apply(HubEventAvro event, int partition, long offset) {
+        // результаты действий идут тем же топиком, но конфигурацию хаба не меняют
+        if (event.getPayload() instanceof ActionResultEventAvro) {
+            return null;
+        }
+        HubConfigAvro[] updated = new HubConfigAvro[1];
+        configs.compute(event.getHubId(), (hubId, current) -> {
+            if (current != null && current.getSourcePartition() == partition && current.getSourceOffset() >= offset) {
+                return current;
+            }
+            updated[0] = applyEvent(current, event, partition, offset);
+            return updated[0];
+        });
+        return updated[0];
+    }
+
+    /**
+     * Применяет конфигурацию, прочитанную из компактного топика.
+     *
+     * @return {@code true}, если конфигурация новее той, что уже есть
+     */
+    public boolean restore(HubConfigAvro config) {
+        boolean[] restored = new boolean[1];
+        configs.compute(config.getHubId(), (hubId, current) -> {
+            restored[0] = current == null || isNewer(config, current);
+            return restored[0] ? config : current;
+        });
+        return restored[0];
+    }
+
+    public int size() {
+        return configs.size();
+    }
+
+    /**
+     * Смещения сравнимы только внутри одной партиции. Если хаб сменил партицию, например после добавления
+     * партиций в топик, сравнивается время последнего события.
+     */
+    private static boolean isNewer(HubConfigAvro candidate, HubConfigAvro current) {
+        if (candidate.getSourcePartition() == current.getSourcePartition()) {
+            return candidate.getSourceOffset() > current.getSourceOffset();
+        }
+        return candidate.getUpdatedAt().isAfter(current.getUpdatedAt());
+    }
+
+    private static HubConfigAvro applyEvent(HubConfigAvro current, HubEventAvro event, int partition, long offset) {
+        List<HubDeviceAvro> devices = current == null ? new ArrayList<>() : new ArrayList<>(current.getDevices());
+        List<ScenarioAddedEventAvro> scenarios =
+                current == null ? new ArrayList<>() : new ArrayList<>(current.getScenarios());
+
+        switch (event.getPayload()) {
+            case DeviceAddedEventAvro added -> {
+                devices.removeIf(device -> device.getId().equals(added.getId()));
+                devices.add(new HubDeviceAvro(added.getId(), added.getType()));
+            }
+            case DeviceRemovedEventAvro removed -> devices.removeIf(device -> device.getId().equals(removed.getId()));
+            case ScenarioAddedEventAvro added -> {
+                // сценарий с тем же именем заменяется целиком
+                scenarios.removeIf(scenario -> scenario.getName().equals(added.getName()));
+                scenarios.add(withRegisteredDevices(added, devices));
+            }
+            case ScenarioRemovedEventAvro removed ->
+                    scenarios.removeIf(scenario -> scenario.getName().equals(removed.getName()));
+            default -> throw new IllegalArgumentException("Неизвестное событие хаба: " + event.getPayload());
+        }
+
+        return HubConfigAvro.newBuilder()
+                .setHubId(event.getHubId())
+                .setUpdatedAt(event.getTimestamp())
+                .setSourcePartition(partition)
+                .setSourceOffset(offset)
+                .setDevices(devices)
+                .setScenarios(scenarios)
+                .build();
+    }
+
+    private static ScenarioAddedEventAvro withRegisteredDevices(ScenarioAddedEventAvro scenario,
+                                                                List<HubDeviceAvro> devices) {
+        Set<String> registered = devices.stream().map(HubDeviceAvro::getId).collect(Collectors.toSet());
+        boolean conditionsRegistered = scenario.getConditions().stream()
+                .allMatch(condition -> registered.contains(condition.getSensorId()));
+        boolean actionsRegistered = scenario.getActions().stream()
+                .allMatch(action -> registered.contains(action.getSensorId()));
+        if (conditionsRegistered && actionsRegistered) {
+            return scenario;
+        }
+        return ScenarioAddedEventAvro.newBuilder(scenario)
+                .setConditions(conditionsRegistered ? scenario.getConditions() : List.of())
+                .setActions(actionsRegistered ? scenario.getActions() : List.of())
+                .build();
+    }
+}
@@ -1,21 +1,25 @@
 package ru.yandex.practicum.processors;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
-import org.apache.kafka.clients.consumer.OffsetAndMetadata;
-import org.apache.kafka.common.TopicPartition;
-import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.handlers.event.HubEventHandler;
 import ru.yandex.practicum.handlers.event.HubEventHandlers;
+import ru.yandex.practicum.hubconfig.HubConfigPublisher;
+import ru.yandex.practicum.hubconfig.HubConfigReader;
+import ru.yandex.practicum.hubconfig.HubConfigStore;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
 import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+import ru.yandex.practicum.telemetry.common.kafka.consumer.ConsumerEngineProperties;
+import ru.yandex.practicum.telemetry.common.kafka.consumer.KafkaConsumerEngine;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
 
 import java.time.Duration;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -23,76 +27,73 @@ import java.util.Map;
 @Component
 @RequiredArgsConstructor
 public class HubEventProcessor implements Runnable {
-    private final KafkaConsumer<String, HubEventAvro> hubConsumer;
+    private final Consumer<String, HubEventAvro> hubConsumer;
     private final HubEventHandlers handlers;
+    private final ConsumerEngineProperties engineProperties;
+    private final MeterRegistry meterRegistry;
+    private final HubConfigStore hubConfigStore;
+    private final HubConfigPublisher hubConfigPublisher;
+    private final HubConfigReader hubConfigReader;
+    private final LogSampler logSampler;
     @Value("${kafka.topics.hubs}")
     private String hubsTopic;
-    private static final Map<TopicPartition, OffsetAndMetadata> currentOffsets = new HashMap<>();
+    @Value("${analyzer.hub-config.catch-up-timeout:30s}")
+    private Duration catchUpTimeout;
+    private KafkaConsumerEngine<String, HubEventAvro> engine;
 
 
     @Override
     public void run() {
-        try {
-            hubConsumer.subscribe(List.of(hubsTopic));
-            log.info("Подписались на топик хабов");
-            Runtime.getRuntime().addShutdownHook(new Thread(hubConsumer::wakeup));
-
-            while (true) {
-
-                ConsumerRecords<String, HubEventAvro> records = hubConsumer.poll(Duration.ofMillis(1000));
+        engine = new KafkaConsumerEngine<>("analyzer-hubs", hubConsumer, List.of(hubsTopic),
+                records -> records.forEach(this::handleRecord), engineProperties, meterRegistry);
+        // события новых партиций применяются к конфигурации, которую записал их прежний владелец
+        engine.setAssignmentListener(assigned -> hubConfigReader.awaitAssigned(assigned, catchUpTimeout));
+        engine.run();
+    }
 
-                int count = 0;
-                for (ConsumerRecord<String, HubEventAvro> record : records) {
-                    // обрабатываем очередную запись
-                    handleRecord(record);
-                    // фиксируем оффсеты обработанных записей, если нужно
-                    manageOffsets(record, count, hubConsumer);
-                    count++;
-                }
-                // фиксируем максимальный оффсет обработанных записей
-                hubConsumer.commitAsync();
-                log.info("Смещения зафиксированы - хаб");
-            }
-        } catch (WakeupException ignored) {
-        } catch (Exception e) {
-            log.error("Ошибка чтения данных из топика {}", hubsTopic);
-        } finally {
-            try {
-                hubConsumer.commitSync();
-            } finally {
-                hubConsumer.close();
-            }
+    @PreDestroy
+    public void stop() {
+        if (engine != null) {
+            engine.close();
         }
     }
 
-    private static void manageOffsets(ConsumerRecord<String, HubEventAvro> record, int count, KafkaConsumer<String, HubEventAvro> consumer) {
-        // обновляем текущий оффсет для топика-партиции
-        currentOffsets.put(
-                new TopicPartition(record.topic(), record.partition()),
-                new OffsetAndMetadata(record.offset() + 1)
-        );
-
-        if(count % 10 == 0) {
-            consumer.commitAsync(currentOffsets, (offsets, exception) -> {
-                if(exception != null) {
-                    log.warn("Ошибка во время фиксации оффсетов: {}", offsets, exception);
-                }
-            });
+    private void handleRecord(ConsumerRecord<String, HubEventAvro> record) {
+        if (logSampler.sample(log)) {
+            log.debug("топик = {}, партиция = {}, смещение = {}, значение: {}",
+                    record.topic(), record.partition(), record.offset(), record.value());
+        }
+        HubEventAvro event = record.value();
+        // ошибка одного события не должна прерывать остальные события пачки: движок всё равно
+        // зафиксирует смещение всей пачки
+        try {
+            applyEvent(event, record.partition(), record.offset());
+        } catch (Exception e) {
+            log.error("Ошибка во время обработки события хаба {}, партиция = {}, смещение = {}",
+                    event.getHubId(), record.partition(), record.offset(), e);
         }
     }
 
-    private void handleRecord(ConsumerRecord<String, HubEventAvro> record) throws InterruptedException {
-        log.info("топик = {}, партиция = {}, смещение = {}, значение: {}\n",
-                record.topic(), record.partition(), record.offset(), record.value());
+    private void applyEvent(HubEventAvro event, int partition, long offset) {
         Map<String, HubEventHandler> handlerMap = handlers.getHandlers();
-        HubEventAvro event = record.value();
         String payloadName = event.getPayload().getClass().getSimpleName();
-        log.info("Получили сообщение хаба типа: {}", payloadName);
-
-        if (handlerMap.containsKey(payloadName)) {
-            handlerMap.get(payloadName).handle(event);
-        } else {
+        HubEventHandler handler = handlerMap.get(payloadName);
+        if (handler == null) {
             throw new IllegalArgumentException("Не могу найти обработчик для события " + event);
         }
+
+        // сценарии проверяются по конфигурации в памяти, поэтому она обновляется первой: ошибка базы
+        // не должна терять событие, смещение которого движок всё равно зафиксирует
+        HubConfigAvro config = hubConfigStore.apply(event, partition, offset);
+        if (config != null) {
+            hubConfigPublisher.publish(config);
+        }
+
+        try {
+            handler.handle(event);
+        } catch (Exception e) {
+            log.error("Событие хаба {} не записано в базу, партиция = {}, смещение = {}; конфигурация в памяти обновлена",
+                    event.getHubId(), partition, offset, e);
+        }
     }
-}
\ No newline at end of file
+}
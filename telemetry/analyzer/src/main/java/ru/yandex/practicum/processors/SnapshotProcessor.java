@@ -1,22 +1,22 @@
 package ru.yandex.practicum.processors;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
-import org.apache.kafka.clients.consumer.OffsetAndMetadata;
-import org.apache.kafka.common.TopicPartition;
-import org.apache.kafka.common.errors.WakeupException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.handlers.snapshot.SnapshotHandler;
+import ru.yandex.practicum.hubconfig.HubConfigReader;
 import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.telemetry.common.kafka.consumer.ConsumerEngineProperties;
+import ru.yandex.practicum.telemetry.common.kafka.consumer.KafkaConsumerEngine;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
 
 import java.time.Duration;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @Slf4j
 @Component
@@ -24,69 +24,41 @@ import java.util.Map;
 public class SnapshotProcessor {
     private final KafkaConsumer<String, SensorsSnapshotAvro> snapshotConsumer;
     private final SnapshotHandler snapshotHandler;
+    private final ConsumerEngineProperties engineProperties;
+    private final MeterRegistry meterRegistry;
+    private final LogSampler logSampler;
+    private final HubConfigReader hubConfigReader;
     @Value("${kafka.topics.snapshots}")
     private String snapshotsTopic;
-    private static final Map<TopicPartition, OffsetAndMetadata> currentOffsets = new HashMap<>();
+    @Value("${analyzer.hub-config.catch-up-timeout:30s}")
+    private Duration catchUpTimeout;
+    private KafkaConsumerEngine<String, SensorsSnapshotAvro> engine;
 
     public void start() {
-        try {
-            snapshotConsumer.subscribe(List.of(snapshotsTopic));
-            log.info("Подписались на топик снапшотов");
-
-            Runtime.getRuntime().addShutdownHook(new Thread(snapshotConsumer::wakeup));
-            log.info("Добавили wakeup");
-
-            while (true) {
-                ConsumerRecords<String, SensorsSnapshotAvro> records =
-                        snapshotConsumer.poll(Duration.ofMillis(1000));
-
-                int count = 0;
-                for (ConsumerRecord<String, SensorsSnapshotAvro> record : records) {
-                    // обрабатываем очередную запись
-                    handleRecord(record);
-                    // фиксируем оффсеты обработанных записей, если нужно
-                    manageOffsets(record, count, snapshotConsumer);
-                    count++;
-                }
-                // фиксируем максимальный оффсет обработанных записей
-                snapshotConsumer.commitAsync();
-                log.info("Смещения зафиксированы - снапшот");
-            }
-        } catch (WakeupException ignored) {
-        } catch (Exception e) {
-            log.error("Ошибка во время обработки снапшота", e);
-        } finally {
-            try {
-                snapshotConsumer.commitSync();
-            } finally {
-                snapshotConsumer.close();
-            }
-        }
+        engine = new KafkaConsumerEngine<>("analyzer-snapshots", snapshotConsumer, List.of(snapshotsTopic),
+                records -> records.forEach(this::handleRecord), engineProperties, meterRegistry);
+        // снапшоты новых партиций проверяются по актуальным конфигурациям их хабов
+        engine.setAssignmentListener(assigned -> hubConfigReader.awaitAssigned(assigned, catchUpTimeout));
+        engine.run();
     }
 
-    private static void manageOffsets(ConsumerRecord<String, SensorsSnapshotAvro> record, int count, KafkaConsumer<String, SensorsSnapshotAvro> consumer) {
-        // обновляем текущий оффсет для топика-партиции
-        currentOffsets.put(
-                new TopicPartition(record.topic(), record.partition()),
-                new OffsetAndMetadata(record.offset() + 1)
-        );
-
-        if(count % 10 == 0) {
-            consumer.commitAsync(currentOffsets, (offsets, exception) -> {
-                if(exception != null) {
-                    log.warn("Ошибка во время фиксации оффсетов: {}", offsets, exception);
-                }
-            });
+    @PreDestroy
+    public void stop() {
+        if (engine != null) {
+            engine.close();
         }
     }
 
-    private void handleRecord(ConsumerRecord<String, SensorsSnapshotAvro> record) throws InterruptedException {
-        log.info("топик = {}, партиция = {}, смещение = {}, значение: {}\n",
-                record.topic(), record.partition(), record.offset(), record.value());
+    private void handleRecord(ConsumerRecord<String, SensorsSnapshotAvro> record) {
+        if (logSampler.sample(log)) {
+            log.debug("топик = {}, партиция = {}, смещение = {}, значение: {}",
+                    record.topic(), record.partition(), record.offset(), record.value());
+        }
         SensorsSnapshotAvro sensorsSnapshot = record.value();
-        log.info("Получили снимок состояния умного дома: {}", sensorsSnapshot);
-
-        snapshotHandler.handleSnapshot(sensorsSnapshot);
-        log.info("Передали в метод snapshotHandler.handleSnapshot: {}", sensorsSnapshot);
+        try {
+            snapshotHandler.handleSnapshot(sensorsSnapshot, record.serializedValueSize());
+        } catch (Exception e) {
+            log.error("Ошибка во время обработки снапшота хаба {}", sensorsSnapshot.getHubId(), e);
+        }
     }
-}
\ No newline at end of file
+}
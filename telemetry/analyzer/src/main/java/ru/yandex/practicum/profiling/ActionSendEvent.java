@@ -0,0 +1,18 @@
+package ru.yandex.practicum.profiling;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import ru.yandex.practicum.telemetry.common.profiling.StageEvent;
+
+/**
+ * Событие JFR для отправки действия сценария в hub-router.
+ */
+@Name("ru.yandex.practicum.telemetry.ActionSend")
+@Label("Action Send")
+public class ActionSendEvent extends StageEvent {
+    @Label("Scenario")
+    public String scenarioName;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.profiling;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import ru.yandex.practicum.telemetry.common.profiling.StageEvent;
+
+/**
+ * Событие JFR для проверки сценариев хаба на очередном снапшоте.
+ */
+@Name("ru.yandex.practicum.telemetry.SnapshotEvaluation")
+@Label("Snapshot Evaluation")
+public class SnapshotEvaluationEvent extends StageEvent {
+    @Label("Scenarios Evaluated")
+    public int scenariosEvaluated;
+
+    @Label("Scenarios Fired")
+    public int scenariosFired;
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.feedback;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.ActionStatusAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceRemovedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.feedback.AppliedActionsTest.action;
+import static ru.yandex.practicum.feedback.AppliedActionsTest.result;
+
+class ActionResultReaderTest {
+    private static final String TOPIC = "telemetry.hubs.v1";
+    private static final TopicPartition RECENT = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition IDLE = new TopicPartition(TOPIC, 1);
+
+    @Test
+    void feedsResultsOfAllHubsIntoAppliedActions() throws InterruptedException {
+        AppliedActions appliedActions = new AppliedActions(true, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        MockConsumer<String, HubEventAvro> consumer = new MockConsumer<>(OffsetResetStrategy.NONE) {
+            @Override
+            public synchronized Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(
+                    Map<TopicPartition, Long> timestamps) {
+                // в партиции без записей за последние ttl брокер не возвращает смещения
+                Map<TopicPartition, OffsetAndTimestamp> offsets = new HashMap<>();
+                offsets.put(RECENT, new OffsetAndTimestamp(3, timestamps.get(RECENT)));
+                offsets.put(IDLE, null);
+                return offsets;
+            }
+        };
+        consumer.updatePartitions(TOPIC, List.of(new PartitionInfo(TOPIC, 0, null, null, null),
+                new PartitionInfo(TOPIC, 1, null, null, null)));
+        consumer.updateEndOffsets(Map.of(RECENT, 5L, IDLE, 7L));
+        Instant now = Instant.now();
+        consumer.schedulePollTask(() -> {
+            consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, 3, "hub-1",
+                    new HubEventAvro("hub-1", now, new DeviceRemovedEventAvro("old-lamp"))));
+            consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, 4, "hub-1", new HubEventAvro("hub-1", now,
+                    result(action("lamp", ActionTypeAvro.SET_VALUE, 50), ActionStatusAvro.APPLIED))));
+            consumer.addRecord(new ConsumerRecord<>(TOPIC, 1, 7, "hub-2", new HubEventAvro("hub-2", now,
+                    result(action("switch", ActionTypeAvro.ACTIVATE, null), ActionStatusAvro.APPLIED))));
+        });
+
+        ActionResultReader reader = new ActionResultReader(consumer, appliedActions, TOPIC, Duration.ofMinutes(10));
+        reader.start();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!appliedActions.suppress("hub-2", action("switch", ActionTypeAvro.ACTIVATE, null))
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(appliedActions.suppress("hub-1", action("lamp", ActionTypeAvro.SET_VALUE, 50))).isTrue();
+            assertThat(appliedActions.suppress("hub-2", action("switch", ActionTypeAvro.ACTIVATE, null))).isTrue();
+            assertThat(consumer.position(RECENT)).isEqualTo(5);
+        } finally {
+            reader.close();
+        }
+        assertThat(consumer.closed()).isTrue();
+    }
+}
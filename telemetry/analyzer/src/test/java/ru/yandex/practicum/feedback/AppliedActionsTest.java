@@ -0,0 +1,92 @@
+package ru.yandex.practicum.feedback;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.ActionResultEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ActionStatusAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AppliedActionsTest {
+    private static final String HUB = "hub-1";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AppliedActions appliedActions = new AppliedActions(true, Duration.ofMinutes(10), meterRegistry);
+
+    @Test
+    void suppressesActionHubAlreadyApplied() {
+        appliedActions.record(HUB, result(action("lamp", ActionTypeAvro.SET_VALUE, 50), ActionStatusAvro.APPLIED),
+                Instant.now());
+
+        assertThat(appliedActions.suppress(HUB, action("lamp", ActionTypeAvro.SET_VALUE, 50))).isTrue();
+        assertThat(appliedActions.suppress(HUB, action("lamp", ActionTypeAvro.SET_VALUE, 60))).isFalse();
+        assertThat(appliedActions.suppress(HUB, action("fan", ActionTypeAvro.SET_VALUE, 50))).isFalse();
+        assertThat(appliedActions.suppress("hub-2", action("lamp", ActionTypeAvro.SET_VALUE, 50))).isFalse();
+        assertThat(meterRegistry.counter("telemetry.analyzer.actions.suppressed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void laterActionOnDeviceReplacesEarlierOne() {
+        appliedActions.record(HUB, result(action("switch", ActionTypeAvro.ACTIVATE, null), ActionStatusAvro.APPLIED),
+                Instant.now());
+        appliedActions.record(HUB, result(action("switch", ActionTypeAvro.DEACTIVATE, null), ActionStatusAvro.APPLIED),
+                Instant.now());
+
+        // устройство уже выключено, поэтому ACTIVATE нужно отправить снова
+        assertThat(appliedActions.suppress(HUB, action("switch", ActionTypeAvro.ACTIVATE, null))).isFalse();
+        assertThat(appliedActions.suppress(HUB, action("switch", ActionTypeAvro.DEACTIVATE, null))).isTrue();
+    }
+
+    @Test
+    void failedOrInverseResultForgetsDevice() {
+        appliedActions.record(HUB, result(action("switch", ActionTypeAvro.ACTIVATE, null), ActionStatusAvro.APPLIED),
+                Instant.now());
+        appliedActions.record(HUB, result(action("switch", ActionTypeAvro.INVERSE, null), ActionStatusAvro.APPLIED),
+                Instant.now());
+        assertThat(appliedActions.suppress(HUB, action("switch", ActionTypeAvro.ACTIVATE, null))).isFalse();
+
+        appliedActions.record(HUB, result(action("lamp", ActionTypeAvro.SET_VALUE, 50), ActionStatusAvro.APPLIED),
+                Instant.now());
+        appliedActions.record(HUB, result(action("lamp", ActionTypeAvro.SET_VALUE, 50), ActionStatusAvro.FAILED),
+                Instant.now());
+        assertThat(appliedActions.suppress(HUB, action("lamp", ActionTypeAvro.SET_VALUE, 50))).isFalse();
+    }
+
+    @Test
+    void neverSuppressesInverse() {
+        appliedActions.record(HUB, result(action("relay", ActionTypeAvro.INVERSE, null), ActionStatusAvro.APPLIED),
+                Instant.now());
+
+        assertThat(appliedActions.suppress(HUB, action("relay", ActionTypeAvro.INVERSE, null))).isFalse();
+    }
+
+    @Test
+    void sendsActionAgainAfterTtl() {
+        appliedActions.record(HUB, result(action("lamp", ActionTypeAvro.SET_VALUE, 50), ActionStatusAvro.APPLIED),
+                Instant.now().minus(Duration.ofMinutes(11)));
+
+        assertThat(appliedActions.suppress(HUB, action("lamp", ActionTypeAvro.SET_VALUE, 50))).isFalse();
+    }
+
+    @Test
+    void suppressesNothingWhenDisabled() {
+        AppliedActions disabled = new AppliedActions(false, Duration.ofMinutes(10), meterRegistry);
+        disabled.record(HUB, result(action("lamp", ActionTypeAvro.SET_VALUE, 50), ActionStatusAvro.APPLIED),
+                Instant.now());
+
+        assertThat(disabled.suppress(HUB, action("lamp", ActionTypeAvro.SET_VALUE, 50))).isFalse();
+    }
+
+    static DeviceActionAvro action(String sensorId, ActionTypeAvro type, Integer value) {
+        return new DeviceActionAvro(sensorId, type, value);
+    }
+
+    static ActionResultEventAvro result(DeviceActionAvro action, ActionStatusAvro status) {
+        return new ActionResultEventAvro("scenario", action, status);
+    }
+}
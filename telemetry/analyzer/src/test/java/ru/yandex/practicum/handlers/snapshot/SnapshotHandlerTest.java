@@ -0,0 +1,117 @@
+package ru.yandex.practicum.handlers.snapshot;
+
+import com.google.protobuf.Empty;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.client.ScenarioActionProducer;
+import ru.yandex.practicum.feedback.AppliedActions;
+import ru.yandex.practicum.grpc.telemetry.hubrouter.HubRouterControllerGrpc;
+import ru.yandex.practicum.hubconfig.HubConfigStore;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubDeviceAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioConditionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SnapshotHandlerTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HubConfigStore hubConfigStore = new HubConfigStore();
+    private final HubRouterControllerGrpc.HubRouterControllerBlockingStub hubRouter =
+            mock(HubRouterControllerGrpc.HubRouterControllerBlockingStub.class);
+    private final SnapshotHandler handler = new SnapshotHandler(hubConfigStore,
+            new ScenarioActionProducer(hubRouter, meterRegistry),
+            new AppliedActions(true, Duration.ofMinutes(10), meterRegistry), meterRegistry);
+
+    @Test
+    void registersEvaluationAndSendMeters() {
+        assertThat(meterRegistry.get("telemetry.analyzer.scenarios.evaluated").summary().count()).isZero();
+        assertThat(meterRegistry.get("telemetry.analyzer.scenarios.fired").summary().count()).isZero();
+        assertThat(meterRegistry.get("telemetry.analyzer.evaluation").timer().count()).isZero();
+        assertThat(meterRegistry.get("telemetry.analyzer.action.send").timers())
+                .extracting(timer -> timer.getId().getTag("outcome"))
+                .containsExactlyInAnyOrder("success", "failure");
+        assertThat(meterRegistry.get("telemetry.pipeline.stage.latency").tag("stage", "analyzer").timer().count())
+                .isZero();
+    }
+
+    @Test
+    void recordsScenariosEvaluatedAndFiredPerSnapshot() {
+        hubConfigStore.restore(config(scenario("on", true), scenario("off", false), scenario("again", true)));
+        when(hubRouter.handleDeviceAction(any()))
+                .thenReturn(Empty.getDefaultInstance())
+                .thenThrow(Status.UNAVAILABLE.asRuntimeException());
+
+        handler.handleSnapshot(snapshot(true, Instant.now().minusMillis(50)));
+
+        assertThat(meterRegistry.get("telemetry.analyzer.scenarios.evaluated").summary().totalAmount()).isEqualTo(3);
+        assertThat(meterRegistry.get("telemetry.analyzer.scenarios.fired").summary().totalAmount()).isEqualTo(2);
+        assertThat(meterRegistry.get("telemetry.analyzer.evaluation").timer().count()).isEqualTo(1);
+        assertThat(send("success").count()).isEqualTo(1);
+        assertThat(send("failure").count()).isEqualTo(1);
+        // задержка стадии считается только для доставленных действий с моментом приёма события
+        assertThat(meterRegistry.get("telemetry.pipeline.stage.latency").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsZeroScenariosForUnknownHub() {
+        handler.handleSnapshot(snapshot(true, null));
+
+        assertThat(meterRegistry.get("telemetry.analyzer.scenarios.evaluated").summary().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("telemetry.analyzer.scenarios.evaluated").summary().totalAmount()).isZero();
+        assertThat(send("success").count()).isZero();
+    }
+
+    private Timer send(String outcome) {
+        return meterRegistry.get("telemetry.analyzer.action.send").tag("outcome", outcome).timer();
+    }
+
+    private static HubConfigAvro config(ScenarioAddedEventAvro... scenarios) {
+        return HubConfigAvro.newBuilder()
+                .setHubId("hub-1")
+                .setUpdatedAt(Instant.now())
+                .setSourcePartition(0)
+                .setSourceOffset(0)
+                .setDevices(List.of(new HubDeviceAvro("switch", null), new HubDeviceAvro("lamp", null)))
+                .setScenarios(List.of(scenarios))
+                .build();
+    }
+
+    private static ScenarioAddedEventAvro scenario(String name, boolean switchState) {
+        return new ScenarioAddedEventAvro(name,
+                List.of(new ScenarioConditionAvro("switch", ConditionTypeAvro.SWITCH, ConditionOperationAvro.EQUALS,
+                        switchState)),
+                List.of(new DeviceActionAvro("lamp", ActionTypeAvro.SET_VALUE, name.length())));
+    }
+
+    private static SensorsSnapshotAvro snapshot(boolean switchState, Instant ingestedAt) {
+        Instant now = Instant.now();
+        return SensorsSnapshotAvro.newBuilder()
+                .setHubId("hub-1")
+                .setTimestamp(now)
+                .setSensorsState(Map.of("switch", SensorStateAvro.newBuilder()
+                        .setTimestamp(now)
+                        .setData(new SwitchSensorAvro(switchState))
+                        .setTraceId(ingestedAt == null ? null : "trace-1")
+                        .setIngestedAt(ingestedAt)
+                        .build()))
+                .build();
+    }
+}
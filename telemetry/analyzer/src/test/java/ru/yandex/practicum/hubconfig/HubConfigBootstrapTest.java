@@ -0,0 +1,125 @@
+package ru.yandex.practicum.hubconfig;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubDeviceAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioConditionAvro;
+import ru.yandex.practicum.model.Action;
+import ru.yandex.practicum.model.Condition;
+import ru.yandex.practicum.model.Scenario;
+import ru.yandex.practicum.model.Sensor;
+import ru.yandex.practicum.repository.ActionRepository;
+import ru.yandex.practicum.repository.ConditionRepository;
+import ru.yandex.practicum.repository.ScenarioRepository;
+import ru.yandex.practicum.repository.SensorRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class HubConfigBootstrapTest {
+    private final HubConfigReader reader = mock(HubConfigReader.class);
+    private final HubConfigStore store = new HubConfigStore();
+    private final MockProducer<String, SpecificRecordBase> producer =
+            new MockProducer<>(true, new StringSerializer(), (topic, value) -> new byte[0]);
+    private final SensorRepository sensorRepository = mock(SensorRepository.class);
+    private final ScenarioRepository scenarioRepository = mock(ScenarioRepository.class);
+    private final ConditionRepository conditionRepository = mock(ConditionRepository.class);
+    private final ActionRepository actionRepository = mock(ActionRepository.class);
+    private final HubConfigBootstrap bootstrap = new HubConfigBootstrap(reader, store,
+            new HubConfigPublisher(producer, "hub-config", new SimpleMeterRegistry()), sensorRepository,
+            scenarioRepository, conditionRepository, actionRepository, Duration.ofSeconds(1));
+
+    @Test
+    void seedsEmptyTopicFromDatabase() {
+        when(reader.awaitCaughtUp(isNull(), any())).thenReturn(true);
+        Sensor lamp = new Sensor("lamp", "hub-1");
+        Sensor door = new Sensor("door", "hub-2");
+        Scenario night = new Scenario(1L, "hub-1", "night");
+        Scenario orphan = new Scenario(2L, "hub-3", "orphan");
+        when(sensorRepository.findAll()).thenReturn(List.of(lamp, door));
+        when(scenarioRepository.findAll()).thenReturn(List.of(night, orphan));
+        when(conditionRepository.findAllByScenario(night)).thenReturn(List.of(new Condition(1L,
+                ConditionTypeAvro.LUMINOSITY, ConditionOperationAvro.LOWER_THAN, 10, night, lamp)));
+        when(actionRepository.findAllByScenario(night)).thenReturn(List.of(new Action(1L,
+                ActionTypeAvro.ACTIVATE, null, night, lamp)));
+
+        bootstrap.run();
+
+        assertThat(store.size()).isEqualTo(3);
+        HubConfigAvro hub1 = store.get("hub-1");
+        assertThat(hub1.getUpdatedAt()).isEqualTo(Instant.EPOCH);
+        assertThat(hub1.getSourcePartition()).isEqualTo(-1);
+        assertThat(hub1.getSourceOffset()).isEqualTo(-1);
+        assertThat(hub1.getDevices()).containsExactly(new HubDeviceAvro("lamp", null));
+        assertThat(hub1.getScenarios()).containsExactly(new ScenarioAddedEventAvro("night",
+                List.of(new ScenarioConditionAvro("lamp", ConditionTypeAvro.LUMINOSITY,
+                        ConditionOperationAvro.LOWER_THAN, 10)),
+                List.of(new DeviceActionAvro("lamp", ActionTypeAvro.ACTIVATE, null))));
+        assertThat(store.get("hub-2").getScenarios()).isEmpty();
+        assertThat(store.get("hub-3").getDevices()).isEmpty();
+        assertThat(producer.history()).extracting(record -> record.key())
+                .containsExactlyInAnyOrder("hub-1", "hub-2", "hub-3");
+    }
+
+    @Test
+    void keepsConfigsReadFromTopic() {
+        when(reader.awaitCaughtUp(isNull(), any())).thenAnswer(invocation -> {
+            store.restore(HubConfigAvro.newBuilder()
+                    .setHubId("hub-1")
+                    .setUpdatedAt(Instant.now())
+                    .setSourcePartition(0)
+                    .setSourceOffset(5)
+                    .setDevices(List.of())
+                    .setScenarios(List.of())
+                    .build());
+            return true;
+        });
+
+        bootstrap.run();
+
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(producer.history()).isEmpty();
+        verifyNoInteractions(sensorRepository, scenarioRepository);
+    }
+
+    @Test
+    void doesNotSeedWhenTopicWasNotRead() {
+        when(reader.awaitCaughtUp(isNull(), any())).thenReturn(false);
+
+        bootstrap.run();
+
+        // пустое хранилище здесь не значит пустой топик: запись из базы затёрла бы более свежие конфигурации
+        assertThat(store.size()).isZero();
+        assertThat(producer.history()).isEmpty();
+        verifyNoInteractions(sensorRepository, scenarioRepository);
+    }
+
+    @Test
+    void publishesNothingWhenDatabaseIsEmpty() {
+        when(reader.awaitCaughtUp(isNull(), any())).thenReturn(true);
+        when(sensorRepository.findAll()).thenReturn(List.of());
+        when(scenarioRepository.findAll()).thenReturn(List.of());
+
+        bootstrap.run();
+
+        assertThat(store.size()).isZero();
+        assertThat(producer.history()).isEmpty();
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.hubconfig;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HubConfigReaderTest {
+    private static final String TOPIC = "telemetry.hub-config.v1";
+    private static final TopicPartition FIRST = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition SECOND = new TopicPartition(TOPIC, 1);
+
+    private final HubConfigStore store = new HubConfigStore();
+    private final MockConsumer<String, HubConfigAvro> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+
+    @Test
+    void catchesUpWithRecordsPresentAtCallTime() throws InterruptedException {
+        prepareTopic(Map.of(FIRST, 2L, SECOND, 1L));
+        consumer.schedulePollTask(() -> {
+            consumer.addRecord(record(FIRST, 0, config("hub-1", 0, 0)));
+            consumer.addRecord(record(FIRST, 1, config("hub-1", 0, 7)));
+            consumer.addRecord(record(SECOND, 0, config("hub-2", 1, 3)));
+        });
+
+        HubConfigReader reader = new HubConfigReader(consumer, store, TOPIC);
+        reader.start();
+        try {
+            assertThat(reader.awaitCaughtUp(null, Duration.ofSeconds(5))).isTrue();
+            assertThat(store.get("hub-1").getSourceOffset()).isEqualTo(7);
+            assertThat(store.get("hub-2").getSourceOffset()).isEqualTo(3);
+        } finally {
+            reader.close();
+        }
+        assertThat(consumer.closed()).isTrue();
+    }
+
+    @Test
+    void waitsOnlyForRequestedPartitions() throws InterruptedException {
+        // во вторую партицию записи так и не придут, но её ждать не нужно
+        prepareTopic(Map.of(FIRST, 1L, SECOND, 5L));
+        consumer.schedulePollTask(() -> consumer.addRecord(record(FIRST, 0, config("hub-1", 0, 0))));
+
+        HubConfigReader reader = new HubConfigReader(consumer, store, TOPIC);
+        reader.start();
+        try {
+            assertThat(reader.awaitCaughtUp(List.of(0), Duration.ofSeconds(5))).isTrue();
+            assertThat(store.get("hub-1")).isNotNull();
+            assertThat(reader.awaitCaughtUp(List.of(1), Duration.ofMillis(200))).isFalse();
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void skipsTombstonesAndFailsWaitersAfterClose() throws InterruptedException {
+        prepareTopic(Map.of(FIRST, 1L, SECOND, 0L));
+        consumer.schedulePollTask(() -> consumer.addRecord(record(FIRST, 0, null)));
+
+        HubConfigReader reader = new HubConfigReader(consumer, store, TOPIC);
+        reader.start();
+        assertThat(reader.awaitCaughtUp(null, Duration.ofSeconds(5))).isTrue();
+        assertThat(store.size()).isZero();
+
+        reader.close();
+        assertThat(reader.awaitCaughtUp(null, Duration.ofSeconds(5))).isFalse();
+    }
+
+    private void prepareTopic(Map<TopicPartition, Long> endOffsets) {
+        consumer.updatePartitions(TOPIC, List.of(new PartitionInfo(TOPIC, 0, null, null, null),
+                new PartitionInfo(TOPIC, 1, null, null, null)));
+        consumer.updateBeginningOffsets(Map.of(FIRST, 0L, SECOND, 0L));
+        consumer.updateEndOffsets(endOffsets);
+    }
+
+    private static ConsumerRecord<String, HubConfigAvro> record(TopicPartition partition, long offset,
+                                                                HubConfigAvro config) {
+        return new ConsumerRecord<>(TOPIC, partition.partition(), offset, "hub", config);
+    }
+
+    private static HubConfigAvro config(String hubId, int sourcePartition, long sourceOffset) {
+        return HubConfigAvro.newBuilder()
+                .setHubId(hubId)
+                .setUpdatedAt(Instant.now())
+                .setSourcePartition(sourcePartition)
+                .setSourceOffset(sourceOffset)
+                .setDevices(List.of())
+                .setScenarios(List.of())
+                .build();
+    }
+}
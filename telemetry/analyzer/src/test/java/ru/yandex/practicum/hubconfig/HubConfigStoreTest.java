@@ -0,0 +1,151 @@
+package ru.yandex.practicum.hubconfig;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.ActionResultEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ActionStatusAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceRemovedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubDeviceAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioConditionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioRemovedEventAvro;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HubConfigStoreTest {
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final HubConfigStore store = new HubConfigStore();
+
+    @Test
+    void replacesDeviceAndScenarioWithSameIdentity() {
+        store.apply(event(new DeviceAddedEventAvro("lamp", DeviceTypeAvro.LIGHT_SENSOR)), 0, 0);
+        store.apply(event(new DeviceAddedEventAvro("lamp", DeviceTypeAvro.SWITCH_SENSOR)), 0, 1);
+        store.apply(event(new DeviceAddedEventAvro("switch", DeviceTypeAvro.SWITCH_SENSOR)), 0, 2);
+        store.apply(event(scenario("night", 10)), 0, 3);
+        HubConfigAvro config = store.apply(event(scenario("night", 20)), 0, 4);
+
+        assertThat(config.getDevices()).containsExactly(
+                new HubDeviceAvro("lamp", DeviceTypeAvro.SWITCH_SENSOR),
+                new HubDeviceAvro("switch", DeviceTypeAvro.SWITCH_SENSOR));
+        assertThat(config.getScenarios()).singleElement()
+                .satisfies(scenario -> assertThat(scenario.getConditions().getFirst().getValue()).isEqualTo(20));
+        assertThat(config.getSourceOffset()).isEqualTo(4);
+        assertThat(store.get("hub-1")).isSameAs(config);
+    }
+
+    @Test
+    void removesDeviceAndScenario() {
+        store.apply(event(new DeviceAddedEventAvro("lamp", DeviceTypeAvro.LIGHT_SENSOR)), 0, 0);
+        store.apply(event(new DeviceAddedEventAvro("switch", DeviceTypeAvro.SWITCH_SENSOR)), 0, 1);
+        store.apply(event(scenario("night", 10)), 0, 2);
+        store.apply(event(new DeviceRemovedEventAvro("lamp")), 0, 3);
+        HubConfigAvro config = store.apply(event(new ScenarioRemovedEventAvro("night")), 0, 4);
+
+        assertThat(config.getDevices()).extracting(HubDeviceAvro::getId).containsExactly("switch");
+        assertThat(config.getScenarios()).isEmpty();
+    }
+
+    @Test
+    void ignoresReplayedEventsAndActionResults() {
+        HubConfigAvro first = store.apply(event(new DeviceAddedEventAvro("lamp", DeviceTypeAvro.LIGHT_SENSOR)), 0, 5);
+
+        assertThat(store.apply(event(new DeviceRemovedEventAvro("lamp")), 0, 5)).isNull();
+        assertThat(store.apply(event(new DeviceRemovedEventAvro("lamp")), 0, 4)).isNull();
+        assertThat(store.apply(event(new ActionResultEventAvro("night",
+                action("lamp"), ActionStatusAvro.APPLIED)), 0, 6)).isNull();
+        assertThat(store.get("hub-1")).isSameAs(first);
+    }
+
+    @Test
+    void keepsOnlyScenarioPartsWhoseDevicesAreRegistered() {
+        store.apply(event(new DeviceAddedEventAvro("lamp", DeviceTypeAvro.LIGHT_SENSOR)), 0, 0);
+        store.apply(event(new DeviceAddedEventAvro("switch", DeviceTypeAvro.SWITCH_SENSOR)), 0, 1);
+
+        // датчик условия не зарегистрирован на хабе - условия не сохраняются, действия сохраняются
+        HubConfigAvro config = store.apply(event(new ScenarioAddedEventAvro("night",
+                List.of(condition("lamp", 10), condition("foreign", 10)), List.of(action("switch")))), 0, 2);
+        ScenarioAddedEventAvro night = config.getScenarios().getFirst();
+        assertThat(night.getConditions()).isEmpty();
+        assertThat(night.getActions()).containsExactly(action("switch"));
+
+        // устройство действия не зарегистрировано - действия не сохраняются
+        config = store.apply(event(new ScenarioAddedEventAvro("day",
+                List.of(condition("lamp", 10)), List.of(action("switch"), action("foreign")))), 0, 3);
+        ScenarioAddedEventAvro day = config.getScenarios().get(1);
+        assertThat(day.getConditions()).containsExactly(condition("lamp", 10));
+        assertThat(day.getActions()).isEmpty();
+
+        config = store.apply(event(scenario("full", 10)), 0, 4);
+        assertThat(config.getScenarios().get(2)).isEqualTo(scenario("full", 10));
+    }
+
+    @Test
+    void restoresOnlyNewerConfigWithinPartition() {
+        assertThat(store.restore(config(0, 5, NOW))).isTrue();
+
+        assertThat(store.restore(config(0, 5, NOW.plusSeconds(10)))).isFalse();
+        assertThat(store.restore(config(0, 4, NOW.plusSeconds(10)))).isFalse();
+        assertThat(store.restore(config(0, 6, NOW.minusSeconds(10)))).isTrue();
+        assertThat(store.get("hub-1").getSourceOffset()).isEqualTo(6);
+    }
+
+    @Test
+    void comparesTimeWhenHubMovedToAnotherPartition() {
+        store.restore(config(0, 100, NOW));
+
+        assertThat(store.restore(config(1, 200, NOW.minusSeconds(1)))).isFalse();
+        assertThat(store.restore(config(1, 1, NOW.plusSeconds(1)))).isTrue();
+        assertThat(store.get("hub-1").getSourcePartition()).isEqualTo(1);
+    }
+
+    @Test
+    void appliesEventsOnTopOfRestoredConfig() {
+        store.restore(config(0, 5, NOW));
+
+        assertThat(store.apply(event(new DeviceAddedEventAvro("switch", DeviceTypeAvro.SWITCH_SENSOR)), 0, 5))
+                .isNull();
+        HubConfigAvro config = store.apply(event(new DeviceAddedEventAvro("switch", DeviceTypeAvro.SWITCH_SENSOR)),
+                0, 6);
+        assertThat(config.getDevices()).extracting(HubDeviceAvro::getId).containsExactly("lamp", "switch");
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    private static HubEventAvro event(Object payload) {
+        return new HubEventAvro("hub-1", NOW, payload);
+    }
+
+    private static HubConfigAvro config(int partition, long offset, Instant updatedAt) {
+        return HubConfigAvro.newBuilder()
+                .setHubId("hub-1")
+                .setUpdatedAt(updatedAt)
+                .setSourcePartition(partition)
+                .setSourceOffset(offset)
+                .setDevices(List.of(new HubDeviceAvro("lamp", DeviceTypeAvro.LIGHT_SENSOR)))
+                .setScenarios(List.of())
+                .build();
+    }
+
+    private static ScenarioAddedEventAvro scenario(String name, int value) {
+        return new ScenarioAddedEventAvro(name, List.of(condition("lamp", value)), List.of(action("switch")));
+    }
+
+    private static ScenarioConditionAvro condition(String sensorId, int value) {
+        return new ScenarioConditionAvro(sensorId, ConditionTypeAvro.LUMINOSITY, ConditionOperationAvro.LOWER_THAN,
+                value);
+    }
+
+    private static DeviceActionAvro action(String sensorId) {
+        return new DeviceActionAvro(sensorId, ActionTypeAvro.ACTIVATE, null);
+    }
+}
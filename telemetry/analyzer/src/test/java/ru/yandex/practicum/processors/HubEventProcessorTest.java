@@ -0,0 +1,153 @@
+package ru.yandex.practicum.processors;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.handlers.event.HubEventHandler;
+import ru.yandex.practicum.handlers.event.HubEventHandlers;
+import ru.yandex.practicum.hubconfig.HubConfigPublisher;
+import ru.yandex.practicum.hubconfig.HubConfigReader;
+import ru.yandex.practicum.hubconfig.HubConfigStore;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceRemovedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubDeviceAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+import ru.yandex.practicum.telemetry.common.kafka.consumer.ConsumerEngineProperties;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class HubEventProcessorTest {
+    private static final String TOPIC = "telemetry.hubs.v1";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+    @Test
+    void keepsProcessingBatchAfterFailedEvent() throws InterruptedException {
+        List<String> removed = new CopyOnWriteArrayList<>();
+        HubEventHandler handler = new HubEventHandler() {
+            @Override
+            public void handle(HubEventAvro event) {
+                String sensorId = ((DeviceRemovedEventAvro) event.getPayload()).getId();
+                if (sensorId.equals("broken")) {
+                    throw new IllegalStateException("ошибка репозитория");
+                }
+                removed.add(sensorId);
+            }
+
+            @Override
+            public String getPayloadType() {
+                return DeviceRemovedEventAvro.class.getSimpleName();
+            }
+        };
+        MockConsumer<String, HubEventAvro> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(List.of(PARTITION));
+            consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+            consumer.addRecord(record(0, new DeviceRemovedEventAvro("lamp")));
+            consumer.addRecord(record(1, new DeviceRemovedEventAvro("broken")));
+            consumer.addRecord(record(2, new DeviceRemovedEventAvro("switch")));
+        });
+        HubConfigStore store = new HubConfigStore();
+        MockProducer<String, SpecificRecordBase> producer = mockProducer();
+
+        long committed = runUntilCommitted(processor(consumer, handler, store, producer), consumer, 3);
+
+        assertThat(removed).containsExactly("lamp", "switch");
+        assertThat(store.get("hub-1").getSourceOffset()).isEqualTo(2);
+        assertThat(committed).isEqualTo(3);
+    }
+
+    @Test
+    void updatesHubConfigWhenDatabaseHandlerFails() throws InterruptedException {
+        HubEventHandler handler = new HubEventHandler() {
+            @Override
+            public void handle(HubEventAvro event) {
+                throw new IllegalStateException("база недоступна");
+            }
+
+            @Override
+            public String getPayloadType() {
+                return DeviceAddedEventAvro.class.getSimpleName();
+            }
+        };
+        MockConsumer<String, HubEventAvro> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(List.of(PARTITION));
+            consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+            consumer.addRecord(record(0, new DeviceAddedEventAvro("lamp", DeviceTypeAvro.LIGHT_SENSOR)));
+        });
+        HubConfigStore store = new HubConfigStore();
+        MockProducer<String, SpecificRecordBase> producer = mockProducer();
+
+        long committed = runUntilCommitted(processor(consumer, handler, store, producer), consumer, 1);
+
+        assertThat(committed).isEqualTo(1);
+        HubConfigAvro config = store.get("hub-1");
+        assertThat(config.getDevices()).extracting(HubDeviceAvro::getId).containsExactly("lamp");
+        assertThat(producer.history()).hasSize(1);
+        assertThat(producer.history().getFirst().value()).isEqualTo(config);
+    }
+
+    private static HubEventProcessor processor(MockConsumer<String, HubEventAvro> consumer, HubEventHandler handler,
+                                               HubConfigStore store, MockProducer<String, SpecificRecordBase> producer) {
+        ConsumerEngineProperties engineProperties = new ConsumerEngineProperties();
+        engineProperties.setPollTimeout(Duration.ofMillis(10));
+        engineProperties.setCommitInterval(Duration.ofMillis(10));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HubEventProcessor processor = new HubEventProcessor(consumer, new HubEventHandlers(Set.of(handler)),
+                engineProperties, meterRegistry, store, new HubConfigPublisher(producer, "hub-config", meterRegistry),
+                mock(HubConfigReader.class), new LogSampler(1));
+        ReflectionTestUtils.setField(processor, "hubsTopic", TOPIC);
+        ReflectionTestUtils.setField(processor, "catchUpTimeout", Duration.ofSeconds(1));
+        return processor;
+    }
+
+    private static MockProducer<String, SpecificRecordBase> mockProducer() {
+        return new MockProducer<>(true, new StringSerializer(), (topic, value) -> new byte[0]);
+    }
+
+    private static long runUntilCommitted(HubEventProcessor processor, MockConsumer<String, HubEventAvro> consumer,
+                                          long expected) throws InterruptedException {
+        Thread thread = Thread.ofPlatform().start(processor);
+        long committed = -1;
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (committed < expected && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+                committed = committed(consumer);
+            }
+        } finally {
+            processor.stop();
+            thread.join();
+        }
+        return committed;
+    }
+
+    private static long committed(MockConsumer<String, HubEventAvro> consumer) {
+        OffsetAndMetadata offset = consumer.committed(Set.of(PARTITION)).get(PARTITION);
+        return offset == null ? -1 : offset.offset();
+    }
+
+    private static ConsumerRecord<String, HubEventAvro> record(long offset, Object payload) {
+        return new ConsumerRecord<>(TOPIC, 0, offset, "hub-1", new HubEventAvro("hub-1", Instant.now(), payload));
+    }
+}
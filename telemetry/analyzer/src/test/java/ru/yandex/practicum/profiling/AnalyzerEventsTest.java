@@ -0,0 +1,109 @@
+package ru.yandex.practicum.profiling;
+
+import com.google.protobuf.Empty;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.client.ScenarioActionProducer;
+import ru.yandex.practicum.feedback.AppliedActions;
+import ru.yandex.practicum.grpc.telemetry.hubrouter.HubRouterControllerGrpc;
+import ru.yandex.practicum.handlers.snapshot.SnapshotHandler;
+import ru.yandex.practicum.hubconfig.HubConfigStore;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubDeviceAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ScenarioConditionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AnalyzerEventsTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void commitsSnapshotEvaluationAndActionSendEvents() throws IOException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HubConfigStore hubConfigStore = new HubConfigStore();
+        hubConfigStore.restore(HubConfigAvro.newBuilder()
+                .setHubId("hub-1")
+                .setUpdatedAt(Instant.now())
+                .setSourcePartition(0)
+                .setSourceOffset(0)
+                .setDevices(List.of(new HubDeviceAvro("switch", null), new HubDeviceAvro("lamp", null)))
+                .setScenarios(List.of(
+                        scenario("light-on", true),
+                        scenario("light-off", false)))
+                .build());
+        HubRouterControllerGrpc.HubRouterControllerBlockingStub hubRouter =
+                mock(HubRouterControllerGrpc.HubRouterControllerBlockingStub.class);
+        when(hubRouter.handleDeviceAction(any())).thenReturn(Empty.getDefaultInstance());
+        SnapshotHandler handler = new SnapshotHandler(hubConfigStore, new ScenarioActionProducer(hubRouter,
+                meterRegistry), new AppliedActions(true, Duration.ofMinutes(10), meterRegistry), meterRegistry);
+        Path file = directory.resolve("analyzer.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(SnapshotEvaluationEvent.class);
+            recording.enable(ActionSendEvent.class);
+            recording.start();
+            handler.handleSnapshot(SensorsSnapshotAvro.newBuilder()
+                    .setHubId("hub-1")
+                    .setTimestamp(Instant.now())
+                    .setSensorsState(Map.of("switch", SensorStateAvro.newBuilder()
+                            .setTimestamp(Instant.now())
+                            .setData(new SwitchSensorAvro(true))
+                            .build()))
+                    .build(), 128);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertThat(events(events, "ru.yandex.practicum.telemetry.SnapshotEvaluation")).singleElement()
+                .satisfies(event -> {
+                    assertThat(event.getString("hubId")).isEqualTo("hub-1");
+                    assertThat(event.getString("payloadType")).isEqualTo("SensorsSnapshotAvro");
+                    assertThat(event.getLong("bytes")).isEqualTo(128);
+                    assertThat(event.getInt("scenariosEvaluated")).isEqualTo(2);
+                    assertThat(event.getInt("scenariosFired")).isEqualTo(1);
+                });
+        assertThat(events(events, "ru.yandex.practicum.telemetry.ActionSend")).singleElement()
+                .satisfies(event -> {
+                    assertThat(event.getString("hubId")).isEqualTo("hub-1");
+                    assertThat(event.getString("scenarioName")).isEqualTo("light-on");
+                    assertThat(event.getString("payloadType")).isEqualTo("ACTIVATE");
+                    assertThat(event.getBoolean("success")).isTrue();
+                    assertThat(event.getLong("bytes")).isPositive();
+                });
+    }
+
+    private static List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+    }
+
+    private static ScenarioAddedEventAvro scenario(String name, boolean switchState) {
+        return new ScenarioAddedEventAvro(name,
+                List.of(new ScenarioConditionAvro("switch", ConditionTypeAvro.SWITCH, ConditionOperationAvro.EQUALS,
+                        switchState)),
+                List.of(new DeviceActionAvro("lamp", ActionTypeAvro.ACTIVATE, null)));
+    }
+}
@@ -0,0 +1,34 @@
+#!/usr/bin/env bash
+# Сравнивает режимы исполнителя gRPC-сервера коллектора под одной и той же нагрузкой.
+# Перед запуском должны работать Kafka, config-server и discovery-server (docker compose up),
+# а модули собраны: mvn -pl telemetry/collector,telemetry/benchmarks -am package -DskipTests
+#
+# Пример: HUBS=3000 RATE=5 DURATION=120 ./compare-executor-modes.sh
+set -euo pipefail
+
+cd "$(dirname "$0")"
+COLLECTOR_JAR=${COLLECTOR_JAR:-../collector/target/collector-1.0-SNAPSHOT-exec.jar}
+TARGET=${TARGET:-localhost:59091}
+HUBS=${HUBS:-1000}
+RATE=${RATE:-10}
+DURATION=${DURATION:-60}
+WARMUP=${WARMUP:-10}
+DELIVERY=${DELIVERY:-leader-ack}
+MODES=${MODES:-"default virtual bounded direct"}
+
+CLASSPATH="target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)"
+
+for mode in $MODES; do
+  GRPC_EXECUTOR_MODE=$mode java -jar "$COLLECTOR_JAR" > "target/collector-$mode.log" 2>&1 &
+  collector=$!
+  trap 'kill $collector 2>/dev/null || true' EXIT
+  # ждём, пока коллектор начнёт принимать соединения
+  until (exec 3<>"/dev/tcp/${TARGET%:*}/${TARGET#*:}") 2>/dev/null; do sleep 1; done
+
+  java -cp "$CLASSPATH" ru.yandex.practicum.telemetry.benchmarks.CollectorLoadGenerator \
+      target="$TARGET" hubs="$HUBS" rate="$RATE" duration="$DURATION" warmup="$WARMUP" \
+      delivery="$DELIVERY" label="$mode"
+
+  kill "$collector"
+  wait "$collector" 2>/dev/null || true
+done
@@ -0,0 +1,39 @@
+#!/usr/bin/env bash
+# Сравнивает процессорное время коллектора на одно событие датчика при записи в Avro и в исходном Protobuf
+# (collector.sensor-format) под одной и той же нагрузкой. Время берётся из /proc, поэтому скрипт
+# работает в Linux, а генератор и коллектор запускаются на одной машине.
+# Перед запуском должны работать Kafka, config-server и discovery-server (docker compose up),
+# а модули собраны: mvn -pl telemetry/collector,telemetry/benchmarks -am package -DskipTests
+#
+# Пример: HUBS=500 RATE=20 DURATION=120 ./compare-sensor-formats.sh
+set -euo pipefail
+
+cd "$(dirname "$0")"
+COLLECTOR_JAR=${COLLECTOR_JAR:-../collector/target/collector-1.0-SNAPSHOT-exec.jar}
+TARGET=${TARGET:-localhost:59091}
+HUBS=${HUBS:-1000}
+RATE=${RATE:-10}
+DURATION=${DURATION:-60}
+WARMUP=${WARMUP:-30}
+DELIVERY=${DELIVERY:-leader-ack}
+FORMATS=${FORMATS:-"avro proto"}
+# пачки собираются только в режиме avro, поэтому по умолчанию сравнение идёт без них
+BATCHING=${BATCHING:-false}
+
+CLASSPATH="target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)"
+
+for format in $FORMATS; do
+  COLLECTOR_SENSOR_FORMAT=$format COLLECTOR_BATCHING=$BATCHING \
+      java -jar "$COLLECTOR_JAR" > "target/collector-$format.log" 2>&1 &
+  collector=$!
+  trap 'kill $collector 2>/dev/null || true' EXIT
+  # ждём, пока коллектор начнёт принимать соединения
+  until (exec 3<>"/dev/tcp/${TARGET%:*}/${TARGET#*:}") 2>/dev/null; do sleep 1; done
+
+  java -cp "$CLASSPATH" ru.yandex.practicum.telemetry.benchmarks.CollectorLoadGenerator \
+      target="$TARGET" hubs="$HUBS" rate="$RATE" duration="$DURATION" warmup="$WARMUP" \
+      delivery="$DELIVERY" label="$format" collector-pid="$collector" clock-ticks="$(getconf CLK_TCK)"
+
+  kill "$collector"
+  wait "$collector" 2>/dev/null || true
+done
@@ -0,0 +1,237 @@
+package ru.yandex.practicum.telemetry.benchmarks;
+
+import com.google.protobuf.Empty;
+import com.google.protobuf.Timestamp;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioSocketChannel;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ru.yandex.practicum.grpc.telemetry.collector.CollectorControllerGrpc;
+import ru.yandex.practicum.grpc.telemetry.event.ClimateSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceAddedEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceTypeProto;
+import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Генератор нагрузки на коллектор: много хабов, у каждого своё соединение, одновременно шлют события датчиков.
+ * Печатает пропускную способность и перцентили задержки ответа коллектора, а если известен процесс
+ * коллектора, то и процессорное время, которое он потратил за замер, в пересчёте на одно событие.
+ * <p>
+ * Параметры передаются как {@code ключ=значение}:
+ * <ul>
+ *     <li>{@code target} - адрес коллектора, по умолчанию {@code localhost:59091};</li>
+ *     <li>{@code hubs} - число хабов (соединений), по умолчанию 1000;</li>
+ *     <li>{@code rate} - событий в секунду от одного хаба, по умолчанию 10;</li>
+ *     <li>{@code duration} - длительность прогона в секундах, по умолчанию 60;</li>
+ *     <li>{@code warmup} - прогрев в секундах, не попадает в результат, по умолчанию 10;</li>
+ *     <li>{@code delivery} - режим доставки коллектора: {@code leader-ack} или {@code fire-and-forget};</li>
+ *     <li>{@code label} - подпись строки результата, например режим исполнителя gRPC-сервера;</li>
+ *     <li>{@code collector-pid} - процесс коллектора на этой же машине; его время читается из
+ *     {@code /proc/<pid>/stat}, поэтому только в Linux;</li>
+ *     <li>{@code clock-ticks} - тактов в секунде у {@code /proc}, {@code getconf CLK_TCK}, по умолчанию 100.</li>
+ * </ul>
+ */
+public class CollectorLoadGenerator {
+    private static final Metadata.Key<String> DELIVERY_MODE_HEADER =
+            Metadata.Key.of("x-delivery-mode", Metadata.ASCII_STRING_MARSHALLER);
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99, 0.999};
+    private static final int SENSORS_PER_HUB = 8;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final long collectorPid;
+    private final int clockTicks;
+    private volatile boolean measuring;
+    private volatile Timer latency = newTimer();
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> params = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                params.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+        }
+        new CollectorLoadGenerator(
+                Long.parseLong(params.getOrDefault("collector-pid", "0")),
+                Integer.parseInt(params.getOrDefault("clock-ticks", "100"))).run(
+                params.getOrDefault("target", "localhost:59091"),
+                Integer.parseInt(params.getOrDefault("hubs", "1000")),
+                Integer.parseInt(params.getOrDefault("rate", "10")),
+                Duration.ofSeconds(Long.parseLong(params.getOrDefault("duration", "60"))),
+                Duration.ofSeconds(Long.parseLong(params.getOrDefault("warmup", "10"))),
+                params.getOrDefault("delivery", "leader-ack"),
+                params.getOrDefault("label", "-"));
+    }
+
+    /**
+     * @param collectorPid процесс коллектора или 0, если его процессорное время не нужно
+     */
+    private CollectorLoadGenerator(long collectorPid, int clockTicks) {
+        this.collectorPid = collectorPid;
+        this.clockTicks = clockTicks;
+    }
+
+    private void run(String target, int hubs, int rate, Duration duration, Duration warmup,
+                     String deliveryMode, String label) throws InterruptedException {
+        EventLoopGroup eventLoop = new NioEventLoopGroup();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        Metadata headers = new Metadata();
+        headers.put(DELIVERY_MODE_HEADER, deliveryMode);
+
+        List<ManagedChannel> channels = new ArrayList<>(hubs);
+        long periodMicros = TimeUnit.SECONDS.toMicros(1) / rate;
+        for (int i = 0; i < hubs; i++) {
+            ManagedChannel channel = NettyChannelBuilder.forTarget(target)
+                    .usePlaintext()
+                    .eventLoopGroup(eventLoop)
+                    .channelType(NioSocketChannel.class)
+                    .build();
+            channels.add(channel);
+            CollectorControllerGrpc.CollectorControllerStub stub = CollectorControllerGrpc.newStub(channel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+            String hubId = "bench-hub-" + i;
+            // датчики регистрируются заранее, иначе коллектор отправит их события в карантин
+            register(CollectorControllerGrpc.newBlockingStub(channel), hubId);
+            // хабы начинают в разные моменты периода, чтобы нагрузка шла ровно, а не пачками
+            long initialDelay = ThreadLocalRandom.current().nextLong(periodMicros);
+            scheduler.scheduleAtFixedRate(() -> send(stub, hubId), initialDelay, periodMicros, TimeUnit.MICROSECONDS);
+        }
+
+        Thread.sleep(warmup.toMillis());
+        latency = newTimer();
+        sent.set(0);
+        errors.set(0);
+        measuring = true;
+        long cpuBefore = collectorCpuTicks();
+        Thread.sleep(duration.toMillis());
+        measuring = false;
+        long cpuTicks = collectorCpuTicks() - cpuBefore;
+
+        scheduler.shutdownNow();
+        for (ManagedChannel channel : channels) {
+            channel.shutdownNow();
+        }
+        eventLoop.shutdownGracefully();
+        report(label, deliveryMode, hubs, duration, cpuTicks);
+    }
+
+    private static void register(CollectorControllerGrpc.CollectorControllerBlockingStub stub, String hubId) {
+        for (int sensor = 0; sensor < SENSORS_PER_HUB; sensor++) {
+            Instant now = Instant.now();
+            stub.collectHubEvent(HubEventProto.newBuilder()
+                    .setHubId(hubId)
+                    .setTimestamp(Timestamp.newBuilder().setSeconds(now.getEpochSecond()).setNanos(now.getNano()))
+                    .setDeviceAdded(DeviceAddedEventProto.newBuilder()
+                            .setId("climate-" + sensor)
+                            .setType(DeviceTypeProto.CLIMATE_SENSOR))
+                    .build());
+        }
+    }
+
+    private void send(CollectorControllerGrpc.CollectorControllerStub stub, String hubId) {
+        Instant now = Instant.now();
+        SensorEventProto event = SensorEventProto.newBuilder()
+                .setId("climate-" + ThreadLocalRandom.current().nextInt(SENSORS_PER_HUB))
+                .setHubId(hubId)
+                .setTimestamp(Timestamp.newBuilder().setSeconds(now.getEpochSecond()).setNanos(now.getNano()))
+                .setClimateSensorEvent(ClimateSensorProto.newBuilder()
+                        .setTemperatureC(ThreadLocalRandom.current().nextInt(15, 30))
+                        .setHumidity(ThreadLocalRandom.current().nextInt(30, 70))
+                        .setCo2Level(ThreadLocalRandom.current().nextInt(400, 1000)))
+                .build();
+        long start = System.nanoTime();
+        boolean counted = measuring;
+        if (counted) {
+            sent.incrementAndGet();
+        }
+        stub.collectSensorEvent(event, new StreamObserver<>() {
+            @Override
+            public void onNext(Empty value) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (counted) {
+                    errors.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void onCompleted() {
+                if (counted) {
+                    latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        });
+    }
+
+    private void report(String label, String deliveryMode, int hubs, Duration duration, long cpuTicks) {
+        StringBuilder line = new StringBuilder(String.format(
+                "label=%s delivery=%s hubs=%d sent=%d ok=%d errors=%d throughput=%.0f/s",
+                label, deliveryMode, hubs, sent.get(), latency.count(), errors.get(),
+                latency.count() / (double) duration.toSeconds()));
+        for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+            line.append(String.format(" p%.1f=%.2fms",
+                    value.percentile() * 100, value.value(TimeUnit.MILLISECONDS)));
+        }
+        line.append(String.format(" max=%.2fms", latency.max(TimeUnit.MILLISECONDS)));
+        if (collectorPid > 0 && latency.count() > 0) {
+            double cpuSeconds = cpuTicks / (double) clockTicks;
+            line.append(String.format(" collector-cpu=%.2fs cpu-per-event=%.2fus",
+                    cpuSeconds, cpuSeconds * 1_000_000 / latency.count()));
+        }
+        System.out.println(line);
+    }
+
+    /**
+     * Процессорное время коллектора в тактах: utime и stime, 14-е и 15-е поля {@code /proc/<pid>/stat}.
+     */
+    private long collectorCpuTicks() {
+        if (collectorPid <= 0) {
+            return 0;
+        }
+        try {
+            String stat = Files.readString(Path.of("/proc", String.valueOf(collectorPid), "stat"));
+            // имя процесса в скобках может содержать пробелы, поля считаются после него
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Не удалось прочитать процессорное время процесса " + collectorPid, e);
+        }
+    }
+
+    private Timer newTimer() {
+        // новый таймер на каждый замер, чтобы прогрев не попал в перцентили
+        return Timer.builder("collector.call")
+                .tag("run", String.valueOf(System.nanoTime()))
+                .publishPercentiles(PERCENTILES)
+                .distributionStatisticExpiry(Duration.ofHours(1))
+                .register(registry);
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.telemetry.collector.controller;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.grpc.telemetry.collector.CollectBatchResponse;
+import ru.yandex.practicum.telemetry.collector.delivery.DeliveryBackpressure;
+import ru.yandex.practicum.telemetry.collector.delivery.DeliveryMode;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Принимает поток событий одного вызова и подтверждает их одним ответом.
+ * <p>
+ * Следующее событие запрашивается у клиента, когда завершилась отправка предыдущего и общее число
+ * неподтверждённых отправок ниже предела. Иначе gRPC перестаёт читать поток, и клиент упирается
+ * в окно HTTP/2. В режиме leader-ack ответ отправляется после подтверждения последнего события,
+ * в режиме fire-and-forget — сразу после закрытия потока клиентом.
+ */
+@Slf4j
+class BatchStreamObserver<T> implements StreamObserver<T> {
+    private final ServerCallStreamObserver<CollectBatchResponse> call;
+    private final DeliveryMode mode;
+    private final DeliveryBackpressure backpressure;
+    private final Function<T, CompletableFuture<Void>> dispatcher;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile boolean clientDone;
+
+    BatchStreamObserver(ServerCallStreamObserver<CollectBatchResponse> call, DeliveryMode mode,
+                        DeliveryBackpressure backpressure, Function<T, CompletableFuture<Void>> dispatcher) {
+        this.call = call;
+        this.mode = mode;
+        this.backpressure = backpressure;
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public void onNext(T event) {
+        pending.incrementAndGet();
+        CompletableFuture<Void> delivery = dispatcher.apply(event);
+        if (mode == DeliveryMode.FIRE_AND_FORGET) {
+            // отклонённое входным фильтром событие завершается ошибкой сразу, до ответа клиенту
+            if (delivery.isCompletedExceptionally()) {
+                failed.incrementAndGet();
+            } else {
+                accepted.incrementAndGet();
+            }
+        }
+        delivery.whenComplete((ignored, exception) -> {
+            if (mode == DeliveryMode.LEADER_ACK) {
+                if (exception == null) {
+                    accepted.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+            }
+            backpressure.requestWhenAvailable(() -> {
+                if (!finished.get() && !call.isCancelled()) {
+                    call.request(1);
+                }
+            });
+            if (pending.decrementAndGet() == 0 && clientDone) {
+                finish();
+            }
+        });
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        // отправки, начатые до обрыва, завершатся сами, отвечать уже некому
+        log.debug("Клиент прервал поток событий: {}", t.getMessage());
+        finished.set(true);
+    }
+
+    @Override
+    public void onCompleted() {
+        clientDone = true;
+        if (mode == DeliveryMode.FIRE_AND_FORGET || pending.get() == 0) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (finished.compareAndSet(false, true)) {
+            call.onNext(CollectBatchResponse.newBuilder()
+                    .setAccepted(accepted.get())
+                    .setFailed(failed.get())
+                    .build());
+            call.onCompleted();
+        }
+    }
+}
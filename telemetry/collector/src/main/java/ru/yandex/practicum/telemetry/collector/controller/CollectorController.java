@@ -3,18 +3,35 @@ package ru.yandex.practicum.telemetry.collector.controller;
 import com.google.protobuf.Empty;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import ru.yandex.practicum.grpc.telemetry.collector.CollectBatchResponse;
 import ru.yandex.practicum.grpc.telemetry.collector.CollectorControllerGrpc;
 import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
 import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.telemetry.collector.delivery.DeliveryBackpressure;
+import ru.yandex.practicum.telemetry.collector.delivery.DeliveryMode;
+import ru.yandex.practicum.telemetry.collector.delivery.DeliveryProperties;
+import ru.yandex.practicum.telemetry.collector.ingest.IngestDecision;
+import ru.yandex.practicum.telemetry.collector.ingest.IngestFilter;
+import ru.yandex.practicum.telemetry.collector.profiling.CollectorHandleEvent;
 import ru.yandex.practicum.telemetry.collector.service.handler.hub.HubEventHandler;
 import ru.yandex.practicum.telemetry.collector.service.handler.sensor.SensorEventHandler;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
 
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -22,61 +39,235 @@ import java.util.stream.Collectors;
 public class CollectorController extends CollectorControllerGrpc.CollectorControllerImplBase {
     private final Map<SensorEventProto.PayloadCase, SensorEventHandler> sensorEventHandlers;
     private final Map<HubEventProto.PayloadCase, HubEventHandler> hubEventHandlers;
+    // таймеры создаются заранее, чтобы не искать их в реестре на каждом событии;
+    // счётчик таймера заодно даёт частоту приёма событий по типу
+    private final Map<SensorEventProto.PayloadCase, Timer> sensorHandleTimers = new EnumMap<>(SensorEventProto.PayloadCase.class);
+    private final Map<HubEventProto.PayloadCase, Timer> hubHandleTimers = new EnumMap<>(HubEventProto.PayloadCase.class);
+    private final Map<DeliveryMode, Counter> deliveryFailures = new EnumMap<>(DeliveryMode.class);
+    private final LogSampler logSampler;
+    private final DeliveryBackpressure backpressure;
+    private final DeliveryProperties deliveryProperties;
+    private final ExecutorService deliveryExecutor;
+    private final IngestFilter ingestFilter;
 
-    public CollectorController(Set<SensorEventHandler> sensorEventHandlerList, Set<HubEventHandler> hubEventHandlerList) {
+    public CollectorController(Set<SensorEventHandler> sensorEventHandlerList, Set<HubEventHandler> hubEventHandlerList,
+                               MeterRegistry meterRegistry, LogSampler logSampler,
+                               DeliveryBackpressure backpressure, DeliveryProperties deliveryProperties,
+                               ExecutorService deliveryExecutor, IngestFilter ingestFilter) {
         // Преобразовываем набор хендлеров в map, где ключ — тип события от конкретного датчика или хаба.
         // Это нужно для упрощения поиска подходящего хендлера во время обработки событий
         this.sensorEventHandlers = sensorEventHandlerList.stream()
                 .collect(Collectors.toMap(SensorEventHandler::getMessageType, Function.identity()));
         this.hubEventHandlers = hubEventHandlerList.stream()
                 .collect(Collectors.toMap(HubEventHandler::getMessageType, Function.identity()));
+        this.logSampler = logSampler;
+        this.backpressure = backpressure;
+        this.deliveryProperties = deliveryProperties;
+        this.deliveryExecutor = deliveryExecutor;
+        this.ingestFilter = ingestFilter;
+
+        for (SensorEventProto.PayloadCase type : SensorEventProto.PayloadCase.values()) {
+            sensorHandleTimers.put(type, handleTimer(meterRegistry, "sensor", type.name()));
+        }
+        for (HubEventProto.PayloadCase type : HubEventProto.PayloadCase.values()) {
+            hubHandleTimers.put(type, handleTimer(meterRegistry, "hub", type.name()));
+        }
+        for (DeliveryMode mode : DeliveryMode.values()) {
+            deliveryFailures.put(mode, Counter.builder("telemetry.collector.delivery.failures")
+                    .description("События, которые не удалось отправить в Kafka")
+                    .tag("mode", mode.getValue())
+                    .register(meterRegistry));
+        }
+    }
+
+    private static Timer handleTimer(MeterRegistry meterRegistry, String kind, String type) {
+        return Timer.builder("telemetry.collector.handle")
+                .description("Время обработки события коллектором, включая постановку в очередь producer'а")
+                .tag("kind", kind)
+                .tag("type", type)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     @Override
     public void collectSensorEvent(SensorEventProto request, StreamObserver<Empty> responseObserver) {
-        log.info("Получили событие от датчика: {}", request);
-        try {
-            // проверяем, есть ли обработчик для полученного события
-            if (sensorEventHandlers.containsKey(request.getPayloadCase())) {
-                // если обработчик найден, передаём событие ему на обработку
-                sensorEventHandlers.get(request.getPayloadCase()).handle(request);
-            } else {
-                throw new IllegalArgumentException("Не могу найти обработчик для события " + request.getPayloadCase());
+        IngestDecision decision = ingestFilter.admit(request);
+        if (rejected(decision, request.getHubId(), request.getId(), responseObserver)) {
+            return;
+        }
+        DeliveryMode mode = DeliveryMode.current();
+        respond(deliverSensorEvent(mode, request, decision == IngestDecision.QUARANTINE), mode, responseObserver);
+    }
+
+    @Override
+    public void collectHubEvent(HubEventProto request, StreamObserver<Empty> responseObserver) {
+        if (rejected(ingestFilter.admit(request), request.getHubId(), null, responseObserver)) {
+            return;
+        }
+        DeliveryMode mode = DeliveryMode.current();
+        respond(dispatch(mode, () -> handleHubEvent(request)), mode, responseObserver);
+    }
+
+    @Override
+    public StreamObserver<SensorEventProto> collectSensorEvents(StreamObserver<CollectBatchResponse> responseObserver) {
+        DeliveryMode mode = DeliveryMode.current();
+        ServerCallStreamObserver<CollectBatchResponse> call =
+                (ServerCallStreamObserver<CollectBatchResponse>) responseObserver;
+        // события запрашиваются вручную, пока число неподтверждённых отправок ниже предела
+        call.disableAutoRequest();
+        call.request(deliveryProperties.getStreamWindow());
+        return new BatchStreamObserver<>(call, mode, backpressure, request -> {
+            IngestDecision decision = ingestFilter.admit(request);
+            return switch (decision) {
+                case ACCEPT -> deliverSensorEvent(mode, request, false);
+                case QUARANTINE -> deliverSensorEvent(mode, request, true);
+                case DUPLICATE -> CompletableFuture.completedFuture(null);
+                case RATE_LIMITED, UNKNOWN_DEVICE ->
+                        CompletableFuture.failedFuture(rejection(decision, request.getHubId(), request.getId()));
+            };
+        });
+    }
+
+    /**
+     * Отвечает на событие, которое входной фильтр не пропустил к обработчику.
+     * Повтор подтверждается как доставленный: его значение уже есть в Kafka.
+     *
+     * @return {@code true}, если ответ отправлен и обрабатывать событие не нужно
+     */
+    private static boolean rejected(IngestDecision decision, String hubId, String deviceId,
+                                    StreamObserver<Empty> responseObserver) {
+        switch (decision) {
+            case ACCEPT, QUARANTINE -> {
+                return false;
+            }
+            case DUPLICATE -> {
+                responseObserver.onNext(Empty.getDefaultInstance());
+                responseObserver.onCompleted();
+            }
+            case RATE_LIMITED, UNKNOWN_DEVICE -> responseObserver.onError(rejection(decision, hubId, deviceId));
+        }
+        return true;
+    }
+
+    private static StatusRuntimeException rejection(IngestDecision decision, String hubId, String deviceId) {
+        if (decision == IngestDecision.UNKNOWN_DEVICE) {
+            return Status.FAILED_PRECONDITION
+                    .withDescription("Устройство " + deviceId + " не зарегистрировано в хабе " + hubId)
+                    .asRuntimeException();
+        }
+        return Status.RESOURCE_EXHAUSTED
+                .withDescription("Превышена допустимая частота событий хаба " + hubId)
+                .asRuntimeException();
+    }
+
+    /**
+     * Отправляет событие датчика. Если отправка не удалась, входной фильтр забывает его значение
+     * до ответа клиенту, чтобы повтор хаба не был отброшен как дубликат.
+     */
+    private CompletableFuture<Void> deliverSensorEvent(DeliveryMode mode, SensorEventProto request,
+                                                       boolean quarantined) {
+        CompletableFuture<Void> delivery = dispatch(mode, () -> handleSensorEvent(request, quarantined));
+        if (quarantined) {
+            // значения незарегистрированных устройств фильтр не запоминает
+            return delivery;
+        }
+        return delivery.whenComplete((ignored, exception) -> {
+            if (exception != null) {
+                ingestFilter.forget(request);
             }
+        });
+    }
 
-            // после обработки события возвращаем ответ клиенту
+    /**
+     * Запускает обработку события в выбранном режиме и учитывает её в числе неподтверждённых отправок.
+     */
+    private CompletableFuture<Void> dispatch(DeliveryMode mode, Supplier<CompletableFuture<Void>> handling) {
+        backpressure.acquire();
+        CompletableFuture<Void> delivery = mode == DeliveryMode.FIRE_AND_FORGET
+                ? CompletableFuture.supplyAsync(handling, deliveryExecutor).thenCompose(Function.identity())
+                : handling.get();
+        return delivery.whenComplete((ignored, exception) -> {
+            backpressure.release();
+            if (exception != null) {
+                deliveryFailures.get(mode).increment();
+            }
+        });
+    }
+
+    private void respond(CompletableFuture<Void> delivery, DeliveryMode mode, StreamObserver<Empty> responseObserver) {
+        if (mode == DeliveryMode.FIRE_AND_FORGET) {
             responseObserver.onNext(Empty.getDefaultInstance());
-            // и завершаем обработку запроса
             responseObserver.onCompleted();
-        } catch (Exception e) {
-            // в случае исключения отправляем ошибку клиенту
-            log.error(e.getLocalizedMessage(), e);
-            responseObserver.onError(new StatusRuntimeException(Status.fromThrowable(e)));
+            return;
         }
-        log.info("Обработали событие от датчика: {}", request);
+        // ответ отправляется из callback'а producer'а, поток gRPC при этом не ждёт брокер
+        delivery.whenComplete((ignored, exception) -> {
+            if (exception == null) {
+                responseObserver.onNext(Empty.getDefaultInstance());
+                responseObserver.onCompleted();
+            } else {
+                Throwable cause = exception instanceof CompletionException ? exception.getCause() : exception;
+                // в случае исключения отправляем ошибку клиенту
+                log.error(cause.getLocalizedMessage(), cause);
+                responseObserver.onError(new StatusRuntimeException(Status.fromThrowable(cause)));
+            }
+        });
     }
 
-    @Override
-    public void collectHubEvent(HubEventProto request, StreamObserver<Empty> responseObserver) {
-        log.info("Получили событие от датчика: {}", request);
+    private CompletableFuture<Void> handleSensorEvent(SensorEventProto request, boolean quarantined) {
+        if (logSampler.sample(log)) {
+            log.debug("Получили событие от датчика: {}", request);
+        }
+        Timer.Sample sample = Timer.start();
+        CollectorHandleEvent event = new CollectorHandleEvent();
+        event.begin();
         try {
             // проверяем, есть ли обработчик для полученного события
-            if (hubEventHandlers.containsKey(request.getPayloadCase())) {
-                // если обработчик найден, передаём событие ему на обработку
-                hubEventHandlers.get(request.getPayloadCase()).handle(request);
-            } else {
+            SensorEventHandler handler = sensorEventHandlers.get(request.getPayloadCase());
+            if (handler == null) {
                 throw new IllegalArgumentException("Не могу найти обработчик для события " + request.getPayloadCase());
             }
+            // если обработчик найден, передаём событие ему на обработку
+            return quarantined ? handler.quarantine(request) : handler.handle(request);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            sample.stop(sensorHandleTimers.get(request.getPayloadCase()));
+            commitEvent(event, "sensor", request.getHubId(), request.getPayloadCase().name(), request.getSerializedSize());
+        }
+    }
 
-            // после обработки события возвращаем ответ клиенту
-            responseObserver.onNext(Empty.getDefaultInstance());
-            // и завершаем обработку запроса
-            responseObserver.onCompleted();
-        } catch (Exception e) {
-            // в случае исключения отправляем ошибку клиенту
-            log.error(e.getLocalizedMessage(), e);
-            responseObserver.onError(new StatusRuntimeException(Status.fromThrowable(e)));
+    private CompletableFuture<Void> handleHubEvent(HubEventProto request) {
+        if (logSampler.sample(log)) {
+            log.debug("Получили событие от хаба: {}", request);
+        }
+        Timer.Sample sample = Timer.start();
+        CollectorHandleEvent event = new CollectorHandleEvent();
+        event.begin();
+        try {
+            // проверяем, есть ли обработчик для полученного события
+            HubEventHandler handler = hubEventHandlers.get(request.getPayloadCase());
+            if (handler == null) {
+                throw new IllegalArgumentException("Не могу найти обработчик для события " + request.getPayloadCase());
+            }
+            // если обработчик найден, передаём событие ему на обработку
+            return handler.handle(request);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            sample.stop(hubHandleTimers.get(request.getPayloadCase()));
+            commitEvent(event, "hub", request.getHubId(), request.getPayloadCase().name(), request.getSerializedSize());
+        }
+    }
+
+    private static void commitEvent(CollectorHandleEvent event, String kind, String hubId, String type, int bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.hubId = hubId;
+            event.payloadType = type;
+            event.bytes = bytes;
+            event.commit();
         }
-        log.info("Обработали событие от датчика: {}", request);
     }
 }
@@ -0,0 +1,55 @@
+package ru.yandex.practicum.telemetry.collector.delivery;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Счётчик отправок в Kafka, ещё не получивших подтверждения, общий для всех вызовов коллектора.
+ * Потоковые вызовы запрашивают у клиента следующее событие через {@link #requestWhenAvailable(Runnable)}:
+ * пока счётчик выше предела, запросы откладываются, и gRPC перестаёт читать данные из соединения.
+ */
+public class DeliveryBackpressure {
+    private final int limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+    public DeliveryBackpressure(int limit) {
+        this.limit = limit;
+    }
+
+    public void acquire() {
+        inFlight.incrementAndGet();
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+        resumeWaiting();
+    }
+
+    /**
+     * Выполняет запрос сразу, если есть место, иначе — когда завершится одна из отправок.
+     */
+    public void requestWhenAvailable(Runnable request) {
+        waiting.add(request);
+        resumeWaiting();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int waiting() {
+        return waiting.size();
+    }
+
+    private void resumeWaiting() {
+        while (inFlight.get() < limit) {
+            Runnable request = waiting.poll();
+            if (request == null) {
+                return;
+            }
+            request.run();
+        }
+    }
+}
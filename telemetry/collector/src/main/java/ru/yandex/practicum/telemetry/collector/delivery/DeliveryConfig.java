@@ -0,0 +1,60 @@
+package ru.yandex.practicum.telemetry.collector.delivery;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class DeliveryConfig {
+
+    @Bean
+    @ConfigurationProperties("collector.delivery")
+    DeliveryProperties deliveryProperties() {
+        return new DeliveryProperties();
+    }
+
+    @GrpcGlobalServerInterceptor
+    DeliveryModeInterceptor deliveryModeInterceptor(DeliveryProperties properties) {
+        return new DeliveryModeInterceptor(properties.getDefaultMode());
+    }
+
+    @Bean
+    DeliveryBackpressure deliveryBackpressure(DeliveryProperties properties, MeterRegistry meterRegistry) {
+        DeliveryBackpressure backpressure = new DeliveryBackpressure(properties.getMaxInFlight());
+        Gauge.builder("telemetry.collector.delivery.in-flight", backpressure, DeliveryBackpressure::inFlight)
+                .description("Отправки в Kafka, ещё не получившие подтверждения")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.collector.delivery.paused-streams", backpressure, DeliveryBackpressure::waiting)
+                .description("Потоковые вызовы, ожидающие снижения числа неподтверждённых отправок")
+                .register(meterRegistry);
+        return backpressure;
+    }
+
+    /**
+     * Пул для режима fire-and-forget. Когда очередь заполнена, событие обрабатывается в потоке вызова,
+     * что замедляет клиента вместо неограниченного роста очереди.
+     */
+    @Bean(destroyMethod = "shutdown")
+    ExecutorService deliveryExecutor(DeliveryProperties properties) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                properties.getSerializerThreads(), properties.getSerializerThreads(),
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getSerializerQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "collector-delivery-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.telemetry.collector.delivery;
+
+import io.grpc.Context;
+
+/**
+ * Момент, в который коллектор подтверждает клиенту приём события.
+ * Режим выбирается для каждого вызова заголовком {@code x-delivery-mode}.
+ */
+public enum DeliveryMode {
+    /**
+     * Ответ отправляется сразу, а сериализация и отправка в Kafka выполняются в отдельном пуле потоков.
+     * Ошибки отправки клиенту не возвращаются.
+     */
+    FIRE_AND_FORGET("fire-and-forget"),
+
+    /**
+     * Ответ отправляется из callback'а producer'а, когда брокер подтвердил запись
+     * или запись сохранена в журнале коллектора. Поток обработчика при этом не блокируется.
+     */
+    LEADER_ACK("leader-ack");
+
+    static final Context.Key<DeliveryMode> CONTEXT_KEY = Context.key("delivery-mode");
+
+    private final String value;
+
+    DeliveryMode(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Режим текущего вызова, выбранный {@link DeliveryModeInterceptor}.
+     */
+    public static DeliveryMode current() {
+        DeliveryMode mode = CONTEXT_KEY.get();
+        return mode == null ? LEADER_ACK : mode;
+    }
+
+    public static DeliveryMode fromValue(String value) {
+        for (DeliveryMode mode : values()) {
+            if (mode.value.equalsIgnoreCase(value) || mode.name().equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный режим доставки: " + value);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.telemetry.collector.delivery;
+
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * Читает режим доставки из заголовка вызова и кладёт его в контекст gRPC.
+ */
+public class DeliveryModeInterceptor implements ServerInterceptor {
+    public static final Metadata.Key<String> DELIVERY_MODE_HEADER =
+            Metadata.Key.of("x-delivery-mode", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final DeliveryMode defaultMode;
+
+    public DeliveryModeInterceptor(DeliveryMode defaultMode) {
+        this.defaultMode = defaultMode;
+    }
+
+    @Override
+    public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+                                                        ServerCallHandler<Q, R> next) {
+        String value = headers.get(DELIVERY_MODE_HEADER);
+        DeliveryMode mode;
+        try {
+            mode = value == null ? defaultMode : DeliveryMode.fromValue(value);
+        } catch (IllegalArgumentException e) {
+            call.close(Status.INVALID_ARGUMENT.withDescription(e.getMessage()), new Metadata());
+            return new ServerCall.Listener<>() {
+            };
+        }
+        Context context = Context.current().withValue(DeliveryMode.CONTEXT_KEY, mode);
+        return Contexts.interceptCall(context, call, headers, next);
+    }
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.telemetry.collector.delivery;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Настройки подтверждения приёма событий коллектором.
+ */
+@Getter
+@Setter
+public class DeliveryProperties {
+    /**
+     * Режим для вызовов без заголовка {@code x-delivery-mode}.
+     */
+    private DeliveryMode defaultMode = DeliveryMode.LEADER_ACK;
+
+    /**
+     * Предел неподтверждённых отправок в Kafka, после которого потоковые вызовы перестают
+     * запрашивать у клиентов новые события.
+     */
+    private int maxInFlight = 10_000;
+
+    /**
+     * Сколько событий потоковый вызов запрашивает у клиента сразу после открытия.
+     */
+    private int streamWindow = 64;
+
+    /**
+     * Потоки, в которых события сериализуются и отправляются в режиме fire-and-forget.
+     */
+    private int serializerThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Очередь пула сериализации. Когда она заполнена, событие обрабатывается в потоке вызова.
+     */
+    private int serializerQueueCapacity = 10_000;
+}
@@ -0,0 +1,154 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+import java.util.Arrays;
+
+/**
+ * Таблица последних значений датчиков, разбитая на сегменты со своими блокировками.
+ * Датчик хранится как 64-битный отпечаток пары (хаб, датчик) с хэшем значения и временем пересылки,
+ * в сегменте с открытой адресацией: три массива long без объектов на каждую запись.
+ * <p>
+ * При совпадении отпечатков разных датчиков одинаковым должен оказаться и хэш значения,
+ * поэтому ложное отбрасывание практически исключено. Если сегмент переполнен даже после
+ * удаления устаревших записей, он очищается: это приводит только к пропуску лишних повторов.
+ */
+class DeduplicationTable {
+    private static final long EMPTY = 0;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final long windowNanos;
+
+    DeduplicationTable(int stripes, int stripeCapacity, long windowNanos) {
+        if (Integer.bitCount(stripes) != 1 || Integer.bitCount(stripeCapacity) != 1) {
+            throw new IllegalArgumentException("Число и ёмкость сегментов должны быть степенями двойки");
+        }
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe(stripeCapacity);
+        }
+        this.stripeMask = stripes - 1;
+        this.windowNanos = windowNanos;
+    }
+
+    /**
+     * Проверяет, совпадает ли значение с последним пересланным в пределах окна, и если нет — запоминает его.
+     *
+     * @return {@code true}, если событие — повтор и его можно не пересылать
+     */
+    boolean isDuplicate(long key, long valueHash, long now) {
+        if (key == EMPTY) {
+            key = 1;
+        }
+        Stripe stripe = stripes[(int) (key >>> 32) & stripeMask];
+        synchronized (stripe) {
+            return stripe.checkAndUpdate(key, valueHash, now, windowNanos);
+        }
+    }
+
+    /**
+     * Забывает значение, отправка которого не удалась: следующее такое же показание датчика будет переслано.
+     * Если датчик уже успел переслать другое значение, ничего не меняется.
+     */
+    void forget(long key, long valueHash) {
+        if (key == EMPTY) {
+            key = 1;
+        }
+        Stripe stripe = stripes[(int) (key >>> 32) & stripeMask];
+        synchronized (stripe) {
+            stripe.expire(key, valueHash, windowNanos);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    private static final class Stripe {
+        private final int capacity;
+        private final int mask;
+        private final int maxSize;
+        private final long[] keys;
+        private final long[] values;
+        private final long[] forwardedAt;
+        private int size;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.maxSize = capacity / 4 * 3;
+            this.keys = new long[capacity];
+            this.values = new long[capacity];
+            this.forwardedAt = new long[capacity];
+        }
+
+        boolean checkAndUpdate(long key, long valueHash, long now, long windowNanos) {
+            int slot = find(key);
+            if (keys[slot] == key) {
+                if (values[slot] == valueHash && now - forwardedAt[slot] < windowNanos) {
+                    return true;
+                }
+                values[slot] = valueHash;
+                forwardedAt[slot] = now;
+                return false;
+            }
+            if (size >= maxSize) {
+                evictExpired(now, windowNanos);
+                slot = find(key);
+            }
+            keys[slot] = key;
+            values[slot] = valueHash;
+            forwardedAt[slot] = now;
+            size++;
+            return false;
+        }
+
+        void expire(long key, long valueHash, long windowNanos) {
+            int slot = find(key);
+            if (keys[slot] == key && values[slot] == valueHash) {
+                // запись остаётся на месте, чтобы не ломать цепочки открытой адресации, но окно для неё истекло
+                forwardedAt[slot] -= windowNanos;
+            }
+        }
+
+        /**
+         * Слот с ключом или первый пустой слот на его пути.
+         */
+        private int find(long key) {
+            int slot = (int) key & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Перестраивает сегмент без записей старше окна: они больше не подавляют повторы.
+         */
+        private void evictExpired(long now, long windowNanos) {
+            long[] oldKeys = Arrays.copyOf(keys, capacity);
+            long[] oldValues = Arrays.copyOf(values, capacity);
+            long[] oldForwardedAt = Arrays.copyOf(forwardedAt, capacity);
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+            for (int i = 0; i < capacity; i++) {
+                if (oldKeys[i] != EMPTY && now - oldForwardedAt[i] < windowNanos) {
+                    int slot = find(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                    forwardedAt[slot] = oldForwardedAt[i];
+                    size++;
+                }
+            }
+            if (size >= maxSize) {
+                Arrays.fill(keys, EMPTY);
+                size = 0;
+            }
+        }
+    }
+}
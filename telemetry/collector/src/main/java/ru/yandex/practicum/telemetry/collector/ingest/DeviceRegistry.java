@@ -0,0 +1,136 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+import ru.yandex.practicum.telemetry.common.hash.Fingerprints;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Реестр устройств, зарегистрированных в хабах. Устройство хранится как 64-битный отпечаток
+ * пары (хаб, устройство) в {@link FingerprintSet}, около 16 байт на устройство.
+ * <p>
+ * Перед множеством стоит {@link BloomFilter}: события незарегистрированных устройств, которые и нужно
+ * отсеивать, в большинстве случаев отклоняются без блокировки. Из фильтра Блума нельзя удалять,
+ * поэтому после множества удалений и при росте числа устройств сверх расчётного он перестраивается.
+ * <p>
+ * Пока реестр восстанавливается из топика конфигураций хабов, все устройства считаются известными, а изменения,
+ * пришедшие от хабов, откладываются и применяются после восстановления: так более старые записи
+ * топика не перекроют их.
+ */
+public class DeviceRegistry {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final FingerprintSet devices;
+    private final double falsePositiveRate;
+    private final List<Update> deferred = new ArrayList<>();
+
+    private volatile BloomFilter bloom;
+    private volatile boolean ready;
+    private long bloomCapacity;
+    private int removedSinceRebuild;
+
+    public DeviceRegistry(long expectedDevices, double falsePositiveRate) {
+        this.devices = new FingerprintSet((int) Math.min(expectedDevices, 1 << 24));
+        this.falsePositiveRate = falsePositiveRate;
+        this.bloomCapacity = expectedDevices;
+        this.bloom = new BloomFilter(expectedDevices, falsePositiveRate);
+    }
+
+    public boolean isKnown(String hubId, String deviceId) {
+        if (!ready) {
+            return true;
+        }
+        long key = Fingerprints.of(hubId, deviceId);
+        if (!bloom.mightContain(key)) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return devices.contains(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Применяет регистрацию или удаление устройства, которое коллектор только что записал в Kafka,
+     * или которое пришло с новой конфигурацией хаба после восстановления.
+     */
+    public void apply(String hubId, String deviceId, boolean added) {
+        Update update = new Update(Fingerprints.of(hubId, deviceId), added);
+        lock.writeLock().lock();
+        try {
+            if (ready) {
+                applyLocked(update);
+            } else {
+                deferred.add(update);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Применяет устройство, прочитанное из топика конфигураций хабов при восстановлении.
+     */
+    public void restore(String hubId, String deviceId, boolean added) {
+        lock.writeLock().lock();
+        try {
+            applyLocked(new Update(Fingerprints.of(hubId, deviceId), added));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Завершает восстановление: применяет отложенные изменения и включает проверку.
+     */
+    public void markReady() {
+        lock.writeLock().lock();
+        try {
+            deferred.forEach(this::applyLocked);
+            deferred.clear();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return devices.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void applyLocked(Update update) {
+        if (update.added()) {
+            if (devices.add(update.key())) {
+                bloom.add(update.key());
+                if (devices.size() > bloomCapacity) {
+                    bloomCapacity *= 2;
+                    rebuildBloom();
+                }
+            }
+        } else if (devices.remove(update.key()) && ++removedSinceRebuild > Math.max(1024, devices.size())) {
+            rebuildBloom();
+        }
+    }
+
+    private void rebuildBloom() {
+        BloomFilter rebuilt = new BloomFilter(bloomCapacity, falsePositiveRate);
+        devices.forEach(rebuilt::add);
+        bloom = rebuilt;
+        removedSinceRebuild = 0;
+    }
+
+    private record Update(long key, boolean added) {
+    }
+}
@@ -0,0 +1,192 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubDeviceAvro;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Восстанавливает реестр устройств из компактного топика конфигураций хабов, который ведёт анализатор:
+ * брокер хранит в нём последнюю конфигурацию каждого хаба, а топик хабов со временем обрезается
+ * по сроку хранения. Топик читается с начала до смещений, которые были последними на момент запуска.
+ * Пока компактизация не прошла, в топике бывает несколько версий одного хаба, поэтому в реестр
+ * попадает только последняя прочитанная.
+ * <p>
+ * Проверка включается только после того, как топик дочитан. Если это не удалось за
+ * {@code timeout}, пишется ошибка и чтение продолжается, а при ошибке повторяется с начала:
+ * до тех пор все устройства считаются известными.
+ * <p>
+ * После восстановления топик читается дальше, как это делает анализатор: устройства, зарегистрированные
+ * или удалённые через другие экземпляры коллектора, попадают в реестр с новой конфигурацией хаба.
+ * Для этого загрузчик помнит идентификаторы устройств каждого хаба и применяет к реестру разницу.
+ */
+@Slf4j
+public class DeviceRegistryLoader implements AutoCloseable {
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+    private static final Duration RETRY_BACKOFF = Duration.ofSeconds(5);
+
+    private final DeviceRegistry registry;
+    private final Consumer<String, HubConfigAvro> consumer;
+    private final String topic;
+    private final Duration timeout;
+    private final Thread thread;
+    // устройства каждого хаба по последней прочитанной конфигурации; используется только потоком чтения
+    private final Map<String, Set<String>> hubDevices = new HashMap<>();
+    private volatile boolean running = true;
+
+    public DeviceRegistryLoader(DeviceRegistry registry, Consumer<String, HubConfigAvro> consumer,
+                                String topic, Duration timeout) {
+        this.registry = registry;
+        this.consumer = consumer;
+        this.topic = topic;
+        this.timeout = timeout;
+        this.thread = new Thread(this::run, "device-registry-loader");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void run() {
+        boolean loaded = false;
+        try {
+            while (running) {
+                try {
+                    if (!loaded) {
+                        load();
+                        loaded = true;
+                    }
+                    follow();
+                } catch (WakeupException e) {
+                    throw e;
+                } catch (Exception e) {
+                    if (loaded) {
+                        log.error("Ошибка чтения топика {}, повтор через {}", topic, RETRY_BACKOFF, e);
+                    } else {
+                        log.error("Ошибка восстановления реестра устройств из топика {}, повтор через {}; "
+                                + "до восстановления все устройства считаются известными", topic, RETRY_BACKOFF, e);
+                    }
+                    Thread.sleep(RETRY_BACKOFF);
+                }
+            }
+        } catch (WakeupException | InterruptedException e) {
+            log.info("Чтение реестра устройств прервано остановкой сервиса");
+        } finally {
+            consumer.close();
+        }
+    }
+
+    private void load() {
+        long started = System.nanoTime();
+        long records = 0;
+        List<PartitionInfo> infos = consumer.partitionsFor(topic, timeout);
+        if (infos == null || infos.isEmpty()) {
+            // пустой реестр отклонил бы все устройства: ждём, пока анализатор создаст топик
+            throw new IllegalStateException("Топик " + topic + " не найден");
+        }
+        List<TopicPartition> partitions = infos.stream()
+                .map(info -> new TopicPartition(info.topic(), info.partition()))
+                .toList();
+        consumer.assign(partitions);
+        consumer.seekToBeginning(partitions);
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions, timeout);
+
+        Map<String, HubConfigAvro> configs = new HashMap<>();
+        long deadline = started + timeout.toNanos();
+        boolean overdue = false;
+        while (!reachedEnd(endOffsets)) {
+            if (!overdue && System.nanoTime() > deadline) {
+                overdue = true;
+                log.error("Реестр устройств не восстановлен за {}, прочитано {} записей; чтение продолжается, "
+                        + "до его окончания все устройства считаются известными", timeout, records);
+            }
+            // записи дальше конечных смещений тоже учитываются: чтение потом продолжается с позиции после них
+            for (ConsumerRecord<String, HubConfigAvro> record : consumer.poll(POLL_TIMEOUT)) {
+                if (record.value() == null) {
+                    configs.remove(record.key());
+                } else {
+                    configs.put(record.key(), record.value());
+                }
+                records++;
+            }
+        }
+        hubDevices.clear();
+        for (HubConfigAvro config : configs.values()) {
+            Set<String> devices = deviceIds(config);
+            hubDevices.put(config.getHubId(), devices);
+            for (String deviceId : devices) {
+                registry.restore(config.getHubId(), deviceId, true);
+            }
+        }
+        registry.markReady();
+        log.info("Реестр устройств восстановлен из {} записей топика {} за {} мс: {} хабов, {} устройств",
+                records, topic, Duration.ofNanos(System.nanoTime() - started).toMillis(), configs.size(),
+                registry.size());
+    }
+
+    /**
+     * Читает новые конфигурации хабов, пока сервис не остановлен.
+     */
+    private void follow() {
+        while (running) {
+            for (ConsumerRecord<String, HubConfigAvro> record : consumer.poll(POLL_TIMEOUT)) {
+                Set<String> devices = record.value() == null ? Set.of() : deviceIds(record.value());
+                Set<String> previous = devices.isEmpty()
+                        ? hubDevices.remove(record.key())
+                        : hubDevices.put(record.key(), devices);
+                if (previous == null) {
+                    previous = Set.of();
+                }
+                for (String deviceId : devices) {
+                    if (!previous.contains(deviceId)) {
+                        registry.apply(record.key(), deviceId, true);
+                    }
+                }
+                for (String deviceId : previous) {
+                    if (!devices.contains(deviceId)) {
+                        registry.apply(record.key(), deviceId, false);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Set<String> deviceIds(HubConfigAvro config) {
+        Set<String> ids = new HashSet<>();
+        for (HubDeviceAvro device : config.getDevices()) {
+            ids.add(device.getId());
+        }
+        return ids;
+    }
+
+    private boolean reachedEnd(Map<TopicPartition, Long> endOffsets) {
+        for (Map.Entry<TopicPartition, Long> end : endOffsets.entrySet()) {
+            if (consumer.position(end.getKey()) < end.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        if (thread.isAlive()) {
+            consumer.wakeup();
+            thread.interrupt();
+            thread.join(timeout.toMillis());
+        }
+    }
+}
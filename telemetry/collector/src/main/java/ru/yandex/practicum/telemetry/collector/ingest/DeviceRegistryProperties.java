@@ -0,0 +1,34 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки реестра известных устройств коллектора.
+ */
+@Getter
+@Setter
+public class DeviceRegistryProperties {
+    private boolean enabled = true;
+
+    private UnknownDevicePolicy unknownDevicePolicy = UnknownDevicePolicy.QUARANTINE;
+
+    private String quarantineTopic = "telemetry.sensors.quarantine.v1";
+
+    /**
+     * Ожидаемое число устройств: по нему рассчитывается размер фильтра Блума.
+     * Если устройств становится больше, фильтр перестраивается с двойным запасом.
+     */
+    private long expectedDevices = 1_000_000;
+
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * Через сколько сообщить об ошибке, если реестр ещё не восстановлен из топика конфигураций хабов.
+     * Чтение на этом не прекращается: до его окончания все устройства считаются известными,
+     * чтобы не отбросить события зарегистрированных датчиков.
+     */
+    private Duration bootstrapTimeout = Duration.ofMinutes(2);
+}
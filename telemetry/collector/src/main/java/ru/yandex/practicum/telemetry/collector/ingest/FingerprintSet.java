@@ -0,0 +1,100 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Множество ненулевых 64-битных отпечатков на одном массиве long с линейным пробированием.
+ * Удаление сдвигает следующие записи цепочки назад, поэтому «надгробий» нет и поиск не деградирует.
+ * Не потокобезопасно.
+ */
+class FingerprintSet {
+    private long[] slots;
+    private int mask;
+    private int size;
+
+    FingerprintSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        this.slots = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    boolean contains(long key) {
+        int slot = (int) key & mask;
+        while (slots[slot] != 0) {
+            if (slots[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    boolean add(long key) {
+        if ((size + 1) * 2 > slots.length) {
+            resize(slots.length * 2);
+        }
+        int slot = (int) key & mask;
+        while (slots[slot] != 0) {
+            if (slots[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = key;
+        size++;
+        return true;
+    }
+
+    boolean remove(long key) {
+        int hole = (int) key & mask;
+        while (slots[hole] != key) {
+            if (slots[hole] == 0) {
+                return false;
+            }
+            hole = (hole + 1) & mask;
+        }
+        int next = hole;
+        while (true) {
+            next = (next + 1) & mask;
+            if (slots[next] == 0) {
+                break;
+            }
+            int home = (int) slots[next] & mask;
+            // запись остаётся на месте, если её домашний слот лежит между дырой и ней самой
+            boolean reachable = hole <= next
+                    ? hole < home && home <= next
+                    : hole < home || home <= next;
+            if (!reachable) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+        }
+        slots[hole] = 0;
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(LongConsumer action) {
+        for (long key : slots) {
+            if (key != 0) {
+                action.accept(key);
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] old = slots;
+        slots = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+        for (long key : old) {
+            if (key != 0) {
+                add(key);
+            }
+        }
+    }
+}
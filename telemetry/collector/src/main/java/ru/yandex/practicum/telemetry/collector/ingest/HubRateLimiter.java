@@ -0,0 +1,72 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Корзины токенов по хабам. Хаб, не присылавший событий дольше {@code idleEvictionNanos}, забывается.
+ */
+class HubRateLimiter {
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final double defaultRate;
+    private final int burst;
+    private final Map<String, Double> rateOverrides;
+    private final long idleEvictionNanos;
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    HubRateLimiter(double defaultRate, int burst, Map<String, Double> rateOverrides, long idleEvictionNanos) {
+        this.defaultRate = defaultRate;
+        this.burst = burst;
+        this.rateOverrides = Map.copyOf(rateOverrides);
+        this.idleEvictionNanos = idleEvictionNanos;
+    }
+
+    boolean tryAcquire(String hubId, long now) {
+        sweepIfDue(now);
+        TokenBucket bucket = buckets.computeIfAbsent(hubId,
+                hub -> new TokenBucket(rateOverrides.getOrDefault(hub, defaultRate), burst, now));
+        return bucket.tryAcquire(now);
+    }
+
+    int trackedHubs() {
+        return buckets.size();
+    }
+
+    private void sweepIfDue(long now) {
+        long last = lastSweep.get();
+        if (now - last > SWEEP_INTERVAL_NANOS && lastSweep.compareAndSet(last, now)) {
+            buckets.values().removeIf(bucket -> now - bucket.lastUsed > idleEvictionNanos);
+        }
+    }
+
+    private static final class TokenBucket {
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill;
+        private volatile long lastUsed;
+
+        TokenBucket(double ratePerSecond, int burst, long now) {
+            this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, burst);
+            this.tokens = capacity;
+            this.lastRefill = now;
+            this.lastUsed = now;
+        }
+
+        synchronized boolean tryAcquire(long now) {
+            lastUsed = now;
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+    }
+}
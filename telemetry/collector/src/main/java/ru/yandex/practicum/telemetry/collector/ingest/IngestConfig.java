@@ -0,0 +1,104 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+import deserializer.HubConfigDeserializer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+import ru.yandex.practicum.telemetry.common.hitters.HeavyHitterProperties;
+import ru.yandex.practicum.telemetry.common.hitters.HeavyHitters;
+import ru.yandex.practicum.telemetry.common.hitters.HeavyHittersEndpoint;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopicProvisioner;
+
+import java.util.List;
+import java.util.Properties;
+
+@Configuration
+public class IngestConfig {
+
+    @Bean
+    @ConfigurationProperties("collector.ingest")
+    IngestProperties ingestProperties() {
+        return new IngestProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("collector.registry")
+    DeviceRegistryProperties deviceRegistryProperties() {
+        return new DeviceRegistryProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("collector.heavy-hitters")
+    HeavyHitterProperties heavyHitterProperties() {
+        return new HeavyHitterProperties();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "collector.heavy-hitters.enabled", havingValue = "true", matchIfMissing = true)
+    HeavyHitters heavyHitters(HeavyHitterProperties properties, MeterRegistry meterRegistry) {
+        return new HeavyHitters(properties, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "collector.heavy-hitters.enabled", havingValue = "true", matchIfMissing = true)
+    HeavyHittersEndpoint heavyHittersEndpoint(HeavyHitters heavyHitters) {
+        return new HeavyHittersEndpoint(heavyHitters);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "collector.registry.enabled", havingValue = "true", matchIfMissing = true)
+    DeviceRegistry deviceRegistry(DeviceRegistryProperties properties, MeterRegistry meterRegistry) {
+        DeviceRegistry registry = new DeviceRegistry(properties.getExpectedDevices(), properties.getFalsePositiveRate());
+        Gauge.builder("telemetry.collector.registry.devices", registry, DeviceRegistry::size)
+                .description("Устройства, зарегистрированные в хабах")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.collector.registry.ready", registry, r -> r.isReady() ? 1 : 0)
+                .description("Реестр устройств восстановлен из топика конфигураций хабов")
+                .register(meterRegistry);
+        return registry;
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "collector.registry.enabled", havingValue = "true", matchIfMissing = true)
+    DeviceRegistryLoader deviceRegistryLoader(DeviceRegistry registry, DeviceRegistryProperties properties,
+                                              @Value("${kafka.bootstrap.server}") String bootstrapServer,
+                                              @Value("${kafka.topic.hub-config}") String hubConfigTopic) {
+        Properties config = new Properties();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServer);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, HubConfigDeserializer.class.getName());
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 5000);
+        return new DeviceRegistryLoader(registry, new KafkaConsumer<String, HubConfigAvro>(config),
+                hubConfigTopic, properties.getBootstrapTimeout());
+    }
+
+    @Bean
+    IngestFilter ingestFilter(IngestProperties properties, DeviceRegistryProperties registryProperties,
+                              ObjectProvider<DeviceRegistry> registry, ObjectProvider<HeavyHitters> heavyHitters,
+                              TopicProvisioner topicProvisioner,
+                              MeterRegistry meterRegistry) {
+        DeviceRegistry deviceRegistry = registry.getIfAvailable();
+        if (deviceRegistry != null && registryProperties.getUnknownDevicePolicy() == UnknownDevicePolicy.QUARANTINE) {
+            topicProvisioner.provision(List.of(registryProperties.getQuarantineTopic()));
+        }
+        IngestFilter filter = new IngestFilter(properties, deviceRegistry, heavyHitters.getIfAvailable(),
+                registryProperties.getUnknownDevicePolicy(), meterRegistry);
+        Gauge.builder("telemetry.collector.ingest.tracked-sensors", filter, IngestFilter::trackedSensors)
+                .description("Датчики, последние значения которых помнит фильтр повторов")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.collector.ingest.tracked-hubs", filter, IngestFilter::trackedHubs)
+                .description("Хабы с активной корзиной токенов")
+                .register(meterRegistry);
+        return filter;
+    }
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+/**
+ * Решение входного фильтра по событию.
+ */
+public enum IngestDecision {
+    /**
+     * Событие передаётся обработчику.
+     */
+    ACCEPT,
+    /**
+     * Значение датчика не изменилось: событие подтверждается клиенту, но в Kafka не отправляется.
+     */
+    DUPLICATE,
+    /**
+     * Хаб превысил допустимую частоту: клиент получает {@code RESOURCE_EXHAUSTED}.
+     */
+    RATE_LIMITED,
+    /**
+     * Устройство не зарегистрировано в хабе: клиент получает {@code FAILED_PRECONDITION}.
+     */
+    UNKNOWN_DEVICE,
+    /**
+     * Устройство не зарегистрировано в хабе: событие подтверждается клиенту и уходит в топик карантина.
+     */
+    QUARANTINE
+}
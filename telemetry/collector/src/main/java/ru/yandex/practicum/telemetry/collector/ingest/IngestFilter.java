@@ -0,0 +1,178 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+import com.google.protobuf.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.telemetry.common.hash.Fingerprints;
+import ru.yandex.practicum.telemetry.common.hitters.HeavyHitters;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Входной фильтр коллектора. Работает до сериализации и отправки в Kafka:
+ * <ul>
+ *     <li>учитывает частоты хабов и датчиков в {@link HeavyHitters} и, если включено, пропускает только
+ *     каждое {@code heavy-hitter-sample-every}-е событие хаба, аномально частого в прошлом окне;</li>
+ *     <li>ограничивает частоту событий каждого хаба корзиной токенов;</li>
+ *     <li>находит события устройств, не зарегистрированных в своём хабе, по {@link DeviceRegistry};</li>
+ *     <li>отбрасывает события датчиков, значение которых совпадает с последним пересланным в пределах окна.</li>
+ * </ul>
+ * Проверки идут в этом порядке: учёт частых хабов, затем ограничение частоты, поэтому события,
+ * отброшенные прореживанием, лимит хаба не расходуют, а повторы расходуют. Незарегистрированные
+ * устройства не попадают в таблицу последних значений.
+ * <p>
+ * Значение запоминается при приёме, до подтверждения Kafka. Если отправка не удалась, вызывающий
+ * передаёт событие в {@link #forget(SensorEventProto)}, иначе повтор хаба был бы подтверждён как дубликат
+ * и потерян.
+ */
+public class IngestFilter {
+    private final DeduplicationTable deduplication;
+    private final HubRateLimiter rateLimiter;
+    private final DeviceRegistry registry;
+    private final HeavyHitters heavyHitters;
+    private final int heavyHitterSampleEvery;
+    private final UnknownDevicePolicy unknownDevicePolicy;
+    private final Counter unknownDevices;
+    private final Counter duplicates;
+    private final Counter throttled;
+    private final Counter heavyHitterDropped;
+
+    /**
+     * @param registry     реестр устройств или {@code null}, если проверка регистрации выключена
+     * @param heavyHitters учёт самых частых хабов и датчиков или {@code null}, если он выключен
+     */
+    public IngestFilter(IngestProperties properties, DeviceRegistry registry, HeavyHitters heavyHitters,
+                        UnknownDevicePolicy unknownDevicePolicy, MeterRegistry meterRegistry) {
+        this.deduplication = properties.isDeduplicationEnabled()
+                ? new DeduplicationTable(properties.getDeduplicationStripes(),
+                properties.getDeduplicationStripeCapacity(), properties.getDeduplicationWindow().toNanos())
+                : null;
+        this.rateLimiter = properties.isRateLimitEnabled()
+                ? new HubRateLimiter(properties.getHubRate(), properties.getHubBurst(),
+                properties.getHubRateOverrides(), properties.getIdleHubEviction().toNanos())
+                : null;
+        this.duplicates = dropCounter(meterRegistry, "duplicate");
+        this.throttled = dropCounter(meterRegistry, "rate-limited");
+        this.heavyHitterDropped = dropCounter(meterRegistry, "heavy-hitter");
+        this.registry = registry;
+        this.heavyHitters = heavyHitters;
+        // 0 - частые хабы только учитываются
+        this.heavyHitterSampleEvery = properties.isHeavyHitterThrottleEnabled()
+                ? properties.getHeavyHitterSampleEvery()
+                : 0;
+        this.unknownDevicePolicy = unknownDevicePolicy;
+        this.unknownDevices = Counter.builder("telemetry.collector.ingest.unknown-devices")
+                .description("События устройств, не зарегистрированных в своём хабе")
+                .tag("policy", unknownDevicePolicy.name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    private static Counter dropCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("telemetry.collector.ingest.dropped")
+                .description("События, не переданные в Kafka входным фильтром")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    public IngestDecision admit(SensorEventProto event) {
+        // частоты считаются до всех проверок: хаб, упирающийся в лимит, тоже должен быть виден
+        if (heavyHitters != null
+                && sampledOut(heavyHitters.recordSensor(event.getHubId(), event.getId(), System.currentTimeMillis()))) {
+            return IngestDecision.RATE_LIMITED;
+        }
+        long now = System.nanoTime();
+        if (!acquire(event.getHubId(), now)) {
+            return IngestDecision.RATE_LIMITED;
+        }
+        if (registry != null && !registry.isKnown(event.getHubId(), event.getId())) {
+            unknownDevices.increment();
+            switch (unknownDevicePolicy) {
+                case REJECT -> {
+                    return IngestDecision.UNKNOWN_DEVICE;
+                }
+                case QUARANTINE -> {
+                    return IngestDecision.QUARANTINE;
+                }
+                case ALLOW -> {
+                }
+            }
+        }
+        if (deduplication != null && deduplication.isDuplicate(
+                Fingerprints.of(event.getHubId(), event.getId()), payloadHash(event), now)) {
+            duplicates.increment();
+            return IngestDecision.DUPLICATE;
+        }
+        return IngestDecision.ACCEPT;
+    }
+
+    /**
+     * Забывает значение датчика, которое фильтр пропустил, но отправить в Kafka не удалось.
+     */
+    public void forget(SensorEventProto event) {
+        if (deduplication != null) {
+            deduplication.forget(Fingerprints.of(event.getHubId(), event.getId()), payloadHash(event));
+        }
+    }
+
+    /**
+     * События хаба не дедуплицируются: каждое из них меняет конфигурацию, но они входят в лимит хаба.
+     */
+    public IngestDecision admit(HubEventProto event) {
+        if (heavyHitters != null) {
+            // события хаба меняют конфигурацию, поэтому только учитываются и не прореживаются
+            heavyHitters.recordHub(event.getHubId(), System.currentTimeMillis());
+        }
+        return acquire(event.getHubId(), System.nanoTime()) ? IngestDecision.ACCEPT : IngestDecision.RATE_LIMITED;
+    }
+
+    public int trackedSensors() {
+        return deduplication == null ? 0 : deduplication.size();
+    }
+
+    public int trackedHubs() {
+        return rateLimiter == null ? 0 : rateLimiter.trackedHubs();
+    }
+
+    private boolean acquire(String hubId, long now) {
+        if (rateLimiter == null || rateLimiter.tryAcquire(hubId, now)) {
+            return true;
+        }
+        throttled.increment();
+        return false;
+    }
+
+    /**
+     * Прореживание событий хаба, аномально частого в прошлом окне: проходит в среднем одно из
+     * {@code heavy-hitter-sample-every}, остальные отклоняются как превысившие частоту.
+     */
+    private boolean sampledOut(boolean heavy) {
+        if (!heavy || heavyHitterSampleEvery <= 1
+                || ThreadLocalRandom.current().nextInt(heavyHitterSampleEvery) == 0) {
+            return false;
+        }
+        heavyHitterDropped.increment();
+        return true;
+    }
+
+    /**
+     * Хэш значения без идентификаторов и времени события: только тип и содержимое показаний.
+     */
+    private static long payloadHash(SensorEventProto event) {
+        Message payload = payloadOf(event);
+        return Fingerprints.of(event.getPayloadCase().getNumber(),
+                payload == null ? new byte[0] : payload.toByteArray());
+    }
+
+    private static Message payloadOf(SensorEventProto event) {
+        return switch (event.getPayloadCase()) {
+            case MOTION_SENSOR_EVENT -> event.getMotionSensorEvent();
+            case TEMPERATURE_SENSOR_EVENT -> event.getTemperatureSensorEvent();
+            case LIGHT_SENSOR_EVENT -> event.getLightSensorEvent();
+            case CLIMATE_SENSOR_EVENT -> event.getClimateSensorEvent();
+            case SWITCH_SENSOR_EVENT -> event.getSwitchSensorEvent();
+            case PAYLOAD_NOT_SET -> null;
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Настройки входного фильтра коллектора: отбрасывание повторов и ограничение частоты по хабам.
+ */
+@Getter
+@Setter
+public class IngestProperties {
+    private boolean deduplicationEnabled = true;
+
+    /**
+     * Повтор последнего значения датчика отбрасывается, если с пересылки этого значения прошло меньше окна.
+     * По истечении окна значение пересылается снова, и нижние стадии видят, что датчик жив.
+     */
+    private Duration deduplicationWindow = Duration.ofSeconds(30);
+
+    /**
+     * Число независимых сегментов таблицы последних значений. Степень двойки.
+     */
+    private int deduplicationStripes = 64;
+
+    /**
+     * Ёмкость одного сегмента. Степень двойки.
+     */
+    private int deduplicationStripeCapacity = 16_384;
+
+    private boolean rateLimitEnabled = true;
+
+    /**
+     * Допустимая средняя частота событий от одного хаба, событий в секунду.
+     */
+    private double hubRate = 100;
+
+    /**
+     * Сколько событий хаб может прислать пачкой сверх средней частоты.
+     */
+    private int hubBurst = 200;
+
+    /**
+     * Частота для отдельных хабов.
+     */
+    private Map<String, Double> hubRateOverrides = new HashMap<>();
+
+    /**
+     * Через сколько без событий хаб забывается ограничителем.
+     */
+    private Duration idleHubEviction = Duration.ofMinutes(10);
+
+    /**
+     * Прореживать события хабов, которые {@code heavy-hitters} отметил аномально частыми в прошлом окне.
+     */
+    private boolean heavyHitterThrottleEnabled = false;
+
+    /**
+     * От аномально частого хаба пропускается в среднем одно событие из стольких.
+     */
+    private int heavyHitterSampleEvery = 10;
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+/**
+ * Что делать с событием датчика, который не зарегистрирован в своём хабе.
+ */
+public enum UnknownDevicePolicy {
+    /**
+     * Отклонить событие с {@code FAILED_PRECONDITION}.
+     */
+    REJECT,
+    /**
+     * Подтвердить событие и отправить его в топик карантина вместо топика датчиков.
+     */
+    QUARANTINE,
+    /**
+     * Пропустить событие, только учесть его в метриках.
+     */
+    ALLOW
+}
@@ -1,10 +1,19 @@
 package ru.yandex.practicum.telemetry.collector.kafka;
 
 import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
 
 public interface KafkaClientProducer {
     Producer<String, SpecificRecordBase> getProducer();
 
+    /**
+     * Отправляет запись, учитывая задержку подтверждения брокером и ошибки отправки в метриках.
+     * Если Kafka не успевает принимать записи, запись сохраняется в локальный журнал и отправляется позже;
+     * для таких записей {@code callback} вызывается сразу после записи в журнал с пустыми metadata и exception.
+     */
+    void send(ProducerRecord<String, SpecificRecordBase> record, Callback callback);
+
     void stop();
 }
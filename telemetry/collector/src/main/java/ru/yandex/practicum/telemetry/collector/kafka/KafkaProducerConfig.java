@@ -1,27 +1,83 @@
 package ru.yandex.practicum.telemetry.collector.kafka;
 
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.kafka.KafkaClientMetrics;
 import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.errors.RetriableException;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.telemetry.collector.spill.SpillBuffer;
+import ru.yandex.practicum.telemetry.collector.spill.SpillProperties;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopicProvisioner;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopologyProperties;
 import serializer.GeneralAvroSerializer;
 
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 @ConfigurationProperties("collector")
 @Configuration
 public class KafkaProducerConfig {
 
     @Bean
-    KafkaClientProducer getProducer() {
+    @ConfigurationProperties("kafka.topology")
+    TopologyProperties topologyProperties() {
+        return new TopologyProperties();
+    }
+
+    @Bean
+    TopicProvisioner topicProvisioner(TopologyProperties topology,
+                                      @Value("${kafka.bootstrap.server}") String bootstrapServer,
+                                      @Value("${kafka.topic.sensor}") String sensorTopic,
+                                      @Value("${kafka.topic.hub}") String hubTopic) {
+        TopicProvisioner provisioner = new TopicProvisioner(bootstrapServer, topology);
+        provisioner.provision(List.of(sensorTopic, hubTopic));
+        return provisioner;
+    }
+
+    @Bean
+    @ConfigurationProperties("collector.batching")
+    SensorBatchingProperties sensorBatchingProperties() {
+        return new SensorBatchingProperties();
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "collector.batching.enabled", havingValue = "true")
+    SensorEventBatcher sensorEventBatcher(KafkaClientProducer producer, SensorBatchingProperties properties,
+                                          MeterRegistry meterRegistry,
+                                          @Value("${kafka.topic.sensor}") String sensorTopic) {
+        return new SensorEventBatcher(producer, sensorTopic, properties, meterRegistry);
+    }
+
+    @Bean
+    KafkaClientProducer getProducer(TopologyProperties topology, MeterRegistry meterRegistry,
+                                    SpillBuffer spillBuffer, SpillProperties spillProperties,
+                                    @Value("${collector.producer.compression-type:none}") String compressionType) {
+        Timer sendLatency = Timer.builder("telemetry.kafka.send.latency")
+                .description("Время от отправки записи до подтверждения брокером")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Counter sendErrors = Counter.builder("telemetry.kafka.send.errors")
+                .description("Записи, которые не удалось отправить в Kafka")
+                .register(meterRegistry);
+
         return new KafkaClientProducer() {
-            private Producer<String, SpecificRecordBase> producer;
+            private volatile Producer<String, SpecificRecordBase> producer;
+            private KafkaClientMetrics clientMetrics;
             @Value("${kafka.bootstrap.server}")
             private String bootstrapServer;
 
@@ -33,22 +89,74 @@ public class KafkaProducerConfig {
                 return producer;
             }
 
-            private void initProducer() {
+            private synchronized void initProducer() {
+                if (producer != null) {
+                    return;
+                }
                 Properties config = new Properties();
                 config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServer);
                 config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
                 config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, GeneralAvroSerializer.class);
+                // пачки событий хаба сжимаются лучше одиночных событий: в них повторяются идентификаторы
+                config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+                if (spillProperties.isEnabled()) {
+                    config.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, spillProperties.getProducerMaxBlock().toMillis());
+                }
+                topology.applyToProducer(config);
 
-                producer = new KafkaProducer<>(config);
+                KafkaProducer<String, SpecificRecordBase> kafkaProducer = new KafkaProducer<>(config);
+                clientMetrics = new KafkaClientMetrics(kafkaProducer);
+                clientMetrics.bindTo(meterRegistry);
+                spillBuffer.watch(kafkaProducer);
+                producer = kafkaProducer;
+            }
+
+            @Override
+            public void send(ProducerRecord<String, SpecificRecordBase> record, Callback callback) {
+                Producer<String, SpecificRecordBase> kafkaProducer = getProducer();
+                if (spillBuffer.shouldSpill() && spillBuffer.spill(record)) {
+                    callback.onCompletion(null, null);
+                    return;
+                }
+                long start = System.nanoTime();
+                try {
+                    kafkaProducer.send(record, (metadata, exception) -> {
+                        if (exception == null) {
+                            sendLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        } else if (exception instanceof RetriableException && spillProperties.isEnabled()) {
+                            // запись не дождалась брокера: её сохраняет журнал, а отправит позже его поток выгрузки
+                            spillBuffer.spillAsync(record, spilled -> {
+                                if (spilled) {
+                                    callback.onCompletion(null, null);
+                                } else {
+                                    sendErrors.increment();
+                                    callback.onCompletion(metadata, exception);
+                                }
+                            });
+                            return;
+                        } else {
+                            sendErrors.increment();
+                        }
+                        callback.onCompletion(metadata, exception);
+                    });
+                } catch (KafkaException e) {
+                    // нет места в буфере или метаданных топика дольше max.block.ms
+                    if (!spillBuffer.spill(record)) {
+                        sendErrors.increment();
+                        throw e;
+                    }
+                    callback.onCompletion(null, null);
+                }
             }
 
             @Override
             public void stop() {
                 if (producer != null) {
                     producer.flush();
+                    clientMetrics.close();
                     producer.close();
                 }
             }
         };
     }
-}
\ No newline at end of file
+}
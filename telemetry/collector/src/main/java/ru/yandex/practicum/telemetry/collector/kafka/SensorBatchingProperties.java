@@ -0,0 +1,28 @@
+package ru.yandex.practicum.telemetry.collector.kafka;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки упаковки событий датчиков одного хаба в одну запись топика датчиков.
+ */
+@Getter
+@Setter
+public class SensorBatchingProperties {
+    /**
+     * Включать только после того, как все потребители топика датчиков научились читать пачки.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Сколько пачка хаба ждёт новых событий после первого.
+     */
+    private Duration linger = Duration.ofMillis(5);
+
+    /**
+     * Пачка с таким числом событий отправляется, не дожидаясь конца ожидания.
+     */
+    private int maxEvents = 100;
+}
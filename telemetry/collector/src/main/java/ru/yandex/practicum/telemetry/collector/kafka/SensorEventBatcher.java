@@ -0,0 +1,159 @@
+package ru.yandex.practicum.telemetry.collector.kafka;
+
+import deserializer.SensorEventBatchDeserializer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import ru.yandex.practicum.kafka.telemetry.event.BatchedSensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import tracing.TraceContext;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Собирает события датчиков одного хаба, пришедшие в течение {@code linger}, в одну запись
+ * {@link SensorEventBatchAvro}. Ключ записи - идентификатор хаба, поэтому пачка попадает в ту же партицию,
+ * что и одиночные события хаба, и порядок событий хаба сохраняется.
+ * <p>
+ * Callback каждого события вызывается, когда брокер подтвердил запись всей пачки или пачка сохранена в журнал.
+ */
+@Slf4j
+public class SensorEventBatcher implements AutoCloseable {
+    private final KafkaClientProducer producer;
+    private final String topic;
+    private final long lingerNanos;
+    private final int maxEvents;
+    private final ConcurrentHashMap<String, Batch> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+    private final DistributionSummary batchSize;
+
+    public SensorEventBatcher(KafkaClientProducer producer, String topic, SensorBatchingProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.producer = producer;
+        this.topic = topic;
+        this.lingerNanos = properties.getLinger().toNanos();
+        this.maxEvents = properties.getMaxEvents();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                Thread.ofPlatform().name("sensor-batch-linger").daemon().factory());
+        executor.setRemoveOnCancelPolicy(true);
+        this.timer = executor;
+        this.batchSize = DistributionSummary.builder("telemetry.collector.batch.size")
+                .description("Число событий датчиков в одной записи топика датчиков")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Добавляет событие в пачку его хаба. Заполненная пачка отправляется в вызывающем потоке,
+     * остальные - потоком таймера по истечении {@code linger}.
+     */
+    public void add(SensorEventAvro event, TraceContext trace, Callback callback) {
+        BatchedSensorEventAvro entry = BatchedSensorEventAvro.newBuilder()
+                .setEvent(event)
+                .setTraceId(trace.traceId())
+                .setIngestedAt(Instant.ofEpochMilli(trace.ingestedAt()))
+                .build();
+        String hubId = event.getHubId();
+        while (true) {
+            Batch batch = pending.computeIfAbsent(hubId, this::open);
+            synchronized (batch) {
+                if (batch.sealed) {
+                    // пачку только что забрал таймер: событие уходит в следующую
+                    continue;
+                }
+                batch.entries.add(entry);
+                batch.callbacks.add(callback);
+                if (batch.entries.size() < maxEvents) {
+                    return;
+                }
+                seal(batch);
+            }
+            send(batch);
+            return;
+        }
+    }
+
+    /**
+     * Отправляет все накопленные пачки, не дожидаясь конца ожидания.
+     */
+    public void flush() {
+        for (Batch batch : pending.values()) {
+            flush(batch);
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        flush();
+    }
+
+    private Batch open(String hubId) {
+        Batch batch = new Batch(hubId);
+        timer.schedule(() -> flush(batch), lingerNanos, TimeUnit.NANOSECONDS);
+        return batch;
+    }
+
+    private void flush(Batch batch) {
+        synchronized (batch) {
+            if (batch.sealed) {
+                return;
+            }
+            seal(batch);
+        }
+        send(batch);
+    }
+
+    private void seal(Batch batch) {
+        batch.sealed = true;
+        pending.remove(batch.hubId, batch);
+    }
+
+    private void send(Batch batch) {
+        SensorEventBatchAvro value = SensorEventBatchAvro.newBuilder()
+                .setHubId(batch.hubId)
+                .setEvents(batch.entries)
+                .build();
+        ProducerRecord<String, SpecificRecordBase> record = new ProducerRecord<>(
+                topic,
+                null,
+                batch.entries.getFirst().getEvent().getTimestamp().toEpochMilli(),
+                batch.hubId,
+                value);
+        SensorEventBatchDeserializer.markBatch(record.headers());
+        batchSize.record(batch.entries.size());
+        try {
+            producer.send(record, (metadata, exception) -> {
+                for (Callback callback : batch.callbacks) {
+                    callback.onCompletion(metadata, exception);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Не удалось отправить в Kafka пачку из {} событий хаба {}",
+                    batch.entries.size(), batch.hubId, e);
+            for (Callback callback : batch.callbacks) {
+                callback.onCompletion(null, e);
+            }
+        }
+    }
+
+    private static final class Batch {
+        private final String hubId;
+        private final List<BatchedSensorEventAvro> entries = new ArrayList<>();
+        private final List<Callback> callbacks = new ArrayList<>();
+        private boolean sealed;
+
+        private Batch(String hubId) {
+            this.hubId = hubId;
+        }
+    }
+}
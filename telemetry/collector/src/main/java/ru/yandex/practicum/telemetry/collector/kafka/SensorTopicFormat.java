@@ -0,0 +1,17 @@
+package ru.yandex.practicum.telemetry.collector.kafka;
+
+/**
+ * Формат, в котором коллектор пишет события датчиков в основной топик.
+ */
+public enum SensorTopicFormat {
+    /**
+     * Событие переводится в {@code SensorEventAvro}, возможно вместе с другими событиями хаба в пачке.
+     */
+    AVRO,
+
+    /**
+     * Событие пишется в исходном виде {@code SensorEventProto} внутри {@code ProtoSensorEventAvro},
+     * в Avro его переводят потребители топика. Коллектор не разбирает показания и не собирает пачки.
+     */
+    PROTO
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.telemetry.collector.profiling;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import ru.yandex.practicum.telemetry.common.profiling.StageEvent;
+
+/**
+ * Событие JFR для обработки входящего события коллектором: преобразование в Avro и постановка в очередь producer'а.
+ */
+@Name("ru.yandex.practicum.telemetry.CollectorHandle")
+@Label("Collector Handle")
+public class CollectorHandleEvent extends StageEvent {
+    @Label("Kind")
+    public String kind;
+}
@@ -0,0 +1,43 @@
+package ru.yandex.practicum.telemetry.collector.service.handler.hub;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.grpc.telemetry.event.ActionResultEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionProto;
+import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
+import ru.yandex.practicum.kafka.telemetry.event.ActionResultEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ActionStatusAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
+import ru.yandex.practicum.telemetry.collector.kafka.KafkaClientProducer;
+
+/**
+ * Результаты выполнения действий сценариев, которые присылает hub-router. Пишутся в топик хабов,
+ * откуда их читает анализатор, чтобы не отправлять повторно уже применённые действия.
+ */
+@Component
+public class ActionResultEventHandler extends BaseHubEventHandler<ActionResultEventAvro> {
+    public ActionResultEventHandler(KafkaClientProducer producer) {
+        super(producer);
+    }
+
+    @Override
+    protected ActionResultEventAvro mapToAvro(HubEventProto event) {
+        ActionResultEventProto actionResult = event.getActionResult();
+        DeviceActionProto action = actionResult.getAction();
+
+        return ActionResultEventAvro.newBuilder()
+                .setScenarioName(actionResult.getScenarioName())
+                .setAction(DeviceActionAvro.newBuilder()
+                        .setSensorId(action.getSensorId())
+                        .setType(ActionTypeAvro.valueOf(action.getType().name()))
+                        .setValue(action.hasValue() ? action.getValue() : null)
+                        .build())
+                .setStatus(ActionStatusAvro.valueOf(actionResult.getStatus().name()))
+                .build();
+    }
+
+    @Override
+    public HubEventProto.PayloadCase getMessageType() {
+        return HubEventProto.PayloadCase.ACTION_RESULT;
+    }
+}
@@ -4,12 +4,15 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
 import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
 import ru.yandex.practicum.telemetry.collector.kafka.KafkaClientProducer;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
 
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -19,10 +22,17 @@ public abstract class BaseHubEventHandler<T extends SpecificRecordBase> implemen
     @Value("${kafka.topic.hub}")
     protected String topic;
 
+    private LogSampler logSampler;
+
+    @Autowired
+    void setLogSampler(LogSampler logSampler) {
+        this.logSampler = logSampler;
+    }
+
     protected abstract T mapToAvro(HubEventProto event);
 
     @Override
-    public void handle(HubEventProto event) {
+    public CompletableFuture<Void> handle(HubEventProto event) {
         if (!event.getPayloadCase().equals(getMessageType())) {
             throw new IllegalArgumentException("Неизвестный тип события: " + event.getPayloadCase());
         }
@@ -45,8 +55,19 @@ public abstract class BaseHubEventHandler<T extends SpecificRecordBase> implemen
                 eventAvro.getHubId(),
                 eventAvro);
 
-        producer.getProducer().send(record);
+        CompletableFuture<Void> delivery = new CompletableFuture<>();
+        producer.send(record, (metadata, exception) -> {
+            if (exception == null) {
+                delivery.complete(null);
+            } else {
+                log.warn("Не удалось отправить в Kafka событие хаба {}", eventAvro.getHubId(), exception);
+                delivery.completeExceptionally(exception);
+            }
+        });
 
-        log.info("Отправили в Kafka: {}", record);
+        if (logSampler.sample(log)) {
+            log.debug("Отправили в Kafka: {}", record);
+        }
+        return delivery;
     }
 }
@@ -1,16 +1,30 @@
 package ru.yandex.practicum.telemetry.collector.service.handler.hub;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.grpc.telemetry.event.DeviceAddedEventProto;
 import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
 import ru.yandex.practicum.kafka.telemetry.event.DeviceAddedEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.telemetry.collector.ingest.DeviceRegistry;
 import ru.yandex.practicum.telemetry.collector.kafka.KafkaClientProducer;
 
+import java.util.concurrent.CompletableFuture;
+
 @Component
 public class DeviceAddedEventHandler extends BaseHubEventHandler<DeviceAddedEventAvro> {
-    public DeviceAddedEventHandler(KafkaClientProducer producer) {
+    private final ObjectProvider<DeviceRegistry> registry;
+
+    public DeviceAddedEventHandler(KafkaClientProducer producer, ObjectProvider<DeviceRegistry> registry) {
         super(producer);
+        this.registry = registry;
+    }
+
+    @Override
+    public CompletableFuture<Void> handle(HubEventProto event) {
+        // реестр обновляется только после записи события в Kafka, чтобы он совпадал с топиком хабов
+        return super.handle(event).thenRun(() -> registry.ifAvailable(deviceRegistry ->
+                deviceRegistry.apply(event.getHubId(), event.getDeviceAdded().getId(), true)));
     }
 
     @Override
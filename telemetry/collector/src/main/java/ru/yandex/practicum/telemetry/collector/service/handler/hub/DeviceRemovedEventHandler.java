@@ -1,15 +1,29 @@
 package ru.yandex.practicum.telemetry.collector.service.handler.hub;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.grpc.telemetry.event.DeviceRemovedEventProto;
 import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
 import ru.yandex.practicum.kafka.telemetry.event.DeviceRemovedEventAvro;
+import ru.yandex.practicum.telemetry.collector.ingest.DeviceRegistry;
 import ru.yandex.practicum.telemetry.collector.kafka.KafkaClientProducer;
 
+import java.util.concurrent.CompletableFuture;
+
 @Component
 public class DeviceRemovedEventHandler extends BaseHubEventHandler<DeviceRemovedEventAvro> {
-    public DeviceRemovedEventHandler(KafkaClientProducer producer) {
+    private final ObjectProvider<DeviceRegistry> registry;
+
+    public DeviceRemovedEventHandler(KafkaClientProducer producer, ObjectProvider<DeviceRegistry> registry) {
         super(producer);
+        this.registry = registry;
+    }
+
+    @Override
+    public CompletableFuture<Void> handle(HubEventProto event) {
+        // реестр обновляется только после записи события в Kafka, чтобы он совпадал с топиком хабов
+        return super.handle(event).thenRun(() -> registry.ifAvailable(deviceRegistry ->
+                deviceRegistry.apply(event.getHubId(), event.getDeviceRemoved().getId(), false)));
     }
 
     @Override
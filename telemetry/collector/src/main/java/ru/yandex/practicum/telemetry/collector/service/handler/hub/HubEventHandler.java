@@ -2,7 +2,15 @@ package ru.yandex.practicum.telemetry.collector.service.handler.hub;
 
 import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface HubEventHandler {
     HubEventProto.PayloadCase getMessageType();
-    void handle(HubEventProto event);
+
+    /**
+     * Отправляет событие в Kafka.
+     *
+     * @return future, которое завершается, когда брокер подтвердил запись или запись сохранена в журнале коллектора
+     */
+    CompletableFuture<Void> handle(HubEventProto event);
 }
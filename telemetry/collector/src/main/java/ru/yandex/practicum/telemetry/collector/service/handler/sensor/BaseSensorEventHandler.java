@@ -1,15 +1,27 @@
 package ru.yandex.practicum.telemetry.collector.service.handler.sensor;
 
+import deserializer.SensorEventBatchDeserializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.kafka.telemetry.event.ProtoSensorEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
 import ru.yandex.practicum.telemetry.collector.kafka.KafkaClientProducer;
+import ru.yandex.practicum.telemetry.collector.kafka.SensorEventBatcher;
+import ru.yandex.practicum.telemetry.collector.kafka.SensorTopicFormat;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
+import tracing.TraceContext;
 
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -19,13 +31,98 @@ public abstract class BaseSensorEventHandler<T extends SpecificRecordBase> imple
     @Value("${kafka.topic.sensor}")
     protected String topic;
 
+    @Value("${collector.registry.quarantine-topic:telemetry.sensors.quarantine.v1}")
+    protected String quarantineTopic;
+
+    @Value("${collector.sensor-format:avro}")
+    protected SensorTopicFormat format;
+
+    private Timer stageLatency;
+    private Timer encodeLatency;
+    private LogSampler logSampler;
+    private SensorEventBatcher batcher;
+
+    @Autowired
+    void setMeterRegistry(MeterRegistry meterRegistry) {
+        // время от приёма события коллектором до подтверждения записи брокером
+        this.stageLatency = Timer.builder("telemetry.pipeline.stage.latency")
+                .description("Задержка от приёма события коллектором до выхода из стадии")
+                .tag("stage", "collector")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        // сравнение форматов топика: преобразование, сериализация и постановка записи в буфер producer'а
+        this.encodeLatency = Timer.builder("telemetry.collector.encode.latency")
+                .description("Время от приёма события обработчиком до постановки записи в буфер producer'а")
+                .tag("format", format.name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Autowired
+    void setLogSampler(LogSampler logSampler) {
+        this.logSampler = logSampler;
+    }
+
+    @Autowired(required = false)
+    void setBatcher(SensorEventBatcher batcher) {
+        // пачками отправляются только события основного топика, карантин пишется поштучно
+        this.batcher = batcher;
+    }
+
     protected abstract T mapToAvro(SensorEventProto event);
 
     @Override
-    public void handle(SensorEventProto event) {
+    public CompletableFuture<Void> handle(SensorEventProto event) {
+        return send(event, topic);
+    }
+
+    @Override
+    public CompletableFuture<Void> quarantine(SensorEventProto event) {
+        return send(event, quarantineTopic);
+    }
+
+    private CompletableFuture<Void> send(SensorEventProto event, String topic) {
         if (!event.getPayloadCase().equals(getMessageType())) {
             throw new IllegalArgumentException("Неизвестный тип события: " + event.getPayloadCase());
         }
+        long start = System.nanoTime();
+        TraceContext trace = TraceContext.start();
+
+        CompletableFuture<Void> delivery = new CompletableFuture<>();
+        Callback callback = (metadata, exception) -> {
+            if (exception == null) {
+                // metadata нет у записей, сохранённых в журнал: до Kafka они ещё не дошли
+                if (metadata != null) {
+                    stageLatency.record(trace.elapsedMillis(), TimeUnit.MILLISECONDS);
+                }
+                delivery.complete(null);
+            } else {
+                log.warn("Не удалось отправить в Kafka событие датчика {} хаба {}",
+                        event.getId(), event.getHubId(), exception);
+                delivery.completeExceptionally(exception);
+            }
+        };
+
+        boolean mainTopic = topic.equals(this.topic);
+        if (mainTopic && format == SensorTopicFormat.PROTO) {
+            // показания не переводятся в Avro: в топик уходит сообщение Protobuf, заново сериализованное
+            // из разобранного события; с байтами, присланными хабом, оно совпадает по содержанию, но не побайтно
+            ProducerRecord<String, SpecificRecordBase> record = new ProducerRecord<>(
+                    topic,
+                    null,
+                    Instant.ofEpochSecond(event.getTimestamp().getSeconds(), event.getTimestamp().getNanos())
+                            .toEpochMilli(),
+                    event.getHubId(),
+                    new ProtoSensorEventAvro(event.toByteString().asReadOnlyByteBuffer()));
+            trace.writeTo(record.headers());
+            SensorEventBatchDeserializer.markProto(record.headers());
+            producer.send(record, callback);
+            encodeLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (logSampler.sample(log)) {
+                log.debug("Отправили в Kafka без преобразования: {}", event);
+            }
+            return delivery;
+        }
 
         //преобразование события в Avro запись
         T payload = mapToAvro(event);
@@ -39,15 +136,28 @@ public abstract class BaseSensorEventHandler<T extends SpecificRecordBase> imple
                 .setPayload(payload)
                 .build();
 
+        if (batcher != null && mainTopic) {
+            batcher.add(eventAvro, trace, callback);
+            encodeLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (logSampler.sample(log)) {
+                log.debug("Добавили в пачку хаба {}: {}", eventAvro.getHubId(), eventAvro);
+            }
+            return delivery;
+        }
+
         ProducerRecord<String, SpecificRecordBase> record = new ProducerRecord<>(
                 topic,
                 null,
                 eventAvro.getTimestamp().toEpochMilli(),
                 eventAvro.getHubId(),
                 eventAvro);
+        trace.writeTo(record.headers());
+        producer.send(record, callback);
+        encodeLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 
-        producer.getProducer().send(record);
-
-        log.info("Отправили в Kafka: {}", record);
+        if (logSampler.sample(log)) {
+            log.debug("Отправили в Kafka: {}", record);
+        }
+        return delivery;
     }
 }
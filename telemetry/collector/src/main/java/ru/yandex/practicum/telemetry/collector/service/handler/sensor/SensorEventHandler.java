@@ -2,7 +2,22 @@ package ru.yandex.practicum.telemetry.collector.service.handler.sensor;
 
 import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface SensorEventHandler {
     SensorEventProto.PayloadCase getMessageType();
-    void handle(SensorEventProto event);
+
+    /**
+     * Отправляет событие в Kafka.
+     *
+     * @return future, которое завершается, когда брокер подтвердил запись или запись сохранена в журнале коллектора
+     */
+    CompletableFuture<Void> handle(SensorEventProto event);
+
+    /**
+     * Отправляет событие незарегистрированного устройства в топик карантина.
+     *
+     * @return future с тем же смыслом, что и у {@link #handle(SensorEventProto)}
+     */
+    CompletableFuture<Void> quarantine(SensorEventProto event);
 }
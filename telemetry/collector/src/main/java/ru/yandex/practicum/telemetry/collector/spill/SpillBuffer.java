@@ -0,0 +1,188 @@
+package ru.yandex.practicum.telemetry.collector.spill;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import serializer.GeneralAvroSerializer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Решает, отправлять событие в producer или складывать в журнал, и пишет событие в журнал.
+ * <p>
+ * Событие уходит в журнал, когда буфер producer'а заполнен больше порога, а также всё время,
+ * пока в журнале есть невыгруженные записи или ждут записи события, не доставленные producer'ом:
+ * иначе свежие события обогнали бы отложенные. По той же причине, пока такие события ждут записи,
+ * {@link #spill(ProducerRecord)} встаёт в очередь за ними.
+ * <p>
+ * Порядок не сохраняется только для событий, которые уже были переданы producer'у, когда первая
+ * отправка завершилась ошибкой: они могут попасть в Kafka раньше событий, ушедших в журнал.
+ */
+@Slf4j
+public class SpillBuffer implements AutoCloseable {
+    private final SpillLog spillLog;
+    private final SpillProperties properties;
+    private final Counter spilled;
+    private final Counter rejected;
+    // сериализатор хранит encoder между вызовами, поэтому у каждого потока свой
+    private final ThreadLocal<GeneralAvroSerializer> serializer = ThreadLocal.withInitial(GeneralAvroSerializer::new);
+    // события, которые producer не доставил, пишутся в журнал не в его потоке ввода-вывода
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "collector-spill-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // события, переданные в spillAsync и ещё не записанные в журнал
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private volatile Metric bufferAvailable;
+    private volatile Metric bufferTotal;
+
+    public SpillBuffer(SpillLog spillLog, SpillProperties properties, MeterRegistry meterRegistry) {
+        this.spillLog = spillLog;
+        this.properties = properties;
+        this.spilled = Counter.builder("telemetry.collector.spill.records")
+                .description("Записи, прошедшие через журнал коллектора")
+                .tag("direction", "in")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("telemetry.collector.spill.rejected")
+                .description("Записи, не принятые заполненным журналом и отправленные напрямую")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Запоминает метрики буфера producer'а, по которым принимается решение о записи в журнал.
+     */
+    public void watch(Producer<?, ?> producer) {
+        for (Map.Entry<MetricName, ? extends Metric> metric : producer.metrics().entrySet()) {
+            if (!"producer-metrics".equals(metric.getKey().group())) {
+                continue;
+            }
+            switch (metric.getKey().name()) {
+                case "buffer-available-bytes" -> bufferAvailable = metric.getValue();
+                case "buffer-total-bytes" -> bufferTotal = metric.getValue();
+                default -> {
+                }
+            }
+        }
+    }
+
+    public boolean shouldSpill() {
+        return properties.isEnabled() && (!spillLog.isEmpty() || pendingWrites.get() > 0
+                || bufferUsage() > properties.getBufferUsageThreshold());
+    }
+
+    /**
+     * Сериализует событие и дописывает его в журнал.
+     *
+     * Если журнал ещё записывает события из {@link #spillAsync}, событие пишется после них.
+     *
+     * @return {@code false}, если журнал выключен или заполнен и событие нужно отправить напрямую
+     */
+    public boolean spill(ProducerRecord<String, SpecificRecordBase> record) {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+        if (pendingWrites.get() == 0) {
+            return append(record);
+        }
+        try {
+            return writer.submit(() -> append(record)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            log.error("Не удалось записать событие в журнал", e.getCause());
+            return false;
+        } catch (RejectedExecutionException e) {
+            // коллектор останавливается
+            return false;
+        }
+    }
+
+    private boolean append(ProducerRecord<String, SpecificRecordBase> record) {
+        byte[] value = serializer.get().serialize(record.topic(), record.value());
+        long timestamp = record.timestamp() == null ? System.currentTimeMillis() : record.timestamp();
+        SpillEntry entry = new SpillEntry(record.topic(), record.key(), timestamp,
+                Arrays.asList(record.headers().toArray()), value);
+        if (spillLog.append(entry)) {
+            spilled.increment();
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Пишет событие в журнал в отдельном потоке. Нужен для колбэков producer'а: они выполняются в его
+     * потоке ввода-вывода, и сериализация с записью на диск задержали бы остальные отправки.
+     * Поток записи один, поэтому такие события попадают в журнал в порядке вызовов.
+     * До записи события {@link #shouldSpill()} направляет в журнал и все новые события.
+     *
+     * @param onSpilled получает результат {@link #spill(ProducerRecord)}
+     */
+    public void spillAsync(ProducerRecord<String, SpecificRecordBase> record, Consumer<Boolean> onSpilled) {
+        if (!properties.isEnabled()) {
+            onSpilled.accept(false);
+            return;
+        }
+        pendingWrites.incrementAndGet();
+        try {
+            writer.execute(() -> {
+                boolean spilled;
+                try {
+                    spilled = append(record);
+                } catch (RuntimeException e) {
+                    log.error("Не удалось записать событие в журнал", e);
+                    spilled = false;
+                } finally {
+                    pendingWrites.decrementAndGet();
+                }
+                onSpilled.accept(spilled);
+            });
+        } catch (RejectedExecutionException e) {
+            // коллектор останавливается
+            pendingWrites.decrementAndGet();
+            onSpilled.accept(false);
+        }
+    }
+
+    /**
+     * Доля занятого буфера producer'а от 0 до 1.
+     */
+    public double bufferUsage() {
+        Metric available = bufferAvailable;
+        Metric total = bufferTotal;
+        if (available == null || total == null) {
+            return 0;
+        }
+        double totalBytes = ((Number) total.metricValue()).doubleValue();
+        if (totalBytes <= 0) {
+            return 0;
+        }
+        return 1 - ((Number) available.metricValue()).doubleValue() / totalBytes;
+    }
+
+    /**
+     * Дожидается записи событий, уже переданных в {@link #spillAsync}.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        writer.shutdown();
+        if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Запись отложенных событий в журнал не завершилась за 10 секунд");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.telemetry.collector.spill;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopologyProperties;
+
+import java.nio.file.Path;
+import java.util.Properties;
+
+@Configuration
+public class SpillConfig {
+
+    @Bean
+    @ConfigurationProperties("collector.spill")
+    SpillProperties spillProperties() {
+        return new SpillProperties();
+    }
+
+    @Bean(destroyMethod = "close")
+    SpillLog spillLog(SpillProperties properties, MeterRegistry meterRegistry) {
+        SpillLog spillLog = new SpillLog(
+                Path.of(properties.getDirectory()), properties.getSegmentSize(), properties.getMaxSegments());
+        Gauge.builder("telemetry.collector.spill.pending.records", spillLog, SpillLog::pendingRecords)
+                .description("Записи журнала, ещё не выгруженные в Kafka")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.collector.spill.pending.bytes", spillLog, SpillLog::pendingBytes)
+                .description("Объём журнала, ещё не выгруженный в Kafka")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.collector.spill.segments", spillLog, SpillLog::segmentCount)
+                .description("Сегменты журнала на диске")
+                .register(meterRegistry);
+        return spillLog;
+    }
+
+    @Bean(destroyMethod = "close")
+    SpillBuffer spillBuffer(SpillLog spillLog, SpillProperties properties, MeterRegistry meterRegistry) {
+        return new SpillBuffer(spillLog, properties, meterRegistry);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    SpillDrainer spillDrainer(SpillLog spillLog, SpillProperties properties, TopologyProperties topology,
+                              MeterRegistry meterRegistry,
+                              @Value("${kafka.bootstrap.server}") String bootstrapServer) {
+        Properties config = new Properties();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServer);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        // пачка журнала должна завершиться ошибкой быстро, чтобы поток повторил её после паузы
+        config.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, 10_000);
+        config.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, 30_000);
+        config.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, 10_000);
+        topology.applyToProducer(config);
+        return new SpillDrainer(spillLog, new KafkaProducer<>(config), properties, meterRegistry);
+    }
+}
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.telemetry.collector.spill;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Фоновый поток, который по порядку выгружает журнал в Kafka.
+ * Пачка отправляется целиком, и контрольная точка сдвигается только после подтверждения всех её записей.
+ * Если брокер недоступен, пачка повторяется с растущей паузой; часть записей при этом может попасть
+ * в Kafka дважды, что агрегатор отбрасывает как повтор данных датчика.
+ */
+@Slf4j
+public class SpillDrainer implements Runnable, AutoCloseable {
+    private static final Duration MIN_BACKOFF = Duration.ofMillis(100);
+
+    private final SpillLog spillLog;
+    private final Producer<String, byte[]> producer;
+    private final SpillProperties properties;
+    private final Counter drained;
+    private final Counter failures;
+    private volatile boolean running = true;
+    private Thread thread;
+
+    public SpillDrainer(SpillLog spillLog, Producer<String, byte[]> producer, SpillProperties properties,
+                        MeterRegistry meterRegistry) {
+        this.spillLog = spillLog;
+        this.producer = producer;
+        this.properties = properties;
+        this.drained = Counter.builder("telemetry.collector.spill.records")
+                .description("Записи, прошедшие через журнал коллектора")
+                .tag("direction", "out")
+                .register(meterRegistry);
+        this.failures = Counter.builder("telemetry.collector.spill.drain.failures")
+                .description("Неудачные попытки выгрузить пачку журнала в Kafka")
+                .register(meterRegistry);
+    }
+
+    public void start() {
+        thread = new Thread(this, "collector-spill-drainer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        Duration backoff = Duration.ZERO;
+        while (running) {
+            try {
+                SpillLog.Batch batch = spillLog.isEmpty() ? null : spillLog.peek(properties.getDrainBatchSize());
+                if (batch == null || batch.isEmpty()) {
+                    Thread.sleep(properties.getDrainIdleInterval());
+                    continue;
+                }
+                send(batch);
+                spillLog.commit(batch);
+                drained.increment(batch.entries().size());
+                if (!backoff.isZero()) {
+                    log.info("Kafka снова принимает записи, в журнале осталось {}", spillLog.pendingRecords());
+                    backoff = Duration.ZERO;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | KafkaException e) {
+                failures.increment();
+                backoff = backoff.isZero() ? MIN_BACKOFF : backoff.multipliedBy(2);
+                if (backoff.compareTo(properties.getDrainMaxBackoff()) > 0) {
+                    backoff = properties.getDrainMaxBackoff();
+                }
+                log.warn("Не удалось выгрузить журнал в Kafka, повтор через {} мс: {}",
+                        backoff.toMillis(), e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private void send(SpillLog.Batch batch) throws ExecutionException, InterruptedException {
+        List<Future<RecordMetadata>> futures = new ArrayList<>(batch.entries().size());
+        for (SpillEntry entry : batch.entries()) {
+            futures.add(producer.send(new ProducerRecord<>(
+                    entry.topic(), null, entry.timestamp(), entry.key(), entry.value(), entry.headers())));
+        }
+        producer.flush();
+        for (Future<RecordMetadata> future : futures) {
+            future.get();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.join(properties.getDrainMaxBackoff().toMillis() * 2);
+        }
+        producer.close(Duration.ofSeconds(5));
+    }
+}
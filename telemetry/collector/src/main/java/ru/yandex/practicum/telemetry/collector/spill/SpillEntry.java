@@ -0,0 +1,73 @@
+package ru.yandex.practicum.telemetry.collector.spill;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Запись журнала: уже сериализованное событие вместе со всем, что нужно для его отправки в Kafka.
+ */
+public record SpillEntry(String topic, String key, long timestamp, List<Header> headers, byte[] value) {
+
+    byte[] encode() {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        byte[] keyBytes = key == null ? null : key.getBytes(StandardCharsets.UTF_8);
+        int size = Short.BYTES + topicBytes.length
+                + Integer.BYTES + (keyBytes == null ? 0 : keyBytes.length)
+                + Long.BYTES
+                + Short.BYTES
+                + Integer.BYTES + value.length;
+        List<byte[]> headerKeys = new ArrayList<>(headers.size());
+        for (Header header : headers) {
+            byte[] headerKey = header.key().getBytes(StandardCharsets.UTF_8);
+            headerKeys.add(headerKey);
+            size += Short.BYTES + headerKey.length + Integer.BYTES + header.value().length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putShort((short) topicBytes.length).put(topicBytes);
+        if (keyBytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(keyBytes.length).put(keyBytes);
+        }
+        buffer.putLong(timestamp);
+        buffer.putShort((short) headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            byte[] headerValue = headers.get(i).value();
+            buffer.putShort((short) headerKeys.get(i).length).put(headerKeys.get(i));
+            buffer.putInt(headerValue.length).put(headerValue);
+        }
+        buffer.putInt(value.length).put(value);
+        return buffer.array();
+    }
+
+    static SpillEntry decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        String topic = readString(buffer, buffer.getShort());
+        int keyLength = buffer.getInt();
+        String key = keyLength < 0 ? null : readString(buffer, keyLength);
+        long timestamp = buffer.getLong();
+        int headerCount = buffer.getShort();
+        List<Header> headers = new ArrayList<>(headerCount);
+        for (int i = 0; i < headerCount; i++) {
+            String headerKey = readString(buffer, buffer.getShort());
+            byte[] headerValue = new byte[buffer.getInt()];
+            buffer.get(headerValue);
+            headers.add(new RecordHeader(headerKey, headerValue));
+        }
+        byte[] value = new byte[buffer.getInt()];
+        buffer.get(value);
+        return new SpillEntry(topic, key, timestamp, headers, value);
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,351 @@
+package ru.yandex.practicum.telemetry.collector.spill;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал упреждающей записи из сегментов фиксированного размера, отображённых в память.
+ * Запись в сегменте: длина (4 байта), CRC32C (4 байта), тело {@link SpillEntry}.
+ * Нулевая длина означает конец данных в сегменте.
+ * <p>
+ * Журнал читается с контрольной точки: {@link #peek(int)} не сдвигает её,
+ * {@link #commit(Batch)} сдвигает после того, как Kafka подтвердила пачку.
+ * Контрольная точка хранится в отдельном файле, полностью выгруженные сегменты удаляются.
+ * После перезапуска журнал дочитывается с контрольной точки до первой повреждённой записи.
+ * Остаток сегмента за повреждённой записью пропускается, и счётчики невыгруженных записей
+ * пересчитываются при фиксации такой пачки.
+ */
+@Slf4j
+public class SpillLog implements AutoCloseable {
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int RECORD_HEADER = Integer.BYTES * 2;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+
+    private long writeSegment;
+    private int writePosition;
+    private long readSegment;
+    private int readPosition;
+
+    private volatile long pendingRecords;
+    private volatile long pendingBytes;
+
+    public SpillLog(Path directory, int segmentSize, int maxSegments) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        try {
+            Files.createDirectories(directory);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал " + directory, e);
+        }
+    }
+
+    /**
+     * Дописывает запись в конец журнала.
+     *
+     * @return {@code false}, если журнал заполнен
+     */
+    public boolean append(SpillEntry entry) {
+        byte[] payload = entry.encode();
+        int recordSize = RECORD_HEADER + payload.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Запись размером " + recordSize + " байт не помещается в сегмент");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+
+        synchronized (this) {
+            if (writePosition + recordSize > segmentSize && !roll()) {
+                return false;
+            }
+            MappedByteBuffer buffer = segments.get(writeSegment);
+            buffer.putInt(writePosition + Integer.BYTES, (int) crc.getValue());
+            buffer.put(writePosition + RECORD_HEADER, payload);
+            // длина пишется последней: до этого момента запись для читателя не существует
+            buffer.putInt(writePosition, payload.length);
+            writePosition += recordSize;
+            pendingRecords++;
+            pendingBytes += recordSize;
+            return true;
+        }
+    }
+
+    /**
+     * Читает до {@code maxRecords} записей, начиная с контрольной точки, не сдвигая её.
+     */
+    public synchronized Batch peek(int maxRecords) {
+        List<SpillEntry> entries = new ArrayList<>();
+        long segment = readSegment;
+        int position = readPosition;
+        long bytes = 0;
+        boolean skipped = false;
+        while (entries.size() < maxRecords) {
+            MappedByteBuffer buffer = segments.get(segment);
+            int length = endOfData(segment, position) ? 0 : buffer.getInt(position);
+            if (length == 0) {
+                if (segment == writeSegment) {
+                    break;
+                }
+                segment = segments.higherKey(segment);
+                position = 0;
+                continue;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + RECORD_HEADER, payload);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+                // в середине журнала такого не бывает: запись в сегмент идёт только под блокировкой
+                log.error("Повреждённая запись в сегменте {} журнала по смещению {}, остаток сегмента пропущен",
+                        segment, position);
+                skipped = true;
+                if (segment == writeSegment) {
+                    position = writePosition;
+                    break;
+                }
+                segment = segments.higherKey(segment);
+                position = 0;
+                continue;
+            }
+            entries.add(SpillEntry.decode(payload));
+            position += RECORD_HEADER + length;
+            bytes += RECORD_HEADER + length;
+        }
+        return new Batch(entries, segment, position, bytes, skipped);
+    }
+
+    /**
+     * Сдвигает контрольную точку за пачку, полученную из {@link #peek(int)}, и удаляет выгруженные сегменты.
+     */
+    public synchronized void commit(Batch batch) {
+        readSegment = batch.endSegment();
+        readPosition = batch.endPosition();
+        if (batch.skipped()) {
+            // сколько записей было в пропущенном остатке сегмента, неизвестно: счётчики пересчитываются
+            recount();
+        } else {
+            pendingRecords = Math.max(0, pendingRecords - batch.entries().size());
+            pendingBytes = Math.max(0, pendingBytes - batch.bytes());
+        }
+
+        Map<Long, MappedByteBuffer> drained = segments.headMap(readSegment);
+        for (Long segment : List.copyOf(drained.keySet())) {
+            drained.remove(segment);
+            try {
+                Files.deleteIfExists(segmentPath(segment));
+            } catch (IOException e) {
+                log.warn("Не удалось удалить выгруженный сегмент журнала {}", segment, e);
+            }
+        }
+        writeCheckpoint();
+    }
+
+    public boolean isEmpty() {
+        return pendingRecords == 0;
+    }
+
+    public long pendingRecords() {
+        return pendingRecords;
+    }
+
+    public long pendingBytes() {
+        return pendingBytes;
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        MappedByteBuffer buffer = segments.get(writeSegment);
+        if (buffer != null) {
+            buffer.force();
+        }
+        writeCheckpoint();
+    }
+
+    private boolean endOfData(long segment, int position) {
+        if (segment == writeSegment) {
+            return position >= writePosition;
+        }
+        return position + RECORD_HEADER > segmentSize;
+    }
+
+    private boolean roll() {
+        if (segments.size() >= maxSegments) {
+            return false;
+        }
+        segments.get(writeSegment).force();
+        try {
+            writeSegment++;
+            segments.put(writeSegment, map(writeSegment));
+            writePosition = 0;
+            return true;
+        } catch (IOException e) {
+            log.error("Не удалось создать сегмент журнала {}", writeSegment, e);
+            writeSegment--;
+            return false;
+        }
+    }
+
+    private void open() throws IOException {
+        List<Long> existing;
+        try (Stream<Path> files = Files.list(directory)) {
+            existing = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+        readCheckpoint(existing.isEmpty() ? 0 : existing.getFirst());
+
+        for (Long segment : existing) {
+            if (segment < readSegment) {
+                Files.deleteIfExists(segmentPath(segment));
+            } else {
+                segments.put(segment, map(segment));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(readSegment, map(readSegment));
+            readPosition = 0;
+        } else if (!segments.containsKey(readSegment)) {
+            log.warn("Сегмент {} из контрольной точки не найден, журнал читается с сегмента {}",
+                    readSegment, segments.firstKey());
+            readSegment = segments.firstKey();
+            readPosition = 0;
+        }
+        recover();
+    }
+
+    /**
+     * Находит конец данных в последнем сегменте и подсчитывает невыгруженные записи.
+     */
+    private void recover() {
+        writeSegment = segments.lastKey();
+        // конец данных ещё неизвестен: последний сегмент читается до первой повреждённой записи
+        writePosition = Integer.MAX_VALUE;
+        writePosition = count();
+        if (pendingRecords > 0) {
+            log.info("В журнале {} осталось {} невыгруженных записей ({} байт)",
+                    directory, pendingRecords, pendingBytes);
+        }
+    }
+
+    /**
+     * Подсчитывает невыгруженные записи заново, от контрольной точки до конца данных.
+     */
+    private void recount() {
+        int end = writePosition;
+        count();
+        writePosition = end;
+    }
+
+    /**
+     * Подсчитывает целые записи от контрольной точки, в каждом сегменте до первой повреждённой
+     * или до {@code writePosition} в последнем.
+     *
+     * @return конец данных в последнем сегменте
+     */
+    private int count() {
+        pendingRecords = 0;
+        pendingBytes = 0;
+        int end = 0;
+        for (Map.Entry<Long, MappedByteBuffer> segment : segments.tailMap(readSegment).entrySet()) {
+            MappedByteBuffer buffer = segment.getValue();
+            int position = segment.getKey() == readSegment ? readPosition : 0;
+            int limit = segment.getKey() == writeSegment ? Math.min(writePosition, segmentSize) : segmentSize;
+            while (position + RECORD_HEADER <= limit) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + RECORD_HEADER + length > segmentSize) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(position + RECORD_HEADER, payload);
+                CRC32C crc = new CRC32C();
+                crc.update(payload);
+                if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+                    break;
+                }
+                position += RECORD_HEADER + length;
+                pendingRecords++;
+                pendingBytes += RECORD_HEADER + length;
+            }
+            if (segment.getKey() == writeSegment) {
+                end = position;
+            }
+        }
+        return end;
+    }
+
+    private MappedByteBuffer map(long segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%020d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    private void readCheckpoint(long defaultSegment) throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(checkpoint));
+            readSegment = buffer.getLong();
+            readPosition = buffer.getInt();
+        } else {
+            readSegment = defaultSegment;
+            readPosition = 0;
+        }
+    }
+
+    private void writeCheckpoint() {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES)
+                .putLong(readSegment)
+                .putInt(readPosition);
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try {
+            Files.write(temporary, buffer.array());
+            Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Не удалось сохранить контрольную точку журнала", e);
+        }
+    }
+
+    /**
+     * Пачка записей, прочитанная с контрольной точки, и позиция сразу за ней.
+     */
+    public record Batch(List<SpillEntry> entries, long endSegment, int endPosition, long bytes, boolean skipped) {
+        /**
+         * Пачка пуста и не сдвигает контрольную точку за повреждённые записи.
+         */
+        public boolean isEmpty() {
+            return entries.isEmpty() && !skipped;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.telemetry.collector.spill;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки локального журнала, в который коллектор складывает события, пока Kafka не успевает их принимать.
+ */
+@Getter
+@Setter
+public class SpillProperties {
+    private boolean enabled = true;
+
+    /**
+     * Каталог с сегментами журнала и файлом контрольной точки.
+     */
+    private String directory = System.getProperty("java.io.tmpdir") + "/collector-spill";
+
+    /**
+     * Размер одного сегмента журнала в байтах. Сегмент целиком отображается в память.
+     */
+    private int segmentSize = 64 * 1024 * 1024;
+
+    /**
+     * Предельное число сегментов на диске. Когда журнал заполнен, события снова отправляются
+     * в producer напрямую, и обработчики ждут освобождения его буфера.
+     */
+    private int maxSegments = 64;
+
+    /**
+     * Доля занятого буфера producer'а, начиная с которой новые события пишутся в журнал.
+     */
+    private double bufferUsageThreshold = 0.8;
+
+    /**
+     * Сколько основной producer может ждать места в буфере или метаданных топика.
+     * По истечении времени событие уходит в журнал, а поток обработчика освобождается.
+     */
+    private Duration producerMaxBlock = Duration.ofSeconds(1);
+
+    /**
+     * Сколько записей журнала отправляется в Kafka за один проход.
+     */
+    private int drainBatchSize = 500;
+
+    /**
+     * Пауза, когда журнал пуст.
+     */
+    private Duration drainIdleInterval = Duration.ofMillis(100);
+
+    /**
+     * Наибольшая пауза между попытками отправки, пока брокер недоступен.
+     */
+    private Duration drainMaxBackoff = Duration.ofSeconds(5);
+}
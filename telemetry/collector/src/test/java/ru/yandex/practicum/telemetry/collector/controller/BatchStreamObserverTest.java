@@ -0,0 +1,189 @@
+package ru.yandex.practicum.telemetry.collector.controller;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.grpc.telemetry.collector.CollectBatchResponse;
+import ru.yandex.practicum.telemetry.collector.delivery.DeliveryBackpressure;
+import ru.yandex.practicum.telemetry.collector.delivery.DeliveryMode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchStreamObserverTest {
+    private final FakeCall call = new FakeCall();
+    private final Map<String, CompletableFuture<Void>> deliveries = new HashMap<>();
+
+    @Test
+    void requestsNextEventOnlyAfterDeliveryCompletes() {
+        BatchStreamObserver<String> observer = observer(DeliveryMode.LEADER_ACK, new DeliveryBackpressure(10));
+
+        observer.onNext("a");
+        observer.onNext("b");
+        assertThat(call.requested).isZero();
+
+        deliveries.get("b").complete(null);
+        assertThat(call.requested).isEqualTo(1);
+        deliveries.get("a").completeExceptionally(new IllegalStateException("брокер недоступен"));
+        assertThat(call.requested).isEqualTo(2);
+    }
+
+    @Test
+    void defersRequestWhileTooManySendsAreInFlight() {
+        DeliveryBackpressure backpressure = new DeliveryBackpressure(1);
+        BatchStreamObserver<String> observer = observer(DeliveryMode.LEADER_ACK, backpressure);
+        // отправка другого вызова занимает единственное место
+        backpressure.acquire();
+
+        observer.onNext("a");
+        deliveries.get("a").complete(null);
+        assertThat(call.requested).isZero();
+        assertThat(backpressure.waiting()).isEqualTo(1);
+
+        backpressure.release();
+        assertThat(call.requested).isEqualTo(1);
+    }
+
+    @Test
+    void answersWithCountsAfterLastLeaderAck() {
+        BatchStreamObserver<String> observer = observer(DeliveryMode.LEADER_ACK, new DeliveryBackpressure(10));
+
+        observer.onNext("a");
+        observer.onNext("b");
+        observer.onNext("c");
+        deliveries.get("a").complete(null);
+        observer.onCompleted();
+        assertThat(call.responses).isEmpty();
+
+        deliveries.get("b").completeExceptionally(new IllegalStateException("брокер недоступен"));
+        assertThat(call.responses).isEmpty();
+        deliveries.get("c").complete(null);
+
+        assertThat(call.responses).containsExactly(response(2, 1));
+        assertThat(call.completed).isTrue();
+    }
+
+    @Test
+    void answersEmptyStreamImmediately() {
+        BatchStreamObserver<String> observer = observer(DeliveryMode.LEADER_ACK, new DeliveryBackpressure(10));
+
+        observer.onCompleted();
+
+        assertThat(call.responses).containsExactly(response(0, 0));
+        assertThat(call.completed).isTrue();
+    }
+
+    @Test
+    void answersFireAndForgetOnClientCompletionCountingOnlyRejectedAsFailed() {
+        BatchStreamObserver<String> observer = observer(DeliveryMode.FIRE_AND_FORGET, new DeliveryBackpressure(10));
+        // входной фильтр отклоняет событие сразу, до ответа клиенту
+        deliveries.put("rejected", CompletableFuture.failedFuture(new IllegalStateException("частота превышена")));
+
+        observer.onNext("a");
+        observer.onNext("rejected");
+        observer.onCompleted();
+
+        assertThat(call.responses).containsExactly(response(1, 1));
+        // ошибка отправки после ответа в счётчики уже не попадает
+        deliveries.get("a").completeExceptionally(new IllegalStateException("брокер недоступен"));
+        assertThat(call.responses).hasSize(1);
+    }
+
+    @Test
+    void stopsRequestingAndAnsweringAfterClientError() {
+        BatchStreamObserver<String> observer = observer(DeliveryMode.LEADER_ACK, new DeliveryBackpressure(10));
+
+        observer.onNext("a");
+        observer.onError(new IllegalStateException("соединение разорвано"));
+        deliveries.get("a").complete(null);
+        observer.onCompleted();
+
+        assertThat(call.requested).isZero();
+        assertThat(call.responses).isEmpty();
+        assertThat(call.completed).isFalse();
+    }
+
+    @Test
+    void stopsRequestingAfterCancel() {
+        BatchStreamObserver<String> observer = observer(DeliveryMode.LEADER_ACK, new DeliveryBackpressure(10));
+
+        observer.onNext("a");
+        call.cancelled = true;
+        deliveries.get("a").complete(null);
+
+        assertThat(call.requested).isZero();
+    }
+
+    private BatchStreamObserver<String> observer(DeliveryMode mode, DeliveryBackpressure backpressure) {
+        return new BatchStreamObserver<>(call, mode, backpressure, event -> {
+            CompletableFuture<Void> delivery = deliveries.computeIfAbsent(event, key -> new CompletableFuture<>());
+            // в коллекторе отправку учитывает dispatch, здесь - сам тест
+            backpressure.acquire();
+            return delivery.whenComplete((ignored, exception) -> backpressure.release());
+        });
+    }
+
+    private static CollectBatchResponse response(long accepted, long failed) {
+        return CollectBatchResponse.newBuilder().setAccepted(accepted).setFailed(failed).build();
+    }
+
+    private static class FakeCall extends ServerCallStreamObserver<CollectBatchResponse> {
+        private final List<CollectBatchResponse> responses = new ArrayList<>();
+        private int requested;
+        private boolean cancelled;
+        private boolean completed;
+
+        @Override
+        public void request(int count) {
+            requested += count;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+
+        @Override
+        public void onNext(CollectBatchResponse value) {
+            responses.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package ru.yandex.practicum.telemetry.collector.controller;
+
+import com.google.protobuf.Empty;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.TemperatureSensorProto;
+import ru.yandex.practicum.telemetry.collector.delivery.DeliveryBackpressure;
+import ru.yandex.practicum.telemetry.collector.delivery.DeliveryProperties;
+import ru.yandex.practicum.telemetry.collector.ingest.IngestFilter;
+import ru.yandex.practicum.telemetry.collector.ingest.IngestProperties;
+import ru.yandex.practicum.telemetry.collector.ingest.UnknownDevicePolicy;
+import ru.yandex.practicum.telemetry.collector.service.handler.sensor.SensorEventHandler;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CollectorControllerTest {
+    private final ExecutorService deliveryExecutor = Executors.newSingleThreadExecutor();
+    private final Queue<CompletableFuture<Void>> sendResults = new ArrayDeque<>();
+    private final List<SensorEventProto> sent = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private DeliveryBackpressure backpressure = new DeliveryBackpressure(100);
+
+    @AfterEach
+    void tearDown() {
+        deliveryExecutor.shutdownNow();
+    }
+
+    @Test
+    void forwardsHubRetryAfterFailedSend() {
+        CollectorController controller = controller();
+        SensorEventProto event = temperature(21);
+        sendResults.add(CompletableFuture.failedFuture(new IllegalStateException("брокер недоступен")));
+        sendResults.add(CompletableFuture.completedFuture(null));
+
+        RecordingObserver first = new RecordingObserver();
+        controller.collectSensorEvent(event, first);
+        assertThat(first.error).isNotNull();
+
+        // повтор хаба с тем же значением не должен подтверждаться как дубликат
+        RecordingObserver retry = new RecordingObserver();
+        controller.collectSensorEvent(event, retry);
+        assertThat(retry.completed).isTrue();
+        assertThat(sent).hasSize(2);
+    }
+
+    @Test
+    void acknowledgesRepeatOfDeliveredValueWithoutSending() {
+        CollectorController controller = controller();
+        sendResults.add(CompletableFuture.completedFuture(null));
+
+        controller.collectSensorEvent(temperature(21), new RecordingObserver());
+        RecordingObserver repeat = new RecordingObserver();
+        controller.collectSensorEvent(temperature(21), repeat);
+
+        assertThat(repeat.completed).isTrue();
+        assertThat(sent).hasSize(1);
+    }
+
+    @Test
+    void registersHandleTimerForEveryEventType() {
+        controller();
+
+        assertThat(meterRegistry.get("telemetry.collector.handle").tag("kind", "sensor").timers())
+                .extracting(timer -> timer.getId().getTag("type"))
+                .containsExactlyInAnyOrder(Arrays.stream(SensorEventProto.PayloadCase.values())
+                        .map(Enum::name).toArray(String[]::new));
+        assertThat(meterRegistry.get("telemetry.collector.handle").tag("kind", "hub").timers())
+                .extracting(timer -> timer.getId().getTag("type"))
+                .containsExactlyInAnyOrder(Arrays.stream(HubEventProto.PayloadCase.values())
+                        .map(Enum::name).toArray(String[]::new));
+    }
+
+    @Test
+    void timesHandlingByEventType() {
+        CollectorController controller = controller();
+        sendResults.add(CompletableFuture.completedFuture(null));
+
+        controller.collectSensorEvent(temperature(21), new RecordingObserver());
+
+        assertThat(handleTimer("TEMPERATURE_SENSOR_EVENT").count()).isEqualTo(1);
+        assertThat(handleTimer("CLIMATE_SENSOR_EVENT").count()).isZero();
+    }
+
+    @Test
+    void doesNotThrottleUnaryCallsAboveInFlightLimit() {
+        backpressure = new DeliveryBackpressure(1);
+        backpressure.acquire();
+        backpressure.acquire();
+        CollectorController controller = controller();
+        CompletableFuture<Void> delivery = new CompletableFuture<>();
+        sendResults.add(delivery);
+
+        // предел действует только на потоковые вызовы: унарный вызов отправляется и учитывается сразу
+        RecordingObserver observer = new RecordingObserver();
+        controller.collectSensorEvent(temperature(21), observer);
+        assertThat(sent).hasSize(1);
+        assertThat(backpressure.inFlight()).isEqualTo(3);
+
+        delivery.complete(null);
+        assertThat(observer.completed).isTrue();
+        assertThat(backpressure.inFlight()).isEqualTo(2);
+    }
+
+    private CollectorController controller() {
+        IngestProperties ingest = new IngestProperties();
+        ingest.setRateLimitEnabled(false);
+        SensorEventHandler handler = new SensorEventHandler() {
+            @Override
+            public SensorEventProto.PayloadCase getMessageType() {
+                return SensorEventProto.PayloadCase.TEMPERATURE_SENSOR_EVENT;
+            }
+
+            @Override
+            public CompletableFuture<Void> handle(SensorEventProto event) {
+                sent.add(event);
+                return sendResults.remove();
+            }
+
+            @Override
+            public CompletableFuture<Void> quarantine(SensorEventProto event) {
+                return handle(event);
+            }
+        };
+        return new CollectorController(Set.of(handler), Set.of(), meterRegistry,
+                new LogSampler(1),
+                backpressure, new DeliveryProperties(), deliveryExecutor,
+                new IngestFilter(ingest, null, null, UnknownDevicePolicy.ALLOW, meterRegistry));
+    }
+
+    private Timer handleTimer(String type) {
+        return meterRegistry.get("telemetry.collector.handle").tag("kind", "sensor").tag("type", type).timer();
+    }
+
+    private static SensorEventProto temperature(int celsius) {
+        return SensorEventProto.newBuilder()
+                .setId("t-1")
+                .setHubId("hub-1")
+                .setTemperatureSensorEvent(TemperatureSensorProto.newBuilder()
+                        .setTemperatureC(celsius)
+                        .setTemperatureF(celsius * 9 / 5 + 32))
+                .build();
+    }
+
+    private static class RecordingObserver implements StreamObserver<Empty> {
+        private boolean completed;
+        private Status error;
+
+        @Override
+        public void onNext(Empty value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = Status.fromThrowable(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+}
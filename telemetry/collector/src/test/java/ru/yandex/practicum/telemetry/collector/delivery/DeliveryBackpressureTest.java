@@ -0,0 +1,78 @@
+package ru.yandex.practicum.telemetry.collector.delivery;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeliveryBackpressureTest {
+    private final List<String> requests = new ArrayList<>();
+
+    @Test
+    void acquireNeverBlocksPastLimit() {
+        DeliveryBackpressure backpressure = new DeliveryBackpressure(2);
+
+        // унарные вызовы только учитываются: ответ ждёт клиент, а не поток gRPC
+        for (int i = 0; i < 5; i++) {
+            backpressure.acquire();
+        }
+
+        assertThat(backpressure.inFlight()).isEqualTo(5);
+        assertThat(backpressure.waiting()).isZero();
+    }
+
+    @Test
+    void runsRequestImmediatelyBelowLimit() {
+        DeliveryBackpressure backpressure = new DeliveryBackpressure(2);
+        backpressure.acquire();
+
+        backpressure.requestWhenAvailable(() -> requests.add("stream-1"));
+
+        assertThat(requests).containsExactly("stream-1");
+        assertThat(backpressure.waiting()).isZero();
+    }
+
+    @Test
+    void resumesDeferredRequestsInOrderAsSendsComplete() {
+        DeliveryBackpressure backpressure = new DeliveryBackpressure(2);
+        backpressure.acquire();
+        backpressure.acquire();
+        backpressure.acquire();
+
+        backpressure.requestWhenAvailable(() -> requests.add("stream-1"));
+        backpressure.requestWhenAvailable(() -> requests.add("stream-2"));
+        backpressure.requestWhenAvailable(() -> requests.add("stream-3"));
+        assertThat(requests).isEmpty();
+        assertThat(backpressure.waiting()).isEqualTo(3);
+
+        // 3 -> 2: всё ещё на пределе
+        backpressure.release();
+        assertThat(requests).isEmpty();
+
+        // 2 -> 1: запрос сам по себе не занимает место, поэтому освобождаются все ждущие
+        backpressure.release();
+        assertThat(requests).containsExactly("stream-1", "stream-2", "stream-3");
+        assertThat(backpressure.waiting()).isZero();
+    }
+
+    @Test
+    void requestThatStartsSendStopsResuming() {
+        DeliveryBackpressure backpressure = new DeliveryBackpressure(1);
+        backpressure.acquire();
+        backpressure.requestWhenAvailable(() -> {
+            requests.add("stream-1");
+            backpressure.acquire();
+        });
+        backpressure.requestWhenAvailable(() -> requests.add("stream-2"));
+
+        backpressure.release();
+
+        // первый запрос снова занял единственное место, второй ждёт следующего подтверждения
+        assertThat(requests).containsExactly("stream-1");
+        assertThat(backpressure.waiting()).isEqualTo(1);
+        backpressure.release();
+        assertThat(requests).containsExactly("stream-1", "stream-2");
+    }
+}
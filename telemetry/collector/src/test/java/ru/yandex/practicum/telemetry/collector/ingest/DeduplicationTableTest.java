@@ -0,0 +1,97 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeduplicationTableTest {
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(30);
+
+    private final DeduplicationTable table = new DeduplicationTable(4, 16, WINDOW);
+
+    @Test
+    void suppressesSameValueWithinWindow() {
+        assertThat(table.isDuplicate(42, 7, 0)).isFalse();
+        assertThat(table.isDuplicate(42, 7, WINDOW - 1)).isTrue();
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    void forwardsSameValueAgainAfterWindow() {
+        table.isDuplicate(42, 7, 0);
+
+        assertThat(table.isDuplicate(42, 7, WINDOW)).isFalse();
+        // окно отсчитывается от последней пересылки
+        assertThat(table.isDuplicate(42, 7, WINDOW + 1)).isTrue();
+    }
+
+    @Test
+    void forwardsChangedValueAndSensorsApart() {
+        table.isDuplicate(42, 7, 0);
+
+        assertThat(table.isDuplicate(42, 8, 1)).isFalse();
+        assertThat(table.isDuplicate(42, 7, 2)).isFalse();
+        assertThat(table.isDuplicate(43, 7, 3)).isFalse();
+    }
+
+    @Test
+    void forwardsRetryOfForgottenValue() {
+        table.isDuplicate(42, 7, 0);
+        table.forget(42, 7);
+
+        assertThat(table.isDuplicate(42, 7, 1)).isFalse();
+        assertThat(table.isDuplicate(42, 7, 2)).isTrue();
+    }
+
+    @Test
+    void forgetKeepsNewerValue() {
+        table.isDuplicate(42, 7, 0);
+        table.isDuplicate(42, 8, 1);
+        table.forget(42, 7);
+
+        assertThat(table.isDuplicate(42, 8, 2)).isTrue();
+    }
+
+    @Test
+    void acceptsZeroKey() {
+        assertThat(table.isDuplicate(0, 7, 0)).isFalse();
+        assertThat(table.isDuplicate(0, 7, 1)).isTrue();
+    }
+
+    @Test
+    void evictsExpiredEntriesWhenStripeFills() {
+        DeduplicationTable single = new DeduplicationTable(1, 8, WINDOW);
+        // в сегменте на 8 слотов помещается 6 записей
+        for (long key = 1; key <= 6; key++) {
+            single.isDuplicate(key, 7, 0);
+        }
+        single.isDuplicate(100, 7, WINDOW);
+
+        assertThat(single.size()).isEqualTo(1);
+        assertThat(single.isDuplicate(100, 7, WINDOW + 1)).isTrue();
+    }
+
+    @Test
+    void clearsStripeWhenNothingExpired() {
+        DeduplicationTable single = new DeduplicationTable(1, 8, WINDOW);
+        for (long key = 1; key <= 6; key++) {
+            single.isDuplicate(key, 7, 0);
+        }
+        single.isDuplicate(100, 7, 1);
+
+        // повторы пропускаются лишний раз, но ложных отбрасываний нет
+        assertThat(single.size()).isEqualTo(1);
+        assertThat(single.isDuplicate(1, 7, 2)).isFalse();
+    }
+
+    @Test
+    void rejectsSizesThatAreNotPowersOfTwo() {
+        assertThatThrownBy(() -> new DeduplicationTable(3, 16, WINDOW))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new DeduplicationTable(4, 10, WINDOW))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
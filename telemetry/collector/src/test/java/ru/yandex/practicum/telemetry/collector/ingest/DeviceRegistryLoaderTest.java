@@ -0,0 +1,101 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubDeviceAvro;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeviceRegistryLoaderTest {
+    private static final String TOPIC = "telemetry.hub-config.v1";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+    private final DeviceRegistry registry = new DeviceRegistry(1000, 0.01);
+    private final MockConsumer<String, HubConfigAvro> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    private final DeviceRegistryLoader loader = new DeviceRegistryLoader(registry, consumer, TOPIC, Duration.ofSeconds(5));
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        loader.close();
+    }
+
+    @Test
+    void restoresLatestConfigOfEachHubBeforeEnablingCheck() throws InterruptedException {
+        consumer.updatePartitions(TOPIC, List.of(new PartitionInfo(TOPIC, 0, null, null, null)));
+        consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+        consumer.updateEndOffsets(Map.of(PARTITION, 3L));
+        consumer.schedulePollTask(() -> {
+            consumer.addRecord(record(0, config("hub-1", "lamp")));
+            consumer.addRecord(record(1, config("hub-2", "switch")));
+            consumer.addRecord(record(2, config("hub-1", "lamp", "sensor")));
+        });
+        assertThat(registry.isKnown("hub-1", "anything")).isTrue();
+
+        loader.start();
+        awaitTrue(registry::isReady);
+
+        assertThat(registry.isKnown("hub-1", "lamp")).isTrue();
+        assertThat(registry.isKnown("hub-1", "sensor")).isTrue();
+        assertThat(registry.isKnown("hub-2", "switch")).isTrue();
+        assertThat(registry.isKnown("hub-1", "switch")).isFalse();
+    }
+
+    @Test
+    void followsConfigsWrittenAfterRestore() throws InterruptedException {
+        consumer.updatePartitions(TOPIC, List.of(new PartitionInfo(TOPIC, 0, null, null, null)));
+        consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+        consumer.updateEndOffsets(Map.of(PARTITION, 1L));
+        consumer.schedulePollTask(() -> consumer.addRecord(record(0, config("hub-1", "lamp"))));
+        loader.start();
+        awaitTrue(registry::isReady);
+        assertThat(registry.isKnown("hub-1", "switch")).isFalse();
+
+        // устройство зарегистрировано через другой экземпляр коллектора
+        consumer.schedulePollTask(() -> consumer.addRecord(record(1, config("hub-1", "lamp", "switch"))));
+        awaitTrue(() -> registry.isKnown("hub-1", "switch"));
+
+        consumer.schedulePollTask(() -> consumer.addRecord(record(2, config("hub-1", "switch"))));
+        awaitTrue(() -> !registry.isKnown("hub-1", "lamp"));
+
+        // хаб удалён из компактного топика
+        consumer.schedulePollTask(() -> consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, 3, "hub-1", null)));
+        awaitTrue(() -> !registry.isKnown("hub-1", "switch"));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("условие не выполнилось за 5 секунд").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static ConsumerRecord<String, HubConfigAvro> record(long offset, HubConfigAvro config) {
+        return new ConsumerRecord<>(TOPIC, 0, offset, config.getHubId(), config);
+    }
+
+    private static HubConfigAvro config(String hubId, String... deviceIds) {
+        return HubConfigAvro.newBuilder()
+                .setHubId(hubId)
+                .setUpdatedAt(Instant.now())
+                .setSourcePartition(0)
+                .setSourceOffset(-1)
+                .setDevices(Arrays.stream(deviceIds).map(id -> new HubDeviceAvro(id, null)).toList())
+                .setScenarios(List.of())
+                .build();
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FingerprintSetTest {
+
+    @Test
+    void addsContainsAndRemovesKeys() {
+        FingerprintSet set = new FingerprintSet(8);
+
+        assertThat(set.add(42)).isTrue();
+        assertThat(set.add(42)).isFalse();
+        assertThat(set.contains(42)).isTrue();
+        assertThat(set.contains(43)).isFalse();
+        assertThat(set.size()).isEqualTo(1);
+
+        assertThat(set.remove(42)).isTrue();
+        assertThat(set.remove(42)).isFalse();
+        assertThat(set.contains(42)).isFalse();
+        assertThat(set.size()).isZero();
+    }
+
+    @Test
+    void keepsCollidingKeysReachableAfterRemovalAcrossTableEnd() {
+        // 32 слота; у всех ключей домашний слот 31, цепочка переходит через конец массива
+        FingerprintSet set = new FingerprintSet(8);
+        long[] keys = {31, 32 + 31, 64 + 31, 96 + 31};
+        for (long key : keys) {
+            set.add(key);
+        }
+        // ключ с домашним слотом 0 оказывается внутри чужой цепочки
+        set.add(128);
+
+        assertThat(set.remove(keys[0])).isTrue();
+        assertThat(set.contains(keys[1])).isTrue();
+        assertThat(set.contains(keys[2])).isTrue();
+        assertThat(set.contains(keys[3])).isTrue();
+        assertThat(set.contains(128)).isTrue();
+
+        assertThat(set.remove(keys[2])).isTrue();
+        assertThat(set.contains(keys[1])).isTrue();
+        assertThat(set.contains(keys[3])).isTrue();
+        assertThat(set.contains(128)).isTrue();
+        assertThat(set.size()).isEqualTo(3);
+    }
+
+    @Test
+    void growsBeyondExpectedSize() {
+        FingerprintSet set = new FingerprintSet(4);
+        for (long key = 1; key <= 1000; key++) {
+            assertThat(set.add(key * 0x9E3779B97F4A7C15L)).isTrue();
+        }
+
+        assertThat(set.size()).isEqualTo(1000);
+        for (long key = 1; key <= 1000; key++) {
+            assertThat(set.contains(key * 0x9E3779B97F4A7C15L)).isTrue();
+        }
+    }
+
+    @Test
+    void matchesHashSetUnderRandomOperations() {
+        Random random = new Random(11);
+        FingerprintSet set = new FingerprintSet(16);
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            // небольшой диапазон ключей с общими младшими битами даёт длинные цепочки
+            long key = 1 + (random.nextInt(64) << 8) + random.nextInt(4);
+            if (random.nextBoolean()) {
+                assertThat(set.add(key)).isEqualTo(expected.add(key));
+            } else {
+                assertThat(set.remove(key)).isEqualTo(expected.remove(key));
+            }
+            assertThat(set.size()).isEqualTo(expected.size());
+        }
+
+        List<Long> visited = new ArrayList<>();
+        set.forEach(visited::add);
+        assertThat(visited).containsExactlyInAnyOrderElementsOf(expected);
+    }
+}
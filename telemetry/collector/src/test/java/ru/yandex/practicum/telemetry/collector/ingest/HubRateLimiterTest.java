@@ -0,0 +1,87 @@
+package ru.yandex.practicum.telemetry.collector.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HubRateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long IDLE = TimeUnit.MINUTES.toNanos(5);
+
+    // время отсчитывается от System.nanoTime(), как в фильтре: от него же считается очистка забытых хабов
+    private final long start = System.nanoTime();
+
+    @Test
+    void allowsBurstThenLimitsToRate() {
+        HubRateLimiter limiter = new HubRateLimiter(10, 5, Map.of(), IDLE);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire("hub-1", start)).isTrue();
+        }
+        assertThat(limiter.tryAcquire("hub-1", start)).isFalse();
+
+        // 10 событий в секунду: токен набирается за 100 мс
+        assertThat(limiter.tryAcquire("hub-1", start + SECOND / 20)).isFalse();
+        assertThat(limiter.tryAcquire("hub-1", start + SECOND / 10 + 1_000)).isTrue();
+        assertThat(limiter.tryAcquire("hub-1", start + SECOND / 10 + 1_000)).isFalse();
+    }
+
+    @Test
+    void refillsNoMoreThanBurst() {
+        HubRateLimiter limiter = new HubRateLimiter(10, 3, Map.of(), IDLE);
+        limiter.tryAcquire("hub-1", start);
+
+        long later = start + 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("hub-1", later)).isTrue();
+        }
+        assertThat(limiter.tryAcquire("hub-1", later)).isFalse();
+    }
+
+    @Test
+    void limitsHubsIndependently() {
+        HubRateLimiter limiter = new HubRateLimiter(1, 1, Map.of(), IDLE);
+
+        assertThat(limiter.tryAcquire("hub-1", start)).isTrue();
+        assertThat(limiter.tryAcquire("hub-1", start)).isFalse();
+        assertThat(limiter.tryAcquire("hub-2", start)).isTrue();
+        assertThat(limiter.trackedHubs()).isEqualTo(2);
+    }
+
+    @Test
+    void appliesRateOverrideOfHub() {
+        HubRateLimiter limiter = new HubRateLimiter(1, 1, Map.of("hub-fast", 100.0), IDLE);
+        limiter.tryAcquire("hub-fast", start);
+        limiter.tryAcquire("hub-1", start);
+
+        assertThat(limiter.tryAcquire("hub-fast", start + SECOND / 100 + 1_000)).isTrue();
+        assertThat(limiter.tryAcquire("hub-1", start + SECOND / 100 + 1_000)).isFalse();
+    }
+
+    @Test
+    void allowsAtLeastOneEventWithZeroBurst() {
+        HubRateLimiter limiter = new HubRateLimiter(1, 0, Map.of(), IDLE);
+
+        assertThat(limiter.tryAcquire("hub-1", start)).isTrue();
+        assertThat(limiter.tryAcquire("hub-1", start)).isFalse();
+    }
+
+    @Test
+    void forgetsIdleHubs() {
+        HubRateLimiter limiter = new HubRateLimiter(1, 1, Map.of(), IDLE);
+        limiter.tryAcquire("hub-1", start);
+        limiter.tryAcquire("hub-2", start);
+
+        // очистка идёт не чаще раза в минуту, поэтому до неё оба хаба на месте
+        limiter.tryAcquire("hub-2", start + TimeUnit.SECONDS.toNanos(30));
+        assertThat(limiter.trackedHubs()).isEqualTo(2);
+
+        limiter.tryAcquire("hub-2", start + IDLE + TimeUnit.SECONDS.toNanos(10));
+        assertThat(limiter.trackedHubs()).isEqualTo(1);
+        // забытый хаб начинает с полной корзиной
+        assertThat(limiter.tryAcquire("hub-1", start + IDLE + TimeUnit.SECONDS.toNanos(10))).isTrue();
+    }
+}
@@ -0,0 +1,198 @@
+package ru.yandex.practicum.telemetry.collector.kafka;
+
+import deserializer.SensorEventBatchDeserializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.BatchedSensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+import tracing.TraceContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorEventBatcherTest {
+    private static final String TOPIC = "telemetry.sensors.v1";
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final List<ProducerRecord<String, SpecificRecordBase>> sent = new CopyOnWriteArrayList<>();
+    private final List<Callback> completions = new CopyOnWriteArrayList<>();
+    private final SensorBatchingProperties properties = new SensorBatchingProperties();
+    private volatile RuntimeException sendFailure;
+    private SensorEventBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        batcher.close();
+    }
+
+    @Test
+    void sendsFullBatchOfHubAsOneRecord() {
+        start(Duration.ofMinutes(1), 3);
+        List<Exception> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            batcher.add(temperature("hub-1", START.plusSeconds(i), 20 + i), TraceContext.start(),
+                    (metadata, exception) -> results.add(exception));
+        }
+
+        // пачка заполнена и ушла в вызывающем потоке, не дожидаясь таймера
+        assertThat(sent).hasSize(1);
+        ProducerRecord<String, SpecificRecordBase> record = sent.getFirst();
+        assertThat(record.topic()).isEqualTo(TOPIC);
+        assertThat(record.key()).isEqualTo("hub-1");
+        assertThat(record.timestamp()).isEqualTo(START.toEpochMilli());
+        assertThat(SensorEventBatchDeserializer.isBatch(record.headers())).isTrue();
+        SensorEventBatchAvro batch = (SensorEventBatchAvro) record.value();
+        assertThat(batch.getHubId()).isEqualTo("hub-1");
+        assertThat(batch.getEvents()).extracting(entry -> entry.getEvent().getTimestamp())
+                .containsExactly(START, START.plusSeconds(1), START.plusSeconds(2));
+
+        assertThat(results).isEmpty();
+        completions.getFirst().onCompletion(null, null);
+        assertThat(results).hasSize(3).containsOnlyNulls();
+    }
+
+    @Test
+    void keepsTraceOfEachEvent() {
+        start(Duration.ofMinutes(1), 2);
+        TraceContext first = new TraceContext("trace-1", START.toEpochMilli());
+        TraceContext second = new TraceContext("trace-2", START.toEpochMilli() + 5);
+        batcher.add(temperature("hub-1", START, 20), first, (metadata, exception) -> {
+        });
+        batcher.add(temperature("hub-1", START, 21), second, (metadata, exception) -> {
+        });
+
+        List<BatchedSensorEventAvro> events = ((SensorEventBatchAvro) sent.getFirst().value()).getEvents();
+        assertThat(events).extracting(BatchedSensorEventAvro::getTraceId).containsExactly("trace-1", "trace-2");
+        assertThat(events.get(1).getIngestedAt()).isEqualTo(Instant.ofEpochMilli(START.toEpochMilli() + 5));
+    }
+
+    @Test
+    void sendsIncompleteBatchAfterLinger() throws InterruptedException {
+        start(Duration.ofMillis(100), 100);
+        batcher.add(temperature("hub-1", START, 20), TraceContext.start(), (metadata, exception) -> {
+        });
+        batcher.add(temperature("hub-1", START.plusSeconds(1), 21), TraceContext.start(), (metadata, exception) -> {
+        });
+        assertThat(sent).isEmpty();
+
+        awaitTrue(() -> sent.size() == 1);
+        assertThat(((SensorEventBatchAvro) sent.getFirst().value()).getEvents()).hasSize(2);
+    }
+
+    @Test
+    void batchesHubsSeparatelyAndFlushesOnDemand() {
+        start(Duration.ofMinutes(1), 100);
+        batcher.add(temperature("hub-1", START, 20), TraceContext.start(), (metadata, exception) -> {
+        });
+        batcher.add(temperature("hub-2", START, 21), TraceContext.start(), (metadata, exception) -> {
+        });
+        batcher.add(temperature("hub-1", START.plusSeconds(1), 22), TraceContext.start(), (metadata, exception) -> {
+        });
+
+        batcher.flush();
+        assertThat(sent).extracting(ProducerRecord::key).containsExactlyInAnyOrder("hub-1", "hub-2");
+        assertThat(sent).filteredOn(record -> record.key().equals("hub-1")).singleElement()
+                .satisfies(record -> assertThat(((SensorEventBatchAvro) record.value()).getEvents()).hasSize(2));
+
+        // следующее событие хаба открывает новую пачку
+        batcher.add(temperature("hub-1", START.plusSeconds(2), 23), TraceContext.start(), (metadata, exception) -> {
+        });
+        batcher.close();
+        assertThat(sent).hasSize(3);
+    }
+
+    @Test
+    void reportsSendFailureToEveryEvent() {
+        start(Duration.ofMinutes(1), 2);
+        sendFailure = new KafkaException("нет места в буфере");
+        List<Exception> results = new ArrayList<>();
+        batcher.add(temperature("hub-1", START, 20), TraceContext.start(),
+                (metadata, exception) -> results.add(exception));
+        batcher.add(temperature("hub-1", START, 21), TraceContext.start(),
+                (metadata, exception) -> results.add(exception));
+
+        assertThat(results).containsExactly(sendFailure, sendFailure);
+    }
+
+    @Test
+    void deliversEveryEventExactlyOnceUnderConcurrentAdds() throws InterruptedException {
+        start(Duration.ofMillis(1), 7);
+        AtomicInteger completed = new AtomicInteger();
+        int threads = 4;
+        int perThread = 2_000;
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String hubId = "hub-" + (t % 2);
+            writers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    batcher.add(temperature(hubId, START.plusMillis(i), i), TraceContext.start(),
+                            (metadata, exception) -> completed.incrementAndGet());
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        batcher.flush();
+        completions.forEach(callback -> callback.onCompletion(null, null));
+
+        int events = sent.stream().mapToInt(record -> ((SensorEventBatchAvro) record.value()).getEvents().size()).sum();
+        assertThat(events).isEqualTo(threads * perThread);
+        assertThat(completed.get()).isEqualTo(threads * perThread);
+        assertThat(sent).allSatisfy(record -> assertThat(((SensorEventBatchAvro) record.value()).getEvents())
+                .hasSizeBetween(1, 7)
+                .allSatisfy(entry -> assertThat(entry.getEvent().getHubId()).isEqualTo(record.key())));
+    }
+
+    private void start(Duration linger, int maxEvents) {
+        properties.setLinger(linger);
+        properties.setMaxEvents(maxEvents);
+        batcher = new SensorEventBatcher(new KafkaClientProducer() {
+            @Override
+            public Producer<String, SpecificRecordBase> getProducer() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void send(ProducerRecord<String, SpecificRecordBase> record, Callback callback) {
+                if (sendFailure != null) {
+                    throw sendFailure;
+                }
+                sent.add(record);
+                completions.add(callback);
+            }
+
+            @Override
+            public void stop() {
+            }
+        }, TOPIC, properties, new SimpleMeterRegistry());
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("условие не выполнилось за 5 секунд").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static SensorEventAvro temperature(String hubId, Instant timestamp, int celsius) {
+        return new SensorEventAvro("t-1", hubId, timestamp, new TemperatureSensorAvro(celsius, celsius * 9 / 5 + 32));
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.telemetry.collector.spill;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpillBufferTest {
+    private static final String TOPIC = "telemetry.sensors.v1";
+
+    @TempDir
+    Path directory;
+
+    private SpillLog spillLog;
+    private SpillBuffer spillBuffer;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        spillBuffer.close();
+        spillLog.close();
+    }
+
+    @Test
+    void spillsNewEventsAfterEventsThatProducerFailedToDeliver() throws InterruptedException {
+        start(true);
+        CountDownLatch firstWritten = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        spillBuffer.spillAsync(record("hub-1"), spilled -> {
+            firstWritten.countDown();
+            awaitQuietly(release);
+        });
+        assertThat(firstWritten.await(5, TimeUnit.SECONDS)).isTrue();
+        spillLog.commit(spillLog.peek(10));
+        assertThat(spillLog.isEmpty()).isTrue();
+        assertThat(spillBuffer.shouldSpill()).isFalse();
+
+        // поток записи занят: недоставленное событие ещё не в журнале, но новые уже идут за ним
+        spillBuffer.spillAsync(record("hub-2"), spilled -> {
+        });
+        assertThat(spillBuffer.shouldSpill()).isTrue();
+        Thread direct = Thread.ofPlatform().start(() -> spillBuffer.spill(record("hub-3")));
+        release.countDown();
+        direct.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertThat(spillLog.peek(10).entries()).extracting(SpillEntry::key).containsExactly("hub-2", "hub-3");
+    }
+
+    @Test
+    void sendsDirectlyWhenSpillingIsDisabled() throws InterruptedException {
+        start(false);
+        CountDownLatch done = new CountDownLatch(1);
+        boolean[] result = {true};
+        spillBuffer.spillAsync(record("hub-1"), spilled -> {
+            result[0] = spilled;
+            done.countDown();
+        });
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(result[0]).isFalse();
+        assertThat(spillBuffer.spill(record("hub-2"))).isFalse();
+        assertThat(spillBuffer.shouldSpill()).isFalse();
+        assertThat(spillLog.isEmpty()).isTrue();
+    }
+
+    private void start(boolean enabled) {
+        SpillProperties properties = new SpillProperties();
+        properties.setEnabled(enabled);
+        spillLog = new SpillLog(directory, 4096, 4);
+        spillBuffer = new SpillBuffer(spillLog, properties, new SimpleMeterRegistry());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ProducerRecord<String, SpecificRecordBase> record(String hubId) {
+        SensorEventAvro event = new SensorEventAvro("t-1", hubId, Instant.parse("2026-01-01T00:00:00Z"),
+                new TemperatureSensorAvro(21, 69));
+        return new ProducerRecord<>(TOPIC, hubId, event);
+    }
+}
@@ -0,0 +1,212 @@
+package ru.yandex.practicum.telemetry.collector.spill;
+
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpillLogTest {
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int HEADER = Integer.BYTES * 2;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsEntriesInOrderAndMovesCheckpointOnlyOnCommit() {
+        try (SpillLog spillLog = open()) {
+            assertThat(spillLog.isEmpty()).isTrue();
+            spillLog.append(entry("a"));
+            spillLog.append(entry("b"));
+            spillLog.append(entry("c"));
+
+            SpillLog.Batch first = spillLog.peek(2);
+            assertThat(keys(first)).containsExactly("a", "b");
+            assertThat(keys(spillLog.peek(2))).containsExactly("a", "b");
+            assertThat(spillLog.pendingRecords()).isEqualTo(3);
+
+            spillLog.commit(first);
+            assertThat(spillLog.pendingRecords()).isEqualTo(1);
+            SpillLog.Batch rest = spillLog.peek(10);
+            assertThat(keys(rest)).containsExactly("c");
+            spillLog.commit(rest);
+            assertThat(spillLog.isEmpty()).isTrue();
+            assertThat(spillLog.peek(10).isEmpty()).isTrue();
+        }
+    }
+
+    @Test
+    void keepsEntryContentsIntact() {
+        SpillEntry written = new SpillEntry("telemetry.sensors.v1", "hub-1", 1_700_000_000_000L,
+                List.of(new RecordHeader("format", "batch".getBytes(StandardCharsets.UTF_8))), new byte[]{1, 2, 3});
+        try (SpillLog spillLog = open()) {
+            spillLog.append(written);
+            spillLog.append(new SpillEntry("telemetry.hubs.v1", null, 1L, List.of(), new byte[0]));
+
+            List<SpillEntry> read = spillLog.peek(10).entries();
+            assertThat(read.get(0).topic()).isEqualTo("telemetry.sensors.v1");
+            assertThat(read.get(0).key()).isEqualTo("hub-1");
+            assertThat(read.get(0).timestamp()).isEqualTo(1_700_000_000_000L);
+            assertThat(read.get(0).headers()).singleElement().satisfies(header -> {
+                assertThat(header.key()).isEqualTo("format");
+                assertThat(header.value()).isEqualTo("batch".getBytes(StandardCharsets.UTF_8));
+            });
+            assertThat(read.get(0).value()).containsExactly(1, 2, 3);
+            assertThat(read.get(1).key()).isNull();
+            assertThat(read.get(1).value()).isEmpty();
+        }
+    }
+
+    @Test
+    void continuesFromCheckpointAfterRestart() {
+        try (SpillLog spillLog = open()) {
+            spillLog.append(entry("a"));
+            spillLog.append(entry("b"));
+            spillLog.append(entry("c"));
+            spillLog.commit(spillLog.peek(1));
+        }
+
+        try (SpillLog spillLog = open()) {
+            assertThat(spillLog.pendingRecords()).isEqualTo(2);
+            spillLog.append(entry("d"));
+            assertThat(keys(spillLog.peek(10))).containsExactly("b", "c", "d");
+        }
+    }
+
+    @Test
+    void deletesDrainedSegmentsAndRestoresAcrossSegments() throws IOException {
+        int perSegment = SEGMENT_SIZE / recordSize(entry(key(0)));
+        int total = perSegment * 2 + 1;
+        try (SpillLog spillLog = open()) {
+            for (int i = 0; i < total; i++) {
+                assertThat(spillLog.append(entry(key(i)))).isTrue();
+            }
+            assertThat(spillLog.segmentCount()).isEqualTo(3);
+            spillLog.commit(spillLog.peek(perSegment + 1));
+            assertThat(spillLog.segmentCount()).isEqualTo(2);
+            assertThat(segmentFiles()).hasSize(2);
+        }
+
+        try (SpillLog spillLog = open()) {
+            assertThat(spillLog.pendingRecords()).isEqualTo(total - perSegment - 1);
+            List<String> keys = keys(spillLog.peek(total));
+            assertThat(keys).hasSize(total - perSegment - 1);
+            assertThat(keys.getFirst()).isEqualTo(key(perSegment + 1));
+            assertThat(keys.getLast()).isEqualTo(key(total - 1));
+        }
+    }
+
+    @Test
+    void rejectsEntriesWhenAllSegmentsAreFull() {
+        int perSegment = SEGMENT_SIZE / recordSize(entry(key(0)));
+        try (SpillLog spillLog = new SpillLog(directory, SEGMENT_SIZE, 1)) {
+            for (int i = 0; i < perSegment; i++) {
+                assertThat(spillLog.append(entry(key(i)))).isTrue();
+            }
+            assertThat(spillLog.append(entry(key(perSegment)))).isFalse();
+            assertThat(spillLog.pendingRecords()).isEqualTo(perSegment);
+        }
+    }
+
+    @Test
+    void dropsCorruptTailOnRestartAndOverwritesIt() throws IOException {
+        int recordSize = recordSize(entry("a"));
+        try (SpillLog spillLog = open()) {
+            spillLog.append(entry("a"));
+            spillLog.append(entry("b"));
+            spillLog.append(entry("c"));
+        }
+        // запись оборвалась: длина и CRC на месте, а тело записано не целиком
+        corrupt(segmentFiles().getFirst(), recordSize * 3 - 1);
+
+        try (SpillLog spillLog = open()) {
+            assertThat(spillLog.pendingRecords()).isEqualTo(2);
+            spillLog.append(entry("d"));
+            assertThat(keys(spillLog.peek(10))).containsExactly("a", "b", "d");
+        }
+    }
+
+    @Test
+    void ignoresTailWhoseLengthRunsPastSegmentEnd() throws IOException {
+        try (SpillLog spillLog = open()) {
+            spillLog.append(entry("a"));
+        }
+        int recordSize = recordSize(entry("a"));
+        try (FileChannel channel = FileChannel.open(segmentFiles().getFirst(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, SEGMENT_SIZE), recordSize);
+        }
+
+        try (SpillLog spillLog = open()) {
+            assertThat(spillLog.pendingRecords()).isEqualTo(1);
+            spillLog.append(entry("b"));
+            assertThat(keys(spillLog.peek(10))).containsExactly("a", "b");
+        }
+    }
+
+    @Test
+    void skipsRestOfSegmentAfterCorruptRecordInTheMiddle() throws IOException {
+        int perSegment = SEGMENT_SIZE / recordSize(entry(key(0)));
+        try (SpillLog spillLog = open()) {
+            for (int i = 0; i < perSegment + 1; i++) {
+                spillLog.append(entry(key(i)));
+            }
+        }
+        // второй записи первого сегмента: CRC не сходится, остаток сегмента пропускается
+        corrupt(segmentFiles().getFirst(), recordSize(entry(key(0))) + HEADER);
+
+        try (SpillLog spillLog = open()) {
+            SpillLog.Batch batch = spillLog.peek(perSegment + 1);
+            assertThat(keys(batch)).containsExactly(key(0), key(perSegment));
+            assertThat(batch.skipped()).isTrue();
+            spillLog.commit(batch);
+            assertThat(spillLog.isEmpty()).isTrue();
+            assertThat(spillLog.segmentCount()).isEqualTo(1);
+        }
+    }
+
+    private SpillLog open() {
+        return new SpillLog(directory, SEGMENT_SIZE, 4);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static void corrupt(Path segment, int position) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, position);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) ~value.get(0)}), position);
+        }
+    }
+
+    private static int recordSize(SpillEntry entry) {
+        return HEADER + entry.encode().length;
+    }
+
+    private static List<String> keys(SpillLog.Batch batch) {
+        return batch.entries().stream().map(SpillEntry::key).toList();
+    }
+
+    private static String key(int i) {
+        // ключи одной длины, чтобы все записи были одного размера
+        return String.format("k%03d", i);
+    }
+
+    private static SpillEntry entry(String key) {
+        return new SpillEntry("telemetry.sensors.v1", key, 0, List.of(), new byte[16]);
+    }
+}
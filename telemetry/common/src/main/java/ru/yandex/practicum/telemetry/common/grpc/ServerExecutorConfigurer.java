@@ -0,0 +1,122 @@
+package ru.yandex.practicum.telemetry.common.grpc;
+
+import io.grpc.ServerBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Настраивает исполнитель обработчиков и event loop'ы Netty у gRPC-сервера.
+ * Созданные здесь пулы принадлежат конфигуратору и закрываются в {@link #close()} после остановки сервера.
+ */
+@Slf4j
+public class ServerExecutorConfigurer implements Consumer<ServerBuilder<?>>, AutoCloseable {
+    private final String name;
+    private final ServerExecutorProperties properties;
+    private final MeterRegistry meterRegistry;
+    private ExecutorService executor;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+
+    public ServerExecutorConfigurer(String name, ServerExecutorProperties properties, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void accept(ServerBuilder<?> serverBuilder) {
+        switch (properties.getMode()) {
+            case VIRTUAL -> {
+                executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-grpc-", 0).factory());
+                serverBuilder.executor(executor);
+            }
+            case BOUNDED -> {
+                executor = boundedExecutor();
+                serverBuilder.executor(executor);
+            }
+            case DIRECT -> serverBuilder.directExecutor();
+            case DEFAULT -> {
+            }
+        }
+
+        if (serverBuilder instanceof NettyServerBuilder netty) {
+            configureNetty(netty);
+        } else {
+            log.warn("gRPC-сервер {} работает не на Netty, настройки event loop не применены", name);
+        }
+        log.info("gRPC-сервер {}: исполнитель {}, boss-потоков {}, worker-потоков {}",
+                name, properties.getMode(), properties.getBossThreads(),
+                properties.getWorkerThreads() == 0 ? "по умолчанию" : properties.getWorkerThreads());
+    }
+
+    private void configureNetty(NettyServerBuilder netty) {
+        if (properties.getMaxConcurrentCallsPerConnection() > 0) {
+            netty.maxConcurrentCallsPerConnection(properties.getMaxConcurrentCallsPerConnection());
+        }
+        if (properties.getWorkerThreads() > 0 || properties.getBossThreads() != 1) {
+            // группы и тип канала задаются только вместе
+            bossGroup = new NioEventLoopGroup(properties.getBossThreads(),
+                    new DefaultThreadFactory(name + "-grpc-boss", true));
+            workerGroup = new NioEventLoopGroup(properties.getWorkerThreads(),
+                    new DefaultThreadFactory(name + "-grpc-worker", true));
+            netty.bossEventLoopGroup(bossGroup)
+                    .workerEventLoopGroup(workerGroup)
+                    .channelType(NioServerSocketChannel.class);
+        }
+    }
+
+    private ExecutorService boundedExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        Counter overflow = Counter.builder("telemetry.grpc.executor.overflow")
+                .description("Задачи, выполненные в потоке event loop из-за заполненной очереди пула")
+                .tag("server", name)
+                .register(meterRegistry);
+        ThreadPoolExecutor.CallerRunsPolicy callerRuns = new ThreadPoolExecutor.CallerRunsPolicy();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                properties.getBoundedThreads(), properties.getBoundedThreads(),
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getBoundedQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-grpc-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> {
+                    overflow.increment();
+                    callerRuns.rejectedExecution(runnable, executor);
+                });
+        Gauge.builder("telemetry.grpc.executor.queued", pool, p -> p.getQueue().size())
+                .tag("server", name)
+                .register(meterRegistry);
+        Gauge.builder("telemetry.grpc.executor.active", pool, ThreadPoolExecutor::getActiveCount)
+                .tag("server", name)
+                .register(meterRegistry);
+        return pool;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.telemetry.common.grpc;
+
+/**
+ * Модель потоков, в которых gRPC-сервер выполняет обработчики вызовов.
+ */
+public enum ServerExecutorMode {
+    /**
+     * Пул grpc-java по умолчанию: неограниченный кэширующий пул платформенных потоков.
+     */
+    DEFAULT,
+
+    /**
+     * Виртуальный поток на каждую задачу. Подходит для обработчиков, которые блокируются
+     * на producer'е Kafka или синхронном логировании.
+     */
+    VIRTUAL,
+
+    /**
+     * Пул платформенных потоков фиксированного размера с ограниченной очередью.
+     */
+    BOUNDED,
+
+    /**
+     * Обработчики выполняются прямо в потоках event loop Netty. Только для полностью неблокирующих обработчиков.
+     */
+    DIRECT
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.telemetry.common.grpc;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Настройки потоков gRPC-сервера: исполнитель обработчиков и event loop Netty.
+ */
+@Getter
+@Setter
+public class ServerExecutorProperties {
+    private ServerExecutorMode mode = ServerExecutorMode.DEFAULT;
+
+    /**
+     * Размер пула в режиме {@link ServerExecutorMode#BOUNDED}.
+     */
+    private int boundedThreads = Runtime.getRuntime().availableProcessors() * 4;
+
+    /**
+     * Очередь пула в режиме {@link ServerExecutorMode#BOUNDED}. Когда она заполнена, задачу выполняет
+     * поток event loop, который на это время перестаёт читать сокеты своих соединений.
+     */
+    private int boundedQueueCapacity = 1_000;
+
+    /**
+     * Потоки, принимающие новые соединения.
+     */
+    private int bossThreads = 1;
+
+    /**
+     * Потоки event loop, обслуживающие соединения. 0 - значение Netty по умолчанию (два на ядро).
+     */
+    private int workerThreads = 0;
+
+    /**
+     * Предел одновременных вызовов в одном соединении. 0 - без ограничения.
+     */
+    private int maxConcurrentCallsPerConnection = 0;
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.telemetry.common.hash;
+
+/**
+ * 64-битные отпечатки идентификаторов для компактных таблиц: FNV-1a по символам с перемешиванием
+ * битов из MurmurHash3. Одна реализация на входной фильтр коллектора и учёт самых частых ключей.
+ */
+public final class Fingerprints {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Fingerprints() {
+    }
+
+    /**
+     * Отпечаток пары идентификаторов, например (хаб, устройство). Никогда не равен нулю:
+     * ноль в таблицах означает пустой слот.
+     *
+     * @param second второй идентификатор или {@code null}, если ключ состоит из одного
+     */
+    public static long of(String first, String second) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < first.length(); i++) {
+            hash = (hash ^ first.charAt(i)) * FNV_PRIME;
+        }
+        if (second != null) {
+            // разделитель, чтобы пары ("ab", "c") и ("a", "bc") не совпали
+            hash = (hash ^ 0xffff) * FNV_PRIME;
+            for (int i = 0; i < second.length(); i++) {
+                hash = (hash ^ second.charAt(i)) * FNV_PRIME;
+            }
+        }
+        hash = mix(hash);
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Отпечаток значения: тип и его байты.
+     */
+    public static long of(int type, byte[] bytes) {
+        long hash = (FNV_OFFSET ^ type) * FNV_PRIME;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Перемешивание битов из MurmurHash3: у FNV слабо перемешаны старшие биты, а по ним выбирается сегмент.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.telemetry.common.hitters;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min sketch над 64-битными хэшами ключей: {@code depth} строк по {@code width} счётчиков.
+ * Оценка числа появлений ключа не меньше точной и превышает её не больше чем на
+ * {@code e / width} от общего числа событий с вероятностью {@code 1 - e^-depth}.
+ * Увеличение и чтение без блокировок; память не зависит от числа ключей.
+ */
+public class CountMinSketch {
+    private final AtomicLongArray counters;
+    private final int depth;
+    private final int mask;
+
+    /**
+     * @param width число счётчиков в строке, степень двойки
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Нужна хотя бы одна строка, ширина - степень двойки");
+        }
+        this.counters = new AtomicLongArray(depth * width);
+        this.depth = depth;
+        this.mask = width - 1;
+    }
+
+    /**
+     * Учитывает появление ключа.
+     *
+     * @return оценка числа появлений ключа с учётом этого
+     */
+    public long add(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(row, h1, h2)));
+        }
+        return estimate;
+    }
+
+    public long estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, h1, h2)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Столбец строки выбирается двойным хэшированием, как в фильтре Блума: {@code h1 + row * h2}.
+     */
+    private int index(int row, int h1, int h2) {
+        return row * (mask + 1) + ((h1 + row * h2) & mask);
+    }
+}
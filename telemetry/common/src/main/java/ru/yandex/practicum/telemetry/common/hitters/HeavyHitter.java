@@ -0,0 +1,12 @@
+package ru.yandex.practicum.telemetry.common.hitters;
+
+/**
+ * Ключ из верхушки частот за окно.
+ *
+ * @param key   идентификатор хаба или {@code хаб:датчик}
+ * @param count оценка числа событий ключа за окно, не меньше точного
+ * @param rate  событий в секунду в среднем по окну
+ * @param share доля ключа среди всех событий окна
+ */
+public record HeavyHitter(String key, long count, double rate, double share) {
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.telemetry.common.hitters;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки поиска самых частых хабов и датчиков.
+ */
+@Getter
+@Setter
+public class HeavyHitterProperties {
+    private boolean enabled = true;
+
+    /**
+     * Сколько самых частых ключей запоминается за окно.
+     */
+    private int topK = 10;
+
+    /**
+     * Строки Count-Min sketch: вероятность ошибки оценки убывает как {@code e^-depth}.
+     */
+    private int depth = 4;
+
+    /**
+     * Счётчики в строке, степень двойки: ошибка оценки не больше {@code e / width} от всех событий окна.
+     */
+    private int width = 4096;
+
+    /**
+     * Длительность окна: счёт ведётся с нуля в каждом окне, отчёт публикуется по его завершении.
+     */
+    private Duration window = Duration.ofMinutes(1);
+
+    /**
+     * Ключ прошлого окна считается аномально частым, если его доля среди всех событий не меньше этой...
+     */
+    private double flagShare = 0.2;
+
+    /**
+     * ...и средняя частота не меньше этой, событий в секунду.
+     */
+    private double flagMinRate = 500;
+}
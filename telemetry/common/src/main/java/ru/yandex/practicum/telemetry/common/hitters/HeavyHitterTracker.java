@@ -0,0 +1,237 @@
+package ru.yandex.practicum.telemetry.common.hitters;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import ru.yandex.practicum.telemetry.common.hash.Fingerprints;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Самые частые ключи одного измерения (хабы или датчики) по окнам времени в фиксированной памяти:
+ * частоты оцениваются Count-Min sketch, а {@code top-k} ключей с наибольшей оценкой хранятся отдельно.
+ * <p>
+ * Обычное событие - это несколько атомарных увеличений счётчиков и сравнение с порогом входа
+ * в верхушку, без блокировок и без создания объектов. Блокировка берётся, только когда оценка ключа
+ * вне верхушки превысила порог, то есть ключ претендует на место в ней.
+ * <p>
+ * По завершении окна его верхушка публикуется как отчёт и в метрики, а ключи, доля и частота которых
+ * выше заданных, считаются аномально частыми до конца следующего окна. Окно сменяется при первом
+ * событии или запросе отчёта после его конца.
+ */
+public class HeavyHitterTracker {
+    private final String dimension;
+    private final HeavyHitterProperties properties;
+    private final long windowMillis;
+    private final MultiGauge rateGauge;
+    private final MultiGauge shareGauge;
+    private volatile Window current;
+    private volatile Report lastReport;
+    private volatile long[] flagged = new long[0];
+
+    public HeavyHitterTracker(String dimension, HeavyHitterProperties properties, MeterRegistry meterRegistry) {
+        this.dimension = dimension;
+        this.properties = properties;
+        this.windowMillis = properties.getWindow().toMillis();
+        this.current = newWindow(System.currentTimeMillis());
+        this.lastReport = new Report(Instant.ofEpochMilli(current.start), Instant.ofEpochMilli(current.start), 0,
+                List.of());
+        this.rateGauge = MultiGauge.builder("telemetry.heavy-hitters.rate")
+                .description("Средняя частота событий самых частых ключей за прошлое окно, событий в секунду")
+                .tag("dimension", dimension)
+                .register(meterRegistry);
+        this.shareGauge = MultiGauge.builder("telemetry.heavy-hitters.share")
+                .description("Доля самых частых ключей среди всех событий прошлого окна")
+                .tag("dimension", dimension)
+                .register(meterRegistry);
+    }
+
+    public String dimension() {
+        return dimension;
+    }
+
+    /**
+     * Учитывает событие ключа.
+     *
+     * @param first  идентификатор хаба
+     * @param second идентификатор датчика или {@code null}, если ключ - только хаб
+     * @return {@code true}, если ключ был аномально частым в прошлом окне
+     */
+    public boolean record(String first, String second, long now) {
+        long hash = Fingerprints.of(first, second);
+        Window window = current;
+        if (now >= window.end) {
+            window = rotate(now);
+        }
+        window.total.increment();
+        long estimate = window.sketch.add(hash);
+        if (estimate > window.threshold && !contains(window.members, hash)) {
+            window.admit(hash, first, second, estimate, properties.getTopK());
+        }
+        return contains(flagged, hash);
+    }
+
+    /**
+     * Был ли ключ аномально частым в прошлом окне.
+     */
+    public boolean isFlagged(String first, String second) {
+        return contains(flagged, Fingerprints.of(first, second));
+    }
+
+    /**
+     * Верхушка последнего завершённого окна.
+     */
+    public Report lastWindow(long now) {
+        if (now >= current.end) {
+            rotate(now);
+        }
+        return lastReport;
+    }
+
+    /**
+     * Верхушка текущего, ещё не завершённого окна.
+     */
+    public Report currentWindow(long now) {
+        Window window = current;
+        if (now >= window.end) {
+            window = rotate(now);
+        }
+        return window.report(windowMillis);
+    }
+
+    private synchronized Window rotate(long now) {
+        Window ended = current;
+        if (now < ended.end) {
+            return ended;
+        }
+        Report report = ended.report(windowMillis);
+        lastReport = report;
+        // отметка действует только в окне, следующем сразу за отчётным
+        flagged = now < ended.end + windowMillis
+                ? report.hitters().stream()
+                .filter(hitter -> hitter.share() >= properties.getFlagShare()
+                        && hitter.rate() >= properties.getFlagMinRate())
+                .mapToLong(hitter -> ended.hashOf(hitter.key()))
+                .toArray()
+                : new long[0];
+        rateGauge.register(report.hitters().stream()
+                .<MultiGauge.Row<?>>map(hitter -> MultiGauge.Row.of(Tags.of("key", hitter.key()), hitter.rate()))
+                .toList(), true);
+        shareGauge.register(report.hitters().stream()
+                .<MultiGauge.Row<?>>map(hitter -> MultiGauge.Row.of(Tags.of("key", hitter.key()), hitter.share()))
+                .toList(), true);
+        current = newWindow(now);
+        return current;
+    }
+
+    private Window newWindow(long now) {
+        long start = Math.floorDiv(now, windowMillis) * windowMillis;
+        return new Window(start, start + windowMillis,
+                new CountMinSketch(properties.getDepth(), properties.getWidth()), properties.getTopK());
+    }
+
+    private static boolean contains(long[] hashes, long hash) {
+        for (long candidate : hashes) {
+            if (candidate == hash) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Отчёт за окно: ключи по убыванию оценки числа событий.
+     */
+    public record Report(Instant from, Instant to, long total, List<HeavyHitter> hitters) {
+    }
+
+    /**
+     * Счёт одного окна. Верхушка - массивы на {@code top-k} мест; для проверки без блокировки
+     * публикуется копия хэшей её ключей.
+     */
+    private static final class Window {
+        private final long start;
+        private final long end;
+        private final CountMinSketch sketch;
+        private final LongAdder total = new LongAdder();
+        private final long[] hashes;
+        private final String[] keys;
+        private int size;
+        private volatile long[] members = new long[0];
+        /**
+         * Наименьшая оценка в заполненной верхушке на момент последнего изменения: ключ с оценкой
+         * не выше неё место не получит. Оценки участников только растут, поэтому порог может
+         * отставать, и тогда лишний претендент просто проверяется под блокировкой.
+         */
+        private volatile long threshold;
+
+        private Window(long start, long end, CountMinSketch sketch, int topK) {
+            this.start = start;
+            this.end = end;
+            this.sketch = sketch;
+            this.hashes = new long[topK];
+            this.keys = new String[topK];
+        }
+
+        private synchronized void admit(long hash, String first, String second, long estimate, int topK) {
+            if (contains(members, hash)) {
+                return;
+            }
+            int slot;
+            if (size < topK) {
+                slot = size++;
+            } else {
+                slot = 0;
+                long min = Long.MAX_VALUE;
+                for (int i = 0; i < size; i++) {
+                    long count = sketch.estimate(hashes[i]);
+                    if (count < min) {
+                        min = count;
+                        slot = i;
+                    }
+                }
+                if (estimate <= min) {
+                    threshold = min;
+                    return;
+                }
+            }
+            hashes[slot] = hash;
+            keys[slot] = second == null ? first : first + ":" + second;
+            members = Arrays.copyOf(hashes, size);
+            if (size == topK) {
+                long min = Long.MAX_VALUE;
+                for (int i = 0; i < size; i++) {
+                    min = Math.min(min, sketch.estimate(hashes[i]));
+                }
+                threshold = min;
+            }
+        }
+
+        private synchronized long hashOf(String key) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    return hashes[i];
+                }
+            }
+            return 0;
+        }
+
+        private synchronized Report report(long windowMillis) {
+            long events = total.sum();
+            double seconds = windowMillis / 1000.0;
+            List<HeavyHitter> hitters = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                long count = sketch.estimate(hashes[i]);
+                hitters.add(new HeavyHitter(keys[i], count, count / seconds,
+                        events == 0 ? 0 : Math.min(1.0, (double) count / events)));
+            }
+            hitters.sort(Comparator.comparingLong(HeavyHitter::count).reversed());
+            return new Report(Instant.ofEpochMilli(start), Instant.ofEpochMilli(end), events, List.copyOf(hitters));
+        }
+    }
+}
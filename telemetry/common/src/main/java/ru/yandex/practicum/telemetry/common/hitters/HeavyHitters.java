@@ -0,0 +1,43 @@
+package ru.yandex.practicum.telemetry.common.hitters;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Самые частые хабы и датчики стадии.
+ */
+public class HeavyHitters {
+    private final HeavyHitterTracker hubs;
+    private final HeavyHitterTracker sensors;
+
+    public HeavyHitters(HeavyHitterProperties properties, MeterRegistry meterRegistry) {
+        this.hubs = new HeavyHitterTracker("hub", properties, meterRegistry);
+        this.sensors = new HeavyHitterTracker("sensor", properties, meterRegistry);
+    }
+
+    /**
+     * Учитывает событие датчика.
+     *
+     * @return {@code true}, если хаб был аномально частым в прошлом окне
+     */
+    public boolean recordSensor(String hubId, String sensorId, long now) {
+        sensors.record(hubId, sensorId, now);
+        return hubs.record(hubId, null, now);
+    }
+
+    /**
+     * Учитывает событие хаба: оно входит только в частоту хаба.
+     *
+     * @return {@code true}, если хаб был аномально частым в прошлом окне
+     */
+    public boolean recordHub(String hubId, long now) {
+        return hubs.record(hubId, null, now);
+    }
+
+    public HeavyHitterTracker hubs() {
+        return hubs;
+    }
+
+    public HeavyHitterTracker sensors() {
+        return sensors;
+    }
+}
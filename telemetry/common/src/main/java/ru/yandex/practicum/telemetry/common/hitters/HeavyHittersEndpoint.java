@@ -0,0 +1,32 @@
+package ru.yandex.practicum.telemetry.common.hitters;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Самые частые хабы и датчики за прошлое и текущее окно: {@code GET /actuator/heavyhitters}.
+ */
+@Endpoint(id = "heavyhitters")
+public class HeavyHittersEndpoint {
+    private final HeavyHitters heavyHitters;
+
+    public HeavyHittersEndpoint(HeavyHitters heavyHitters) {
+        this.heavyHitters = heavyHitters;
+    }
+
+    @ReadOperation
+    public Map<String, Object> heavyHitters() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (HeavyHitterTracker tracker : new HeavyHitterTracker[]{heavyHitters.hubs(), heavyHitters.sensors()}) {
+            Map<String, Object> windows = new LinkedHashMap<>();
+            windows.put("previous", tracker.lastWindow(now));
+            windows.put("current", tracker.currentWindow(now));
+            result.put(tracker.dimension(), windows);
+        }
+        return result;
+    }
+}
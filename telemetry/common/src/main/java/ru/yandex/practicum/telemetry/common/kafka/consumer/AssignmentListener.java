@@ -0,0 +1,14 @@
+package ru.yandex.practicum.telemetry.common.kafka.consumer;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collection;
+
+/**
+ * Действие после назначения движку партиций. Выполняется в потоке чтения до первой выборки
+ * из назначенных партиций и должно уложиться в {@code max.poll.interval.ms}.
+ */
+@FunctionalInterface
+public interface AssignmentListener {
+    void onAssigned(Collection<TopicPartition> assigned);
+}
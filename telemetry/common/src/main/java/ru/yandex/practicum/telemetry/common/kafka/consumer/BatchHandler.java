@@ -0,0 +1,15 @@
+package ru.yandex.practicum.telemetry.common.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.List;
+
+/**
+ * Обработчик пачки записей одной партиции.
+ * Записи передаются в порядке смещений; следующая пачка той же партиции
+ * не будет передана, пока не завершится обработка предыдущей.
+ */
+@FunctionalInterface
+public interface BatchHandler<K, V> {
+    void handle(List<ConsumerRecord<K, V>> records) throws Exception;
+}
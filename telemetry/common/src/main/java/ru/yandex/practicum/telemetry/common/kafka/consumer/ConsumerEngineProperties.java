@@ -0,0 +1,43 @@
+package ru.yandex.practicum.telemetry.common.kafka.consumer;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки цикла чтения {@link KafkaConsumerEngine}.
+ */
+@Getter
+@Setter
+public class ConsumerEngineProperties {
+    /**
+     * Максимальное время ожидания записей в одном вызове poll.
+     */
+    private Duration pollTimeout = Duration.ofMillis(500);
+
+    /**
+     * Смещения фиксируются не реже, чем раз в этот интервал...
+     */
+    private Duration commitInterval = Duration.ofSeconds(5);
+
+    /**
+     * ...или как только накопилось столько обработанных, но не зафиксированных записей.
+     */
+    private int commitBatchSize = 1000;
+
+    /**
+     * При таком числе принятых, но ещё не обработанных записей партиция ставится на паузу.
+     */
+    private int maxPendingRecordsPerPartition = 5000;
+
+    /**
+     * Партиция снимается с паузы, когда очередь на обработку опустилась до этого значения.
+     */
+    private int resumePendingRecordsPerPartition = 1000;
+
+    /**
+     * Сколько ждать завершения уже принятой в работу обработки при остановке и ребалансировке.
+     */
+    private Duration drainTimeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,481 @@
+package ru.yandex.practicum.telemetry.common.kafka.consumer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общий цикл чтения Kafka для сервисов телеметрии.
+ * <p>
+ * Поток, вызвавший {@link #run()}, только опрашивает брокер, раздаёт пачки записей по партициям
+ * и фиксирует смещения. Обработка идёт в отдельном рабочем потоке, поэтому медленный обработчик
+ * не приводит к выпадению из группы: партиции с длинной очередью ставятся на паузу и снимаются
+ * с неё, когда очередь рассосётся. Смещения фиксируются только для обработанных записей —
+ * по времени или по количеству, что наступит раньше. При остановке и отзыве партиций
+ * уже принятые записи дорабатываются до конца, и их смещения фиксируются синхронно.
+ * <p>
+ * Если обработчик придерживает записи у себя ({@link RecordHold}), смещение партиции фиксируется
+ * не дальше самой ранней придержанной записи, а при отзыве партиций придержанные записи забываются.
+ * Обработчик, которому нужны часы, а не только записи, например чтобы выпустить события замолчавшего хаба,
+ * получает периодическое действие ({@link #setTick(Runnable)}): оно выполняется и тогда, когда записей нет.
+ */
+@Slf4j
+public class KafkaConsumerEngine<K, V> implements Runnable, AutoCloseable {
+    private final String name;
+    private final Consumer<K, V> consumer;
+    private final Collection<String> topics;
+    private final BatchHandler<K, V> handler;
+    private final ConsumerEngineProperties properties;
+
+    private final BlockingQueue<PartitionBatch<K, V>> queue = new LinkedBlockingQueue<>();
+    private final Map<TopicPartition, PartitionState> partitions = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingRecords = new AtomicInteger();
+    private final AtomicLong uncommittedRecords = new AtomicLong();
+    private final Object drainMonitor = new Object();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean running = true;
+    private volatile boolean started;
+    private long lastCommitTime;
+    private volatile AssignmentListener assignmentListener = assigned -> {
+    };
+    private volatile RecordHold recordHold;
+    private volatile Runnable tick;
+    private final AtomicBoolean tickQueued = new AtomicBoolean();
+    private volatile Thread worker;
+
+    private final Counter processedCounter;
+    private final Counter errorCounter;
+    private final Counter commitFailureCounter;
+    private final Timer batchTimer;
+
+    public KafkaConsumerEngine(String name,
+                               Consumer<K, V> consumer,
+                               Collection<String> topics,
+                               BatchHandler<K, V> handler,
+                               ConsumerEngineProperties properties,
+                               MeterRegistry meterRegistry) {
+        this.name = name;
+        this.consumer = consumer;
+        this.topics = List.copyOf(topics);
+        this.handler = handler;
+        this.properties = properties;
+
+        this.processedCounter = Counter.builder("telemetry.consumer.records")
+                .description("Количество обработанных записей")
+                .tag("engine", name)
+                .register(meterRegistry);
+        this.errorCounter = Counter.builder("telemetry.consumer.errors")
+                .description("Количество пачек, обработка которых завершилась ошибкой")
+                .tag("engine", name)
+                .register(meterRegistry);
+        this.commitFailureCounter = Counter.builder("telemetry.consumer.commit.failures")
+                .tag("engine", name)
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("telemetry.consumer.batch.duration")
+                .description("Время обработки одной пачки записей")
+                .tag("engine", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("telemetry.consumer.pending", pendingRecords, AtomicInteger::get)
+                .description("Принятые, но ещё не обработанные записи")
+                .tag("engine", name)
+                .register(meterRegistry);
+        Gauge.builder("telemetry.consumer.lag", partitions, KafkaConsumerEngine::totalLag)
+                .description("Суммарное отставание по назначенным партициям")
+                .tag("engine", name)
+                .register(meterRegistry);
+        Gauge.builder("telemetry.consumer.paused.partitions", partitions, KafkaConsumerEngine::pausedCount)
+                .tag("engine", name)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run() {
+        started = true;
+        worker = Thread.ofPlatform()
+                .name(name + "-worker")
+                .start(this::processBatches);
+        try {
+            consumer.subscribe(topics, new DrainingRebalanceListener());
+            log.info("Движок {} подписан на топики {}", name, topics);
+            lastCommitTime = System.currentTimeMillis();
+
+            while (running) {
+                ConsumerRecords<K, V> records = consumer.poll(properties.getPollTimeout());
+                dispatch(records);
+                scheduleTick();
+                applyBackpressure();
+                updateLag();
+                maybeCommit();
+            }
+        } catch (WakeupException ignored) {
+            // остановка через close() - дорабатываем принятые записи в блоке finally
+        } catch (Exception e) {
+            log.error("Ошибка в цикле чтения движка {}", name, e);
+        } finally {
+            try {
+                queue.add(PartitionBatch.poisonPill());
+                worker.join(properties.getDrainTimeout().toMillis());
+                if (worker.isAlive()) {
+                    log.warn("Движок {}: обработка не завершилась за {}", name, properties.getDrainTimeout());
+                }
+                commitSync(partitions.keySet());
+            } catch (Exception e) {
+                log.error("Движок {}: ошибка при завершении работы", name, e);
+            } finally {
+                log.info("Закрываем консьюмер движка {}", name);
+                consumer.close();
+                stopped.countDown();
+            }
+        }
+    }
+
+    /**
+     * Задаёт действие после назначения партиций, например ожидание состояния, относящегося к этим партициям.
+     */
+    public void setAssignmentListener(AssignmentListener assignmentListener) {
+        this.assignmentListener = assignmentListener;
+    }
+
+    /**
+     * Задаёт обработчик, придерживающий записи; задаётся до {@link #run()}.
+     */
+    public void setRecordHold(RecordHold recordHold) {
+        this.recordHold = recordHold;
+    }
+
+    /**
+     * Задаёт действие, которое рабочий поток выполняет после каждого опроса брокера, даже пустого,
+     * то есть не реже, чем раз в {@code poll-timeout}; задаётся до {@link #run()}. После действия
+     * пересчитываются смещения для фиксации: оно могло выпустить придержанные записи.
+     */
+    public void setTick(Runnable tick) {
+        this.tick = tick;
+    }
+
+    /**
+     * Останавливает цикл чтения и ждёт, пока будут обработаны уже принятые записи.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (!started) {
+            return;
+        }
+        consumer.wakeup();
+        try {
+            if (!stopped.await(properties.getDrainTimeout().toMillis() * 2, TimeUnit.MILLISECONDS)) {
+                log.warn("Движок {} не остановился вовремя", name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch(ConsumerRecords<K, V> records) {
+        for (TopicPartition partition : records.partitions()) {
+            List<ConsumerRecord<K, V>> partitionRecords = records.records(partition);
+            PartitionState state = partitions.computeIfAbsent(partition, tp -> new PartitionState());
+            state.pending.addAndGet(partitionRecords.size());
+            pendingRecords.addAndGet(partitionRecords.size());
+            queue.add(new PartitionBatch<>(state, partitionRecords));
+        }
+    }
+
+    /**
+     * Ставит периодическое действие в очередь рабочего потока, если предыдущее уже выполнено:
+     * при медленной обработке действия не копятся в очереди.
+     */
+    private void scheduleTick() {
+        Runnable action = tick;
+        if (action == null || !tickQueued.compareAndSet(false, true)) {
+            return;
+        }
+        queue.add(new PartitionBatch<>(null, List.of(), () -> {
+            tickQueued.set(false);
+            try {
+                action.run();
+            } catch (Exception e) {
+                log.error("Движок {}: ошибка в периодическом действии", name, e);
+            }
+            updateCommittable();
+        }));
+    }
+
+    private void applyBackpressure() {
+        partitions.forEach((partition, state) -> {
+            int pending = state.pending.get();
+            if (!state.paused && pending >= properties.getMaxPendingRecordsPerPartition()) {
+                consumer.pause(List.of(partition));
+                state.paused = true;
+                log.debug("Движок {}: партиция {} на паузе, в очереди {} записей", name, partition, pending);
+            } else if (state.paused && pending <= properties.getResumePendingRecordsPerPartition()) {
+                consumer.resume(List.of(partition));
+                state.paused = false;
+                log.debug("Движок {}: партиция {} снята с паузы", name, partition);
+            }
+        });
+    }
+
+    private void updateLag() {
+        for (TopicPartition partition : consumer.assignment()) {
+            OptionalLong lag = consumer.currentLag(partition);
+            if (lag.isPresent()) {
+                partitions.computeIfAbsent(partition, tp -> new PartitionState()).lag = lag.getAsLong();
+            }
+        }
+    }
+
+    private void maybeCommit() {
+        long now = System.currentTimeMillis();
+        if (uncommittedRecords.get() < properties.getCommitBatchSize()
+                && now - lastCommitTime < properties.getCommitInterval().toMillis()) {
+            return;
+        }
+        lastCommitTime = now;
+        Map<TopicPartition, OffsetAndMetadata> offsets = collectOffsets(partitions.keySet());
+        if (offsets.isEmpty()) {
+            return;
+        }
+        uncommittedRecords.set(0);
+        consumer.commitAsync(offsets, (committed, exception) -> {
+            if (exception != null) {
+                commitFailureCounter.increment();
+                log.warn("Движок {}: ошибка во время фиксации оффсетов: {}", name, committed, exception);
+                // повторим фиксацию этих смещений при следующей возможности
+                committed.forEach((partition, offset) -> {
+                    PartitionState state = partitions.get(partition);
+                    if (state != null && state.committedOffset == offset.offset()) {
+                        state.committedOffset = -1;
+                    }
+                });
+            }
+        });
+    }
+
+    private void commitSync(Collection<TopicPartition> toCommit) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = collectOffsets(toCommit);
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+            log.info("Движок {}: зафиксированы смещения {}", name, offsets);
+        }
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> collectOffsets(Collection<TopicPartition> toCommit) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : toCommit) {
+            PartitionState state = partitions.get(partition);
+            if (state == null) {
+                continue;
+            }
+            long processed = state.committableOffset;
+            if (processed > state.committedOffset) {
+                offsets.put(partition, new OffsetAndMetadata(processed));
+                state.committedOffset = processed;
+            }
+        }
+        return offsets;
+    }
+
+    private void processBatches() {
+        try {
+            while (true) {
+                PartitionBatch<K, V> batch = queue.take();
+                if (batch.isPoisonPill()) {
+                    return;
+                }
+                if (batch.task() != null) {
+                    batch.task().run();
+                    continue;
+                }
+                List<ConsumerRecord<K, V>> records = batch.records();
+                Timer.Sample sample = Timer.start();
+                try {
+                    handler.handle(records);
+                } catch (Exception e) {
+                    errorCounter.increment();
+                    log.error("Движок {}: ошибка при обработке пачки из {} записей, смещения {}..{}", name,
+                            records.size(), records.getFirst().offset(), records.getLast().offset(), e);
+                }
+                sample.stop(batchTimer);
+
+                int size = records.size();
+                processedCounter.increment(size);
+                batch.state().processedOffset = records.getLast().offset() + 1;
+                updateCommittable();
+                batch.state().pending.addAndGet(-size);
+                uncommittedRecords.addAndGet(size);
+                if (pendingRecords.addAndGet(-size) == 0) {
+                    synchronized (drainMonitor) {
+                        drainMonitor.notifyAll();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Пересчитывает смещения, до которых можно фиксировать: обработчик мог выпустить записи
+     * любой партиции, а не только той, чью пачку он обработал. Выполняется в рабочем потоке.
+     */
+    private void updateCommittable() {
+        RecordHold hold = recordHold;
+        partitions.forEach((partition, state) -> {
+            long processed = state.processedOffset;
+            long held = hold == null ? -1 : hold.lowestHeldOffset(partition);
+            state.committableOffset = held >= 0 ? Math.min(processed, held) : processed;
+        });
+    }
+
+    /**
+     * Выполняет действие в рабочем потоке после уже принятых записей и ждёт его завершения.
+     */
+    private void runOnWorker(Runnable action) {
+        if (!worker.isAlive()) {
+            // рабочий поток уже завершился при остановке, например консьюмер отзывает партиции в close()
+            action.run();
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        queue.add(new PartitionBatch<>(null, List.of(), () -> {
+            try {
+                action.run();
+            } finally {
+                done.countDown();
+            }
+        }));
+        try {
+            if (!done.await(properties.getDrainTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Движок {}: рабочий поток не выполнил действие за {}", name, properties.getDrainTimeout());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Забывает придержанные записи партиций, которые движку больше не принадлежат.
+     */
+    private void discardHeld(Collection<TopicPartition> partitionsToDiscard) {
+        RecordHold hold = recordHold;
+        if (hold != null) {
+            runOnWorker(() -> {
+                hold.discard(partitionsToDiscard);
+                updateCommittable();
+            });
+        }
+    }
+
+    private void awaitDrained() {
+        long deadline = System.currentTimeMillis() + properties.getDrainTimeout().toMillis();
+        synchronized (drainMonitor) {
+            while (pendingRecords.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    log.warn("Движок {}: не дождались обработки {} записей", name, pendingRecords.get());
+                    return;
+                }
+                try {
+                    drainMonitor.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static double totalLag(Map<TopicPartition, PartitionState> partitions) {
+        return partitions.values().stream().mapToLong(state -> state.lag).sum();
+    }
+
+    private static double pausedCount(Map<TopicPartition, PartitionState> partitions) {
+        return partitions.values().stream().filter(state -> state.paused).count();
+    }
+
+    /**
+     * Перед отзывом партиций дорабатываем принятые записи и синхронно фиксируем их смещения,
+     * чтобы новый владелец партиций не обработал их повторно. Придержанные записи отзываемых партиций
+     * не применяются: их смещения не зафиксированы, и их обработает новый владелец.
+     */
+    private class DrainingRebalanceListener implements ConsumerRebalanceListener {
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> revoked) {
+            awaitDrained();
+            // фиксация до того, как придержанные записи забыты: иначе смещение ушло бы за них
+            try {
+                commitSync(revoked);
+            } catch (Exception e) {
+                log.warn("Движок {}: не удалось зафиксировать смещения отзываемых партиций {}", name, revoked, e);
+            }
+            discardHeld(revoked);
+            revoked.forEach(partitions::remove);
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> assigned) {
+            log.info("Движку {} назначены партиции {}", name, assigned);
+            if (!assigned.isEmpty()) {
+                assignmentListener.onAssigned(assigned);
+            }
+        }
+
+        @Override
+        public void onPartitionsLost(Collection<TopicPartition> lost) {
+            discardHeld(lost);
+            lost.forEach(partitions::remove);
+        }
+    }
+
+    private static class PartitionState {
+        final AtomicInteger pending = new AtomicInteger();
+        volatile long processedOffset = -1;
+        // не дальше самой ранней записи, придержанной обработчиком
+        volatile long committableOffset = -1;
+        volatile long committedOffset = -1;
+        volatile long lag;
+        volatile boolean paused;
+    }
+
+    /**
+     * Пачка записей партиции либо действие, которое нужно выполнить в рабочем потоке.
+     */
+    private record PartitionBatch<K, V>(PartitionState state, List<ConsumerRecord<K, V>> records, Runnable task) {
+        PartitionBatch(PartitionState state, List<ConsumerRecord<K, V>> records) {
+            this(state, records, null);
+        }
+
+        static <K, V> PartitionBatch<K, V> poisonPill() {
+            return new PartitionBatch<>(null, List.of());
+        }
+
+        boolean isPoisonPill() {
+            return state == null && task == null;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.telemetry.common.kafka.consumer;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collection;
+
+/**
+ * Обработчик, который придерживает часть принятых записей у себя, например в буфере упорядочивания.
+ * Движок не фиксирует смещения дальше самой ранней придержанной записи партиции, поэтому после падения
+ * они будут прочитаны снова. Методы вызываются в рабочем потоке движка, том же, что и обработчик пачек.
+ */
+public interface RecordHold {
+    /**
+     * @return наименьшее смещение записи партиции, которая ещё не применена до конца, или -1, если таких нет
+     */
+    long lowestHeldOffset(TopicPartition partition);
+
+    /**
+     * Забывает придержанные записи отозванных или потерянных партиций, не применяя их:
+     * их смещения не зафиксированы, и записи обработает новый владелец партиций.
+     */
+    void discard(Collection<TopicPartition> partitions);
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.telemetry.common.kafka.topology;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Выбирает партицию по идентификатору хаба, который служит ключом записей во всех топиках телеметрии.
+ * <p>
+ * Хеш считается по UTF-8 байтам самого идентификатора, а не по сериализованному ключу,
+ * поэтому при одинаковом числе партиций события датчиков, события хабов и снапшоты
+ * одного хаба всегда попадают в партиции с одним и тем же номером, независимо от сериализатора
+ * ключа и настроек продюсера.
+ */
+public class HubPartitioner implements Partitioner {
+
+    /**
+     * Номер партиции хаба в топике с заданным числом партиций.
+     */
+    public static int partitionFor(String hubId, int numPartitions) {
+        return Utils.toPositive(Utils.murmur2(hubId.getBytes(StandardCharsets.UTF_8))) % numPartitions;
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        if (!(key instanceof String hubId)) {
+            throw new IllegalArgumentException("Запись в топик " + topic + " должна иметь ключом идентификатор хаба");
+        }
+        return partitionFor(hubId, cluster.partitionCountForTopic(topic));
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.telemetry.common.kafka.topology;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewPartitions;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Создаёт топики телеметрии с нужным числом партиций.
+ * Число партиций существующих топиков по умолчанию не меняется: новые партиции переносят ключи хабов,
+ * из-за чего ломается порядок событий хаба, ещё не дочитанных консьюмерами, и состояние, привязанное
+ * к номеру партиции. О рассогласовании пишется ошибка. Партиции добавляются, только если это явно
+ * разрешено {@code grow-partitions}; уменьшить их число Kafka не позволяет.
+ */
+@Slf4j
+public class TopicProvisioner {
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final String bootstrapServers;
+    private final TopologyProperties properties;
+
+    public TopicProvisioner(String bootstrapServers, TopologyProperties properties) {
+        this.bootstrapServers = bootstrapServers;
+        this.properties = properties;
+    }
+
+    public void provision(Collection<String> topics) {
+        provision(topics, Map.of());
+    }
+
+    /**
+     * @param topicConfigs настройки, с которыми создаются новые топики, например {@code cleanup.policy}
+     */
+    public void provision(Collection<String> topics, Map<String, String> topicConfigs) {
+        if (!properties.isProvision()) {
+            return;
+        }
+        Properties config = new Properties();
+        config.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        try (Admin admin = Admin.create(config)) {
+            Map<String, KafkaFuture<TopicDescription>> descriptions =
+                    admin.describeTopics(topics).topicNameValues();
+            for (String topic : topics) {
+                int partitions = properties.partitionsFor(topic);
+                TopicDescription description = describe(descriptions.get(topic));
+                if (description == null) {
+                    create(admin, topic, partitions, topicConfigs);
+                } else {
+                    align(admin, topic, description.partitions().size(), partitions);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Не удалось подготовить топики {}", topics, e);
+        }
+    }
+
+    private TopicDescription describe(KafkaFuture<TopicDescription> future) throws Exception {
+        try {
+            return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnknownTopicOrPartitionException) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private void create(Admin admin, String topic, int partitions, Map<String, String> topicConfigs) throws Exception {
+        NewTopic newTopic = new NewTopic(topic, partitions, properties.getReplicationFactor()).configs(topicConfigs);
+        try {
+            admin.createTopics(List.of(newTopic)).all().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            log.info("Создан топик {} с {} партициями", topic, partitions);
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof TopicExistsException)) {
+                throw e;
+            }
+        }
+    }
+
+    private void align(Admin admin, String topic, int actual, int expected) throws Exception {
+        if (actual < expected && properties.isGrowPartitions()) {
+            // ключи уже записанных хабов переедут в другие партиции - состояние восстановится
+            // по мере прихода новых событий
+            log.warn("Топик {}: увеличиваем число партиций с {} до {}", topic, actual, expected);
+            admin.createPartitions(Map.of(topic, NewPartitions.increaseTo(expected)))
+                    .all().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } else if (actual < expected) {
+            log.error("Топик {} имеет {} партиций вместо {}; число партиций не меняется, пока не задано "
+                    + "kafka.topology.grow-partitions=true - партиции хабов в топиках могут не совпасть",
+                    topic, actual, expected);
+        } else if (actual > expected) {
+            log.error("Топик {} имеет {} партиций вместо {} - партиции хабов в топиках не совпадут",
+                    topic, actual, expected);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ru.yandex.practicum.telemetry.common.kafka.topology;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.RangeAssignor;
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Раскладка топиков телеметрии по партициям.
+ * Топики датчиков, хабов и снапшотов должны иметь одинаковое число партиций,
+ * иначе состояние одного хаба окажется в разных экземплярах сервисов.
+ */
+@Getter
+@Setter
+public class TopologyProperties {
+    /**
+     * Создавать недостающие топики при старте сервиса.
+     */
+    private boolean provision = true;
+
+    /**
+     * Добавлять партиции существующим топикам, в которых их меньше, чем {@code partitions}.
+     * Ключи хабов при этом переезжают в другие партиции, поэтому включается только на время
+     * осознанного перехода на новое число партиций.
+     */
+    private boolean growPartitions = false;
+
+    /**
+     * Число партиций топиков телеметрии.
+     */
+    private int partitions = 3;
+
+    private short replicationFactor = 1;
+
+    /**
+     * Число партиций для отдельных топиков, которым не нужно совпадать с основными.
+     */
+    private Map<String, Integer> partitionOverrides = new HashMap<>();
+
+    /**
+     * Распределять записи по партициям через {@link HubPartitioner}.
+     */
+    private boolean hubPartitioner = true;
+
+    /**
+     * Постоянный идентификатор экземпляра сервиса. Если задан, консьюмеры используют статическое
+     * членство в группе, и range-назначение отдаёт одному экземпляру партиции с одинаковыми номерами
+     * во всех топиках, которые он читает.
+     */
+    private String instanceId;
+
+    public int partitionsFor(String topic) {
+        return partitionOverrides.getOrDefault(topic, partitions);
+    }
+
+    public void applyToProducer(Properties properties) {
+        if (hubPartitioner) {
+            properties.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, HubPartitioner.class.getName());
+        }
+    }
+
+    public void applyToConsumer(Properties properties) {
+        properties.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, RangeAssignor.class.getName());
+        if (instanceId != null && !instanceId.isBlank()) {
+            properties.put(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG, instanceId);
+        }
+    }
+}
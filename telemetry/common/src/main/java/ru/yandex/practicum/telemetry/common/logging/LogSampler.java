@@ -0,0 +1,32 @@
+package ru.yandex.practicum.telemetry.common.logging;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пропускает в лог каждую N-ю запись о проходящем через сервис событии.
+ * Полная запись каждого события на горячем пути стоит заметную долю CPU,
+ * а для отладки обычно достаточно выборки.
+ */
+public class LogSampler {
+    private final AtomicLong counter = new AtomicLong();
+    private final int rate;
+
+    /**
+     * @param rate в лог попадает одно событие из {@code rate}; 1 - все события
+     */
+    public LogSampler(int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("Частота выборки должна быть положительной: " + rate);
+        }
+        this.rate = rate;
+    }
+
+    /**
+     * Нужно ли писать в DEBUG очередное событие. Счётчик не тратится, если DEBUG выключен.
+     */
+    public boolean sample(Logger log) {
+        return log.isDebugEnabled() && counter.getAndIncrement() % rate == 0;
+    }
+}
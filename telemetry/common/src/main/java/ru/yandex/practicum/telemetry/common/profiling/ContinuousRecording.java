@@ -0,0 +1,71 @@
+package ru.yandex.practicum.telemetry.common.profiling;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/**
+ * Постоянная запись JFR с кольцевым буфером на диске. Запись идёт без агента и без повышения
+ * уровня логов; с проблемного узла её можно снять командой
+ * {@code jcmd <pid> JFR.dump name=telemetry filename=/tmp/telemetry.jfr} или через {@link #dump(Path)}.
+ * События стадий конвейера ({@link StageEvent}) включены в запись вместе с событиями JVM.
+ */
+@Slf4j
+public class ContinuousRecording implements AutoCloseable {
+    private final FlightRecorderProperties properties;
+    private Recording recording;
+
+    public ContinuousRecording(FlightRecorderProperties properties) {
+        this.properties = properties;
+    }
+
+    public synchronized void start() {
+        if (!properties.isEnabled() || recording != null) {
+            return;
+        }
+        try {
+            recording = new Recording(Configuration.getConfiguration(properties.getSettings()));
+        } catch (IOException | ParseException e) {
+            log.error("Не удалось загрузить профиль JFR {}, запись не запущена", properties.getSettings(), e);
+            return;
+        }
+        recording.setName(properties.getName());
+        recording.setToDisk(true);
+        recording.setMaxAge(properties.getMaxAge());
+        recording.setMaxSize(properties.getMaxSize());
+        if (properties.getDumpOnExit() != null && !properties.getDumpOnExit().isBlank()) {
+            try {
+                recording.setDestination(Path.of(properties.getDumpOnExit()));
+            } catch (IOException e) {
+                log.warn("Некорректный файл для сброса записи JFR: {}", properties.getDumpOnExit(), e);
+            }
+        }
+        recording.start();
+        log.info("Запущена постоянная запись JFR {}: профиль={}, глубина={}, объём={} байт",
+                properties.getName(), properties.getSettings(), properties.getMaxAge(), properties.getMaxSize());
+    }
+
+    /**
+     * Сохраняет содержимое кольцевого буфера в файл, не останавливая запись.
+     */
+    public synchronized void dump(Path target) throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("Запись JFR не запущена");
+        }
+        recording.dump(target);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (recording != null) {
+            // при заданном destination JFR сам сбросит буфер в файл при остановке
+            recording.stop();
+            recording.close();
+            recording = null;
+        }
+    }
+}
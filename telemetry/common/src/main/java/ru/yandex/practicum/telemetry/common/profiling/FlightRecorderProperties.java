@@ -0,0 +1,40 @@
+package ru.yandex.practicum.telemetry.common.profiling;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки постоянной записи JFR, которую сервис держит включённой всё время работы.
+ */
+@Getter
+@Setter
+public class FlightRecorderProperties {
+    private boolean enabled = false;
+
+    /**
+     * Имя записи, по нему запись выгружается через {@code jcmd <pid> JFR.dump name=...}.
+     */
+    private String name = "telemetry";
+
+    /**
+     * Встроенный профиль JFR: {@code default} (около 1% CPU) или {@code profile}.
+     */
+    private String settings = "default";
+
+    /**
+     * Глубина кольцевого буфера на диске по времени.
+     */
+    private Duration maxAge = Duration.ofHours(6);
+
+    /**
+     * Глубина кольцевого буфера на диске по объёму, в байтах.
+     */
+    private long maxSize = 512L * 1024 * 1024;
+
+    /**
+     * Файл, в который запись сбрасывается при остановке сервиса. Пусто - не сбрасывать.
+     */
+    private String dumpOnExit;
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.telemetry.common.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Базовое событие JFR для стадии конвейера телеметрии. Длительность стадии JFR считает сам
+ * между {@code begin()} и {@code commit()}; поля заполняются только если событие будет записано:
+ * <pre>{@code
+ * event.begin();
+ * ...
+ * event.end();
+ * if (event.shouldCommit()) {
+ *     event.hubId = ...;
+ *     event.commit();
+ * }
+ * }</pre>
+ */
+@Category({"Telemetry"})
+@StackTrace(false)
+public abstract class StageEvent extends Event {
+    @Label("Hub Id")
+    public String hubId;
+
+    @Label("Payload Type")
+    @Description("Тип полезной нагрузки события")
+    public String payloadType;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,54 @@
+package ru.yandex.practicum.telemetry.common.ring;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ожидание потока, которому пока нечего делать: сначала активное ожидание, затем уступка процессора,
+ * затем засыпание на время, удваивающееся до предела. Пока работа есть, поток не засыпает вовсе,
+ * а после простоя просыпается с задержкой не больше предела.
+ * <p>
+ * Объект хранит состояние ожидания и принадлежит одному потоку.
+ */
+public class BackoffIdleStrategy {
+    private static final long MIN_PARK_NANOS = 1_000;
+
+    private final int maxSpins;
+    private final int maxYields;
+    private final long maxParkNanos;
+
+    private int spins;
+    private int yields;
+    private long parkNanos = MIN_PARK_NANOS;
+
+    public BackoffIdleStrategy(int maxSpins, int maxYields, long maxParkNanos) {
+        this.maxSpins = maxSpins;
+        this.maxYields = maxYields;
+        this.maxParkNanos = Math.max(MIN_PARK_NANOS, maxParkNanos);
+    }
+
+    /**
+     * @param workCount сколько работы поток сделал с прошлого вызова; ненулевое значение сбрасывает ожидание
+     */
+    public void idle(int workCount) {
+        if (workCount > 0) {
+            reset();
+            return;
+        }
+        if (spins < maxSpins) {
+            spins++;
+            Thread.onSpinWait();
+        } else if (yields < maxYields) {
+            yields++;
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos * 2, maxParkNanos);
+        }
+    }
+
+    public void reset() {
+        spins = 0;
+        yields = 0;
+        parkNanos = MIN_PARK_NANOS;
+    }
+}
@@ -0,0 +1,118 @@
+package ru.yandex.practicum.telemetry.common.ring;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Кольцевой буфер без блокировок для многих производителей и одного потребителя, по образцу LMAX Disruptor.
+ * <p>
+ * Производитель захватывает следующую последовательность CAS'ом на курсоре, кладёт событие в ячейку
+ * и отмечает её во флагах доступности номером круга. Потребитель забирает подряд идущие отмеченные ячейки
+ * пачкой и только после всей пачки сдвигает свою позицию, которую производители читают, чтобы
+ * не перезаписать необработанные ячейки. Позиция потребителя кешируется на стороне производителей,
+ * поэтому, пока в кольце есть место, производители её не читают.
+ */
+public final class RingBuffer<E> {
+    private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final Object[] entries;
+    private final int[] available;
+    private final int mask;
+    private final int shift;
+    private final Sequence cursor = new Sequence(-1);
+    private final Sequence consumed = new Sequence(-1);
+    private final Sequence consumedCache = new Sequence(-1);
+
+    /**
+     * @param capacity число ячеек, степень двойки
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Размер кольца должен быть степенью двойки: " + capacity);
+        }
+        this.entries = new Object[capacity];
+        this.available = new int[capacity];
+        this.mask = capacity - 1;
+        this.shift = Integer.numberOfTrailingZeros(capacity);
+        // номер круга ячейки ещё не совпадает ни с одной последовательностью
+        Arrays.fill(available, -1);
+    }
+
+    /**
+     * Кладёт событие в кольцо. Вызывается из любого числа потоков.
+     *
+     * @return {@code false}, если кольцо заполнено
+     */
+    public boolean tryPublish(E event) {
+        long current;
+        long next;
+        do {
+            current = cursor.get();
+            next = current + 1;
+            long wrapPoint = next - entries.length;
+            if (wrapPoint > consumedCache.get()) {
+                long position = consumed.get();
+                consumedCache.setRelease(position);
+                if (wrapPoint > position) {
+                    return false;
+                }
+            }
+        } while (!cursor.compareAndSet(current, next));
+
+        int index = (int) next & mask;
+        entries[index] = event;
+        // release-запись флага публикует и событие в ячейке
+        AVAILABLE.setRelease(available, index, (int) (next >>> shift));
+        return true;
+    }
+
+    /**
+     * Передаёт обработчику до {@code maxBatch} опубликованных подряд событий.
+     * Вызывается только из потока-потребителя. Если обработчик бросил исключение,
+     * событие, на котором это произошло, считается обработанным.
+     *
+     * @return число переданных событий
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(RingEventHandler<? super E> handler, int maxBatch) {
+        long position = consumed.get();
+        long last = position;
+        long limit = position + maxBatch;
+        while (last < limit && isAvailable(last + 1)) {
+            last++;
+        }
+        if (last == position) {
+            return 0;
+        }
+
+        long sequence = position;
+        try {
+            while (sequence < last) {
+                sequence++;
+                int index = (int) sequence & mask;
+                E event = (E) entries[index];
+                entries[index] = null;
+                handler.onEvent(event, sequence, sequence == last);
+            }
+        } finally {
+            consumed.setRelease(sequence);
+        }
+        return (int) (last - position);
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * Число захваченных, но ещё не обработанных ячеек; под нагрузкой значение приблизительное.
+     */
+    public long size() {
+        return Math.max(0, cursor.get() - consumed.get());
+    }
+
+    private boolean isAvailable(long sequence) {
+        return (int) AVAILABLE.getAcquire(available, (int) sequence & mask) == (int) (sequence >>> shift);
+    }
+}
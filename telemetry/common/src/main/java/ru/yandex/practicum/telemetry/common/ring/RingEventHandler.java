@@ -0,0 +1,14 @@
+package ru.yandex.practicum.telemetry.common.ring;
+
+/**
+ * Обработчик событий, забранных из {@link RingBuffer} одним потоком-потребителем.
+ * События передаются в порядке последовательностей.
+ */
+@FunctionalInterface
+public interface RingEventHandler<E> {
+    /**
+     * @param sequence   последовательность события в кольце, растёт на единицу с каждым событием
+     * @param endOfBatch {@code true} для последнего события пачки: удобный момент сбросить накопленное
+     */
+    void onEvent(E event, long sequence, boolean endOfBatch);
+}
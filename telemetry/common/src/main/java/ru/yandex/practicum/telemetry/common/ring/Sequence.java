@@ -0,0 +1,53 @@
+package ru.yandex.practicum.telemetry.common.ring;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Счётчик последовательности, выровненный так, чтобы не делить строку кеша с соседними полями.
+ * Курсор производителей и позицию потребителя меняют разные потоки, и без выравнивания
+ * каждая запись одного из них выбивала бы строку кеша у другого.
+ */
+public final class Sequence extends SequenceValue {
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private long p9, p10, p11, p12, p13, p14, p15;
+
+    public Sequence(long initialValue) {
+        VALUE.setRelease(this, initialValue);
+    }
+
+    public long get() {
+        return value;
+    }
+
+    /**
+     * Запись без полного барьера: достаточно, чтобы предшествующие записи стали видны тому,
+     * кто прочитает новое значение.
+     */
+    public void setRelease(long newValue) {
+        VALUE.setRelease(this, newValue);
+    }
+
+    public boolean compareAndSet(long expected, long newValue) {
+        return VALUE.compareAndSet(this, expected, newValue);
+    }
+}
+
+abstract class SequencePadding {
+    @SuppressWarnings("unused")
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+abstract class SequenceValue extends SequencePadding {
+    protected volatile long value;
+}
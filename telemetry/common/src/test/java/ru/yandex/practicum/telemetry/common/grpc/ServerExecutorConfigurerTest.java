@@ -0,0 +1,157 @@
+package ru.yandex.practicum.telemetry.common.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ServerExecutorConfigurerTest {
+    private static final MethodDescriptor.Marshaller<String> UTF8 = new MethodDescriptor.Marshaller<>() {
+        @Override
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            try {
+                return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+    // обработчик отвечает именем потока, в котором его вызвал сервер
+    private static final MethodDescriptor<String, String> CURRENT_THREAD = MethodDescriptor.<String, String>newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY)
+            .setFullMethodName("test.Threads/Current")
+            .setRequestMarshaller(UTF8)
+            .setResponseMarshaller(UTF8)
+            .build();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ServerExecutorProperties properties = new ServerExecutorProperties();
+    private ServerExecutorConfigurer configurer;
+    private Server server;
+    private ManagedChannel channel;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (channel != null) {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        if (server != null) {
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        configurer.close();
+    }
+
+    @Test
+    void defaultModeKeepsGrpcExecutor() throws Exception {
+        properties.setMode(ServerExecutorMode.DEFAULT);
+
+        assertThat(callHandler()).startsWith("grpc-default-executor-");
+    }
+
+    @Test
+    void virtualModeRunsHandlerOnVirtualThread() throws Exception {
+        properties.setMode(ServerExecutorMode.VIRTUAL);
+
+        assertThat(callHandler()).startsWith("collector-grpc-").endsWith("(virtual)");
+    }
+
+    @Test
+    void boundedModeRunsHandlerOnFixedPoolAndExportsItsMeters() throws Exception {
+        properties.setMode(ServerExecutorMode.BOUNDED);
+        properties.setBoundedThreads(2);
+
+        // задачи вызова могут попасть в любой из двух платформенных потоков пула
+        assertThat(callHandler()).matches("collector-grpc-[12]");
+        assertThat(meterRegistry.get("telemetry.grpc.executor.overflow").tag("server", "collector").counter()
+                .count()).isZero();
+        assertThat(meterRegistry.get("telemetry.grpc.executor.queued").tag("server", "collector").gauge().value())
+                .isZero();
+        assertThat(meterRegistry.get("telemetry.grpc.executor.active").tag("server", "collector").gauge())
+                .isNotNull();
+    }
+
+    @Test
+    void directModeRunsHandlerOnConfiguredEventLoop() throws Exception {
+        properties.setMode(ServerExecutorMode.DIRECT);
+        properties.setWorkerThreads(1);
+
+        assertThat(callHandler()).startsWith("collector-grpc-worker-");
+    }
+
+    @Test
+    void createsPoolMetersOnlyInBoundedMode() throws Exception {
+        properties.setMode(ServerExecutorMode.VIRTUAL);
+
+        callHandler();
+
+        assertThat(meterRegistry.find("telemetry.grpc.executor.overflow").counter()).isNull();
+    }
+
+    private String callHandler() throws Exception {
+        configurer = new ServerExecutorConfigurer("collector", properties, meterRegistry);
+        NettyServerBuilder builder = NettyServerBuilder.forAddress(new InetSocketAddress("127.0.0.1", 0))
+                .addService(ServerServiceDefinition.builder("test.Threads")
+                        .addMethod(CURRENT_THREAD, (call, headers) -> {
+                            call.request(1);
+                            return new ServerCall.Listener<>() {
+                                @Override
+                                public void onHalfClose() {
+                                    Thread thread = Thread.currentThread();
+                                    call.sendHeaders(new Metadata());
+                                    call.sendMessage(thread.getName() + (thread.isVirtual() ? " (virtual)" : ""));
+                                    call.close(Status.OK, new Metadata());
+                                }
+                            };
+                        })
+                        .build());
+        configurer.accept(builder);
+        server = builder.build().start();
+        channel = NettyChannelBuilder.forAddress("127.0.0.1", server.getPort()).usePlaintext().build();
+
+        CompletableFuture<String> response = new CompletableFuture<>();
+        ClientCall<String, String> call = channel.newCall(CURRENT_THREAD, CallOptions.DEFAULT);
+        call.start(new ClientCall.Listener<>() {
+            @Override
+            public void onMessage(String message) {
+                response.complete(message);
+            }
+
+            @Override
+            public void onClose(Status status, Metadata trailers) {
+                if (!status.isOk()) {
+                    response.completeExceptionally(status.asRuntimeException());
+                }
+            }
+        }, new Metadata());
+        call.request(1);
+        call.sendMessage("");
+        call.halfClose();
+        return response.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.telemetry.common.hitters;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.telemetry.common.hash.Fingerprints;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CountMinSketchTest {
+
+    @Test
+    void countsFewKeysExactly() {
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        long hub1 = Fingerprints.of("hub-1", null);
+        long hub2 = Fingerprints.of("hub-2", null);
+
+        assertThat(sketch.add(hub1)).isEqualTo(1);
+        assertThat(sketch.add(hub1)).isEqualTo(2);
+        sketch.add(hub2);
+
+        assertThat(sketch.estimate(hub1)).isEqualTo(2);
+        assertThat(sketch.estimate(hub2)).isEqualTo(1);
+        assertThat(sketch.estimate(Fingerprints.of("hub-3", null))).isZero();
+    }
+
+    @Test
+    void neverUnderestimatesAndStaysWithinErrorBound() {
+        int width = 256;
+        CountMinSketch sketch = new CountMinSketch(4, width);
+        Random random = new Random(1);
+        Map<Long, Long> exact = new HashMap<>();
+        int total = 100_000;
+        for (int i = 0; i < total; i++) {
+            // частоты по закону Ципфа: несколько частых хабов и длинный хвост
+            int hub = (int) Math.floor(Math.pow(2000, random.nextDouble()));
+            long hash = Fingerprints.of("hub-" + hub, null);
+            sketch.add(hash);
+            exact.merge(hash, 1L, Long::sum);
+        }
+
+        long bound = (long) Math.ceil(Math.E / width * total);
+        long outside = 0;
+        for (Map.Entry<Long, Long> key : exact.entrySet()) {
+            long estimate = sketch.estimate(key.getKey());
+            assertThat(estimate).isGreaterThanOrEqualTo(key.getValue());
+            if (estimate - key.getValue() > bound) {
+                outside++;
+            }
+        }
+        // граница нарушается с вероятностью e^-4, меньше двух процентов ключей
+        assertThat((double) outside / exact.size()).isLessThan(0.02);
+    }
+
+    @Test
+    void rejectsWidthThatIsNotPowerOfTwo() {
+        assertThatThrownBy(() -> new CountMinSketch(4, 1000)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CountMinSketch(0, 1024)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
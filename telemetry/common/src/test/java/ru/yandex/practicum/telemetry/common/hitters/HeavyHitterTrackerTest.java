@@ -0,0 +1,131 @@
+package ru.yandex.practicum.telemetry.common.hitters;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class HeavyHitterTrackerTest {
+    private static final long WINDOW = Duration.ofMinutes(1).toMillis();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HeavyHitterProperties properties = new HeavyHitterProperties();
+
+    HeavyHitterTrackerTest() {
+        properties.setTopK(3);
+        properties.setWindow(Duration.ofMillis(WINDOW));
+        properties.setFlagShare(0.2);
+        properties.setFlagMinRate(10);
+    }
+
+    @Test
+    void keepsMostFrequentKeysOfWindow() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker("hub", properties, meterRegistry);
+        long start = windowStart(tracker);
+        record(tracker, "hub-1", 300, start);
+        record(tracker, "hub-2", 200, start);
+        for (int hub = 10; hub < 110; hub++) {
+            record(tracker, "hub-" + hub, 2, start);
+        }
+        record(tracker, "hub-3", 100, start);
+
+        HeavyHitterTracker.Report report = tracker.currentWindow(start + 1);
+        assertThat(report.from()).isEqualTo(Instant.ofEpochMilli(start));
+        assertThat(report.to()).isEqualTo(Instant.ofEpochMilli(start + WINDOW));
+        assertThat(report.total()).isEqualTo(800);
+        assertThat(report.hitters()).extracting(HeavyHitter::key).containsExactly("hub-1", "hub-2", "hub-3");
+        HeavyHitter top = report.hitters().getFirst();
+        assertThat(top.count()).isGreaterThanOrEqualTo(300);
+        assertThat(top.rate()).isEqualTo(top.count() / 60.0);
+        assertThat(top.share()).isEqualTo(top.count() / 800.0);
+    }
+
+    @Test
+    void publishesEndedWindowAndFlagsFrequentKeysForNextWindowOnly() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker("hub", properties, meterRegistry);
+        long start = windowStart(tracker);
+        record(tracker, "hub-1", 900, start);
+        record(tracker, "hub-2", 100, start);
+        assertThat(tracker.isFlagged("hub-1", null)).isFalse();
+
+        // первое событие следующего окна закрывает прошлое
+        assertThat(tracker.record("hub-1", null, start + WINDOW)).isTrue();
+        assertThat(tracker.isFlagged("hub-2", null)).isFalse();
+        HeavyHitterTracker.Report last = tracker.lastWindow(start + WINDOW);
+        assertThat(last.total()).isEqualTo(1000);
+        assertThat(last.hitters()).extracting(HeavyHitter::key).containsExactly("hub-1", "hub-2");
+        assertThat(tracker.currentWindow(start + WINDOW).total()).isEqualTo(1);
+
+        Gauge share = meterRegistry.find("telemetry.heavy-hitters.share").tags("dimension", "hub", "key", "hub-1")
+                .gauge();
+        assertThat(share).isNotNull();
+        assertThat(share.value()).isEqualTo(0.9);
+
+        // в окне после следующего отметка снята: хаб был частым только один раз
+        assertThat(tracker.lastWindow(start + 2 * WINDOW).total()).isEqualTo(1);
+        assertThat(tracker.isFlagged("hub-1", null)).isFalse();
+    }
+
+    @Test
+    void doesNotFlagKeysWhenWindowIsClosedLate() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker("hub", properties, meterRegistry);
+        long start = windowStart(tracker);
+        record(tracker, "hub-1", 900, start);
+
+        // событий не было целое окно: отчёт публикуется, но отметка уже устарела
+        assertThat(tracker.record("hub-1", null, start + 2 * WINDOW + 1)).isFalse();
+        assertThat(tracker.lastWindow(start + 2 * WINDOW + 1).hitters()).extracting(HeavyHitter::key)
+                .containsExactly("hub-1");
+    }
+
+    @Test
+    void doesNotFlagKeysBelowShareOrRate() {
+        properties.setFlagMinRate(100);
+        HeavyHitterTracker tracker = new HeavyHitterTracker("hub", properties, meterRegistry);
+        long start = windowStart(tracker);
+        // 900 событий за минуту - 15 в секунду, меньше порога частоты
+        record(tracker, "hub-1", 900, start);
+        tracker.lastWindow(start + WINDOW);
+
+        assertThat(tracker.isFlagged("hub-1", null)).isFalse();
+    }
+
+    @Test
+    void countsSensorsAndHubsSeparately() {
+        HeavyHitters heavyHitters = new HeavyHitters(properties, meterRegistry);
+        long start = windowStart(heavyHitters.hubs());
+        for (int i = 0; i < 10; i++) {
+            heavyHitters.recordSensor("hub-1", "t-1", start);
+            heavyHitters.recordSensor("hub-1", "s-1", start);
+        }
+        heavyHitters.recordHub("hub-1", start);
+        heavyHitters.recordSensor("hub-2", "t-1", start);
+
+        assertThat(heavyHitters.hubs().currentWindow(start).hitters())
+                .extracting(HeavyHitter::key, HeavyHitter::count)
+                .containsExactly(tuple("hub-1", 21L),
+                        tuple("hub-2", 1L));
+        assertThat(heavyHitters.sensors().currentWindow(start).hitters())
+                .extracting(HeavyHitter::key)
+                .containsExactlyInAnyOrder("hub-1:t-1", "hub-1:s-1", "hub-2:t-1");
+        assertThat(heavyHitters.sensors().currentWindow(start).total()).isEqualTo(21);
+    }
+
+    /**
+     * Начало окна, открытого трекером по текущему времени: события теста отсчитываются от него.
+     */
+    private static long windowStart(HeavyHitterTracker tracker) {
+        return tracker.currentWindow(0).from().toEpochMilli();
+    }
+
+    private static void record(HeavyHitterTracker tracker, String hubId, int times, long now) {
+        for (int i = 0; i < times; i++) {
+            tracker.record(hubId, null, now);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package ru.yandex.practicum.telemetry.common.kafka.consumer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KafkaConsumerEngineTest {
+    private static final String TOPIC = "telemetry.sensors.v1";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition OTHER = new TopicPartition(TOPIC, 1);
+
+    // консьюмер закрывается движком, поэтому смещения запоминаются при фиксации
+    private final Map<TopicPartition, Long> committed = new ConcurrentHashMap<>();
+    private final MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST) {
+        @Override
+        public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+            super.commitSync(offsets);
+            offsets.forEach((partition, offset) -> committed.put(partition, offset.offset()));
+        }
+
+        @Override
+        public synchronized void commitAsync(Map<TopicPartition, OffsetAndMetadata> offsets,
+                                             OffsetCommitCallback callback) {
+            super.commitAsync(offsets, callback);
+            offsets.forEach((partition, offset) -> committed.put(partition, offset.offset()));
+        }
+    };
+    private final ConsumerEngineProperties properties = new ConsumerEngineProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> handled = new CopyOnWriteArrayList<>();
+    private KafkaConsumerEngine<String, String> engine;
+    private Thread thread;
+
+    KafkaConsumerEngineTest() {
+        properties.setPollTimeout(Duration.ofMillis(10));
+        properties.setCommitInterval(Duration.ofMillis(10));
+        properties.setDrainTimeout(Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (engine != null) {
+            engine.close();
+            thread.join();
+        }
+    }
+
+    @Test
+    void handsRecordsToHandlerAndCommitsProcessedOffsets() throws InterruptedException {
+        assign(PARTITION);
+        addRecords(PARTITION, 0, "a", "b", "c");
+        start(records -> records.forEach(record -> handled.add(record.value())));
+
+        awaitTrue(() -> committed(PARTITION) == 3);
+        assertThat(handled).containsExactly("a", "b", "c");
+        assertThat(meterRegistry.get("telemetry.consumer.records").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void skipsFailedBatchAndKeepsReading() throws InterruptedException {
+        assign(PARTITION);
+        addRecords(PARTITION, 0, "bad");
+        start(records -> {
+            for (ConsumerRecord<String, String> record : records) {
+                if (record.value().equals("bad")) {
+                    throw new IllegalStateException("ошибка обработки");
+                }
+                handled.add(record.value());
+            }
+        });
+        awaitTrue(() -> committed(PARTITION) == 1);
+
+        addRecords(PARTITION, 1, "good");
+        awaitTrue(() -> committed(PARTITION) == 2);
+        assertThat(handled).containsExactly("good");
+        assertThat(meterRegistry.get("telemetry.consumer.errors").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void runsTickWithoutRecords() throws InterruptedException {
+        AtomicInteger ticks = new AtomicInteger();
+        assign(PARTITION);
+        start(records -> {
+        }, engine -> engine.setTick(() -> {
+            ticks.incrementAndGet();
+            throw new IllegalStateException("ошибка в действии не останавливает движок");
+        }));
+
+        awaitTrue(() -> ticks.get() >= 3);
+    }
+
+    @Test
+    void commitsNoFurtherThanHeldRecordUntilTickReleasesIt() throws InterruptedException {
+        Map<TopicPartition, Long> held = new ConcurrentHashMap<>();
+        assign(PARTITION);
+        addRecords(PARTITION, 0, "a", "b", "c");
+        start(records -> {
+            // запись "b" придерживается, пока её не выпустит периодическое действие
+            records.stream().filter(record -> record.value().equals("b"))
+                    .forEach(record -> held.put(PARTITION, record.offset()));
+            records.forEach(record -> handled.add(record.value()));
+        }, engine -> engine.setRecordHold(new RecordHold() {
+            @Override
+            public long lowestHeldOffset(TopicPartition partition) {
+                return held.getOrDefault(partition, -1L);
+            }
+
+            @Override
+            public void discard(Collection<TopicPartition> partitions) {
+                partitions.forEach(held::remove);
+            }
+        }));
+
+        awaitTrue(() -> handled.size() == 3 && committed(PARTITION) == 1);
+        Thread.sleep(50);
+        assertThat(committed(PARTITION)).isEqualTo(1);
+
+        AtomicInteger released = new AtomicInteger();
+        engine.setTick(() -> {
+            held.remove(PARTITION);
+            released.incrementAndGet();
+        });
+        awaitTrue(() -> committed(PARTITION) == 3);
+        assertThat(released.get()).isPositive();
+    }
+
+    @Test
+    void pausesPartitionWithLongQueueAndResumesAfterDrain() throws InterruptedException {
+        properties.setMaxPendingRecordsPerPartition(3);
+        properties.setResumePendingRecordsPerPartition(0);
+        CountDownLatch release = new CountDownLatch(1);
+        assign(PARTITION);
+        addRecords(PARTITION, 0, "a", "b", "c");
+        start(records -> {
+            release.await(5, TimeUnit.SECONDS);
+            records.forEach(record -> handled.add(record.value()));
+        });
+
+        awaitTrue(() -> consumer.paused().contains(PARTITION));
+        assertThat(handled).isEmpty();
+
+        release.countDown();
+        awaitTrue(() -> !consumer.paused().contains(PARTITION));
+        awaitTrue(() -> committed(PARTITION) == 3);
+    }
+
+    @Test
+    void drainsAcceptedRecordsAndCommitsThemOnClose() throws InterruptedException {
+        // фиксация по времени и количеству не наступит: смещения фиксируются только при остановке
+        properties.setCommitInterval(Duration.ofHours(1));
+        properties.setCommitBatchSize(1_000);
+        CountDownLatch started = new CountDownLatch(1);
+        assign(PARTITION);
+        addRecords(PARTITION, 0, "a", "b");
+        start(records -> {
+            started.countDown();
+            Thread.sleep(100);
+            records.forEach(record -> handled.add(record.value()));
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        engine.close();
+        thread.join();
+        assertThat(handled).containsExactly("a", "b");
+        assertThat(committed(PARTITION)).isEqualTo(2);
+        engine = null;
+    }
+
+    @Test
+    void commitsRevokedPartitionAndDiscardsItsHeldRecords() throws InterruptedException {
+        List<Collection<TopicPartition>> discarded = new CopyOnWriteArrayList<>();
+        Map<TopicPartition, Long> held = new ConcurrentHashMap<>();
+        assign(PARTITION, OTHER);
+        addRecords(PARTITION, 0, "a", "b");
+        addRecords(OTHER, 0, "x");
+        start(records -> {
+            for (ConsumerRecord<String, String> record : records) {
+                handled.add(record.value());
+                if (record.partition() == OTHER.partition()) {
+                    held.putIfAbsent(OTHER, record.offset());
+                }
+            }
+        }, engine -> engine.setRecordHold(new RecordHold() {
+            @Override
+            public long lowestHeldOffset(TopicPartition partition) {
+                return held.getOrDefault(partition, -1L);
+            }
+
+            @Override
+            public void discard(Collection<TopicPartition> partitions) {
+                discarded.add(List.copyOf(partitions));
+                partitions.forEach(held::remove);
+            }
+        }));
+        awaitTrue(() -> handled.size() == 3);
+
+        // партиция OTHER уходит другому экземпляру
+        consumer.schedulePollTask(() -> consumer.rebalance(List.of(PARTITION)));
+        awaitTrue(() -> !discarded.isEmpty());
+        assertThat(discarded.getFirst()).containsExactly(OTHER);
+        awaitTrue(() -> committed(PARTITION) == 2);
+        // придержанная запись отозванной партиции не зафиксирована: её прочитает новый владелец
+        assertThat(committed.getOrDefault(OTHER, 0L)).isZero();
+    }
+
+    private void start(BatchHandler<String, String> handler) {
+        start(handler, engine -> {
+        });
+    }
+
+    private void start(BatchHandler<String, String> handler,
+                       Consumer<KafkaConsumerEngine<String, String>> configure) {
+        engine = new KafkaConsumerEngine<>("test", consumer, List.of(TOPIC), handler, properties, meterRegistry);
+        configure.accept(engine);
+        thread = Thread.ofPlatform().start(engine);
+    }
+
+    private void assign(TopicPartition... partitions) {
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(List.of(partitions));
+            for (TopicPartition partition : partitions) {
+                consumer.updateBeginningOffsets(Map.of(partition, 0L));
+            }
+        });
+    }
+
+    private void addRecords(TopicPartition partition, long firstOffset, String... values) {
+        consumer.schedulePollTask(() -> {
+            for (int i = 0; i < values.length; i++) {
+                consumer.addRecord(new ConsumerRecord<>(TOPIC, partition.partition(), firstOffset + i, "hub-1",
+                        values[i]));
+            }
+        });
+    }
+
+    private long committed(TopicPartition partition) {
+        return committed.getOrDefault(partition, -1L);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("условие не выполнилось за 5 секунд").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
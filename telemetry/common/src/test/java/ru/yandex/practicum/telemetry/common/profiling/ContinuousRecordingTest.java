@@ -0,0 +1,84 @@
+package ru.yandex.practicum.telemetry.common.profiling;
+
+import jdk.jfr.Name;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContinuousRecordingTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsStageEventsWithFieldsAndDuration() throws IOException {
+        FlightRecorderProperties properties = new FlightRecorderProperties();
+        properties.setEnabled(true);
+        properties.setName("telemetry-test");
+        Path file = directory.resolve("dump.jfr");
+
+        try (ContinuousRecording recording = new ContinuousRecording(properties)) {
+            recording.start();
+            TestStageEvent event = new TestStageEvent();
+            event.begin();
+            event.end();
+            if (event.shouldCommit()) {
+                event.hubId = "hub-1";
+                event.payloadType = "TemperatureSensorAvro";
+                event.bytes = 42;
+                event.commit();
+            }
+            // сброс не останавливает запись
+            recording.dump(file);
+            recording.dump(directory.resolve("second.jfr"));
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(recorded -> recorded.getEventType().getName().equals("telemetry.test.Stage"))
+                .toList();
+        assertThat(events).singleElement().satisfies(recorded -> {
+            assertThat(recorded.getString("hubId")).isEqualTo("hub-1");
+            assertThat(recorded.getString("payloadType")).isEqualTo("TemperatureSensorAvro");
+            assertThat(recorded.getLong("bytes")).isEqualTo(42);
+            assertThat(recorded.getEventType().getCategoryNames()).containsExactly("Telemetry");
+            // стек не пишется: события стадий идут на горячем пути
+            assertThat(recorded.getStackTrace()).isNull();
+        });
+    }
+
+    @Test
+    void writesBufferToDestinationOnClose() throws IOException {
+        FlightRecorderProperties properties = new FlightRecorderProperties();
+        properties.setEnabled(true);
+        properties.setDumpOnExit(directory.resolve("exit.jfr").toString());
+
+        ContinuousRecording recording = new ContinuousRecording(properties);
+        recording.start();
+        recording.close();
+
+        assertThat(Files.size(directory.resolve("exit.jfr"))).isPositive();
+    }
+
+    @Test
+    void doesNotStartWhenDisabled() {
+        ContinuousRecording recording = new ContinuousRecording(new FlightRecorderProperties());
+
+        recording.start();
+
+        assertThatThrownBy(() -> recording.dump(directory.resolve("dump.jfr")))
+                .isInstanceOf(IllegalStateException.class);
+        recording.close();
+    }
+
+    @Name("telemetry.test.Stage")
+    static class TestStageEvent extends StageEvent {
+    }
+}
@@ -0,0 +1,160 @@
+package ru.yandex.practicum.telemetry.common.ring;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RingBufferTest {
+
+    @Test
+    void rejectsCapacityThatIsNotPowerOfTwo() {
+        assertThatThrownBy(() -> new RingBuffer<>(6)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RingBuffer<>(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(new RingBuffer<>(1).capacity()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsPublishWhenFullUntilConsumerAdvances() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(ring.tryPublish(i)).isTrue();
+        }
+        assertThat(ring.tryPublish(4)).isFalse();
+        assertThat(ring.size()).isEqualTo(4);
+
+        List<Integer> drained = new ArrayList<>();
+        assertThat(ring.drain((event, sequence, endOfBatch) -> drained.add(event), 1)).isEqualTo(1);
+        assertThat(ring.tryPublish(4)).isTrue();
+        assertThat(ring.tryPublish(5)).isFalse();
+
+        ring.drain((event, sequence, endOfBatch) -> drained.add(event), 10);
+        assertThat(drained).containsExactly(0, 1, 2, 3, 4);
+        assertThat(ring.size()).isZero();
+    }
+
+    @Test
+    void keepsSequenceOrderAcrossManyWrapArounds() {
+        RingBuffer<Long> ring = new RingBuffer<>(4);
+        List<Long> sequences = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        long next = 0;
+        // 1000 кругов: номер круга в флагах доступности должен отличать новую запись ячейки от старой
+        for (int round = 0; round < 1_000; round++) {
+            int batch = round % 4 + 1;
+            for (int i = 0; i < batch; i++) {
+                assertThat(ring.tryPublish(next++)).isTrue();
+            }
+            ring.drain((event, sequence, endOfBatch) -> {
+                assertThat(event).isEqualTo(sequence);
+                sequences.add(sequence);
+                ends.add(endOfBatch);
+            }, 4);
+            // пустое кольцо: ячейки прошлого круга не считаются опубликованными
+            assertThat(ring.drain((event, sequence, endOfBatch) -> sequences.add(-1L), 4)).isZero();
+        }
+
+        assertThat(sequences).hasSize((int) next);
+        for (int i = 0; i < sequences.size(); i++) {
+            assertThat(sequences.get(i)).isEqualTo(i);
+        }
+        assertThat(ends.getLast()).isTrue();
+    }
+
+    @Test
+    void limitsBatchAndMarksItsLastEvent() {
+        RingBuffer<Integer> ring = new RingBuffer<>(8);
+        for (int i = 0; i < 5; i++) {
+            ring.tryPublish(i);
+        }
+        List<Boolean> ends = new ArrayList<>();
+
+        assertThat(ring.drain((event, sequence, endOfBatch) -> ends.add(endOfBatch), 3)).isEqualTo(3);
+        assertThat(ends).containsExactly(false, false, true);
+        assertThat(ring.size()).isEqualTo(2);
+    }
+
+    @Test
+    void treatsEventThatFailedHandlerAsConsumed() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+        ring.tryPublish(1);
+        ring.tryPublish(2);
+        ring.tryPublish(3);
+
+        assertThatThrownBy(() -> ring.drain((event, sequence, endOfBatch) -> {
+            if (event == 2) {
+                throw new IllegalStateException("ошибка обработчика");
+            }
+        }, 10)).isInstanceOf(IllegalStateException.class);
+
+        List<Integer> rest = new ArrayList<>();
+        ring.drain((event, sequence, endOfBatch) -> rest.add(event), 10);
+        assertThat(rest).containsExactly(3);
+    }
+
+    @Test
+    void deliversEveryEventOfManyProducersOnceAndInProducerOrder() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 50_000;
+        // маленькое кольцо: производители то и дело упираются в заполненное кольцо и повторяют попытку
+        RingBuffer<Long> ring = new RingBuffer<>(64);
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                // на машине с одним процессором производители должны уступать его потребителю
+                BackoffIdleStrategy idle = new BackoffIdleStrategy(10, 10, TimeUnit.MICROSECONDS.toNanos(100));
+                for (long n = 0; n < perProducer && System.nanoTime() < deadline; n++) {
+                    while (!ring.tryPublish(producer << 32 | n) && System.nanoTime() < deadline) {
+                        idle.idle(0);
+                    }
+                    idle.reset();
+                }
+            }));
+        }
+
+        long[] nextExpected = new long[producers];
+        long[] lastSequence = {-1};
+        long total = 0;
+        boolean ordered = true;
+        BackoffIdleStrategy idle = new BackoffIdleStrategy(10, 10, TimeUnit.MICROSECONDS.toNanos(100));
+        start.countDown();
+        while (total < (long) producers * perProducer && System.nanoTime() < deadline) {
+            long[] batch = {0};
+            boolean[] batchOrdered = {true};
+            ring.drain((event, sequence, endOfBatch) -> {
+                int producer = (int) (event >>> 32);
+                long n = event & 0xFFFF_FFFFL;
+                // каждое событие ровно один раз и по порядку своего производителя
+                batchOrdered[0] &= n == nextExpected[producer] && sequence == lastSequence[0] + 1;
+                nextExpected[producer] = n + 1;
+                lastSequence[0] = sequence;
+                batch[0]++;
+            }, 256);
+            ordered &= batchOrdered[0];
+            total += batch[0];
+            idle.idle((int) batch[0]);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(ordered).isTrue();
+        assertThat(total).isEqualTo((long) producers * perProducer);
+        assertThat(nextExpected).containsOnly(perProducer);
+        assertThat(ring.size()).isZero();
+    }
+}
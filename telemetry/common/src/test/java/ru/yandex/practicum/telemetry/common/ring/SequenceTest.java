@@ -0,0 +1,45 @@
+package ru.yandex.practicum.telemetry.common.ring;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SequenceTest {
+
+    @Test
+    void setsAndComparesValue() {
+        Sequence sequence = new Sequence(-1);
+        assertThat(sequence.get()).isEqualTo(-1);
+
+        sequence.setRelease(5);
+        assertThat(sequence.compareAndSet(4, 6)).isFalse();
+        assertThat(sequence.compareAndSet(5, 6)).isTrue();
+        assertThat(sequence.get()).isEqualTo(6);
+    }
+
+    @Test
+    void compareAndSetLosesNoIncrementsUnderContention() throws InterruptedException {
+        Sequence sequence = new Sequence(0);
+        int threads = 4;
+        int increments = 100_000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < increments; i++) {
+                    long current;
+                    do {
+                        current = sequence.get();
+                    } while (!sequence.compareAndSet(current, current + 1));
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertThat(sequence.get()).isEqualTo((long) threads * increments);
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.telemetry.embedded;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.feedback.AppliedActions;
+import ru.yandex.practicum.handlers.snapshot.SnapshotHandler;
+import ru.yandex.practicum.hubconfig.HubConfigStore;
+import ru.yandex.practicum.telemetry.collector.service.handler.hub.HubEventHandler;
+import ru.yandex.practicum.telemetry.collector.service.handler.sensor.SensorEventHandler;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopicProvisioner;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopologyProperties;
+import ru.yandex.practicum.telemetry.embedded.benchmark.BenchmarkProperties;
+import ru.yandex.practicum.telemetry.embedded.benchmark.EmbeddedBenchmark;
+
+import java.util.List;
+import java.util.Set;
+
+@Configuration
+public class EmbeddedConfig {
+
+    @Bean
+    @ConfigurationProperties("embedded")
+    EmbeddedProperties embeddedProperties() {
+        return new EmbeddedProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("embedded.benchmark")
+    BenchmarkProperties benchmarkProperties() {
+        return new BenchmarkProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("kafka.topology")
+    TopologyProperties topologyProperties() {
+        return new TopologyProperties();
+    }
+
+    /**
+     * Нужен входному фильтру коллектора для топика карантина; топики создаются, только если включена копия в Kafka.
+     */
+    @Bean
+    TopicProvisioner topicProvisioner(TopologyProperties topology, EmbeddedProperties properties,
+                                      @Value("${kafka.bootstrap.server}") String bootstrapServer,
+                                      @Value("${kafka.topic.sensor}") String sensorTopic,
+                                      @Value("${kafka.topic.hub}") String hubTopic) {
+        if (!properties.getTap().isEnabled()) {
+            topology.setProvision(false);
+        }
+        TopicProvisioner provisioner = new TopicProvisioner(bootstrapServer, topology);
+        provisioner.provision(List.of(sensorTopic, hubTopic));
+        return provisioner;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "embedded.tap.enabled", havingValue = "true")
+    KafkaTap kafkaTap(TopologyProperties topology, MeterRegistry meterRegistry,
+                      @Value("${kafka.bootstrap.server}") String bootstrapServer) {
+        return new KafkaTap(bootstrapServer, topology, meterRegistry);
+    }
+
+    /**
+     * Обработчики коллектора получают вместо producer'а Kafka маршрутизатор по шардам конвейера.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    EmbeddedRecordRouter embeddedRecordRouter(EmbeddedProperties properties, SnapshotHandler snapshotHandler,
+                                              HubConfigStore hubConfigStore, AppliedActions appliedActions,
+                                              ObjectProvider<KafkaTap> tap,
+                                              MeterRegistry meterRegistry,
+                                              @Value("${kafka.topic.sensor}") String sensorTopic,
+                                              @Value("${kafka.topic.hub}") String hubTopic) {
+        return new EmbeddedRecordRouter(properties, Set.of(sensorTopic, hubTopic), snapshotHandler,
+                hubConfigStore, appliedActions, tap.getIfAvailable(), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "embedded.benchmark.enabled", havingValue = "true")
+    EmbeddedBenchmark embeddedBenchmark(BenchmarkProperties properties, Set<SensorEventHandler> sensorEventHandlers,
+                                        Set<HubEventHandler> hubEventHandlers, ConfigurableApplicationContext context) {
+        return new EmbeddedBenchmark(properties, sensorEventHandlers, hubEventHandlers, context);
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.telemetry.embedded;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки конвейера, в котором события коллектора передаются агрегатору и анализатору
+ * через кольцевые буферы в памяти, а не через Kafka.
+ */
+@Getter
+@Setter
+public class EmbeddedProperties {
+    /**
+     * Число шардов, у каждого своё кольцо и свой поток. Хаб всегда попадает в один шард,
+     * поэтому его события обрабатываются в порядке приёма. 0 - по числу процессоров.
+     */
+    private int shards = 0;
+
+    /**
+     * Число ячеек кольца одного шарда, степень двойки.
+     */
+    private int ringCapacity = 65536;
+
+    /**
+     * Сколько событий поток шарда забирает из кольца за раз. Большая пачка реже сдвигает позицию
+     * потребителя, которую читают производители, но дольше держит первое событие пачки.
+     */
+    private int batchSize = 256;
+
+    /**
+     * Сколько обработчик коллектора ждёт места в заполненном кольце, прежде чем вернуть ошибку.
+     */
+    private Duration publishTimeout = Duration.ofSeconds(1);
+
+    /**
+     * Ожидание пустого кольца: число итераций активного ожидания, затем уступок процессора,
+     * затем засыпание с удвоением до {@code maxIdlePark}.
+     */
+    private int idleSpins = 100;
+    private int idleYields = 10;
+    private Duration maxIdlePark = Duration.ofMillis(1);
+
+    private final Tap tap = new Tap();
+
+    /**
+     * Необязательная копия потока событий в Kafka, например для центрального хранилища.
+     * Ответ хабу не ждёт подтверждения брокера, ошибки записи только учитываются в метриках.
+     */
+    @Getter
+    @Setter
+    public static class Tap {
+        private boolean enabled = false;
+
+        /**
+         * Топик для снапшотов; пустое значение - снапшоты в Kafka не пишутся.
+         */
+        private String snapshotTopic = "";
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.telemetry.embedded;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TimeoutException;
+import ru.yandex.practicum.feedback.AppliedActions;
+import ru.yandex.practicum.handlers.snapshot.SnapshotHandler;
+import ru.yandex.practicum.hubconfig.HubConfigStore;
+import ru.yandex.practicum.telemetry.collector.kafka.KafkaClientProducer;
+import ru.yandex.practicum.telemetry.common.kafka.topology.HubPartitioner;
+
+import java.util.Set;
+
+/**
+ * Замена producer'а коллектора во встроенном режиме: записи, которые обработчики коллектора
+ * отправили бы в Kafka, передаются в шард конвейера по идентификатору хаба.
+ * Шард выбирается тем же хешем, что и партиция в Kafka, так что события хаба не меняют порядок.
+ * <p>
+ * Записи в другие топики, например в карантин, конвейер не обрабатывает: они подтверждаются сразу
+ * и попадают только в копию в Kafka, если она включена.
+ */
+@Slf4j
+public class EmbeddedRecordRouter implements KafkaClientProducer {
+    private final PipelineShard[] shards;
+    private final Set<String> pipelineTopics;
+    private final KafkaTap tap;
+    private final Counter ringFull;
+
+    public EmbeddedRecordRouter(EmbeddedProperties properties, Set<String> pipelineTopics,
+                                SnapshotHandler snapshotHandler, HubConfigStore hubConfigStore,
+                                AppliedActions appliedActions, KafkaTap tap, MeterRegistry meterRegistry) {
+        int shardCount = properties.getShards() > 0
+                ? properties.getShards()
+                : Runtime.getRuntime().availableProcessors();
+        this.shards = new PipelineShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new PipelineShard(i, properties, snapshotHandler, hubConfigStore, appliedActions, tap,
+                    meterRegistry);
+        }
+        this.pipelineTopics = pipelineTopics;
+        this.tap = tap;
+        this.ringFull = Counter.builder("telemetry.embedded.ring.full")
+                .description("События, не дождавшиеся места в кольце шарда")
+                .register(meterRegistry);
+    }
+
+    public void start() {
+        for (PipelineShard shard : shards) {
+            shard.start();
+        }
+        log.info("Встроенный конвейер запущен: шардов {}, копия в Kafka {}",
+                shards.length, tap == null ? "выключена" : "включена");
+    }
+
+    /**
+     * @return producer копии в Kafka или {@code null}, если копия выключена
+     */
+    @Override
+    public Producer<String, SpecificRecordBase> getProducer() {
+        return tap == null ? null : tap.getProducer();
+    }
+
+    @Override
+    public void send(ProducerRecord<String, SpecificRecordBase> record, Callback callback) {
+        if (tap != null) {
+            tap.forward(record);
+        }
+        if (!pipelineTopics.contains(record.topic())) {
+            callback.onCompletion(null, null);
+            return;
+        }
+        PipelineShard shard = shards[HubPartitioner.partitionFor(record.key(), shards.length)];
+        if (!shard.publish(record, callback)) {
+            ringFull.increment();
+            callback.onCompletion(null, new TimeoutException("Кольцо шарда встроенного конвейера заполнено"));
+        }
+    }
+
+    @Override
+    public void stop() {
+        for (PipelineShard shard : shards) {
+            shard.stop();
+        }
+    }
+}
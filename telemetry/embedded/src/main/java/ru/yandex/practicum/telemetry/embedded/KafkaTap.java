@@ -0,0 +1,78 @@
+package ru.yandex.practicum.telemetry.embedded;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.kafka.KafkaClientMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.serialization.StringSerializer;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopologyProperties;
+import serializer.GeneralAvroSerializer;
+
+import java.util.Properties;
+
+/**
+ * Копия потока событий встроенного конвейера в Kafka. Запись сериализуется в вызывающем потоке,
+ * поэтому изменяемый снапшот можно передавать сразу после обновления.
+ * Отказ брокера не останавливает конвейер: запись теряется, ошибка учитывается в метрике.
+ */
+@Slf4j
+public class KafkaTap implements AutoCloseable {
+    private final KafkaProducer<String, SpecificRecordBase> producer;
+    private final KafkaClientMetrics clientMetrics;
+    private final Counter forwarded;
+    private final Counter errors;
+
+    public KafkaTap(String bootstrapServer, TopologyProperties topology, MeterRegistry meterRegistry) {
+        Properties config = new Properties();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServer);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, GeneralAvroSerializer.class);
+        // поток шарда не должен ждать метаданных недоступного брокера
+        config.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, 0);
+        topology.applyToProducer(config);
+        this.producer = new KafkaProducer<>(config);
+        this.clientMetrics = new KafkaClientMetrics(producer);
+        clientMetrics.bindTo(meterRegistry);
+        this.forwarded = tapCounter(meterRegistry, "forwarded");
+        this.errors = tapCounter(meterRegistry, "error");
+    }
+
+    private static Counter tapCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("telemetry.embedded.tap")
+                .description("Записи, скопированные встроенным конвейером в Kafka, по результату")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public Producer<String, SpecificRecordBase> getProducer() {
+        return producer;
+    }
+
+    public void forward(ProducerRecord<String, SpecificRecordBase> record) {
+        try {
+            producer.send(record, (metadata, exception) -> {
+                if (exception == null) {
+                    forwarded.increment();
+                } else {
+                    errors.increment();
+                }
+            });
+        } catch (KafkaException | IllegalStateException e) {
+            errors.increment();
+            log.debug("Не удалось скопировать запись в топик {}: {}", record.topic(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        producer.flush();
+        clientMetrics.close();
+        producer.close();
+    }
+}
@@ -0,0 +1,178 @@
+package ru.yandex.practicum.telemetry.embedded;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import ru.yandex.practicum.SnapshotStorage;
+import ru.yandex.practicum.feedback.AppliedActions;
+import ru.yandex.practicum.handlers.snapshot.SnapshotHandler;
+import ru.yandex.practicum.hubconfig.HubConfigStore;
+import ru.yandex.practicum.kafka.telemetry.event.ActionResultEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.telemetry.common.ring.BackoffIdleStrategy;
+import ru.yandex.practicum.telemetry.common.ring.RingBuffer;
+import ru.yandex.practicum.telemetry.common.ring.RingEventHandler;
+import tracing.TraceContext;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Шард встроенного конвейера: кольцо, в которое пишут обработчики коллектора, и поток,
+ * который разбирает его по порядку. Событие датчика обновляет снапшот хаба в собственном
+ * {@link SnapshotStorage} шарда и сразу проверяется анализатором, событие хаба меняет его конфигурацию,
+ * а результат действия попадает в таблицу применённых действий анализатора.
+ * <p>
+ * Номер шарда служит партицией, а последовательность в кольце - смещением: так {@link HubConfigStore}
+ * отличает новые события хаба от уже учтённых так же, как при чтении топика.
+ * Подтверждение обработчику коллектора отправляется из потока шарда после обработки события.
+ */
+@Slf4j
+class PipelineShard implements RingEventHandler<PipelineShard.Envelope>, Runnable {
+    private final int index;
+    private final RingBuffer<Envelope> ring;
+    private final SnapshotStorage snapshotStorage;
+    private final SnapshotHandler snapshotHandler;
+    private final HubConfigStore hubConfigStore;
+    private final AppliedActions appliedActions;
+    private final KafkaTap tap;
+    private final String snapshotTopic;
+    private final EmbeddedProperties properties;
+    private final DistributionSummary batchSize;
+    private final Timer stageLatency;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    PipelineShard(int index, EmbeddedProperties properties, SnapshotHandler snapshotHandler,
+                  HubConfigStore hubConfigStore, AppliedActions appliedActions, KafkaTap tap,
+                  MeterRegistry meterRegistry) {
+        this.index = index;
+        this.properties = properties;
+        this.ring = new RingBuffer<>(properties.getRingCapacity());
+        // хаб всегда обрабатывается одним шардом, поэтому хранилище снапшотов у шарда своё
+        this.snapshotStorage = new SnapshotStorage(meterRegistry);
+        this.snapshotHandler = snapshotHandler;
+        this.hubConfigStore = hubConfigStore;
+        this.appliedActions = appliedActions;
+        this.tap = tap;
+        this.snapshotTopic = properties.getTap().getSnapshotTopic();
+        this.batchSize = DistributionSummary.builder("telemetry.embedded.batch.size")
+                .description("Число событий, забранных потоком шарда из кольца за раз")
+                .register(meterRegistry);
+        this.stageLatency = Timer.builder("telemetry.pipeline.stage.latency")
+                .description("Задержка от приёма события коллектором до выхода из стадии")
+                .tag("stage", "aggregator")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("telemetry.embedded.ring.size", ring, RingBuffer::size)
+                .description("События в кольце шарда, ещё не обработанные его потоком")
+                .tag("shard", String.valueOf(index))
+                .register(meterRegistry);
+        this.thread = new Thread(this, "embedded-shard-" + index);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Кладёт запись в кольцо, ожидая места не дольше {@link EmbeddedProperties#getPublishTimeout()}.
+     *
+     * @return {@code false}, если место так и не освободилось
+     */
+    boolean publish(ProducerRecord<String, SpecificRecordBase> record, Callback callback) {
+        Envelope envelope = new Envelope(record, callback);
+        if (ring.tryPublish(envelope)) {
+            return true;
+        }
+        long deadline = System.nanoTime() + properties.getPublishTimeout().toNanos();
+        BackoffIdleStrategy idle = new BackoffIdleStrategy(properties.getIdleSpins(), properties.getIdleYields(),
+                properties.getMaxIdlePark().toNanos());
+        while (running && System.nanoTime() < deadline) {
+            if (ring.tryPublish(envelope)) {
+                return true;
+            }
+            idle.idle(0);
+        }
+        return false;
+    }
+
+    @Override
+    public void run() {
+        BackoffIdleStrategy idle = new BackoffIdleStrategy(properties.getIdleSpins(), properties.getIdleYields(),
+                properties.getMaxIdlePark().toNanos());
+        // после остановки кольцо дочитывается, чтобы обработчики коллектора получили ответы
+        while (running || ring.size() > 0) {
+            int drained = ring.drain(this, properties.getBatchSize());
+            if (drained > 0) {
+                batchSize.record(drained);
+            }
+            idle.idle(drained);
+        }
+        log.info("Поток шарда {} встроенного конвейера остановлен", index);
+    }
+
+    @Override
+    public void onEvent(Envelope envelope, long sequence, boolean endOfBatch) {
+        ProducerRecord<String, SpecificRecordBase> record = envelope.record();
+        Exception failure = null;
+        try {
+            switch (record.value()) {
+                case SensorEventAvro event -> handleSensorEvent(event, record);
+                case HubEventAvro event when event.getPayload() instanceof ActionResultEventAvro result ->
+                        appliedActions.record(event.getHubId(), result, event.getTimestamp());
+                case HubEventAvro event -> hubConfigStore.apply(event, index, sequence);
+                default -> log.warn("Встроенный конвейер не обрабатывает записи {}", record.value().getClass());
+            }
+        } catch (RuntimeException e) {
+            log.error("Ошибка при обработке события хаба {} в шарде {}", record.key(), index, e);
+            failure = e;
+        }
+        try {
+            envelope.callback().onCompletion(failure == null ? metadata(record, sequence) : null, failure);
+        } catch (RuntimeException e) {
+            log.error("Ошибка в обработчике подтверждения события хаба {}", record.key(), e);
+        }
+    }
+
+    private void handleSensorEvent(SensorEventAvro event, ProducerRecord<String, SpecificRecordBase> record) {
+        TraceContext trace = TraceContext.fromHeaders(record.headers()).orElse(null);
+        Optional<SensorsSnapshotAvro> snapshot = snapshotStorage.updateState(event, trace);
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        if (trace != null) {
+            stageLatency.record(trace.elapsedMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (tap != null && !snapshotTopic.isBlank()) {
+            tap.forward(new ProducerRecord<>(snapshotTopic, event.getHubId(), snapshot.get()));
+        }
+        snapshotHandler.handleSnapshot(snapshot.get());
+    }
+
+    private RecordMetadata metadata(ProducerRecord<String, SpecificRecordBase> record, long sequence) {
+        long timestamp = record.timestamp() == null ? System.currentTimeMillis() : record.timestamp();
+        return new RecordMetadata(new TopicPartition(record.topic(), index), sequence, 0, timestamp, -1, -1);
+    }
+
+    void stop() {
+        running = false;
+        try {
+            thread.join(properties.getPublishTimeout().toMillis() * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    record Envelope(ProducerRecord<String, SpecificRecordBase> record, Callback callback) {
+    }
+}
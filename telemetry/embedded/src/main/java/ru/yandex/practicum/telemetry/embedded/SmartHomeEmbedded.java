@@ -0,0 +1,58 @@
+package ru.yandex.practicum.telemetry.embedded;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.client.ScenarioActionProducer;
+import ru.yandex.practicum.feedback.AppliedActions;
+import ru.yandex.practicum.handlers.snapshot.SnapshotHandler;
+import ru.yandex.practicum.hubconfig.HubConfigStore;
+import ru.yandex.practicum.telemetry.collector.controller.CollectorController;
+import ru.yandex.practicum.telemetry.collector.delivery.DeliveryConfig;
+import ru.yandex.practicum.telemetry.collector.grpc.GrpcServerConfig;
+import ru.yandex.practicum.telemetry.collector.ingest.IngestConfig;
+import ru.yandex.practicum.telemetry.collector.service.handler.hub.HubEventHandler;
+import ru.yandex.practicum.telemetry.collector.service.handler.sensor.SensorEventHandler;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
+import ru.yandex.practicum.telemetry.common.profiling.ContinuousRecording;
+import ru.yandex.practicum.telemetry.common.profiling.FlightRecorderProperties;
+
+/**
+ * Коллектор, агрегатор и анализатор в одном процессе: gRPC-сервер и обработчики коллектора,
+ * хранилище снапшотов агрегатора и проверка сценариев анализатора связаны кольцами в памяти
+ * вместо топиков Kafka. Конфигурации хабов и снапшоты живут только в памяти процесса.
+ * <p>
+ * Из модулей сервисов берутся только нужные классы: producer Kafka коллектора, потребители
+ * агрегатора и анализатора и хранилище сценариев в базе сюда не входят.
+ */
+@SpringBootApplication(
+        scanBasePackageClasses = {SmartHomeEmbedded.class, SensorEventHandler.class, HubEventHandler.class},
+        exclude = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class})
+@Import({CollectorController.class, DeliveryConfig.class, IngestConfig.class, GrpcServerConfig.class,
+        HubConfigStore.class, AppliedActions.class, SnapshotHandler.class, ScenarioActionProducer.class})
+public class SmartHomeEmbedded {
+    public static void main(String[] args) {
+        SpringApplication.run(SmartHomeEmbedded.class, args);
+    }
+
+    @Bean
+    LogSampler logSampler(@Value("${telemetry.logging.sample-rate:100}") int sampleRate) {
+        return new LogSampler(sampleRate);
+    }
+
+    @Bean
+    @ConfigurationProperties("telemetry.jfr")
+    FlightRecorderProperties flightRecorderProperties() {
+        return new FlightRecorderProperties();
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    ContinuousRecording continuousRecording(FlightRecorderProperties properties) {
+        return new ContinuousRecording(properties);
+    }
+}
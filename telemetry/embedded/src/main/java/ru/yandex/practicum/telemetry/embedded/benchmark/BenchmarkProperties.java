@@ -0,0 +1,35 @@
+package ru.yandex.practicum.telemetry.embedded.benchmark;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки замера пропускной способности встроенного конвейера без брокера и без сети.
+ */
+@Getter
+@Setter
+public class BenchmarkProperties {
+    private boolean enabled = false;
+
+    /**
+     * Число хабов; у каждого регистрируются климатические датчики и сценарий.
+     */
+    private int hubs = 1000;
+
+    private int sensorsPerHub = 8;
+
+    /**
+     * Потоки, которые вызывают обработчики коллектора, как это делали бы потоки gRPC-сервера.
+     */
+    private int producers = 4;
+
+    /**
+     * Предел неподтверждённых событий на один поток нагрузки.
+     */
+    private int maxInFlight = 1024;
+
+    private Duration warmup = Duration.ofSeconds(5);
+    private Duration duration = Duration.ofSeconds(30);
+}
@@ -0,0 +1,197 @@
+package ru.yandex.practicum.telemetry.embedded.benchmark;
+
+import com.google.protobuf.Timestamp;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.grpc.telemetry.event.ActionTypeProto;
+import ru.yandex.practicum.grpc.telemetry.event.ClimateSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.ConditionOperationProto;
+import ru.yandex.practicum.grpc.telemetry.event.ConditionTypeProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceAddedEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceTypeProto;
+import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.ScenarioAddedEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.ScenarioConditionProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.telemetry.collector.service.handler.hub.HubEventHandler;
+import ru.yandex.practicum.telemetry.collector.service.handler.sensor.SensorEventHandler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Замер пропускной способности логики обработки без брокера и сети: потоки нагрузки вызывают
+ * обработчики коллектора напрямую, а события проходят тот же путь через кольца шардов,
+ * хранилище снапшотов и проверку сценариев, что и в рабочем встроенном режиме.
+ * <p>
+ * Сценарий каждого хаба проверяется на каждом изменившемся снапшоте, но никогда не срабатывает,
+ * поэтому в результат не попадает вызов hub-router. По окончании печатается строка в формате
+ * генератора нагрузки коллектора, и приложение завершается.
+ */
+@Slf4j
+public class EmbeddedBenchmark implements ApplicationRunner {
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99, 0.999};
+
+    private final BenchmarkProperties properties;
+    private final SensorEventHandler climateHandler;
+    private final Map<HubEventProto.PayloadCase, HubEventHandler> hubEventHandlers;
+    private final ConfigurableApplicationContext context;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile boolean measuring;
+    private volatile boolean running = true;
+    private volatile Timer latency = newTimer();
+
+    public EmbeddedBenchmark(BenchmarkProperties properties, Set<SensorEventHandler> sensorEventHandlers,
+                             Set<HubEventHandler> hubEventHandlers, ConfigurableApplicationContext context) {
+        this.properties = properties;
+        this.climateHandler = sensorEventHandlers.stream()
+                .filter(handler -> handler.getMessageType() == SensorEventProto.PayloadCase.CLIMATE_SENSOR_EVENT)
+                .findFirst()
+                .orElseThrow();
+        this.hubEventHandlers = hubEventHandlers.stream()
+                .collect(Collectors.toMap(HubEventHandler::getMessageType, Function.identity()));
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        log.info("Регистрируем {} хабов по {} датчиков", properties.getHubs(), properties.getSensorsPerHub());
+        List<CompletableFuture<Void>> registrations = new ArrayList<>();
+        for (int hub = 0; hub < properties.getHubs(); hub++) {
+            registrations.addAll(register("bench-hub-" + hub));
+        }
+        CompletableFuture.allOf(registrations.toArray(CompletableFuture[]::new)).join();
+
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < properties.getProducers(); i++) {
+            Thread producer = new Thread(this::produce, "embedded-benchmark-" + i);
+            producers.add(producer);
+            producer.start();
+        }
+
+        Thread.sleep(properties.getWarmup().toMillis());
+        latency = newTimer();
+        sent.set(0);
+        errors.set(0);
+        measuring = true;
+        Thread.sleep(properties.getDuration().toMillis());
+        measuring = false;
+        running = false;
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        report(properties.getDuration());
+        System.exit(SpringApplication.exit(context));
+    }
+
+    private List<CompletableFuture<Void>> register(String hubId) {
+        List<CompletableFuture<Void>> registrations = new ArrayList<>();
+        for (int sensor = 0; sensor < properties.getSensorsPerHub(); sensor++) {
+            registrations.add(hubEventHandlers.get(HubEventProto.PayloadCase.DEVICE_ADDED).handle(hubEvent(hubId)
+                    .setDeviceAdded(DeviceAddedEventProto.newBuilder()
+                            .setId("climate-" + sensor)
+                            .setType(DeviceTypeProto.CLIMATE_SENSOR))
+                    .build()));
+        }
+        // условие недостижимо: сценарий проверяется на каждом снапшоте, но действия не отправляются
+        registrations.add(hubEventHandlers.get(HubEventProto.PayloadCase.SCENARIO_ADDED).handle(hubEvent(hubId)
+                .setScenarioAdded(ScenarioAddedEventProto.newBuilder()
+                        .setName("bench-scenario")
+                        .addCondition(ScenarioConditionProto.newBuilder()
+                                .setSensorId("climate-0")
+                                .setType(ConditionTypeProto.TEMPERATURE)
+                                .setOperation(ConditionOperationProto.GREATER_THAN)
+                                .setIntValue(1000))
+                        .addAction(DeviceActionProto.newBuilder()
+                                .setSensorId("climate-0")
+                                .setType(ActionTypeProto.ACTIVATE)))
+                .build()));
+        return registrations;
+    }
+
+    private static HubEventProto.Builder hubEvent(String hubId) {
+        Instant now = Instant.now();
+        return HubEventProto.newBuilder()
+                .setHubId(hubId)
+                .setTimestamp(Timestamp.newBuilder().setSeconds(now.getEpochSecond()).setNanos(now.getNano()));
+    }
+
+    private void produce() {
+        Semaphore inFlight = new Semaphore(properties.getMaxInFlight());
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            inFlight.acquireUninterruptibly();
+            Instant now = Instant.now();
+            SensorEventProto event = SensorEventProto.newBuilder()
+                    .setId("climate-" + random.nextInt(properties.getSensorsPerHub()))
+                    .setHubId("bench-hub-" + random.nextInt(properties.getHubs()))
+                    .setTimestamp(Timestamp.newBuilder().setSeconds(now.getEpochSecond()).setNanos(now.getNano()))
+                    .setClimateSensorEvent(ClimateSensorProto.newBuilder()
+                            .setTemperatureC(random.nextInt(15, 30))
+                            .setHumidity(random.nextInt(30, 70))
+                            .setCo2Level(random.nextInt(400, 1000)))
+                    .build();
+            long start = System.nanoTime();
+            boolean counted = measuring;
+            if (counted) {
+                sent.incrementAndGet();
+            }
+            climateHandler.handle(event).whenComplete((ignored, exception) -> {
+                inFlight.release();
+                if (!counted) {
+                    return;
+                }
+                if (exception == null) {
+                    latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                } else {
+                    errors.incrementAndGet();
+                }
+            });
+        }
+        // ждём ответов на отправленные события, чтобы они не пришли в остановленный контекст
+        inFlight.acquireUninterruptibly(properties.getMaxInFlight());
+    }
+
+    private void report(Duration duration) {
+        StringBuilder line = new StringBuilder(String.format(
+                "label=embedded hubs=%d producers=%d sent=%d ok=%d errors=%d throughput=%.0f/s",
+                properties.getHubs(), properties.getProducers(), sent.get(), latency.count(), errors.get(),
+                latency.count() / (double) duration.toSeconds()));
+        for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+            line.append(String.format(" p%.1f=%.3fms",
+                    value.percentile() * 100, value.value(TimeUnit.MILLISECONDS)));
+        }
+        line.append(String.format(" max=%.3fms", latency.max(TimeUnit.MILLISECONDS)));
+        System.out.println(line);
+    }
+
+    private Timer newTimer() {
+        // новый таймер на каждый замер, чтобы прогрев не попал в перцентили
+        return Timer.builder("embedded.event")
+                .tag("run", String.valueOf(System.nanoTime()))
+                .publishPercentiles(PERCENTILES)
+                .distributionStatisticExpiry(Duration.ofHours(1))
+                .register(registry);
+    }
+}
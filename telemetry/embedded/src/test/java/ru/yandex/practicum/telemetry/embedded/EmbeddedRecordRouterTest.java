@@ -0,0 +1,142 @@
+package ru.yandex.practicum.telemetry.embedded;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.feedback.AppliedActions;
+import ru.yandex.practicum.handlers.snapshot.SnapshotHandler;
+import ru.yandex.practicum.hubconfig.HubConfigStore;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+import ru.yandex.practicum.telemetry.common.kafka.topology.HubPartitioner;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class EmbeddedRecordRouterTest {
+    private static final String HUBS_TOPIC = "telemetry.hubs.v1";
+    private static final String QUARANTINE_TOPIC = "telemetry.quarantine.v1";
+
+    private final EmbeddedProperties properties = new EmbeddedProperties();
+    private final HubConfigStore hubConfigStore = new HubConfigStore();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void routesEachHubToShardOfItsKafkaPartition() throws InterruptedException {
+        properties.setShards(4);
+        EmbeddedRecordRouter router = router();
+        Map<String, List<RecordMetadata>> acks = new ConcurrentHashMap<>();
+        List<Exception> failures = new CopyOnWriteArrayList<>();
+        List<String> hubIds = new ArrayList<>();
+        for (int hub = 0; hub < 20; hub++) {
+            hubIds.add("hub-" + hub);
+        }
+
+        router.start();
+        try {
+            for (int event = 0; event < 3; event++) {
+                for (String hubId : hubIds) {
+                    router.send(deviceAdded(hubId, "device-" + event), (metadata, exception) -> {
+                        if (exception != null) {
+                            failures.add(exception);
+                        } else {
+                            acks.computeIfAbsent(hubId, ignored -> new CopyOnWriteArrayList<>()).add(metadata);
+                        }
+                    });
+                }
+            }
+            awaitTrue(() -> acks.values().stream().mapToInt(List::size).sum() == 60);
+        } finally {
+            router.stop();
+        }
+
+        assertThat(failures).isEmpty();
+        for (String hubId : hubIds) {
+            int shard = HubPartitioner.partitionFor(hubId, 4);
+            List<RecordMetadata> hubAcks = acks.get(hubId);
+            assertThat(hubAcks).extracting(RecordMetadata::partition).containsOnly(shard);
+            // события хаба проходят один шард в порядке отправки
+            assertThat(hubAcks).extracting(RecordMetadata::offset).isSorted();
+            assertThat(hubConfigStore.get(hubId).getSourcePartition()).isEqualTo(shard);
+            assertThat(hubConfigStore.get(hubId).getDevices()).hasSize(3);
+        }
+    }
+
+    @Test
+    void acknowledgesOtherTopicsWithoutPipeline() {
+        EmbeddedRecordRouter router = router();
+        List<Exception> results = new ArrayList<>();
+        boolean[] acknowledged = new boolean[1];
+
+        router.send(new ProducerRecord<>(QUARANTINE_TOPIC, "hub-1", hubEvent("hub-1", "lamp")),
+                (metadata, exception) -> {
+                    acknowledged[0] = true;
+                    results.add(exception);
+                });
+
+        assertThat(acknowledged[0]).isTrue();
+        assertThat(results).containsOnlyNulls();
+        assertThat(hubConfigStore.size()).isZero();
+        assertThat(router.getProducer()).isNull();
+    }
+
+    @Test
+    void failsSendWhenShardRingStaysFull() throws InterruptedException {
+        properties.setShards(1);
+        properties.setRingCapacity(2);
+        properties.setPublishTimeout(Duration.ofMillis(50));
+        EmbeddedRecordRouter router = router();
+        List<Exception> results = new CopyOnWriteArrayList<>();
+
+        // поток шарда ещё не запущен, кольцо никто не разбирает
+        for (int i = 0; i < 3; i++) {
+            router.send(deviceAdded("hub-1", "device-" + i), (metadata, exception) -> results.add(exception));
+        }
+        assertThat(results).singleElement().isInstanceOf(TimeoutException.class);
+        assertThat(meterRegistry.get("telemetry.embedded.ring.full").counter().count()).isEqualTo(1);
+
+        // записи, уже попавшие в кольцо, обрабатываются после запуска
+        router.start();
+        awaitTrue(() -> results.size() == 3);
+        router.stop();
+        assertThat(results.subList(1, 3)).containsOnlyNulls();
+        assertThat(hubConfigStore.get("hub-1").getDevices()).hasSize(2);
+    }
+
+    private EmbeddedRecordRouter router() {
+        AppliedActions appliedActions = new AppliedActions(true, Duration.ofMinutes(10), meterRegistry);
+        return new EmbeddedRecordRouter(properties, Set.of(HUBS_TOPIC), mock(SnapshotHandler.class), hubConfigStore,
+                appliedActions, null, meterRegistry);
+    }
+
+    private static ProducerRecord<String, SpecificRecordBase> deviceAdded(String hubId, String deviceId) {
+        return new ProducerRecord<>(HUBS_TOPIC, hubId, hubEvent(hubId, deviceId));
+    }
+
+    private static HubEventAvro hubEvent(String hubId, String deviceId) {
+        return new HubEventAvro(hubId, Instant.now(), new DeviceAddedEventAvro(deviceId, DeviceTypeAvro.LIGHT_SENSOR));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("условие не выполнилось за 5 секунд").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ru.yandex.practicum.telemetry.embedded;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.yandex.practicum.feedback.AppliedActions;
+import ru.yandex.practicum.handlers.snapshot.SnapshotHandler;
+import ru.yandex.practicum.hubconfig.HubConfigStore;
+import ru.yandex.practicum.kafka.telemetry.event.ActionResultEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ActionStatusAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceActionAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceAddedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class PipelineShardTest {
+    private static final String SENSORS_TOPIC = "telemetry.sensors.v1";
+    private static final String HUBS_TOPIC = "telemetry.hubs.v1";
+
+    private final SnapshotHandler snapshotHandler = mock(SnapshotHandler.class);
+    private final HubConfigStore hubConfigStore = new HubConfigStore();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AppliedActions appliedActions = new AppliedActions(true, Duration.ofMinutes(10), meterRegistry);
+    private final PipelineShard shard =
+            new PipelineShard(3, new EmbeddedProperties(), snapshotHandler, hubConfigStore, appliedActions, null,
+                    meterRegistry);
+    private final List<RecordMetadata> acks = new CopyOnWriteArrayList<>();
+    private final List<Exception> failures = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void stopShard() {
+        shard.stop();
+    }
+
+    @Test
+    void checksUpdatedSnapshotWithAnalyzer() throws InterruptedException {
+        shard.start();
+        publish(SENSORS_TOPIC, switchEvent(true, 1_000));
+        // то же состояние снапшот не меняет и анализатору не передаётся
+        publish(SENSORS_TOPIC, switchEvent(true, 1_000));
+        publish(SENSORS_TOPIC, switchEvent(false, 2_000));
+        awaitTrue(() -> acks.size() == 3);
+
+        ArgumentCaptor<SensorsSnapshotAvro> snapshots = ArgumentCaptor.forClass(SensorsSnapshotAvro.class);
+        verify(snapshotHandler, times(2)).handleSnapshot(snapshots.capture());
+        assertThat(snapshots.getAllValues()).allSatisfy(snapshot -> assertThat(snapshot.getHubId()).isEqualTo("hub-1"));
+        assertThat(acks).extracting(RecordMetadata::partition).containsOnly(3);
+        assertThat(acks).extracting(RecordMetadata::offset).containsExactly(0L, 1L, 2L);
+    }
+
+    @Test
+    void appliesHubEventsWithShardAsPartition() throws InterruptedException {
+        DeviceActionAvro action = new DeviceActionAvro("lamp", ActionTypeAvro.ACTIVATE, null);
+        shard.start();
+        publish(HUBS_TOPIC, new HubEventAvro("hub-1", Instant.now(),
+                new DeviceAddedEventAvro("lamp", DeviceTypeAvro.LIGHT_SENSOR)));
+        publish(HUBS_TOPIC, new HubEventAvro("hub-1", Instant.now(),
+                new ActionResultEventAvro("night", action, ActionStatusAvro.APPLIED)));
+        awaitTrue(() -> acks.size() == 2);
+
+        assertThat(hubConfigStore.get("hub-1").getSourcePartition()).isEqualTo(3);
+        assertThat(hubConfigStore.get("hub-1").getSourceOffset()).isEqualTo(0);
+        assertThat(appliedActions.suppress("hub-1", action)).isTrue();
+    }
+
+    @Test
+    void reportsFailureToCallbackAndKeepsProcessing() throws InterruptedException {
+        doThrow(new IllegalStateException("ошибка анализатора")).doNothing()
+                .when(snapshotHandler).handleSnapshot(any(SensorsSnapshotAvro.class));
+        shard.start();
+        publish(SENSORS_TOPIC, switchEvent(true, 1_000));
+        publish(SENSORS_TOPIC, switchEvent(false, 2_000));
+        awaitTrue(() -> acks.size() + failures.size() == 2);
+
+        assertThat(failures).singleElement().isInstanceOf(IllegalStateException.class);
+        assertThat(acks).extracting(RecordMetadata::offset).containsExactly(1L);
+    }
+
+    @Test
+    void drainsRingBeforeStopping() {
+        // события попадают в кольцо до запуска потока и обрабатываются, даже если остановка пришла сразу
+        for (int i = 0; i < 10; i++) {
+            publish(SENSORS_TOPIC, switchEvent(i % 2 == 0, 1_000L * i));
+        }
+        shard.start();
+        shard.stop();
+
+        assertThat(acks).hasSize(10);
+    }
+
+    private void publish(String topic, SpecificRecordBase event) {
+        boolean published = shard.publish(new ProducerRecord<>(topic, "hub-1", event), (metadata, exception) -> {
+            if (exception != null) {
+                failures.add(exception);
+            } else {
+                acks.add(metadata);
+            }
+        });
+        assertThat(published).isTrue();
+    }
+
+    private static SensorEventAvro switchEvent(boolean state, long time) {
+        return new SensorEventAvro("switch-1", "hub-1", Instant.ofEpochMilli(time), new SwitchSensorAvro(state));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("условие не выполнилось за 5 секунд").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.telemetry.history;
+
+import deserializer.SensorEventBatchDeserializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.kafka.KafkaClientMetrics;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import ru.yandex.practicum.telemetry.common.grpc.ServerExecutorConfigurer;
+import ru.yandex.practicum.telemetry.common.grpc.ServerExecutorProperties;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopicProvisioner;
+import ru.yandex.practicum.telemetry.common.kafka.topology.TopologyProperties;
+import ru.yandex.practicum.telemetry.history.ingest.HistoryIngester;
+import ru.yandex.practicum.telemetry.history.storage.SegmentStore;
+
+import java.util.List;
+import java.util.Properties;
+
+@Configuration
+public class HistoryConfig {
+
+    @Bean
+    @ConfigurationProperties("history")
+    HistoryProperties historyProperties() {
+        return new HistoryProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("kafka.topology")
+    TopologyProperties topologyProperties() {
+        return new TopologyProperties();
+    }
+
+    @Bean
+    TopicProvisioner topicProvisioner(TopologyProperties topology,
+                                      @Value("${kafka.bootstrap-servers}") String bootstrapServers,
+                                      @Value("${kafka.topic.sensor}") String sensorTopic) {
+        TopicProvisioner provisioner = new TopicProvisioner(bootstrapServers, topology);
+        provisioner.provision(List.of(sensorTopic));
+        return provisioner;
+    }
+
+    @Bean
+    SegmentStore segmentStore(HistoryProperties properties, MeterRegistry meterRegistry) {
+        return new SegmentStore(properties, meterRegistry);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    HistoryIngester historyIngester(SegmentStore store, HistoryProperties properties, MeterRegistry meterRegistry,
+                                    TopicProvisioner topicProvisioner,
+                                    @Value("${kafka.bootstrap-servers}") String bootstrapServers,
+                                    @Value("${kafka.topic.sensor}") String sensorTopic) {
+        Properties config = new Properties();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, SensorEventBatchDeserializer.class.getName());
+        // партиции назначаются вручную, смещения хранит само хранилище
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        KafkaConsumer<String, SensorEventBatchAvro> consumer = new KafkaConsumer<>(config);
+        new KafkaClientMetrics(consumer).bindTo(meterRegistry);
+        return new HistoryIngester(consumer, store, sensorTopic, properties);
+    }
+
+    @Bean
+    @ConfigurationProperties("grpc.server.executor")
+    ServerExecutorProperties serverExecutorProperties() {
+        return new ServerExecutorProperties();
+    }
+
+    @Bean(destroyMethod = "close")
+    ServerExecutorConfigurer serverExecutorConfigurer(ServerExecutorProperties properties, MeterRegistry meterRegistry) {
+        return new ServerExecutorConfigurer("history", properties, meterRegistry);
+    }
+
+    @Bean
+    GrpcServerConfigurer grpcServerConfigurer(ServerExecutorConfigurer serverExecutorConfigurer) {
+        return serverExecutorConfigurer::accept;
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.telemetry.history;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки хранилища истории показаний.
+ */
+@Getter
+@Setter
+public class HistoryProperties {
+    /**
+     * Каталог с сегментами и файлом контрольной точки.
+     */
+    private String directory = System.getProperty("java.io.tmpdir") + "/telemetry-history";
+
+    /**
+     * Длина интервала времени событий, показания которого попадают в один сегмент.
+     */
+    private Duration segmentDuration = Duration.ofMinutes(10);
+
+    /**
+     * Сколько открытый блок ждёт опоздавших показаний после конца своего интервала.
+     */
+    private Duration sealDelay = Duration.ofMinutes(1);
+
+    /**
+     * Наибольшее число показаний в открытом блоке. Полный блок записывается сегментом досрочно.
+     */
+    private int maxHeadPoints = 2_000_000;
+
+    /**
+     * Сколько хранятся сегменты. Более старые удаляются, а показания старше этого срока не сохраняются.
+     */
+    private Duration retention = Duration.ofDays(30);
+
+    private Duration pollTimeout = Duration.ofMillis(500);
+
+    /**
+     * Наибольшее число показаний в одном ответе, если клиент не задал меньше.
+     */
+    private int maxQueryPoints = 1_000_000;
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.telemetry.history;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import ru.yandex.practicum.telemetry.common.logging.LogSampler;
+import ru.yandex.practicum.telemetry.common.profiling.ContinuousRecording;
+import ru.yandex.practicum.telemetry.common.profiling.FlightRecorderProperties;
+
+@SpringBootApplication
+public class SmartHomeHistory {
+    public static void main(String[] args) {
+        SpringApplication.run(SmartHomeHistory.class, args);
+    }
+
+    @Bean
+    LogSampler logSampler(@Value("${telemetry.logging.sample-rate:100}") int sampleRate) {
+        return new LogSampler(sampleRate);
+    }
+
+    @Bean
+    @ConfigurationProperties("telemetry.jfr")
+    FlightRecorderProperties flightRecorderProperties() {
+        return new FlightRecorderProperties();
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    ContinuousRecording continuousRecording(FlightRecorderProperties properties) {
+        return new ContinuousRecording(properties);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.yandex.practicum.telemetry.history.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Читает биты, записанные {@link BitWriter}, из участка буфера по абсолютным позициям,
+ * поэтому позиция и границы самого буфера не меняются и его можно читать из нескольких потоков.
+ */
+final class BitReader {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private long bitPosition;
+
+    BitReader(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    boolean readBit() {
+        return readBits(1) == 1;
+    }
+
+    long readBits(int bits) {
+        long value = 0;
+        while (bits > 0) {
+            int current = buffer.get(offset + (int) (bitPosition >>> 3)) & 0xFF;
+            int available = 8 - (int) (bitPosition & 7);
+            int take = Math.min(available, bits);
+            value = (value << take) | ((current >>> (available - take)) & ((1 << take) - 1));
+            bits -= take;
+            bitPosition += take;
+        }
+        return value;
+    }
+
+    /**
+     * Читает число со знаком, записанное младшими {@code bits} битами.
+     */
+    long readSigned(int bits) {
+        long raw = readBits(bits);
+        return raw > (1L << (bits - 1)) ? raw - (1L << bits) : raw;
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.telemetry.history.codec;
+
+import java.util.Arrays;
+
+/**
+ * Пишет последовательность битов в растущий массив байтов, старшие биты байта заполняются первыми.
+ */
+final class BitWriter {
+    private byte[] bytes;
+    private long bitCount;
+
+    BitWriter(int expectedBytes) {
+        this.bytes = new byte[Math.max(expectedBytes, 16)];
+    }
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Пишет младшие {@code bits} битов значения, от старшего к младшему.
+     */
+    void writeBits(long value, int bits) {
+        while (bits > 0) {
+            int index = (int) (bitCount >>> 3);
+            if (index == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int free = 8 - (int) (bitCount & 7);
+            int take = Math.min(free, bits);
+            int chunk = (int) (value >>> (bits - take)) & ((1 << take) - 1);
+            bytes[index] |= (byte) (chunk << (free - take));
+            bits -= take;
+            bitCount += take;
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, (int) ((bitCount + 7) >>> 3));
+    }
+}
@@ -0,0 +1,94 @@
+package ru.yandex.practicum.telemetry.history.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Столбец времени событий: первое значение целиком, дальше разность соседних разностей
+ * (delta-of-delta) кодом переменной длины, как в Gorilla. Показания датчика приходят с почти
+ * постоянным периодом, поэтому большинство отметок занимает от одного до 16 битов.
+ * <pre>
+ * 0                     разность не изменилась
+ * 10   + 7 битов        [-63, 64]
+ * 110  + 9 битов        [-255, 256]
+ * 1110 + 12 битов       [-2047, 2048]
+ * 1111 + 64 бита        остальное
+ * </pre>
+ */
+public final class TimestampCodec {
+
+    private TimestampCodec() {
+    }
+
+    /**
+     * Кодирует первые {@code count} отметок времени в миллисекундах.
+     */
+    public static byte[] encode(long[] timestamps, int count) {
+        BitWriter writer = new BitWriter(count * 2);
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < count; i++) {
+            long timestamp = timestamps[i];
+            if (i == 0) {
+                writer.writeBits(timestamp, 64);
+            } else {
+                long delta = timestamp - previous;
+                long deltaOfDelta = delta - previousDelta;
+                if (deltaOfDelta == 0) {
+                    writer.writeBit(false);
+                } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                    writer.writeBits(0b10, 2);
+                    writer.writeBits(deltaOfDelta, 7);
+                } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                    writer.writeBits(0b110, 3);
+                    writer.writeBits(deltaOfDelta, 9);
+                } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                    writer.writeBits(0b1110, 4);
+                    writer.writeBits(deltaOfDelta, 12);
+                } else {
+                    writer.writeBits(0b1111, 4);
+                    writer.writeBits(deltaOfDelta, 64);
+                }
+                previousDelta = delta;
+            }
+            previous = timestamp;
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Последовательно раскодирует столбец. Число значений хранится отдельно, в индексе сегмента.
+     */
+    public static final class Decoder {
+        private final BitReader reader;
+        private long previous;
+        private long previousDelta;
+        private boolean first = true;
+
+        public Decoder(ByteBuffer buffer, int offset) {
+            this.reader = new BitReader(buffer, offset);
+        }
+
+        public long next() {
+            if (first) {
+                first = false;
+                previous = reader.readBits(64);
+                return previous;
+            }
+            long deltaOfDelta;
+            if (!reader.readBit()) {
+                deltaOfDelta = 0;
+            } else if (!reader.readBit()) {
+                deltaOfDelta = reader.readSigned(7);
+            } else if (!reader.readBit()) {
+                deltaOfDelta = reader.readSigned(9);
+            } else if (!reader.readBit()) {
+                deltaOfDelta = reader.readSigned(12);
+            } else {
+                deltaOfDelta = reader.readBits(64);
+            }
+            previousDelta += deltaOfDelta;
+            previous += previousDelta;
+            return previous;
+        }
+    }
+}
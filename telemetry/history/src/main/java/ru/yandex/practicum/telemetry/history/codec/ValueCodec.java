@@ -0,0 +1,85 @@
+package ru.yandex.practicum.telemetry.history.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Столбец целочисленного показателя: XOR с предыдущим значением, как в Gorilla, только
+ * для 32-битных чисел. Повтор значения занимает один бит, небольшое изменение - значимые
+ * биты XOR внутри окна предыдущего значения или с новым окном.
+ * <pre>
+ * 0                                       значение не изменилось
+ * 10  + значимые биты                     XOR помещается в окно предыдущего
+ * 11  + 5 битов нулей слева + 5 битов (длина - 1) + значимые биты
+ * </pre>
+ */
+public final class ValueCodec {
+
+    private ValueCodec() {
+    }
+
+    public static byte[] encode(int[] values, int count) {
+        BitWriter writer = new BitWriter(count);
+        int previous = 0;
+        int leading = -1;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            int value = values[i];
+            if (i == 0) {
+                writer.writeBits(value, 32);
+                previous = value;
+                continue;
+            }
+            int xor = value ^ previous;
+            previous = value;
+            if (xor == 0) {
+                writer.writeBit(false);
+                continue;
+            }
+            int newLeading = Integer.numberOfLeadingZeros(xor);
+            int newTrailing = Integer.numberOfTrailingZeros(xor);
+            if (leading >= 0 && newLeading >= leading && newTrailing >= trailing) {
+                writer.writeBits(0b10, 2);
+                writer.writeBits(xor >>> trailing, 32 - leading - trailing);
+            } else {
+                int length = 32 - newLeading - newTrailing;
+                writer.writeBits(0b11, 2);
+                writer.writeBits(newLeading, 5);
+                writer.writeBits(length - 1, 5);
+                writer.writeBits(xor >>> newTrailing, length);
+                leading = newLeading;
+                trailing = newTrailing;
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    public static final class Decoder {
+        private final BitReader reader;
+        private int previous;
+        private int leading;
+        private int trailing;
+        private boolean first = true;
+
+        public Decoder(ByteBuffer buffer, int offset) {
+            this.reader = new BitReader(buffer, offset);
+        }
+
+        public int next() {
+            if (first) {
+                first = false;
+                previous = (int) reader.readBits(32);
+                return previous;
+            }
+            if (!reader.readBit()) {
+                return previous;
+            }
+            if (reader.readBit()) {
+                leading = (int) reader.readBits(5);
+                trailing = 32 - leading - ((int) reader.readBits(5) + 1);
+            }
+            int xor = (int) reader.readBits(32 - leading - trailing) << trailing;
+            previous ^= xor;
+            return previous;
+        }
+    }
+}
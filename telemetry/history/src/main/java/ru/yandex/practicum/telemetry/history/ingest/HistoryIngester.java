@@ -0,0 +1,118 @@
+package ru.yandex.practicum.telemetry.history.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import ru.yandex.practicum.kafka.telemetry.event.BatchedSensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import ru.yandex.practicum.telemetry.history.HistoryProperties;
+import ru.yandex.practicum.telemetry.history.storage.SegmentStore;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Поток загрузки: читает все партиции топика датчиков и складывает показания в хранилище.
+ * <p>
+ * Группа потребителей не используется: каждый экземпляр сервиса хранит полную историю на своём диске,
+ * а позиция чтения берётся из контрольной точки хранилища, а не из зафиксированных в Kafka смещений.
+ * Без контрольной точки топик читается с начала.
+ */
+@Slf4j
+public class HistoryIngester implements Runnable, AutoCloseable {
+    private static final Duration METADATA_RETRY = Duration.ofSeconds(1);
+
+    private final Consumer<String, SensorEventBatchAvro> consumer;
+    private final SegmentStore store;
+    private final String topic;
+    private final HistoryProperties properties;
+    private volatile boolean running = true;
+    private Thread thread;
+
+    public HistoryIngester(Consumer<String, SensorEventBatchAvro> consumer, SegmentStore store, String topic,
+                           HistoryProperties properties) {
+        this.consumer = consumer;
+        this.store = store;
+        this.topic = topic;
+        this.properties = properties;
+    }
+
+    public void start() {
+        thread = new Thread(this, "history-ingester");
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            List<TopicPartition> partitions = awaitPartitions();
+            consumer.assign(partitions);
+            for (TopicPartition partition : partitions) {
+                Long offset = store.resumeOffset(partition.partition());
+                if (offset != null) {
+                    consumer.seek(partition, offset);
+                }
+            }
+            log.info("Загрузка истории из партиций {}", partitions);
+
+            while (running) {
+                ConsumerRecords<String, SensorEventBatchAvro> records = consumer.poll(properties.getPollTimeout());
+                long now = System.currentTimeMillis();
+                for (ConsumerRecord<String, SensorEventBatchAvro> record : records) {
+                    if (record.value() == null) {
+                        store.skip(record.partition(), record.offset());
+                        continue;
+                    }
+                    try {
+                        // события одной пачки сохраняются с общим смещением записи и при повторном чтении
+                        // отбрасываются вместе: пачка целиком попадает в блок до его закрытия
+                        for (BatchedSensorEventAvro entry : record.value().getEvents()) {
+                            store.append(record.partition(), record.offset(), entry.getEvent(), now);
+                        }
+                    } catch (Exception e) {
+                        log.error("Показание не сохранено: партиция {}, смещение {}",
+                                record.partition(), record.offset(), e);
+                        store.skip(record.partition(), record.offset());
+                    }
+                }
+                store.maintain(now);
+            }
+        } catch (WakeupException ignored) {
+            // остановка через close()
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Ошибка в цикле загрузки истории", e);
+        } finally {
+            store.sealAll();
+            consumer.close();
+        }
+    }
+
+    private List<TopicPartition> awaitPartitions() throws InterruptedException {
+        while (running) {
+            List<PartitionInfo> infos = consumer.partitionsFor(topic);
+            if (infos != null && !infos.isEmpty()) {
+                return infos.stream()
+                        .map(info -> new TopicPartition(info.topic(), info.partition()))
+                        .toList();
+            }
+            log.info("Топик {} ещё не создан, ждём", topic);
+            Thread.sleep(METADATA_RETRY);
+        }
+        return List.of();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        consumer.wakeup();
+        if (thread != null) {
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.telemetry.history.query;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.telemetry.history.HistoryProperties;
+import ru.yandex.practicum.telemetry.history.storage.HistoryPoint;
+import ru.yandex.practicum.telemetry.history.storage.PayloadKind;
+import ru.yandex.practicum.telemetry.history.storage.SegmentStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Те же запросы истории по HTTP: по одному показанию в строке JSON (application/x-ndjson),
+ * строки пишутся в ответ по мере чтения сегментов.
+ */
+@RestController
+@RequestMapping("/api/v1/history")
+public class HistoryHttpController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final SegmentStore store;
+    private final HistoryProperties properties;
+    private final ObjectWriter readingWriter;
+    private final Timer queryTimer;
+
+    public HistoryHttpController(SegmentStore store, HistoryProperties properties, ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
+        this.store = store;
+        this.properties = properties;
+        // ответ продолжается после каждого показания, поэтому поток не закрывается
+        this.readingWriter = objectMapper.writerFor(Reading.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.queryTimer = Timer.builder("telemetry.history.query")
+                .description("Запросы истории от начала до последнего отправленного показания")
+                .tag("api", "http")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Показания хаба за интервал [from, to), например
+     * {@code /api/v1/history/hubs/hub-1?from=2024-05-01T20:00:00Z&to=2024-05-02T08:00:00Z}.
+     */
+    @GetMapping("/hubs/{hubId}")
+    public ResponseEntity<StreamingResponseBody> queryRange(@PathVariable String hubId,
+                                                            @RequestParam(required = false) String sensorId,
+                                                            @RequestParam Instant from,
+                                                            @RequestParam(required = false) Instant to,
+                                                            @RequestParam(defaultValue = "0") int limit) {
+        Instant end = to == null ? Instant.now() : to;
+        if (!from.isBefore(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Пустой интервал времени");
+        }
+        int maxPoints = limit > 0 ? Math.min(limit, properties.getMaxQueryPoints()) : properties.getMaxQueryPoints();
+        Iterator<HistoryPoint> points = store.query(hubId, sensorId == null || sensorId.isBlank() ? null : sensorId,
+                from.toEpochMilli(), end.toEpochMilli());
+        StreamingResponseBody body = out -> {
+            Timer.Sample sample = Timer.start();
+            write(out, points, maxPoints);
+            sample.stop(queryTimer);
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    private void write(OutputStream out, Iterator<HistoryPoint> points, int maxPoints) throws IOException {
+        int sent = 0;
+        while (sent < maxPoints && points.hasNext()) {
+            readingWriter.writeValue(out, toReading(points.next()));
+            out.write('\n');
+            sent++;
+        }
+        out.flush();
+    }
+
+    private static Reading toReading(HistoryPoint point) {
+        Map<String, Integer> values = new LinkedHashMap<>();
+        PayloadKind kind = point.kind();
+        for (int column = 0; column < kind.columnCount(); column++) {
+            values.put(kind.columns().get(column), point.values()[column]);
+        }
+        return new Reading(point.sensorId(), Instant.ofEpochMilli(point.timestamp()), kind, values);
+    }
+
+    record Reading(String sensorId, Instant timestamp, PayloadKind type, Map<String, Integer> values) {
+    }
+}
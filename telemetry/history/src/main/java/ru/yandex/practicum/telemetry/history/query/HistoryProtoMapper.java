@@ -0,0 +1,47 @@
+package ru.yandex.practicum.telemetry.history.query;
+
+import com.google.protobuf.Timestamp;
+import ru.yandex.practicum.grpc.telemetry.event.ClimateSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.LightSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.MotionSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.SwitchSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.TemperatureSensorProto;
+import ru.yandex.practicum.telemetry.history.storage.HistoryPoint;
+
+/**
+ * Собирает событие датчика в том виде, в каком его принимает коллектор, из показания истории.
+ */
+final class HistoryProtoMapper {
+
+    private HistoryProtoMapper() {
+    }
+
+    static SensorEventProto toProto(String hubId, HistoryPoint point) {
+        int[] values = point.values();
+        SensorEventProto.Builder builder = SensorEventProto.newBuilder()
+                .setId(point.sensorId())
+                .setHubId(hubId)
+                .setTimestamp(Timestamp.newBuilder()
+                        .setSeconds(Math.floorDiv(point.timestamp(), 1000))
+                        .setNanos((int) Math.floorMod(point.timestamp(), 1000) * 1_000_000));
+        return switch (point.kind()) {
+            case CLIMATE -> builder.setClimateSensorEvent(ClimateSensorProto.newBuilder()
+                    .setTemperatureC(values[0])
+                    .setHumidity(values[1])
+                    .setCo2Level(values[2])).build();
+            case LIGHT -> builder.setLightSensorEvent(LightSensorProto.newBuilder()
+                    .setLinkQuality(values[0])
+                    .setLuminosity(values[1])).build();
+            case MOTION -> builder.setMotionSensorEvent(MotionSensorProto.newBuilder()
+                    .setLinkQuality(values[0])
+                    .setMotion(values[1] != 0)
+                    .setVoltage(values[2])).build();
+            case SWITCH -> builder.setSwitchSensorEvent(SwitchSensorProto.newBuilder()
+                    .setState(values[0] != 0)).build();
+            case TEMPERATURE -> builder.setTemperatureSensorEvent(TemperatureSensorProto.newBuilder()
+                    .setTemperatureC(values[0])
+                    .setTemperatureF(values[1])).build();
+        };
+    }
+}
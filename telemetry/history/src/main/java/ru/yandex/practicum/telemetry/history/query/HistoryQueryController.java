@@ -0,0 +1,105 @@
+package ru.yandex.practicum.telemetry.history.query;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.service.GrpcService;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.grpc.telemetry.history.HistoryQueryGrpc;
+import ru.yandex.practicum.grpc.telemetry.history.HistoryRangeRequest;
+import ru.yandex.practicum.telemetry.history.HistoryProperties;
+import ru.yandex.practicum.telemetry.history.storage.HistoryPoint;
+import ru.yandex.practicum.telemetry.history.storage.SegmentStore;
+
+import java.util.Iterator;
+
+/**
+ * Запросы истории по gRPC. Ответ отправляется по мере готовности клиента читать:
+ * показания раскодируются из сегментов, только когда gRPC готов принять следующее сообщение,
+ * поэтому длинный интервал не собирается целиком ни в памяти сервиса, ни в буферах HTTP/2.
+ */
+@Slf4j
+@GrpcService
+public class HistoryQueryController extends HistoryQueryGrpc.HistoryQueryImplBase {
+    private final SegmentStore store;
+    private final HistoryProperties properties;
+    private final Timer queryTimer;
+
+    public HistoryQueryController(SegmentStore store, HistoryProperties properties, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.properties = properties;
+        this.queryTimer = Timer.builder("telemetry.history.query")
+                .description("Запросы истории от начала до последнего отправленного показания")
+                .tag("api", "grpc")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void queryRange(HistoryRangeRequest request, StreamObserver<SensorEventProto> responseObserver) {
+        ServerCallStreamObserver<SensorEventProto> call = (ServerCallStreamObserver<SensorEventProto>) responseObserver;
+        long from = request.getFrom().getSeconds() * 1000 + request.getFrom().getNanos() / 1_000_000;
+        long to = request.hasTo()
+                ? request.getTo().getSeconds() * 1000 + request.getTo().getNanos() / 1_000_000
+                : System.currentTimeMillis();
+        if (request.getHubId().isBlank() || !request.hasFrom() || from >= to) {
+            call.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Нужны идентификатор хаба и непустой интервал времени")
+                    .asRuntimeException());
+            return;
+        }
+        String sensorId = request.getSensorId().isBlank() ? null : request.getSensorId();
+        int limit = request.getLimit() > 0
+                ? Math.min(request.getLimit(), properties.getMaxQueryPoints())
+                : properties.getMaxQueryPoints();
+        Iterator<HistoryPoint> points = store.query(request.getHubId(), sensorId, from, to);
+        call.setOnReadyHandler(new Sender(call, request.getHubId(), points, limit, Timer.start()));
+    }
+
+    /**
+     * Отправляет показания, пока поток готов принимать, и продолжает по следующему сигналу готовности.
+     */
+    private final class Sender implements Runnable {
+        private final ServerCallStreamObserver<SensorEventProto> call;
+        private final String hubId;
+        private final Iterator<HistoryPoint> points;
+        private final int limit;
+        private final Timer.Sample sample;
+        private int sent;
+        private boolean done;
+
+        private Sender(ServerCallStreamObserver<SensorEventProto> call, String hubId,
+                       Iterator<HistoryPoint> points, int limit, Timer.Sample sample) {
+            this.call = call;
+            this.hubId = hubId;
+            this.points = points;
+            this.limit = limit;
+            this.sample = sample;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (done) {
+                return;
+            }
+            try {
+                while (call.isReady() && !call.isCancelled()) {
+                    if (sent >= limit || !points.hasNext()) {
+                        done = true;
+                        sample.stop(queryTimer);
+                        call.onCompleted();
+                        return;
+                    }
+                    call.onNext(HistoryProtoMapper.toProto(hubId, points.next()));
+                    sent++;
+                }
+            } catch (RuntimeException e) {
+                done = true;
+                log.error("Ошибка при чтении истории хаба {}", hubId, e);
+                call.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.telemetry.history.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Открытый блок показаний одного временного интервала в памяти. Когда интервал закончился
+ * и истекла задержка на опоздавшие события, блок записывается на диск сегментом.
+ * <p>
+ * Кроме показаний блок помнит, какие смещения партиций в него попали: наименьшее нужно, чтобы после
+ * перезапуска перечитать показания, не успевшие попасть на диск, наибольшее - чтобы при перечитывании
+ * не записать уже сохранённые показания второй раз.
+ */
+final class HeadBlock {
+    private final long bucketStart;
+    private final long bucketEnd;
+    private final long createdAt;
+    private final Map<String, Map<SeriesId, SeriesBuffer>> hubs = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> minOffsets = new HashMap<>();
+    private final Map<Integer, Long> maxOffsets = new HashMap<>();
+    private int points;
+
+    HeadBlock(long bucketStart, long bucketEnd, long createdAt) {
+        this.bucketStart = bucketStart;
+        this.bucketEnd = bucketEnd;
+        this.createdAt = createdAt;
+    }
+
+    void append(int partition, long offset, String hubId, String sensorId, PayloadKind kind,
+                long timestamp, int[] values) {
+        hubs.computeIfAbsent(hubId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(new SeriesId(sensorId, kind), id -> new SeriesBuffer(sensorId, kind))
+                .append(timestamp, values);
+        minOffsets.putIfAbsent(partition, offset);
+        maxOffsets.put(partition, offset);
+        points++;
+    }
+
+    long bucketStart() {
+        return bucketStart;
+    }
+
+    long bucketEnd() {
+        return bucketEnd;
+    }
+
+    long createdAt() {
+        return createdAt;
+    }
+
+    int points() {
+        return points;
+    }
+
+    Map<String, Map<SeriesId, SeriesBuffer>> hubs() {
+        return hubs;
+    }
+
+    Map<Integer, Long> minOffsets() {
+        return minOffsets;
+    }
+
+    Map<Integer, Long> maxOffsets() {
+        return maxOffsets;
+    }
+
+    record SeriesId(String sensorId, PayloadKind kind) {
+    }
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.telemetry.history.storage;
+
+/**
+ * Одно показание датчика из истории. Значения идут в порядке {@link PayloadKind#columns()}.
+ */
+public record HistoryPoint(String sensorId, long timestamp, PayloadKind kind, int[] values) {
+}
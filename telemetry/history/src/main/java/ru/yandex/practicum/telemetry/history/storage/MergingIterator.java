@@ -0,0 +1,46 @@
+package ru.yandex.practicum.telemetry.history.storage;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Сливает ряды в один поток по возрастанию времени. Интервалы сегментов не пересекаются,
+ * поэтому сливаются только ряды одного интервала, а интервалы идут друг за другом.
+ * Курсоры следующего интервала начинают раскодироваться, только когда до него дошло чтение.
+ */
+final class MergingIterator implements Iterator<HistoryPoint> {
+    private final Iterator<List<PointCursor>> buckets;
+    private final PriorityQueue<PointCursor> queue = new PriorityQueue<>(Comparator.comparingLong(PointCursor::timestamp));
+
+    MergingIterator(List<List<PointCursor>> buckets) {
+        this.buckets = buckets.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (queue.isEmpty() && buckets.hasNext()) {
+            for (PointCursor cursor : buckets.next()) {
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        }
+        return !queue.isEmpty();
+    }
+
+    @Override
+    public HistoryPoint next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        PointCursor cursor = queue.poll();
+        HistoryPoint point = cursor.point();
+        if (cursor.advance()) {
+            queue.add(cursor);
+        }
+        return point;
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.telemetry.history.storage;
+
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+import java.util.List;
+
+/**
+ * Тип показаний датчика и его столбцы. Логические поля хранятся как 0 и 1.
+ * Порядковый номер пишется в индекс сегмента, поэтому новые типы добавляются только в конец.
+ */
+public enum PayloadKind {
+    CLIMATE(List.of("temperatureC", "humidity", "co2Level")),
+    LIGHT(List.of("linkQuality", "luminosity")),
+    MOTION(List.of("linkQuality", "motion", "voltage")),
+    SWITCH(List.of("state")),
+    TEMPERATURE(List.of("temperatureC", "temperatureF"));
+
+    private final List<String> columns;
+
+    PayloadKind(List<String> columns) {
+        this.columns = columns;
+    }
+
+    public List<String> columns() {
+        return columns;
+    }
+
+    public int columnCount() {
+        return columns.size();
+    }
+
+    public static PayloadKind of(Object payload) {
+        return switch (payload) {
+            case ClimateSensorAvro ignored -> CLIMATE;
+            case LightSensorAvro ignored -> LIGHT;
+            case MotionSensorAvro ignored -> MOTION;
+            case SwitchSensorAvro ignored -> SWITCH;
+            case TemperatureSensorAvro ignored -> TEMPERATURE;
+            default -> throw new IllegalArgumentException("Неизвестный тип показаний: " + payload.getClass());
+        };
+    }
+
+    /**
+     * Раскладывает показания по столбцам в порядке {@link #columns()}.
+     */
+    public static int[] values(Object payload) {
+        return switch (payload) {
+            case ClimateSensorAvro climate ->
+                    new int[]{climate.getTemperatureC(), climate.getHumidity(), climate.getCo2Level()};
+            case LightSensorAvro light -> new int[]{light.getLinkQuality(), light.getLuminosity()};
+            case MotionSensorAvro motion ->
+                    new int[]{motion.getLinkQuality(), motion.getMotion() ? 1 : 0, motion.getVoltage()};
+            case SwitchSensorAvro switchSensor -> new int[]{switchSensor.getState() ? 1 : 0};
+            case TemperatureSensorAvro temperature ->
+                    new int[]{temperature.getTemperatureC(), temperature.getTemperatureF()};
+            default -> throw new IllegalArgumentException("Неизвестный тип показаний: " + payload.getClass());
+        };
+    }
+}
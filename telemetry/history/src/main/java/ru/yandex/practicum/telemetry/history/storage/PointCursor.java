@@ -0,0 +1,42 @@
+package ru.yandex.practicum.telemetry.history.storage;
+
+/**
+ * Показания одного ряда по возрастанию времени. Перед первым чтением нужно вызвать {@link #advance()}.
+ */
+abstract class PointCursor {
+
+    /**
+     * Переходит к следующему показанию.
+     *
+     * @return {@code false}, если показаний больше нет
+     */
+    abstract boolean advance();
+
+    abstract long timestamp();
+
+    abstract HistoryPoint point();
+
+    /**
+     * Курсор по показаниям, уже скопированным из открытого блока.
+     */
+    static PointCursor of(HistoryPoint[] points) {
+        return new PointCursor() {
+            private int position = -1;
+
+            @Override
+            boolean advance() {
+                return ++position < points.length;
+            }
+
+            @Override
+            long timestamp() {
+                return points[position].timestamp();
+            }
+
+            @Override
+            HistoryPoint point() {
+                return points[position];
+            }
+        };
+    }
+}
@@ -0,0 +1,304 @@
+package ru.yandex.practicum.telemetry.history.storage;
+
+import ru.yandex.practicum.telemetry.history.codec.TimestampCodec;
+import ru.yandex.practicum.telemetry.history.codec.ValueCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Неизменяемый сегмент истории на диске: показания одного временного интервала, записанные по столбцам.
+ * Файл целиком отображается в память только для чтения, в куче остаётся лишь индекс рядов.
+ * <pre>
+ * данные:  для каждого ряда столбец времени ({@link TimestampCodec}) и столбцы значений ({@link ValueCodec})
+ * индекс:  число рядов; для каждого ряда хаб, датчик, тип показаний, число показаний,
+ *          наименьшее и наибольшее время, смещения столбцов
+ *          число партиций; для каждой номер и наибольшее смещение в Kafka
+ * хвост:   начало и конец интервала, смещение и длина индекса, CRC32C индекса, метка формата
+ * </pre>
+ * Файл пишется под временным именем и переименовывается после сброса на диск,
+ * поэтому под постоянным именем недописанных сегментов не бывает.
+ */
+final class Segment {
+    static final String SUFFIX = ".seg";
+    private static final int MAGIC = 0x54534731; // TSG1
+    private static final int TRAILER = Long.BYTES * 2 + Integer.BYTES * 4;
+
+    private final Path path;
+    private final long bucketStart;
+    private final long bucketEnd;
+    private final long sequence;
+    private final ByteBuffer data;
+    private final Map<String, List<SeriesEntry>> index;
+    private final Map<Integer, Long> maxOffsets;
+    private final long sizeBytes;
+
+    private Segment(Path path, long bucketStart, long bucketEnd, long sequence, ByteBuffer data,
+                    Map<String, List<SeriesEntry>> index, Map<Integer, Long> maxOffsets, long sizeBytes) {
+        this.path = path;
+        this.bucketStart = bucketStart;
+        this.bucketEnd = bucketEnd;
+        this.sequence = sequence;
+        this.data = data;
+        this.index = index;
+        this.maxOffsets = maxOffsets;
+        this.sizeBytes = sizeBytes;
+    }
+
+    static Path path(Path directory, long bucketStart, long sequence) {
+        return directory.resolve(String.format("%020d-%06d%s", bucketStart, sequence, SUFFIX));
+    }
+
+    /**
+     * Записывает закрытый блок в файл сегмента и открывает его для чтения.
+     */
+    static Segment write(Path directory, HeadBlock head, long sequence) throws IOException {
+        Path target = path(directory, head.bucketStart(), sequence);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream index = new DataOutputStream(indexBytes);
+        int seriesCount = 0;
+        for (Map<HeadBlock.SeriesId, SeriesBuffer> series : head.hubs().values()) {
+            seriesCount += series.size();
+        }
+        index.writeInt(seriesCount);
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            for (Map.Entry<String, Map<HeadBlock.SeriesId, SeriesBuffer>> hub : head.hubs().entrySet()) {
+                for (SeriesBuffer series : hub.getValue().values()) {
+                    SeriesBuffer.Sealed sealed = series.seal();
+                    writeString(index, hub.getKey());
+                    writeString(index, series.sensorId());
+                    index.writeByte(series.kind().ordinal());
+                    index.writeInt(sealed.size());
+                    index.writeLong(sealed.timestamps()[0]);
+                    index.writeLong(sealed.timestamps()[sealed.size() - 1]);
+                    index.writeInt(out.size());
+                    out.write(TimestampCodec.encode(sealed.timestamps(), sealed.size()));
+                    for (int[] column : sealed.columns()) {
+                        index.writeInt(out.size());
+                        out.write(ValueCodec.encode(column, sealed.size()));
+                    }
+                }
+            }
+            index.writeInt(head.maxOffsets().size());
+            for (Map.Entry<Integer, Long> offset : head.maxOffsets().entrySet()) {
+                index.writeInt(offset.getKey());
+                index.writeLong(offset.getValue());
+            }
+
+            int indexOffset = out.size();
+            byte[] indexArray = indexBytes.toByteArray();
+            CRC32C crc = new CRC32C();
+            crc.update(indexArray);
+            out.write(indexArray);
+            out.writeLong(head.bucketStart());
+            out.writeLong(head.bucketEnd());
+            out.writeInt(indexOffset);
+            out.writeInt(indexArray.length);
+            out.writeInt((int) crc.getValue());
+            out.writeInt(MAGIC);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        return open(target);
+    }
+
+    /**
+     * Отображает файл сегмента в память и читает его индекс.
+     *
+     * @throws IOException если файл повреждён или имеет неизвестный формат
+     */
+    static Segment open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        long size;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (size < TRAILER || size > Integer.MAX_VALUE) {
+                throw new IOException("Неверный размер сегмента: " + size);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        int trailer = (int) size - TRAILER;
+        if (buffer.getInt(trailer + TRAILER - Integer.BYTES) != MAGIC) {
+            throw new IOException("Неизвестный формат сегмента");
+        }
+        long bucketStart = buffer.getLong(trailer);
+        long bucketEnd = buffer.getLong(trailer + Long.BYTES);
+        int indexOffset = buffer.getInt(trailer + Long.BYTES * 2);
+        int indexLength = buffer.getInt(trailer + Long.BYTES * 2 + Integer.BYTES);
+        int indexCrc = buffer.getInt(trailer + Long.BYTES * 2 + Integer.BYTES * 2);
+        if (indexOffset < 0 || indexLength < 0 || indexOffset + indexLength != trailer) {
+            throw new IOException("Неверное положение индекса сегмента");
+        }
+        ByteBuffer indexBuffer = buffer.slice(indexOffset, indexLength);
+        CRC32C crc = new CRC32C();
+        crc.update(indexBuffer.duplicate());
+        if ((int) crc.getValue() != indexCrc) {
+            throw new IOException("Контрольная сумма индекса сегмента не совпадает");
+        }
+
+        Map<String, List<SeriesEntry>> index = new HashMap<>();
+        int seriesCount = indexBuffer.getInt();
+        PayloadKind[] kinds = PayloadKind.values();
+        for (int i = 0; i < seriesCount; i++) {
+            String hubId = readString(indexBuffer);
+            String sensorId = readString(indexBuffer);
+            PayloadKind kind = kinds[indexBuffer.get()];
+            int count = indexBuffer.getInt();
+            long minTimestamp = indexBuffer.getLong();
+            long maxTimestamp = indexBuffer.getLong();
+            int timestampOffset = indexBuffer.getInt();
+            int[] valueOffsets = new int[kind.columnCount()];
+            for (int column = 0; column < valueOffsets.length; column++) {
+                valueOffsets[column] = indexBuffer.getInt();
+            }
+            index.computeIfAbsent(hubId, id -> new ArrayList<>()).add(new SeriesEntry(
+                    sensorId, kind, count, minTimestamp, maxTimestamp, timestampOffset, valueOffsets));
+        }
+        Map<Integer, Long> maxOffsets = new HashMap<>();
+        int partitions = indexBuffer.getInt();
+        for (int i = 0; i < partitions; i++) {
+            maxOffsets.put(indexBuffer.getInt(), indexBuffer.getLong());
+        }
+
+        String name = path.getFileName().toString();
+        long sequence = Long.parseLong(name.substring(name.indexOf('-') + 1, name.length() - SUFFIX.length()));
+        return new Segment(path, bucketStart, bucketEnd, sequence, buffer, index, maxOffsets, size);
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long bucketStart() {
+        return bucketStart;
+    }
+
+    long bucketEnd() {
+        return bucketEnd;
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    long sizeBytes() {
+        return sizeBytes;
+    }
+
+    Map<Integer, Long> maxOffsets() {
+        return maxOffsets;
+    }
+
+    /**
+     * Ряды хаба, пересекающиеся с интервалом [from, to).
+     *
+     * @param sensorId датчик или {@code null} для всех датчиков хаба
+     */
+    List<PointCursor> cursors(String hubId, String sensorId, long from, long to) {
+        List<PointCursor> cursors = new ArrayList<>();
+        for (SeriesEntry entry : index.getOrDefault(hubId, List.of())) {
+            if ((sensorId == null || sensorId.equals(entry.sensorId()))
+                    && entry.maxTimestamp() >= from && entry.minTimestamp() < to) {
+                cursors.add(new SeriesCursor(entry, from, to));
+            }
+        }
+        return cursors;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private record SeriesEntry(String sensorId, PayloadKind kind, int count, long minTimestamp,
+                               long maxTimestamp, int timestampOffset, int[] valueOffsets) {
+    }
+
+    /**
+     * Раскодирует ряд по мере чтения. Столбцы сжаты последовательно, поэтому показания до начала
+     * интервала тоже раскодируются, но не создают объектов.
+     */
+    private final class SeriesCursor extends PointCursor {
+        private final SeriesEntry entry;
+        private final long from;
+        private final long to;
+        private final TimestampCodec.Decoder timestamps;
+        private final ValueCodec.Decoder[] columns;
+        private int read;
+        private long timestamp;
+        private int[] values;
+
+        private SeriesCursor(SeriesEntry entry, long from, long to) {
+            this.entry = entry;
+            this.from = from;
+            this.to = to;
+            this.timestamps = new TimestampCodec.Decoder(data, entry.timestampOffset());
+            this.columns = new ValueCodec.Decoder[entry.valueOffsets().length];
+            for (int column = 0; column < columns.length; column++) {
+                columns[column] = new ValueCodec.Decoder(data, entry.valueOffsets()[column]);
+            }
+        }
+
+        @Override
+        boolean advance() {
+            while (read < entry.count()) {
+                read++;
+                timestamp = timestamps.next();
+                if (timestamp >= to) {
+                    read = entry.count();
+                    return false;
+                }
+                if (timestamp < from) {
+                    for (ValueCodec.Decoder column : columns) {
+                        column.next();
+                    }
+                    continue;
+                }
+                values = new int[columns.length];
+                for (int column = 0; column < columns.length; column++) {
+                    values[column] = columns[column].next();
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        long timestamp() {
+            return timestamp;
+        }
+
+        @Override
+        HistoryPoint point() {
+            return new HistoryPoint(entry.sensorId(), timestamp, entry.kind(), values);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package ru.yandex.practicum.telemetry.history.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.telemetry.history.HistoryProperties;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище истории показаний, разбитое на интервалы времени событий длиной {@code segment-duration}.
+ * Показания открытого интервала копятся в памяти ({@link HeadBlock}); через {@code seal-delay} после
+ * конца интервала блок записывается неизменяемым сегментом ({@link Segment}). Опоздавшие показания
+ * уже записанного интервала попадают в новый блок и затем в ещё один сегмент того же интервала.
+ * <p>
+ * Хранилище само помнит, докуда прочитан топик: после записи сегмента в файл контрольной точки
+ * сохраняется смещение каждой партиции, с которого нужно перечитать показания, оставшиеся в памяти.
+ * При перечитывании показание, смещение которого не больше наибольшего смещения его партиции
+ * в сегментах того же интервала, уже сохранено и пропускается.
+ * <p>
+ * Пишет один поток загрузки, запросы выполняются из любых потоков. Замена блока сегментом
+ * происходит под блокировкой записи, чтобы запрос не увидел показания дважды или не потерял их.
+ */
+@Slf4j
+public class SegmentStore {
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path directory;
+    private final long segmentDuration;
+    private final long sealDelay;
+    private final int maxHeadPoints;
+    private final long retention;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Long, List<Segment>> segments = new TreeMap<>();
+    private final TreeMap<Long, HeadBlock> heads = new TreeMap<>();
+    // ниже - состояние потока загрузки
+    private final Map<Long, Map<Integer, Long>> sealedOffsets = new HashMap<>();
+    private final Map<Integer, Long> nextOffsets = new HashMap<>();
+    private final Map<Integer, Long> checkpoint = new HashMap<>();
+    private HeadBlock lastHead;
+
+    private final Counter stored;
+    private final Counter replayed;
+    private final Counter expired;
+    private final Timer sealTimer;
+    private volatile int segmentCount;
+    private volatile long segmentBytes;
+    private volatile long headPoints;
+
+    public SegmentStore(HistoryProperties properties, MeterRegistry meterRegistry) {
+        this.directory = Path.of(properties.getDirectory());
+        this.segmentDuration = properties.getSegmentDuration().toMillis();
+        this.sealDelay = properties.getSealDelay().toMillis();
+        this.maxHeadPoints = properties.getMaxHeadPoints();
+        this.retention = properties.getRetention().toMillis();
+        this.stored = pointsCounter(meterRegistry, "stored");
+        this.replayed = pointsCounter(meterRegistry, "replayed");
+        this.expired = pointsCounter(meterRegistry, "expired");
+        this.sealTimer = Timer.builder("telemetry.history.seal")
+                .description("Запись открытого блока на диск сегментом")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.history.segments", this, store -> store.segmentCount)
+                .description("Сегменты истории на диске")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.history.segment.bytes", this, store -> store.segmentBytes)
+                .description("Объём сегментов истории на диске")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("telemetry.history.head.points", this, store -> store.headPoints)
+                .description("Показания в памяти, ещё не записанные сегментом")
+                .register(meterRegistry);
+        try {
+            Files.createDirectories(directory);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть хранилище истории " + directory, e);
+        }
+    }
+
+    private static Counter pointsCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("telemetry.history.points")
+                .description("Показания, прочитанные хранилищем истории, по результату")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Смещение, с которого нужно читать партицию, или {@code null}, если партиция ещё не читалась.
+     */
+    public Long resumeOffset(int partition) {
+        return checkpoint.get(partition);
+    }
+
+    /**
+     * Добавляет показание, прочитанное из партиции по смещению. Вызывается только потоком загрузки.
+     */
+    public void append(int partition, long offset, SensorEventAvro event, long now) {
+        nextOffsets.put(partition, offset + 1);
+        long timestamp = event.getTimestamp().toEpochMilli();
+        long bucketStart = Math.floorDiv(timestamp, segmentDuration) * segmentDuration;
+        if (bucketStart + segmentDuration <= now - retention) {
+            expired.increment();
+            return;
+        }
+        Long sealed = sealedOffsets.getOrDefault(bucketStart, Map.of()).get(partition);
+        if (sealed != null && offset <= sealed) {
+            replayed.increment();
+            return;
+        }
+        HeadBlock head = lastHead != null && lastHead.bucketStart() == bucketStart ? lastHead : heads.get(bucketStart);
+        if (head == null) {
+            head = new HeadBlock(bucketStart, bucketStart + segmentDuration, now);
+            lock.writeLock().lock();
+            try {
+                heads.put(bucketStart, head);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        lastHead = head;
+        Object payload = event.getPayload();
+        head.append(partition, offset, event.getHubId(), event.getId(), PayloadKind.of(payload),
+                timestamp, PayloadKind.values(payload));
+        stored.increment();
+    }
+
+    /**
+     * Учитывает запись, которая не попадёт в хранилище, например пустое значение.
+     */
+    public void skip(int partition, long offset) {
+        nextOffsets.put(partition, offset + 1);
+    }
+
+    /**
+     * Записывает сегментами блоки, которые пора закрыть, и удаляет сегменты старше {@code retention}.
+     */
+    public void maintain(long now) {
+        boolean sealed = false;
+        long points = 0;
+        for (HeadBlock head : List.copyOf(heads.values())) {
+            if (now >= Math.max(head.bucketEnd(), head.createdAt()) + sealDelay || head.points() >= maxHeadPoints) {
+                sealed |= seal(head);
+            } else {
+                points += head.points();
+            }
+        }
+        headPoints = points;
+        if (sealed) {
+            writeCheckpoint();
+        }
+        expire(now);
+    }
+
+    /**
+     * Записывает все открытые блоки, например перед остановкой.
+     */
+    public void sealAll() {
+        for (HeadBlock head : List.copyOf(heads.values())) {
+            seal(head);
+        }
+        headPoints = 0;
+        writeCheckpoint();
+    }
+
+    /**
+     * Показания хаба за интервал [from, to) по возрастанию времени. Сегменты читаются лениво,
+     * по мере продвижения итератора; показания открытых блоков копируются сразу.
+     *
+     * @param sensorId датчик или {@code null} для всех датчиков хаба
+     */
+    public Iterator<HistoryPoint> query(String hubId, String sensorId, long from, long to) {
+        List<List<PointCursor>> buckets = new ArrayList<>();
+        long firstBucket = Math.floorDiv(from, segmentDuration) * segmentDuration;
+        lock.readLock().lock();
+        try {
+            TreeMap<Long, List<PointCursor>> byBucket = new TreeMap<>();
+            for (Map.Entry<Long, List<Segment>> bucket : segments.subMap(firstBucket, true, to, false).entrySet()) {
+                List<PointCursor> cursors = byBucket.computeIfAbsent(bucket.getKey(), key -> new ArrayList<>());
+                for (Segment segment : bucket.getValue()) {
+                    cursors.addAll(segment.cursors(hubId, sensorId, from, to));
+                }
+            }
+            for (HeadBlock head : heads.subMap(firstBucket, true, to, false).values()) {
+                Map<HeadBlock.SeriesId, SeriesBuffer> series = head.hubs().get(hubId);
+                if (series == null) {
+                    continue;
+                }
+                List<PointCursor> cursors = byBucket.computeIfAbsent(head.bucketStart(), key -> new ArrayList<>());
+                for (SeriesBuffer buffer : series.values()) {
+                    if (sensorId == null || sensorId.equals(buffer.sensorId())) {
+                        cursors.add(PointCursor.of(buffer.copyRange(from, to)));
+                    }
+                }
+            }
+            buckets.addAll(byBucket.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new MergingIterator(buckets);
+    }
+
+    private boolean seal(HeadBlock head) {
+        Timer.Sample sample = Timer.start();
+        List<Segment> bucket = segments.get(head.bucketStart());
+        long sequence = bucket == null ? 0 : bucket.getLast().sequence() + 1;
+        Segment segment;
+        try {
+            segment = Segment.write(directory, head, sequence);
+        } catch (IOException e) {
+            // блок остаётся в памяти, запись повторится при следующей проверке
+            log.error("Не удалось записать сегмент истории за интервал {}", head.bucketStart(), e);
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            segments.computeIfAbsent(head.bucketStart(), key -> new ArrayList<>()).add(segment);
+            heads.remove(head.bucketStart());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (lastHead == head) {
+            lastHead = null;
+        }
+        sealedOffsets.computeIfAbsent(head.bucketStart(), key -> new HashMap<>()).putAll(head.maxOffsets());
+        segmentCount++;
+        segmentBytes += segment.sizeBytes();
+        sample.stop(sealTimer);
+        log.debug("Записан сегмент {}: {} показаний, {} байт", segment.path().getFileName(),
+                head.points(), segment.sizeBytes());
+        return true;
+    }
+
+    private void expire(long now) {
+        long horizon = now - retention;
+        List<Segment> removed = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            while (!segments.isEmpty() && segments.firstKey() + segmentDuration <= horizon) {
+                removed.addAll(segments.pollFirstEntry().getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (Segment segment : removed) {
+            sealedOffsets.remove(segment.bucketStart());
+            segmentCount--;
+            segmentBytes -= segment.sizeBytes();
+            try {
+                // отображение в память остаётся действительным, пока идут начатые запросы
+                Files.deleteIfExists(segment.path());
+            } catch (IOException e) {
+                log.warn("Не удалось удалить устаревший сегмент {}", segment.path(), e);
+            }
+        }
+        if (!removed.isEmpty()) {
+            log.info("Удалено {} сегментов истории старше {}", removed.size(), Instant.ofEpochMilli(horizon));
+        }
+    }
+
+    private void open() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".tmp")) {
+                // сегмент, запись которого прервалась: его показания перечитываются из Kafka
+                Files.deleteIfExists(file);
+            } else if (name.endsWith(Segment.SUFFIX)) {
+                try {
+                    Segment segment = Segment.open(file);
+                    segments.computeIfAbsent(segment.bucketStart(), key -> new ArrayList<>()).add(segment);
+                    Map<Integer, Long> offsets =
+                            sealedOffsets.computeIfAbsent(segment.bucketStart(), key -> new HashMap<>());
+                    segment.maxOffsets().forEach((partition, offset) -> offsets.merge(partition, offset, Math::max));
+                    segmentCount++;
+                    segmentBytes += segment.sizeBytes();
+                } catch (IOException e) {
+                    log.error("Сегмент {} повреждён и пропущен: {}", file, e.getMessage());
+                }
+            }
+        }
+        readCheckpoint();
+        log.info("Хранилище истории {}: {} сегментов, {} байт", directory, segmentCount, segmentBytes);
+    }
+
+    private void readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        int partitions = buffer.getInt();
+        for (int i = 0; i < partitions; i++) {
+            checkpoint.put(buffer.getInt(), buffer.getLong());
+        }
+    }
+
+    /**
+     * Сохраняет для каждой партиции наименьшее смещение среди показаний, оставшихся в памяти,
+     * а если таких нет - смещение сразу за последней прочитанной записью.
+     */
+    private void writeCheckpoint() {
+        Map<Integer, Long> resume = new HashMap<>(checkpoint);
+        resume.putAll(nextOffsets);
+        for (HeadBlock head : heads.values()) {
+            head.minOffsets().forEach((partition, offset) -> resume.merge(partition, offset, Math::min));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + resume.size() * (Integer.BYTES + Long.BYTES));
+        buffer.putInt(resume.size());
+        resume.forEach((partition, offset) -> buffer.putInt(partition).putLong(offset));
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try {
+            Files.write(temporary, buffer.array());
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpoint.putAll(resume);
+        } catch (IOException e) {
+            log.error("Не удалось сохранить контрольную точку хранилища истории", e);
+        }
+    }
+}
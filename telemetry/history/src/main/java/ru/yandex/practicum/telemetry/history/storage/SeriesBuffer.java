@@ -0,0 +1,116 @@
+package ru.yandex.practicum.telemetry.history.storage;
+
+import java.util.Arrays;
+
+/**
+ * Показания одного датчика в открытом блоке, по столбцу на поле.
+ * Пишет только поток загрузки, запросы копируют нужный интервал под тем же монитором.
+ */
+final class SeriesBuffer {
+    private final String sensorId;
+    private final PayloadKind kind;
+    private long[] timestamps = new long[64];
+    private final int[][] columns;
+    private int size;
+    private boolean sorted = true;
+
+    SeriesBuffer(String sensorId, PayloadKind kind) {
+        this.sensorId = sensorId;
+        this.kind = kind;
+        this.columns = new int[kind.columnCount()][64];
+    }
+
+    String sensorId() {
+        return sensorId;
+    }
+
+    PayloadKind kind() {
+        return kind;
+    }
+
+    synchronized void append(long timestamp, int[] values) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            for (int column = 0; column < columns.length; column++) {
+                columns[column] = Arrays.copyOf(columns[column], size * 2);
+            }
+        }
+        if (size > 0 && timestamp < timestamps[size - 1]) {
+            sorted = false;
+        }
+        timestamps[size] = timestamp;
+        for (int column = 0; column < columns.length; column++) {
+            columns[column][size] = values[column];
+        }
+        size++;
+    }
+
+    /**
+     * Копирует показания интервала [from, to) по возрастанию времени.
+     */
+    synchronized HistoryPoint[] copyRange(long from, long to) {
+        sortIfNeeded();
+        int start = lowerBound(from);
+        int end = lowerBound(to);
+        HistoryPoint[] points = new HistoryPoint[Math.max(0, end - start)];
+        for (int i = start; i < end; i++) {
+            int[] values = new int[columns.length];
+            for (int column = 0; column < columns.length; column++) {
+                values[column] = columns[column][i];
+            }
+            points[i - start] = new HistoryPoint(sensorId, timestamps[i], kind, values);
+        }
+        return points;
+    }
+
+    /**
+     * Упорядочивает показания по времени и отдаёт массивы столбцов для записи сегмента.
+     * Вызывается, когда блок уже не принимает показаний.
+     */
+    synchronized Sealed seal() {
+        sortIfNeeded();
+        return new Sealed(timestamps, columns, size);
+    }
+
+    private void sortIfNeeded() {
+        if (sorted) {
+            return;
+        }
+        // показания одного датчика почти всегда приходят по порядку, поэтому сортировка редка
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(timestamps[a], timestamps[b]));
+        long[] sortedTimestamps = new long[timestamps.length];
+        for (int i = 0; i < size; i++) {
+            sortedTimestamps[i] = timestamps[order[i]];
+        }
+        timestamps = sortedTimestamps;
+        for (int column = 0; column < columns.length; column++) {
+            int[] sortedColumn = new int[columns[column].length];
+            for (int i = 0; i < size; i++) {
+                sortedColumn[i] = columns[column][order[i]];
+            }
+            columns[column] = sortedColumn;
+        }
+        sorted = true;
+    }
+
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    record Sealed(long[] timestamps, int[][] columns, int size) {
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.telemetry.history.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BitWriterTest {
+
+    @Test
+    void fillsHighBitsOfByteFirst() {
+        BitWriter writer = new BitWriter(0);
+        writer.writeBit(true);
+        writer.writeBits(0b01, 2);
+        writer.writeBits(0b11111, 5);
+        writer.writeBit(true);
+
+        assertThat(writer.toByteArray()).containsExactly(0b1011_1111, 0b1000_0000);
+    }
+
+    @Test
+    void readsBackValuesOfAnyWidthAcrossByteBoundaries() {
+        Random random = new Random(42);
+        long[] values = new long[1000];
+        int[] widths = new int[values.length];
+        // начальный размер меньше записанного: массив должен вырасти
+        BitWriter writer = new BitWriter(1);
+        for (int i = 0; i < values.length; i++) {
+            widths[i] = 1 + random.nextInt(64);
+            values[i] = widths[i] == 64 ? random.nextLong() : random.nextLong() & ((1L << widths[i]) - 1);
+            writer.writeBits(values[i], widths[i]);
+        }
+
+        BitReader reader = new BitReader(ByteBuffer.wrap(writer.toByteArray()), 0);
+        for (int i = 0; i < values.length; i++) {
+            assertThat(reader.readBits(widths[i])).as("значение %d", i).isEqualTo(values[i]);
+        }
+    }
+
+    @Test
+    void writesOnlyLowBitsOfNegativeValue() {
+        BitWriter writer = new BitWriter(0);
+        writer.writeBits(-1, 3);
+        writer.writeBits(0, 5);
+
+        assertThat(writer.toByteArray()).containsExactly(0b1110_0000);
+    }
+
+    @Test
+    void readsSignedValuesAtRangeBounds() {
+        BitWriter writer = new BitWriter(0);
+        long[] values = {-63, 64, 0, 1, -1, -255, 256};
+        int[] widths = {7, 7, 7, 7, 7, 9, 9};
+        for (int i = 0; i < values.length; i++) {
+            writer.writeBits(values[i], widths[i]);
+        }
+
+        BitReader reader = new BitReader(ByteBuffer.wrap(writer.toByteArray()), 0);
+        for (int i = 0; i < values.length; i++) {
+            assertThat(reader.readSigned(widths[i])).isEqualTo(values[i]);
+        }
+    }
+
+    @Test
+    void readsFromOffsetWithoutMovingBuffer() {
+        BitWriter writer = new BitWriter(0);
+        writer.writeBits(0xABCD, 16);
+        byte[] column = writer.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocate(column.length + 3);
+        buffer.put(3, column);
+
+        BitReader reader = new BitReader(buffer, 3);
+        assertThat(reader.readBits(4)).isEqualTo(0xA);
+        assertThat(reader.readBits(12)).isEqualTo(0xBCD);
+        assertThat(buffer.position()).isZero();
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.telemetry.history.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimestampCodecTest {
+    private static final long START = 1_767_225_600_000L;
+
+    @Test
+    void storesRegularSeriesInOneBitPerPoint() {
+        long[] timestamps = new long[1001];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = START + i * 5_000L;
+        }
+
+        byte[] encoded = roundTrip(timestamps);
+        // первая отметка и первая разность пишутся целиком, дальше по биту на отметку
+        assertThat(encoded.length).isEqualTo((64 + 4 + 64 + 999 + 7) / 8);
+    }
+
+    @Test
+    void keepsEqualTimestamps() {
+        roundTrip(new long[]{START, START, START, START + 1, START + 1});
+    }
+
+    @Test
+    void keepsDeltaOfDeltaAtBoundsOfEachCode() {
+        long[] deltasOfDeltas = {64, -63, 65, -64, 256, -255, 257, -256, 2048, -2047, 2049, -2048};
+        long[] timestamps = new long[deltasOfDeltas.length + 2];
+        timestamps[0] = START;
+        timestamps[1] = START + 10_000;
+        long delta = 10_000;
+        for (int i = 0; i < deltasOfDeltas.length; i++) {
+            delta += deltasOfDeltas[i];
+            timestamps[i + 2] = timestamps[i + 1] + delta;
+        }
+
+        roundTrip(timestamps);
+    }
+
+    @Test
+    void keepsNegativeDeltas() {
+        // события одного блока упорядочены, но кодек не должен на это полагаться
+        roundTrip(new long[]{START, START - 1_000, START - 1_000, START + 5_000, START - 60_000});
+    }
+
+    @Test
+    void keepsLargeGapsAndExtremeValues() {
+        roundTrip(new long[]{0, Long.MAX_VALUE / 2, Long.MAX_VALUE, Long.MIN_VALUE, -1, START});
+        roundTrip(new long[]{START, START + 86_400_000L * 365, START});
+    }
+
+    @Test
+    void encodesOnlyFirstCountValues() {
+        long[] timestamps = {START, START + 1_000, START + 2_000, 42};
+        byte[] encoded = TimestampCodec.encode(timestamps, 3);
+
+        TimestampCodec.Decoder decoder = new TimestampCodec.Decoder(ByteBuffer.wrap(encoded), 0);
+        assertThat(new long[]{decoder.next(), decoder.next(), decoder.next()})
+                .containsExactly(START, START + 1_000, START + 2_000);
+    }
+
+    private static byte[] roundTrip(long[] timestamps) {
+        byte[] encoded = TimestampCodec.encode(timestamps, timestamps.length);
+        TimestampCodec.Decoder decoder = new TimestampCodec.Decoder(ByteBuffer.wrap(encoded), 0);
+        long[] decoded = new long[timestamps.length];
+        for (int i = 0; i < decoded.length; i++) {
+            decoded[i] = decoder.next();
+        }
+        assertThat(decoded).containsExactly(timestamps);
+        return encoded;
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.telemetry.history.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValueCodecTest {
+
+    @Test
+    void storesRepeatedValueInOneBit() {
+        int[] values = new int[1000];
+        Arrays.fill(values, 21);
+
+        byte[] encoded = roundTrip(values);
+        assertThat(encoded.length).isEqualTo((32 + 999 + 7) / 8);
+    }
+
+    @Test
+    void keepsSmallChangesInsideAndOutsideWindow() {
+        roundTrip(new int[]{20, 21, 20, 21, 22, 23, 23, 64, 65, 20});
+    }
+
+    @Test
+    void keepsNegativeAndExtremeValues() {
+        roundTrip(new int[]{-5, -6, 5, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1, Integer.MIN_VALUE, 1});
+    }
+
+    @Test
+    void keepsXorWithSingleAndAllBitsSet() {
+        // XOR в старшем бите, в младшем и во всех 32 битах: окно нулевой ширины слева или справа
+        roundTrip(new int[]{0, Integer.MIN_VALUE, Integer.MIN_VALUE | 1, 0, -1, 0, 1, 0});
+    }
+
+    @Test
+    void keepsBooleanColumn() {
+        roundTrip(new int[]{0, 1, 1, 0, 0, 0, 1, 0});
+    }
+
+    @Test
+    void keepsRandomValues() {
+        Random random = new Random(7);
+        int[] values = new int[5000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 3 == 0 ? random.nextInt() : random.nextInt(100) - 50;
+        }
+        roundTrip(values);
+    }
+
+    @Test
+    void keepsSingleValue() {
+        roundTrip(new int[]{-42});
+    }
+
+    private static byte[] roundTrip(int[] values) {
+        byte[] encoded = ValueCodec.encode(values, values.length);
+        ValueCodec.Decoder decoder = new ValueCodec.Decoder(ByteBuffer.wrap(encoded), 0);
+        int[] decoded = new int[values.length];
+        for (int i = 0; i < decoded.length; i++) {
+            decoded[i] = decoder.next();
+        }
+        assertThat(decoded).containsExactly(values);
+        return encoded;
+    }
+}
@@ -0,0 +1,157 @@
+package ru.yandex.practicum.telemetry.history.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+import ru.yandex.practicum.telemetry.history.HistoryProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentStoreTest {
+    private static final long START = 1_767_225_600_000L;
+    private static final long DURATION = Duration.ofMinutes(10).toMillis();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mergesSealedSegmentsAndOpenBlocksByTime() {
+        SegmentStore store = open();
+        store.append(0, 0, temperature("t-1", START + 1_000, 20), START);
+        store.append(0, 1, temperature("t-1", START + DURATION + 1_000, 22), START);
+        store.append(0, 2, switchEvent("s-1", START + 2_000, true), START);
+        store.append(0, 3, temperature("t-2", START + 500, 19), START);
+        // первый интервал закончился и задержка истекла, второй ещё открыт
+        store.maintain(START + DURATION + Duration.ofMinutes(1).toMillis());
+
+        assertThat(timestamps(store.query("hub-1", null, START, START + 2 * DURATION)))
+                .containsExactly(START + 500, START + 1_000, START + 2_000, START + DURATION + 1_000);
+        assertThat(timestamps(store.query("hub-1", "t-1", START, START + 2 * DURATION)))
+                .containsExactly(START + 1_000, START + DURATION + 1_000);
+        assertThat(timestamps(store.query("hub-1", null, START + 1_000, START + 2_000)))
+                .containsExactly(START + 1_000);
+        assertThat(segmentFiles()).hasSize(1);
+    }
+
+    @Test
+    void restoresSegmentsAndResumeOffsetsAfterRestart() {
+        SegmentStore store = open();
+        assertThat(store.resumeOffset(0)).isNull();
+        store.append(0, 10, temperature("t-1", START + 1_000, 20), START);
+        store.append(0, 11, temperature("t-1", START + 2_000, 21), START);
+        store.append(1, 5, temperature("t-2", START + 3_000, 22), START);
+        store.sealAll();
+
+        SegmentStore reopened = open();
+        assertThat(reopened.resumeOffset(0)).isEqualTo(12);
+        assertThat(reopened.resumeOffset(1)).isEqualTo(6);
+        List<HistoryPoint> points = list(reopened.query("hub-1", null, START, START + DURATION));
+        assertThat(points).extracting(HistoryPoint::sensorId).containsExactly("t-1", "t-1", "t-2");
+        assertThat(points.get(1).values()).containsExactly(21, 69);
+    }
+
+    @Test
+    void resumesFromOffsetsOfPointsLeftInMemory() {
+        SegmentStore store = open();
+        store.append(0, 0, temperature("t-1", START + 1_000, 20), START);
+        store.append(0, 1, temperature("t-1", START + DURATION + 1_000, 21), START);
+        store.append(0, 2, temperature("t-1", START + DURATION + 2_000, 22), START);
+        store.maintain(START + DURATION + Duration.ofMinutes(1).toMillis());
+
+        // второй интервал остался в памяти: после перезапуска топик перечитывается с его первого смещения
+        SegmentStore reopened = open();
+        assertThat(reopened.resumeOffset(0)).isEqualTo(1);
+    }
+
+    @Test
+    void skipsReplayedPointsAlreadyStoredInSegments() {
+        SegmentStore store = open();
+        store.append(0, 0, temperature("t-1", START + 1_000, 20), START);
+        store.append(0, 1, temperature("t-1", START + 2_000, 21), START);
+        store.sealAll();
+
+        SegmentStore reopened = open();
+        reopened.append(0, 1, temperature("t-1", START + 2_000, 21), START);
+        reopened.append(0, 2, temperature("t-1", START + 3_000, 22), START);
+
+        assertThat(timestamps(reopened.query("hub-1", "t-1", START, START + DURATION)))
+                .containsExactly(START + 1_000, START + 2_000, START + 3_000);
+    }
+
+    @Test
+    void skipsCorruptSegmentOnOpen() throws IOException {
+        SegmentStore store = open();
+        store.append(0, 0, temperature("t-1", START + 1_000, 20), START);
+        store.sealAll();
+        store.append(0, 1, temperature("t-1", START + DURATION + 1_000, 21), START);
+        store.sealAll();
+        Path first = segmentFiles().getFirst();
+        Files.write(first, new byte[]{1, 2, 3});
+
+        SegmentStore reopened = open();
+        assertThat(timestamps(reopened.query("hub-1", "t-1", START, START + 2 * DURATION)))
+                .containsExactly(START + DURATION + 1_000);
+    }
+
+    @Test
+    void dropsExpiredPointsAndSegments() {
+        long now = START + Duration.ofDays(31).toMillis();
+        SegmentStore store = open();
+        store.append(0, 0, temperature("t-1", START + 1_000, 20), START);
+        store.sealAll();
+        store.append(0, 1, temperature("t-1", START + 2_000, 21), now);
+
+        store.maintain(now);
+        assertThat(segmentFiles()).isEmpty();
+        assertThat(store.query("hub-1", null, START, START + DURATION).hasNext()).isFalse();
+    }
+
+    private SegmentStore open() {
+        HistoryProperties properties = new HistoryProperties();
+        properties.setDirectory(directory.toString());
+        properties.setSegmentDuration(Duration.ofMillis(DURATION));
+        properties.setSealDelay(Duration.ofMinutes(1));
+        properties.setRetention(Duration.ofDays(30));
+        return new SegmentStore(properties, new SimpleMeterRegistry());
+    }
+
+    private List<Path> segmentFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(Segment.SUFFIX)).sorted().toList();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<Long> timestamps(Iterator<HistoryPoint> points) {
+        return list(points).stream().map(HistoryPoint::timestamp).toList();
+    }
+
+    private static List<HistoryPoint> list(Iterator<HistoryPoint> points) {
+        List<HistoryPoint> list = new ArrayList<>();
+        points.forEachRemaining(list::add);
+        return list;
+    }
+
+    private static SensorEventAvro temperature(String id, long timestamp, int celsius) {
+        return new SensorEventAvro(id, "hub-1", Instant.ofEpochMilli(timestamp),
+                new TemperatureSensorAvro(celsius, celsius * 9 / 5 + 32));
+    }
+
+    private static SensorEventAvro switchEvent(String id, long timestamp, boolean state) {
+        return new SensorEventAvro(id, "hub-1", Instant.ofEpochMilli(timestamp), new SwitchSensorAvro(state));
+    }
+}
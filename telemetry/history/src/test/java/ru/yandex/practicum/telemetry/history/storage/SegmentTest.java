@@ -0,0 +1,153 @@
+package ru.yandex.practicum.telemetry.history.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SegmentTest {
+    private static final long BUCKET = 1_767_225_600_000L;
+    private static final long DURATION = 600_000L;
+    // хвост сегмента: два long и четыре int
+    private static final int TRAILER = Long.BYTES * 2 + Integer.BYTES * 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesAndReopensSeriesWithOffsets() throws IOException {
+        HeadBlock head = head();
+        Segment written = Segment.write(directory, head, 3);
+
+        Segment segment = Segment.open(written.path());
+        assertThat(segment.bucketStart()).isEqualTo(BUCKET);
+        assertThat(segment.bucketEnd()).isEqualTo(BUCKET + DURATION);
+        assertThat(segment.sequence()).isEqualTo(3);
+        assertThat(segment.sizeBytes()).isEqualTo(Files.size(segment.path()));
+        assertThat(segment.maxOffsets()).isEqualTo(Map.of(0, 104L, 1, 7L));
+        assertThat(segment.path()).isEqualTo(Segment.path(directory, BUCKET, 3));
+        assertThat(Path.of(segment.path() + ".tmp")).doesNotExist();
+
+        List<HistoryPoint> climate = read(segment.cursors("hub-1", "c-1", BUCKET, BUCKET + DURATION));
+        assertThat(climate).hasSize(100);
+        assertThat(climate.get(10).timestamp()).isEqualTo(BUCKET + 10 * 5_000);
+        assertThat(climate.get(10).kind()).isEqualTo(PayloadKind.CLIMATE);
+        assertThat(climate.get(10).values()).containsExactly(20, 40, -10);
+
+        List<HistoryPoint> switches = read(segment.cursors("hub-2", null, BUCKET, BUCKET + DURATION));
+        assertThat(switches).extracting(HistoryPoint::values).containsExactly(new int[]{1}, new int[]{0});
+    }
+
+    @Test
+    void readsOnlyPointsOfHalfOpenInterval() throws IOException {
+        Segment segment = Segment.write(directory, head(), 0);
+
+        List<HistoryPoint> points = read(segment.cursors("hub-1", "c-1", BUCKET + 5_000, BUCKET + 20_000));
+        assertThat(points).extracting(HistoryPoint::timestamp)
+                .containsExactly(BUCKET + 5_000, BUCKET + 10_000, BUCKET + 15_000);
+        // значения раскодируются вместе с пропущенными отметками времени
+        assertThat(points).extracting(point -> point.values()[2]).containsExactly(-19, -18, -17);
+
+        assertThat(segment.cursors("hub-1", "c-1", BUCKET + 1, BUCKET + 5_000)).singleElement()
+                .satisfies(cursor -> assertThat(cursor.advance()).isFalse());
+        assertThat(segment.cursors("hub-1", "c-1", BUCKET + DURATION, BUCKET + 2 * DURATION)).isEmpty();
+        assertThat(segment.cursors("hub-1", "c-1", BUCKET - DURATION, BUCKET)).isEmpty();
+    }
+
+    @Test
+    void filtersByHubAndSensor() throws IOException {
+        Segment segment = Segment.write(directory, head(), 0);
+
+        assertThat(segment.cursors("hub-1", null, BUCKET, BUCKET + DURATION)).hasSize(2);
+        assertThat(read(segment.cursors("hub-1", "t-1", BUCKET, BUCKET + DURATION)))
+                .singleElement()
+                .satisfies(point -> assertThat(point.values()).containsExactly(21, 69));
+        assertThat(segment.cursors("hub-1", "missing", BUCKET, BUCKET + DURATION)).isEmpty();
+        assertThat(segment.cursors("hub-3", null, BUCKET, BUCKET + DURATION)).isEmpty();
+    }
+
+    @Test
+    void writesSeriesSortedByTime() throws IOException {
+        HeadBlock head = new HeadBlock(BUCKET, BUCKET + DURATION, BUCKET);
+        head.append(0, 0, "hub-1", "t-1", PayloadKind.TEMPERATURE, BUCKET + 2_000, new int[]{22, 71});
+        head.append(0, 1, "hub-1", "t-1", PayloadKind.TEMPERATURE, BUCKET + 1_000, new int[]{21, 69});
+        Segment segment = Segment.write(directory, head, 0);
+
+        assertThat(read(segment.cursors("hub-1", "t-1", BUCKET, BUCKET + DURATION)))
+                .extracting(HistoryPoint::timestamp)
+                .containsExactly(BUCKET + 1_000, BUCKET + 2_000);
+    }
+
+    @Test
+    void rejectsSegmentWithCorruptIndex() throws IOException {
+        Path path = Segment.write(directory, head(), 0).path();
+        // последний байт индекса стоит прямо перед хвостом
+        flipByte(path, Files.size(path) - TRAILER - 1);
+
+        assertThatThrownBy(() -> Segment.open(path))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Контрольная сумма");
+    }
+
+    @Test
+    void rejectsTruncatedSegment() throws IOException {
+        Path path = Segment.write(directory, head(), 0).path();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 1);
+        }
+
+        assertThatThrownBy(() -> Segment.open(path)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void rejectsSegmentWithUnknownFormat() throws IOException {
+        Path path = Segment.write(directory, head(), 0).path();
+        flipByte(path, Files.size(path) - 1);
+
+        assertThatThrownBy(() -> Segment.open(path))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("формат");
+    }
+
+    private static HeadBlock head() {
+        HeadBlock head = new HeadBlock(BUCKET, BUCKET + DURATION, BUCKET);
+        for (int i = 0; i < 100; i++) {
+            head.append(0, i, "hub-1", "c-1", PayloadKind.CLIMATE, BUCKET + i * 5_000L,
+                    new int[]{20, 40, i - 20});
+        }
+        head.append(0, 100, "hub-1", "t-1", PayloadKind.TEMPERATURE, BUCKET + 1_000, new int[]{21, 69});
+        head.append(1, 6, "hub-2", "s-1", PayloadKind.SWITCH, BUCKET + 1_000, new int[]{1});
+        head.append(1, 7, "hub-2", "s-1", PayloadKind.SWITCH, BUCKET + 2_000, new int[]{0});
+        head.append(0, 104, "hub-1", "t-1", PayloadKind.TEMPERATURE, BUCKET + DURATION + 1, new int[]{0, 0});
+        return head;
+    }
+
+    private static List<HistoryPoint> read(List<PointCursor> cursors) {
+        List<HistoryPoint> points = new ArrayList<>();
+        for (PointCursor cursor : cursors) {
+            while (cursor.advance()) {
+                points.add(cursor.point());
+            }
+        }
+        return points;
+    }
+
+    private static void flipByte(Path path, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, position);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) ~value.get(0)}), position);
+        }
+    }
+}
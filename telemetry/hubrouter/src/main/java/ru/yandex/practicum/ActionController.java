@@ -4,21 +4,36 @@ import com.google.protobuf.Empty;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import ru.yandex.practicum.delivery.ActionDispatcher;
 import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
 import ru.yandex.practicum.grpc.telemetry.hubrouter.HubRouterControllerGrpc;
 
 @GrpcService
 @Slf4j
+@RequiredArgsConstructor
 public class ActionController extends HubRouterControllerGrpc.HubRouterControllerImplBase {
+    private final EndToEndLatencyTracker latencyTracker;
+    private final ActionDispatcher actionDispatcher;
 
     @Override
     public void handleDeviceAction(DeviceActionRequest request, StreamObserver<Empty> responseObserver) {
         try {
+            latencyTracker.record(request);
             log.info("Received action: sensor ID: \"{}\" set value = {}, hub ID: \"{}\", scenario: \"{}\"",
                     request.getAction().getSensorId(), request.getAction().getValue(),
                     request.getHubId(), request.getScenarioName());
+            log.debug("Trace ID: \"{}\"", request.getTraceId());
+            // ответ означает, что действие принято в очередь хаба, а не что хаб его уже применил
+            if (!actionDispatcher.submit(request)) {
+                responseObserver.onError(new StatusRuntimeException(
+                        Status.RESOURCE_EXHAUSTED
+                                .withDescription("Очередь доставки хаба " + request.getHubId() + " заполнена")
+                ));
+                return;
+            }
             responseObserver.onNext(Empty.getDefaultInstance());
             responseObserver.onCompleted();
         } catch (Exception e) {
@@ -0,0 +1,199 @@
+package ru.yandex.practicum;
+
+import com.google.protobuf.Timestamp;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Сквозная задержка конвейера: от приёма события датчика коллектором
+ * до поступления вызванного им действия в hub-router.
+ * <p>
+ * Таймеры общие для всех хабов: метка хаба у гистограмм дала бы по набору рядов на каждый хаб без
+ * ограничения сверху. Задержка по хабам считается в памяти за интервал отчёта: у каждого хаба есть
+ * грубая гистограмма в логарифмических корзинах с точностью до 25%, а в лог выводятся перцентили
+ * {@code reported-hubs} самых медленных хабов по p99. Хабов за интервал учитывается не больше
+ * {@code max-tracked-hubs}; задержки остальных попадают только в общие таймеры.
+ */
+@Slf4j
+@Component
+public class EndToEndLatencyTracker {
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final Timer ingestLatency;
+    private final Timer eventAge;
+    private final int reportedHubs;
+    private final int maxTrackedHubs;
+    private final AtomicReference<Map<String, HubHistogram>> hubs = new AtomicReference<>(new ConcurrentHashMap<>());
+    private final AtomicLong untrackedHubEvents = new AtomicLong();
+
+    public EndToEndLatencyTracker(MeterRegistry meterRegistry,
+                                  @Value("${hub-router.latency-report.reported-hubs:10}") int reportedHubs,
+                                  @Value("${hub-router.latency-report.max-tracked-hubs:10000}") int maxTrackedHubs) {
+        this.ingestLatency = timer("telemetry.pipeline.e2e.latency", meterRegistry);
+        this.eventAge = timer("telemetry.pipeline.e2e.event-age", meterRegistry);
+        this.reportedHubs = reportedHubs;
+        this.maxTrackedHubs = maxTrackedHubs;
+    }
+
+    public void record(DeviceActionRequest request) {
+        long now = System.currentTimeMillis();
+        if (request.hasIngestedAt()) {
+            long latency = now - toMillis(request.getIngestedAt());
+            ingestLatency.record(latency, TimeUnit.MILLISECONDS);
+            recordHub(request.getHubId(), latency);
+        }
+        if (request.hasEventTimestamp()) {
+            eventAge.record(now - toMillis(request.getEventTimestamp()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Периодически выводит в лог перцентили сквозной задержки и самые медленные хабы за прошедший интервал.
+     */
+    @Scheduled(fixedRateString = "${hub-router.latency-report-interval-ms:60000}")
+    public void report() {
+        List<HubLatency> slowest = takeSlowestHubs();
+        if (ingestLatency.count() == 0) {
+            return;
+        }
+        StringBuilder percentiles = new StringBuilder();
+        for (ValueAtPercentile value : ingestLatency.takeSnapshot().percentileValues()) {
+            percentiles.append(String.format(" p%.0f=%.1fms",
+                    value.percentile() * 100, value.value(TimeUnit.MILLISECONDS)));
+        }
+        log.info("Сквозная задержка: count={}{}", ingestLatency.count(), percentiles);
+        if (!slowest.isEmpty()) {
+            StringBuilder hubsLine = new StringBuilder();
+            for (HubLatency hub : slowest) {
+                hubsLine.append(String.format(" %s(count=%d p50<=%dms p99<=%dms)",
+                        hub.hubId(), hub.count(), hub.p50(), hub.p99()));
+            }
+            long untracked = untrackedHubEvents.getAndSet(0);
+            log.info("Самые медленные хабы за интервал:{}{}", hubsLine,
+                    untracked > 0 ? String.format("; без учёта по хабам: %d событий", untracked) : "");
+        }
+    }
+
+    /**
+     * Забирает задержки хабов за прошедший интервал и начинает новый.
+     *
+     * @return до {@code reported-hubs} хабов с наибольшим p99, по убыванию
+     */
+    List<HubLatency> takeSlowestHubs() {
+        Map<String, HubHistogram> interval = hubs.getAndSet(new ConcurrentHashMap<>());
+        return interval.entrySet().stream()
+                .map(entry -> entry.getValue().summarize(entry.getKey()))
+                .filter(hub -> hub.count() > 0)
+                .sorted(Comparator.comparingLong(HubLatency::p99).thenComparingLong(HubLatency::count).reversed())
+                .limit(reportedHubs)
+                .toList();
+    }
+
+    private void recordHub(String hubId, long latencyMillis) {
+        Map<String, HubHistogram> interval = hubs.get();
+        HubHistogram histogram = interval.get(hubId);
+        if (histogram == null) {
+            if (interval.size() >= maxTrackedHubs) {
+                untrackedHubEvents.incrementAndGet();
+                return;
+            }
+            histogram = interval.computeIfAbsent(hubId, ignored -> new HubHistogram());
+        }
+        histogram.record(latencyMillis);
+    }
+
+    private static Timer timer(String name, MeterRegistry meterRegistry) {
+        return Timer.builder(name)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static long toMillis(Timestamp timestamp) {
+        return timestamp.getSeconds() * 1000 + timestamp.getNanos() / 1_000_000;
+    }
+
+    /**
+     * Перцентили задержки хаба: верхние границы корзин, в которые они попали.
+     */
+    record HubLatency(String hubId, long count, long p50, long p99) {
+    }
+
+    /**
+     * Гистограмма задержек в миллисекундах: до 16 мс корзина на каждую миллисекунду, дальше по четыре
+     * корзины на каждую степень двойки, то есть с точностью до 25%. Задержки от 2^20 мс (около 17 минут)
+     * попадают в последнюю корзину, её граница - 2^20 мс.
+     */
+    static final class HubHistogram {
+        private static final int LINEAR = 16;
+        private static final int MAX_EXPONENT = 20;
+        private static final int BUCKETS = LINEAR + (MAX_EXPONENT - 4) * 4 + 1;
+
+        private final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKETS);
+
+        void record(long millis) {
+            counts.incrementAndGet(bucket(millis));
+        }
+
+        HubLatency summarize(String hubId) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+            return new HubLatency(hubId, total, percentile(snapshot, total, 0.5), percentile(snapshot, total, 0.99));
+        }
+
+        static int bucket(long millis) {
+            if (millis < LINEAR) {
+                return (int) Math.max(0, millis);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(millis);
+            if (exponent >= MAX_EXPONENT) {
+                return BUCKETS - 1;
+            }
+            int sub = (int) (millis >>> (exponent - 2)) & 3;
+            return LINEAR + (exponent - 4) * 4 + sub;
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < LINEAR) {
+                return bucket;
+            }
+            if (bucket == BUCKETS - 1) {
+                return 1L << MAX_EXPONENT;
+            }
+            int exponent = (bucket - LINEAR) / 4 + 4;
+            int sub = (bucket - LINEAR) % 4;
+            return ((4L + sub + 1) << (exponent - 2)) - 1;
+        }
+
+        private static long percentile(long[] counts, long total, double percentile) {
+            long rank = Math.max(1, (long) Math.ceil(total * percentile));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(counts.length - 1);
+        }
+    }
+}
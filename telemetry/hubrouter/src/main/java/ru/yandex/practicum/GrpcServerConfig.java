@@ -0,0 +1,29 @@
+package ru.yandex.practicum;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.telemetry.common.grpc.ServerExecutorConfigurer;
+import ru.yandex.practicum.telemetry.common.grpc.ServerExecutorProperties;
+
+@Configuration
+public class GrpcServerConfig {
+
+    @Bean
+    @ConfigurationProperties("grpc.server.executor")
+    ServerExecutorProperties serverExecutorProperties() {
+        return new ServerExecutorProperties();
+    }
+
+    @Bean(destroyMethod = "close")
+    ServerExecutorConfigurer serverExecutorConfigurer(ServerExecutorProperties properties, MeterRegistry meterRegistry) {
+        return new ServerExecutorConfigurer("hub-router", properties, meterRegistry);
+    }
+
+    @Bean
+    GrpcServerConfigurer grpcServerConfigurer(ServerExecutorConfigurer serverExecutorConfigurer) {
+        return serverExecutorConfigurer::accept;
+    }
+}
@@ -0,0 +1,232 @@
+package ru.yandex.practicum.delivery;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.grpc.telemetry.event.ActionTypeProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Очереди доставки действий в хабы. У каждого хаба своя ограниченная очередь, действия хаба доставляются
+ * по одному в порядке поступления, а разные хабы обслуживаются параллельно на виртуальных потоках:
+ * поток заводится, когда в пустую очередь хаба приходит действие, и завершается, когда очередь опустела.
+ * <p>
+ * Неудавшаяся доставка повторяется с удвоением паузы и случайным разбросом, пока не кончатся попытки;
+ * следующие действия хаба всё это время ждут, чтобы не нарушить порядок. Если в очереди ещё ждёт
+ * действие над тем же устройством, которое новое отменяет, старое убирается из очереди, а новое
+ * встаёт в конец: {@code SET_VALUE} заменяет {@code SET_VALUE}, {@code ACTIVATE} и {@code DEACTIVATE}
+ * заменяют друг друга. {@code INVERSE} не заменяет и не заменяется, так как зависит от предыдущих действий.
+ */
+@Slf4j
+public class ActionDispatcher implements AutoCloseable {
+    private final HubTransport transport;
+    private final DeliveryListener listener;
+    private final DeliveryProperties properties;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final Map<String, HubQueue> queues = new ConcurrentHashMap<>();
+    private final ExecutorService executor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("hub-delivery-", 0).factory());
+    private final AtomicInteger pendingActions = new AtomicInteger();
+    private final DistributionSummary hubQueueDepth;
+    private final Timer latency;
+    private final Counter delivered;
+    private final Counter coalesced;
+    private final Counter rejected;
+    private final Counter retried;
+    private final Counter failed;
+
+    /**
+     * @param listener получает итог доставки каждого действия или {@code null}, если итоги не нужны
+     */
+    public ActionDispatcher(HubTransport transport, DeliveryListener listener, DeliveryProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.transport = transport;
+        this.listener = listener;
+        this.properties = properties;
+        this.initialBackoff = properties.getInitialBackoff().toMillis();
+        this.maxBackoff = properties.getMaxBackoff().toMillis();
+        Gauge.builder("telemetry.hubrouter.delivery.queue.depth", pendingActions, AtomicInteger::get)
+                .description("Действия, ожидающие доставки, во всех очередях хабов")
+                .register(meterRegistry);
+        this.hubQueueDepth = DistributionSummary.builder("telemetry.hubrouter.delivery.hub.queue.depth")
+                .description("Длина очереди хаба после постановки действия")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.latency = Timer.builder("telemetry.hubrouter.delivery.latency")
+                .description("Время от приёма действия до его доставки в хаб, включая ожидание в очереди и повторы")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.delivered = actions(meterRegistry, "delivered");
+        this.coalesced = actions(meterRegistry, "coalesced");
+        this.rejected = actions(meterRegistry, "rejected");
+        this.retried = actions(meterRegistry, "retried");
+        this.failed = actions(meterRegistry, "failed");
+    }
+
+    private static Counter actions(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("telemetry.hubrouter.delivery.actions")
+                .description("Действия, прошедшие через очереди доставки в хабы")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ставит действие в очередь хаба.
+     *
+     * @return {@code false}, если очередь хаба заполнена и действие не принято
+     */
+    public boolean submit(DeviceActionRequest request) {
+        return queues.computeIfAbsent(request.getHubId(), HubQueue::new)
+                .offer(new PendingAction(request, System.nanoTime()));
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdownNow();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Доставка действий в хабы не остановилась за 5 секунд");
+        }
+        if (pendingActions.get() > 0) {
+            log.warn("При остановке не доставлено действий: {}", pendingActions.get());
+        }
+    }
+
+    private static boolean supersedes(ActionTypeProto next, ActionTypeProto previous) {
+        return switch (next) {
+            case SET_VALUE -> previous == ActionTypeProto.SET_VALUE;
+            case ACTIVATE, DEACTIVATE -> previous == ActionTypeProto.ACTIVATE || previous == ActionTypeProto.DEACTIVATE;
+            default -> false;
+        };
+    }
+
+    /**
+     * @return {@code true}, если действие доставлено или попытки кончились, и {@code false}, если поток прерван
+     */
+    private boolean deliver(PendingAction action) {
+        long backoff = initialBackoff;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transport.deliver(action.request);
+                latency.record(System.nanoTime() - action.acceptedAt, TimeUnit.NANOSECONDS);
+                delivered.increment();
+                if (listener != null) {
+                    listener.delivered(action.request);
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception e) {
+                if (attempt >= properties.getMaxAttempts()) {
+                    failed.increment();
+                    log.warn("Действие {} над устройством {} не доставлено в хаб {} за {} попыток: {}",
+                            action.request.getAction().getType(), action.sensorId(),
+                            action.request.getHubId(), attempt, e.getMessage());
+                    if (listener != null) {
+                        listener.failed(action.request);
+                    }
+                    return true;
+                }
+                retried.increment();
+                long pause = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                log.debug("Повтор доставки в хаб {} через {} мс: {}", action.request.getHubId(), pause, e.getMessage());
+                try {
+                    Thread.sleep(pause);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                backoff = Math.min(backoff * 2, maxBackoff);
+            }
+        }
+    }
+
+    private static final class PendingAction {
+        private final DeviceActionRequest request;
+        private final long acceptedAt;
+
+        private PendingAction(DeviceActionRequest request, long acceptedAt) {
+            this.request = request;
+            this.acceptedAt = acceptedAt;
+        }
+
+        private String sensorId() {
+            return request.getAction().getSensorId();
+        }
+
+        private ActionTypeProto type() {
+            return request.getAction().getType();
+        }
+    }
+
+    /**
+     * Очередь одного хаба. Ссылка на последнее ожидающее действие каждого устройства нужна для замены.
+     */
+    private final class HubQueue {
+        private final String hubId;
+        private final ArrayDeque<PendingAction> pending = new ArrayDeque<>();
+        private final Map<String, PendingAction> latest = new HashMap<>();
+        private boolean draining;
+
+        private HubQueue(String hubId) {
+            this.hubId = hubId;
+        }
+
+        private synchronized boolean offer(PendingAction action) {
+            PendingAction previous = latest.get(action.sensorId());
+            if (properties.isCoalesce() && previous != null && supersedes(action.type(), previous.type())) {
+                pending.removeFirstOccurrence(previous);
+                coalesced.increment();
+            } else if (pending.size() >= properties.getQueueCapacity()) {
+                rejected.increment();
+                log.warn("Очередь доставки хаба {} заполнена, действие над устройством {} отклонено",
+                        hubId, action.sensorId());
+                return false;
+            } else {
+                pendingActions.incrementAndGet();
+            }
+            pending.addLast(action);
+            latest.put(action.sensorId(), action);
+            hubQueueDepth.record(pending.size());
+            if (!draining) {
+                draining = true;
+                executor.execute(this::drain);
+            }
+            return true;
+        }
+
+        private synchronized PendingAction poll() {
+            PendingAction next = pending.pollFirst();
+            if (next == null) {
+                draining = false;
+                return null;
+            }
+            latest.remove(next.sensorId(), next);
+            pendingActions.decrementAndGet();
+            return next;
+        }
+
+        private void drain() {
+            PendingAction next;
+            while ((next = poll()) != null) {
+                if (!deliver(next)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.delivery;
+
+import com.google.protobuf.Empty;
+import com.google.protobuf.Timestamp;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.grpc.telemetry.collector.CollectorControllerGrpc;
+import ru.yandex.practicum.grpc.telemetry.event.ActionResultEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.ActionStatusProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
+import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
+
+import java.time.Instant;
+
+/**
+ * Отправляет результаты доставки действий в коллектор как события хаба. Через топик хабов они
+ * доходят до анализатора, и тот перестаёт повторять действия, которые хаб уже применил.
+ * Вызов асинхронный: поток доставки хаба не ждёт коллектор, а потерянный результат
+ * означает лишь, что анализатор ещё раз отправит действие.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "hub-router.delivery.report-results", havingValue = "true", matchIfMissing = true)
+public class ActionResultReporter implements DeliveryListener {
+    private final CollectorControllerGrpc.CollectorControllerStub collectorStub;
+    private final Counter reportFailures;
+
+    public ActionResultReporter(@GrpcClient("collector") CollectorControllerGrpc.CollectorControllerStub collectorStub,
+                                MeterRegistry meterRegistry) {
+        this.collectorStub = collectorStub;
+        this.reportFailures = Counter.builder("telemetry.hubrouter.delivery.report.failures")
+                .description("Результаты доставки действий, которые не удалось передать в коллектор")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void delivered(DeviceActionRequest request) {
+        report(request, ActionStatusProto.APPLIED);
+    }
+
+    @Override
+    public void failed(DeviceActionRequest request) {
+        report(request, ActionStatusProto.FAILED);
+    }
+
+    private void report(DeviceActionRequest request, ActionStatusProto status) {
+        Instant now = Instant.now();
+        HubEventProto event = HubEventProto.newBuilder()
+                .setHubId(request.getHubId())
+                .setTimestamp(Timestamp.newBuilder()
+                        .setSeconds(now.getEpochSecond())
+                        .setNanos(now.getNano()))
+                .setActionResult(ActionResultEventProto.newBuilder()
+                        .setScenarioName(request.getScenarioName())
+                        .setAction(request.getAction())
+                        .setStatus(status))
+                .build();
+        collectorStub.collectHubEvent(event, new StreamObserver<>() {
+            @Override
+            public void onNext(Empty value) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                reportFailures.increment();
+                log.warn("Не удалось передать в коллектор результат действия для хаба {}: {}",
+                        request.getHubId(), t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+    }
+}
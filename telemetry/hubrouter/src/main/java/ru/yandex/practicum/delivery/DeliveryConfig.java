@@ -0,0 +1,34 @@
+package ru.yandex.practicum.delivery;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class DeliveryConfig {
+
+    @Bean
+    @ConfigurationProperties("hub-router.delivery")
+    DeliveryProperties deliveryProperties() {
+        return new DeliveryProperties();
+    }
+
+    /**
+     * Пока канала до настоящих хабов нет, действия применяет хаб внутри процесса.
+     * Другой канал подключается объявлением своего бина {@link HubTransport}.
+     */
+    @Bean
+    @ConditionalOnMissingBean(HubTransport.class)
+    HubTransport localHubTransport(DeliveryProperties properties) {
+        return new LocalHubTransport(properties.getLocalHub());
+    }
+
+    @Bean(destroyMethod = "close")
+    ActionDispatcher actionDispatcher(HubTransport transport, ObjectProvider<DeliveryListener> listener,
+                                      DeliveryProperties properties, MeterRegistry meterRegistry) {
+        return new ActionDispatcher(transport, listener.getIfAvailable(), properties, meterRegistry);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.delivery;
+
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
+
+/**
+ * Получает итог доставки каждого действия. Вызывается из потока доставки хаба,
+ * поэтому не должен блокироваться надолго.
+ */
+public interface DeliveryListener {
+
+    void delivered(DeviceActionRequest request);
+
+    /**
+     * Действие не доставлено за все попытки и отброшено.
+     */
+    void failed(DeviceActionRequest request);
+}
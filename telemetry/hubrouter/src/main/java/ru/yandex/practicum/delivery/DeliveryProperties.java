@@ -0,0 +1,57 @@
+package ru.yandex.practicum.delivery;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Настройки доставки действий сценариев в хабы.
+ */
+@Getter
+@Setter
+public class DeliveryProperties {
+    /**
+     * Сколько действий может ждать доставки в очереди одного хаба. Когда очередь полна,
+     * новое действие отклоняется, и анализатор получает {@code RESOURCE_EXHAUSTED}.
+     */
+    private int queueCapacity = 256;
+
+    /**
+     * Заменять ещё не отправленное действие над устройством новым, если новое его отменяет,
+     * например два {@code SET_VALUE} подряд.
+     */
+    private boolean coalesce = true;
+
+    /**
+     * Сколько раз пытаться доставить действие, прежде чем отбросить его.
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * Пауза перед первым повтором; дальше она удваивается до {@code max-backoff}.
+     * Фактическая пауза случайная, от половины расчётной до расчётной.
+     */
+    private Duration initialBackoff = Duration.ofMillis(100);
+
+    private Duration maxBackoff = Duration.ofSeconds(5);
+
+    private LocalHub localHub = new LocalHub();
+
+    /**
+     * Хаб внутри процесса, который подменяет настоящие хабы при отладке и нагрузочных прогонах.
+     */
+    @Getter
+    @Setter
+    public static class LocalHub {
+        /**
+         * Время, за которое хаб применяет действие.
+         */
+        private Duration latency = Duration.ZERO;
+
+        /**
+         * Доля действий, которые хаб отклоняет, чтобы проверить повторы.
+         */
+        private double failureRate = 0;
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.delivery;
+
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
+
+/**
+ * Канал до хабов. Действия одного хаба передаются по одному и по порядку, действия разных хабов -
+ * параллельно, поэтому реализация должна допускать вызовы из нескольких потоков для разных хабов.
+ */
+public interface HubTransport {
+
+    /**
+     * Передаёт действие хабу и ждёт, пока хаб его примет.
+     *
+     * @throws Exception если хаб недоступен или отклонил действие; доставка будет повторена
+     */
+    void deliver(DeviceActionRequest request) throws Exception;
+}
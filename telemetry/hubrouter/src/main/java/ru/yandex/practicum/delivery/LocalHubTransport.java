@@ -0,0 +1,61 @@
+package ru.yandex.practicum.delivery;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Хаб внутри процесса: применяет действия к состоянию устройств в памяти.
+ * Может задерживать и отклонять действия, чтобы проверить очереди и повторы без настоящих хабов.
+ */
+@Slf4j
+public class LocalHubTransport implements HubTransport {
+    private final DeliveryProperties.LocalHub properties;
+    private final Map<String, Map<String, DeviceState>> hubs = new ConcurrentHashMap<>();
+
+    public LocalHubTransport(DeliveryProperties.LocalHub properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void deliver(DeviceActionRequest request) throws Exception {
+        if (!properties.getLatency().isZero()) {
+            Thread.sleep(properties.getLatency());
+        }
+        if (properties.getFailureRate() > 0 && ThreadLocalRandom.current().nextDouble() < properties.getFailureRate()) {
+            throw new IllegalStateException("Хаб " + request.getHubId() + " отклонил действие");
+        }
+        DeviceActionProto action = request.getAction();
+        DeviceState state = hubs.computeIfAbsent(request.getHubId(), hub -> new ConcurrentHashMap<>())
+                .compute(action.getSensorId(), (sensor, previous) -> apply(previous, action));
+        log.info("Хаб {} применил действие {} к устройству {}: {}",
+                request.getHubId(), action.getType(), action.getSensorId(), state);
+    }
+
+    /**
+     * Состояние устройства после всех применённых действий или {@code null}, если действий не было.
+     */
+    public DeviceState state(String hubId, String sensorId) {
+        Map<String, DeviceState> devices = hubs.get(hubId);
+        return devices == null ? null : devices.get(sensorId);
+    }
+
+    private static DeviceState apply(DeviceState previous, DeviceActionProto action) {
+        boolean active = previous != null && previous.active();
+        int value = previous == null ? 0 : previous.value();
+        return switch (action.getType()) {
+            case ACTIVATE -> new DeviceState(true, value);
+            case DEACTIVATE -> new DeviceState(false, value);
+            case INVERSE -> new DeviceState(!active, value);
+            case SET_VALUE -> new DeviceState(active, action.getValue());
+            case UNRECOGNIZED -> throw new IllegalArgumentException("Неизвестный тип действия");
+        };
+    }
+
+    public record DeviceState(boolean active, int value) {
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum;
+
+import com.google.protobuf.Empty;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.delivery.ActionDispatcher;
+import ru.yandex.practicum.delivery.DeliveryProperties;
+import ru.yandex.practicum.grpc.telemetry.event.ActionTypeProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActionControllerTest {
+
+    @Test
+    void answersResourceExhaustedWhenHubQueueIsFull() throws InterruptedException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DeliveryProperties properties = new DeliveryProperties();
+        properties.setQueueCapacity(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        try (ActionDispatcher dispatcher = new ActionDispatcher(request -> {
+            blocked.countDown();
+            release.await();
+        }, null, properties, meterRegistry)) {
+            ActionController controller = new ActionController(new EndToEndLatencyTracker(meterRegistry, 10, 10_000), dispatcher);
+
+            RecordingObserver first = new RecordingObserver();
+            controller.handleDeviceAction(action("d-1"), first);
+            blocked.await();
+            RecordingObserver queued = new RecordingObserver();
+            controller.handleDeviceAction(action("d-2"), queued);
+            RecordingObserver rejected = new RecordingObserver();
+            controller.handleDeviceAction(action("d-3"), rejected);
+            release.countDown();
+
+            assertThat(first.completed).isTrue();
+            assertThat(queued.completed).isTrue();
+            assertThat(rejected.completed).isFalse();
+            assertThat(Status.fromThrowable(rejected.error).getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+        }
+    }
+
+    private static DeviceActionRequest action(String sensorId) {
+        return DeviceActionRequest.newBuilder()
+                .setHubId("hub-1")
+                .setScenarioName("scenario")
+                .setAction(DeviceActionProto.newBuilder()
+                        .setSensorId(sensorId)
+                        .setType(ActionTypeProto.ACTIVATE))
+                .build();
+    }
+
+    private static final class RecordingObserver implements StreamObserver<Empty> {
+        private boolean completed;
+        private Throwable error;
+
+        @Override
+        public void onNext(Empty value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+}
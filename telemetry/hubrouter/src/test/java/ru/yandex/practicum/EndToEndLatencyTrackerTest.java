@@ -0,0 +1,67 @@
+package ru.yandex.practicum;
+
+import com.google.protobuf.Timestamp;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.EndToEndLatencyTracker.HubHistogram;
+import ru.yandex.practicum.EndToEndLatencyTracker.HubLatency;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EndToEndLatencyTrackerTest {
+
+    @Test
+    void reportsSlowestHubsOfInterval() {
+        EndToEndLatencyTracker tracker = new EndToEndLatencyTracker(new SimpleMeterRegistry(), 2, 100);
+        for (int i = 0; i < 10; i++) {
+            tracker.record(action("fast", 5));
+            tracker.record(action("medium", 100));
+            tracker.record(action("slow", 3000));
+        }
+
+        List<HubLatency> slowest = tracker.takeSlowestHubs();
+        assertThat(slowest).extracting(HubLatency::hubId).containsExactly("slow", "medium");
+        HubLatency slow = slowest.getFirst();
+        assertThat(slow.count()).isEqualTo(10);
+        // граница корзины не меньше задержки и не больше её на 25%
+        assertThat(slow.p99()).isBetween(3000L, 3750L);
+
+        assertThat(tracker.takeSlowestHubs()).as("новый интервал начинается пустым").isEmpty();
+    }
+
+    @Test
+    void limitsNumberOfTrackedHubs() {
+        EndToEndLatencyTracker tracker = new EndToEndLatencyTracker(new SimpleMeterRegistry(), 10, 2);
+        tracker.record(action("hub-1", 10));
+        tracker.record(action("hub-2", 10));
+        tracker.record(action("hub-3", 10));
+        tracker.record(action("hub-1", 10));
+
+        assertThat(tracker.takeSlowestHubs()).extracting(HubLatency::hubId)
+                .containsExactlyInAnyOrder("hub-1", "hub-2");
+    }
+
+    @Test
+    void bucketBoundsCoverEveryLatency() {
+        for (long millis : new long[]{0, 1, 15, 16, 19, 20, 1000, 65_535, (1 << 20) - 1}) {
+            long upper = HubHistogram.upperBound(HubHistogram.bucket(millis));
+            assertThat(upper).as("задержка %d", millis).isGreaterThanOrEqualTo(millis);
+            assertThat(upper).as("задержка %d", millis).isLessThanOrEqualTo(Math.max(millis, millis * 5 / 4));
+        }
+        assertThat(HubHistogram.upperBound(HubHistogram.bucket(Long.MAX_VALUE))).isEqualTo(1L << 20);
+        assertThat(HubHistogram.bucket(-5)).isZero();
+    }
+
+    private static DeviceActionRequest action(String hubId, long latencyMillis) {
+        long ingestedAt = System.currentTimeMillis() - latencyMillis;
+        return DeviceActionRequest.newBuilder()
+                .setHubId(hubId)
+                .setIngestedAt(Timestamp.newBuilder()
+                        .setSeconds(ingestedAt / 1000)
+                        .setNanos((int) (ingestedAt % 1000) * 1_000_000))
+                .build();
+    }
+}
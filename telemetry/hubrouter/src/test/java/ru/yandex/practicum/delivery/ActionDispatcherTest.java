@@ -0,0 +1,221 @@
+package ru.yandex.practicum.delivery;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.grpc.telemetry.event.ActionTypeProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActionDispatcherTest {
+    private static final String HUB = "hub-1";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RecordingListener listener = new RecordingListener();
+    private final DeliveryProperties properties = new DeliveryProperties();
+    private ActionDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    void deliversActionsOfHubInOrder() throws InterruptedException {
+        LocalHubTransport hub = new LocalHubTransport(new DeliveryProperties.LocalHub());
+        GatedTransport transport = new GatedTransport(hub, false);
+        dispatcher = new ActionDispatcher(transport, listener, properties, meterRegistry);
+        listener.expect(20);
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(dispatcher.submit(action("d-" + i, ActionTypeProto.SET_VALUE, i))).isTrue();
+        }
+
+        listener.await();
+        assertThat(transport.delivered()).extracting(request -> request.getAction().getSensorId())
+                .containsExactlyElementsOf(IntStream.range(0, 20).mapToObj(i -> "d-" + i).toList());
+        assertThat(hub.state(HUB, "d-7")).isEqualTo(new LocalHubTransport.DeviceState(false, 7));
+    }
+
+    @Test
+    void coalescesSupersededActionsButNeverInverse() throws InterruptedException {
+        LocalHubTransport hub = new LocalHubTransport(new DeliveryProperties.LocalHub());
+        GatedTransport transport = new GatedTransport(hub, true);
+        dispatcher = new ActionDispatcher(transport, listener, properties, meterRegistry);
+        listener.expect(7);
+
+        // первое действие уже доставляется, остальные ждут в очереди и могут заменяться
+        dispatcher.submit(action("lamp", ActionTypeProto.SET_VALUE, 1));
+        transport.awaitBlocked();
+        dispatcher.submit(action("lamp", ActionTypeProto.SET_VALUE, 2));
+        dispatcher.submit(action("lamp", ActionTypeProto.SET_VALUE, 3));
+        dispatcher.submit(action("switch", ActionTypeProto.ACTIVATE, 0));
+        dispatcher.submit(action("switch", ActionTypeProto.DEACTIVATE, 0));
+        dispatcher.submit(action("relay", ActionTypeProto.INVERSE, 0));
+        dispatcher.submit(action("relay", ActionTypeProto.INVERSE, 0));
+        dispatcher.submit(action("fan", ActionTypeProto.INVERSE, 0));
+        dispatcher.submit(action("fan", ActionTypeProto.ACTIVATE, 0));
+        transport.release();
+
+        listener.await();
+        assertThat(transport.delivered()).extracting(ActionDispatcherTest::describe).containsExactly(
+                "lamp SET_VALUE 1", "lamp SET_VALUE 3", "switch DEACTIVATE 0",
+                "relay INVERSE 0", "relay INVERSE 0", "fan INVERSE 0", "fan ACTIVATE 0");
+        assertThat(meterRegistry.counter("telemetry.hubrouter.delivery.actions", "result", "coalesced").count())
+                .isEqualTo(2);
+        assertThat(hub.state(HUB, "lamp")).isEqualTo(new LocalHubTransport.DeviceState(false, 3));
+        assertThat(hub.state(HUB, "switch")).isEqualTo(new LocalHubTransport.DeviceState(false, 0));
+        assertThat(hub.state(HUB, "relay")).isEqualTo(new LocalHubTransport.DeviceState(false, 0));
+        assertThat(hub.state(HUB, "fan")).isEqualTo(new LocalHubTransport.DeviceState(true, 0));
+    }
+
+    @Test
+    void retriesWithBackoffUntilAttemptsRunOut() throws InterruptedException {
+        DeliveryProperties.LocalHub failing = new DeliveryProperties.LocalHub();
+        failing.setFailureRate(1);
+        GatedTransport transport = new GatedTransport(new LocalHubTransport(failing), false);
+        properties.setMaxAttempts(4);
+        properties.setInitialBackoff(Duration.ofMillis(20));
+        properties.setMaxBackoff(Duration.ofMillis(40));
+        dispatcher = new ActionDispatcher(transport, listener, properties, meterRegistry);
+        listener.expect(1);
+
+        dispatcher.submit(action("lamp", ActionTypeProto.SET_VALUE, 1));
+
+        listener.await();
+        assertThat(listener.failed).hasSize(1);
+        assertThat(listener.delivered).isEmpty();
+        List<Long> attempts = transport.attempts();
+        assertThat(attempts).hasSize(4);
+        // пауза случайная, от половины расчётной до расчётной: 20, 40, 40 мс
+        long[] minPauses = {10, 20, 20};
+        for (int i = 0; i < minPauses.length; i++) {
+            assertThat(TimeUnit.NANOSECONDS.toMillis(attempts.get(i + 1) - attempts.get(i)))
+                    .isGreaterThanOrEqualTo(minPauses[i]);
+        }
+        assertThat(meterRegistry.counter("telemetry.hubrouter.delivery.actions", "result", "retried").count())
+                .isEqualTo(3);
+        assertThat(meterRegistry.counter("telemetry.hubrouter.delivery.actions", "result", "failed").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void rejectsActionWhenHubQueueIsFull() throws InterruptedException {
+        GatedTransport transport = new GatedTransport(new LocalHubTransport(new DeliveryProperties.LocalHub()), true);
+        properties.setQueueCapacity(2);
+        dispatcher = new ActionDispatcher(transport, listener, properties, meterRegistry);
+
+        assertThat(dispatcher.submit(action("d-1", ActionTypeProto.ACTIVATE, 0))).isTrue();
+        transport.awaitBlocked();
+        assertThat(dispatcher.submit(action("d-2", ActionTypeProto.ACTIVATE, 0))).isTrue();
+        assertThat(dispatcher.submit(action("d-3", ActionTypeProto.ACTIVATE, 0))).isTrue();
+        assertThat(dispatcher.submit(action("d-4", ActionTypeProto.ACTIVATE, 0))).isFalse();
+        // очередь другого хаба не затронута
+        assertThat(dispatcher.submit(action("hub-2", "d-1", ActionTypeProto.ACTIVATE, 0))).isTrue();
+        // замена не удлиняет очередь, поэтому принимается и в полную очередь
+        assertThat(dispatcher.submit(action("d-3", ActionTypeProto.DEACTIVATE, 0))).isTrue();
+        assertThat(meterRegistry.counter("telemetry.hubrouter.delivery.actions", "result", "rejected").count())
+                .isEqualTo(1);
+        transport.release();
+    }
+
+    static DeviceActionRequest action(String sensorId, ActionTypeProto type, int value) {
+        return action(HUB, sensorId, type, value);
+    }
+
+    static DeviceActionRequest action(String hubId, String sensorId, ActionTypeProto type, int value) {
+        return DeviceActionRequest.newBuilder()
+                .setHubId(hubId)
+                .setScenarioName("scenario")
+                .setAction(DeviceActionProto.newBuilder()
+                        .setSensorId(sensorId)
+                        .setType(type)
+                        .setValue(value))
+                .build();
+    }
+
+    private static String describe(DeviceActionRequest request) {
+        DeviceActionProto action = request.getAction();
+        return action.getSensorId() + " " + action.getType() + " " + action.getValue();
+    }
+
+    /**
+     * Передаёт действия хабу внутри процесса и запоминает их. Может задержать первую доставку,
+     * пока тест не заполнит очередь.
+     */
+    private static final class GatedTransport implements HubTransport {
+        private final HubTransport delegate;
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch released;
+        private final List<DeviceActionRequest> delivered = Collections.synchronizedList(new ArrayList<>());
+        private final List<Long> attempts = Collections.synchronizedList(new ArrayList<>());
+
+        private GatedTransport(HubTransport delegate, boolean gated) {
+            this.delegate = delegate;
+            this.released = new CountDownLatch(gated ? 1 : 0);
+        }
+
+        @Override
+        public void deliver(DeviceActionRequest request) throws Exception {
+            attempts.add(System.nanoTime());
+            blocked.countDown();
+            released.await();
+            delegate.deliver(request);
+            delivered.add(request);
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        List<DeviceActionRequest> delivered() {
+            return List.copyOf(delivered);
+        }
+
+        List<Long> attempts() {
+            return List.copyOf(attempts);
+        }
+    }
+
+    private static final class RecordingListener implements DeliveryListener {
+        private final List<DeviceActionRequest> delivered = Collections.synchronizedList(new ArrayList<>());
+        private final List<DeviceActionRequest> failed = Collections.synchronizedList(new ArrayList<>());
+        private volatile CountDownLatch done = new CountDownLatch(0);
+
+        void expect(int results) {
+            done = new CountDownLatch(results);
+        }
+
+        void await() throws InterruptedException {
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        }
+
+        @Override
+        public void delivered(DeviceActionRequest request) {
+            delivered.add(request);
+            done.countDown();
+        }
+
+        @Override
+        public void failed(DeviceActionRequest request) {
+            failed.add(request);
+            done.countDown();
+        }
+    }
+}
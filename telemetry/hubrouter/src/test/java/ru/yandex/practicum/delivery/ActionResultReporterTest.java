@@ -0,0 +1,78 @@
+package ru.yandex.practicum.delivery;
+
+import com.google.protobuf.Empty;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.yandex.practicum.grpc.telemetry.collector.CollectorControllerGrpc;
+import ru.yandex.practicum.grpc.telemetry.event.ActionStatusProto;
+import ru.yandex.practicum.grpc.telemetry.event.ActionTypeProto;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
+import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ActionResultReporterTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CollectorControllerGrpc.CollectorControllerStub collector =
+            mock(CollectorControllerGrpc.CollectorControllerStub.class);
+    private final ActionResultReporter reporter = new ActionResultReporter(collector, meterRegistry);
+
+    @Test
+    void reportsDeliveredAndFailedActionsAsHubEvents() throws InterruptedException {
+        DeliveryProperties properties = new DeliveryProperties();
+        properties.setMaxAttempts(1);
+        DeliveryProperties.LocalHub failing = new DeliveryProperties.LocalHub();
+        failing.setFailureRate(1);
+        DeviceActionRequest applied = ActionDispatcherTest.action("lamp", ActionTypeProto.SET_VALUE, 50);
+        DeviceActionRequest rejected = ActionDispatcherTest.action("hub-2", "switch", ActionTypeProto.ACTIVATE, 0);
+
+        LocalHubTransport working = new LocalHubTransport(new DeliveryProperties.LocalHub());
+        LocalHubTransport broken = new LocalHubTransport(failing);
+        // второй хаб отклоняет все действия
+        HubTransport transport = request -> (request.getHubId().equals("hub-2") ? broken : working).deliver(request);
+
+        try (ActionDispatcher dispatcher = new ActionDispatcher(transport, reporter, properties, meterRegistry)) {
+            dispatcher.submit(applied);
+            dispatcher.submit(rejected);
+
+            ArgumentCaptor<HubEventProto> events = ArgumentCaptor.forClass(HubEventProto.class);
+            verify(collector, timeout(TimeUnit.SECONDS.toMillis(5)).times(2))
+                    .collectHubEvent(events.capture(), any());
+            assertThat(events.getAllValues())
+                    .extracting(HubEventProto::getHubId, event -> event.getActionResult().getStatus())
+                    .containsExactlyInAnyOrder(
+                            tuple("hub-1", ActionStatusProto.APPLIED),
+                            tuple("hub-2", ActionStatusProto.FAILED));
+            HubEventProto appliedEvent = events.getAllValues().stream()
+                    .filter(event -> event.getHubId().equals("hub-1"))
+                    .findFirst()
+                    .orElseThrow();
+            assertThat(appliedEvent.getActionResult().getScenarioName()).isEqualTo("scenario");
+            assertThat(appliedEvent.getActionResult().getAction()).isEqualTo(applied.getAction());
+            assertThat(appliedEvent.hasTimestamp()).isTrue();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void countsResultsCollectorDidNotAccept() {
+        reporter.delivered(ActionDispatcherTest.action("lamp", ActionTypeProto.SET_VALUE, 50));
+
+        ArgumentCaptor<StreamObserver<Empty>> observer = ArgumentCaptor.forClass(StreamObserver.class);
+        verify(collector, times(1)).collectHubEvent(any(), observer.capture());
+        observer.getValue().onError(Status.UNAVAILABLE.asRuntimeException());
+
+        assertThat(meterRegistry.counter("telemetry.hubrouter.delivery.report.failures").count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,9 @@
+package deserializer;
+
+import ru.yandex.practicum.kafka.telemetry.event.HubConfigAvro;
+
+public class HubConfigDeserializer extends BaseAvroDeserializer<HubConfigAvro> {
+    public HubConfigDeserializer() {
+        super(HubConfigAvro.getClassSchema());
+    }
+}
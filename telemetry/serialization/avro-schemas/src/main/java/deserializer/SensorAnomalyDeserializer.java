@@ -0,0 +1,9 @@
+package deserializer;
+
+import ru.yandex.practicum.kafka.telemetry.event.SensorAnomalyAvro;
+
+public class SensorAnomalyDeserializer extends BaseAvroDeserializer<SensorAnomalyAvro> {
+    public SensorAnomalyDeserializer() {
+        super(SensorAnomalyAvro.getClassSchema());
+    }
+}
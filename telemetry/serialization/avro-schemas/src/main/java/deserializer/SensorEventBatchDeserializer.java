@@ -0,0 +1,106 @@
+package deserializer;
+
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import ru.yandex.practicum.kafka.telemetry.event.BatchedSensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import tracing.TraceContext;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Читает топик датчиков, в котором встречаются и одиночные события, и пачки событий хаба.
+ * Пачка отличается заголовком {@value #ENVELOPE_HEADER}={@value #BATCH_ENVELOPE}; запись без него
+ * читается как одно {@link SensorEventAvro} и возвращается пачкой из одного события
+ * с контекстом трассировки из заголовков записи. Запись с {@value #ENVELOPE_HEADER}={@value #PROTO_ENVELOPE}
+ * содержит событие в исходном виде Protobuf и читается так же, через {@link SensorEventProtoDeserializer}.
+ */
+public class SensorEventBatchDeserializer implements Deserializer<SensorEventBatchAvro> {
+    public static final String ENVELOPE_HEADER = "envelope";
+    public static final String BATCH_ENVELOPE = "sensor-batch";
+    public static final String PROTO_ENVELOPE = "sensor-proto";
+    private static final byte[] BATCH_ENVELOPE_BYTES = BATCH_ENVELOPE.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PROTO_ENVELOPE_BYTES = PROTO_ENVELOPE.getBytes(StandardCharsets.UTF_8);
+
+    private final DecoderFactory decoderFactory = DecoderFactory.get();
+    private final DatumReader<SensorEventBatchAvro> batchReader =
+            new SpecificDatumReader<>(SensorEventBatchAvro.getClassSchema());
+    private final SensorEventDeserializer eventDeserializer = new SensorEventDeserializer();
+    private final SensorEventProtoDeserializer protoDeserializer = new SensorEventProtoDeserializer();
+
+    /**
+     * Помечает запись как пачку событий.
+     */
+    public static void markBatch(Headers headers) {
+        headers.add(ENVELOPE_HEADER, BATCH_ENVELOPE_BYTES);
+    }
+
+    /**
+     * Помечает запись как событие в исходном виде Protobuf.
+     */
+    public static void markProto(Headers headers) {
+        headers.add(ENVELOPE_HEADER, PROTO_ENVELOPE_BYTES);
+    }
+
+    public static boolean isBatch(Headers headers) {
+        return hasEnvelope(headers, BATCH_ENVELOPE_BYTES);
+    }
+
+    public static boolean isProto(Headers headers) {
+        return hasEnvelope(headers, PROTO_ENVELOPE_BYTES);
+    }
+
+    private static boolean hasEnvelope(Headers headers, byte[] value) {
+        Header envelope = headers.lastHeader(ENVELOPE_HEADER);
+        return envelope != null && Arrays.equals(envelope.value(), value);
+    }
+
+    @Override
+    public SensorEventBatchAvro deserialize(String topic, byte[] data) {
+        SensorEventAvro event = eventDeserializer.deserialize(topic, data);
+        return event == null ? null : single(event, null);
+    }
+
+    @Override
+    public SensorEventBatchAvro deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (isProto(headers)) {
+            SensorEventAvro event = protoDeserializer.deserialize(topic, data);
+            return single(event, TraceContext.fromHeaders(headers).orElse(null));
+        }
+        if (!isBatch(headers)) {
+            SensorEventAvro event = eventDeserializer.deserialize(topic, data);
+            return single(event, TraceContext.fromHeaders(headers).orElse(null));
+        }
+        try {
+            BinaryDecoder decoder = decoderFactory.binaryDecoder(data, null);
+            return batchReader.read(null, decoder);
+        } catch (Exception e) {
+            throw new SerializationException("Ошибка десериализации пачки событий из топика [" + topic + "]", e);
+        }
+    }
+
+    private static SensorEventBatchAvro single(SensorEventAvro event, TraceContext trace) {
+        BatchedSensorEventAvro batched = BatchedSensorEventAvro.newBuilder()
+                .setEvent(event)
+                .setTraceId(trace == null ? null : trace.traceId())
+                .setIngestedAt(trace == null ? null : Instant.ofEpochMilli(trace.ingestedAt()))
+                .build();
+        return SensorEventBatchAvro.newBuilder()
+                .setHubId(event.getHubId())
+                .setEvents(List.of(batched))
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package deserializer;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import ru.yandex.practicum.grpc.telemetry.event.ClimateSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.LightSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.MotionSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.SwitchSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.TemperatureSensorProto;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ProtoSensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * Читает запись {@link ProtoSensorEventAvro}, в которой коллектор сохранил событие хаба без преобразования,
+ * и переводит его в {@link SensorEventAvro} так же, как это делают обработчики коллектора в формате Avro.
+ */
+public class SensorEventProtoDeserializer implements Deserializer<SensorEventAvro> {
+    private final BaseAvroDeserializer<ProtoSensorEventAvro> envelopeDeserializer =
+            new BaseAvroDeserializer<>(ProtoSensorEventAvro.getClassSchema());
+
+    @Override
+    public SensorEventAvro deserialize(String topic, byte[] data) {
+        ProtoSensorEventAvro envelope = envelopeDeserializer.deserialize(topic, data);
+        if (envelope == null) {
+            return null;
+        }
+        try {
+            ByteBuffer bytes = envelope.getEvent();
+            return toAvro(SensorEventProto.parseFrom(bytes));
+        } catch (InvalidProtocolBufferException | IllegalArgumentException e) {
+            throw new SerializationException("Ошибка разбора события Protobuf из топика [" + topic + "]", e);
+        }
+    }
+
+    public static SensorEventAvro toAvro(SensorEventProto event) {
+        return SensorEventAvro.newBuilder()
+                .setHubId(event.getHubId())
+                .setId(event.getId())
+                .setTimestamp(Instant.ofEpochSecond(
+                        event.getTimestamp().getSeconds(),
+                        event.getTimestamp().getNanos()))
+                .setPayload(payloadOf(event))
+                .build();
+    }
+
+    private static Object payloadOf(SensorEventProto event) {
+        return switch (event.getPayloadCase()) {
+            case CLIMATE_SENSOR_EVENT -> {
+                ClimateSensorProto climate = event.getClimateSensorEvent();
+                yield ClimateSensorAvro.newBuilder()
+                        .setTemperatureC(climate.getTemperatureC())
+                        .setHumidity(climate.getHumidity())
+                        .setCo2Level(climate.getCo2Level())
+                        .build();
+            }
+            case LIGHT_SENSOR_EVENT -> {
+                LightSensorProto light = event.getLightSensorEvent();
+                yield LightSensorAvro.newBuilder()
+                        .setLinkQuality(light.getLinkQuality())
+                        .setLuminosity(light.getLuminosity())
+                        .build();
+            }
+            case MOTION_SENSOR_EVENT -> {
+                MotionSensorProto motion = event.getMotionSensorEvent();
+                yield MotionSensorAvro.newBuilder()
+                        .setLinkQuality(motion.getLinkQuality())
+                        .setVoltage(motion.getVoltage())
+                        .setMotion(motion.getMotion())
+                        .build();
+            }
+            case SWITCH_SENSOR_EVENT -> {
+                SwitchSensorProto switchSensor = event.getSwitchSensorEvent();
+                yield SwitchSensorAvro.newBuilder()
+                        .setState(switchSensor.getState())
+                        .build();
+            }
+            case TEMPERATURE_SENSOR_EVENT -> {
+                TemperatureSensorProto temperature = event.getTemperatureSensorEvent();
+                yield TemperatureSensorAvro.newBuilder()
+                        .setTemperatureC(temperature.getTemperatureC())
+                        .setTemperatureF(temperature.getTemperatureF())
+                        .build();
+            }
+            default -> throw new IllegalArgumentException("Неизвестный тип события: " + event.getPayloadCase());
+        };
+    }
+}
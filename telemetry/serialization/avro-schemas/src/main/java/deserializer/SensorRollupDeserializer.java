@@ -0,0 +1,9 @@
+package deserializer;
+
+import ru.yandex.practicum.kafka.telemetry.event.SensorRollupAvro;
+
+public class SensorRollupDeserializer extends BaseAvroDeserializer<SensorRollupAvro> {
+    public SensorRollupDeserializer() {
+        super(SensorRollupAvro.getClassSchema());
+    }
+}
@@ -1,10 +1,40 @@
 package deserializer;
 
 
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.message.BinaryMessageDecoder;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
 import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import serializer.SnapshotFormat;
 
-public class SensorsSnapshotDeserializer extends BaseAvroDeserializer<SensorsSnapshotAvro> {
-    public SensorsSnapshotDeserializer() {
-        super(SensorsSnapshotAvro.getClassSchema());
+/**
+ * Читает снапшоты обоих форматов {@link SnapshotFormat}: запись с маркером - по схеме из её отпечатка,
+ * запись без маркера - по прежней схеме без истории показаний. Так читаются и снапшоты, записанные
+ * до появления истории, в том числе в хранилище и журнале изменений Kafka Streams.
+ */
+public class SensorsSnapshotDeserializer implements Deserializer<SensorsSnapshotAvro> {
+    private final DecoderFactory decoderFactory = DecoderFactory.get();
+    private final BinaryMessageDecoder<SensorsSnapshotAvro> markedDecoder = SensorsSnapshotAvro.createDecoder(null);
+    private final DatumReader<SensorsSnapshotAvro> unmarkedReader =
+            new SpecificDatumReader<>(SnapshotFormat.WITHOUT_HISTORY, SensorsSnapshotAvro.getClassSchema());
+
+    @Override
+    public SensorsSnapshotAvro deserialize(String topic, byte[] data) {
+        try {
+            if (data == null) {
+                return null;
+            }
+            if (SnapshotFormat.isMarked(data)) {
+                return markedDecoder.decode(data);
+            }
+            BinaryDecoder decoder = decoderFactory.binaryDecoder(data, null);
+            return unmarkedReader.read(null, decoder);
+        } catch (Exception e) {
+            throw new SerializationException("Ошибка десериализации данных из топика [" + topic + "]", e);
+        }
     }
 }
@@ -0,0 +1,29 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR для сериализации записи Avro перед отправкой в Kafka.
+ */
+@Name("ru.yandex.practicum.telemetry.AvroSerialize")
+@Label("Avro Serialize")
+@Category({"Telemetry", "Serialization"})
+@StackTrace(false)
+public class AvroSerializeEvent extends jdk.jfr.Event {
+    @Label("Topic")
+    public String topic;
+
+    @Label("Hub Id")
+    public String hubId;
+
+    @Label("Payload Type")
+    public String payloadType;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
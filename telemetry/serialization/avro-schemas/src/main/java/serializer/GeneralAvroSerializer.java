@@ -1,5 +1,6 @@
 package serializer;
 
+import org.apache.avro.Schema;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.EncoderFactory;
@@ -7,6 +8,8 @@ import org.apache.avro.specific.SpecificDatumWriter;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.serialization.Serializer;
+import profiling.AvroSerializeEvent;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -17,18 +20,46 @@ public class GeneralAvroSerializer implements Serializer<SpecificRecordBase> {
     private BinaryEncoder encoder;
 
     public byte[] serialize(String topic, SpecificRecordBase data) {
+        AvroSerializeEvent event = new AvroSerializeEvent();
+        event.begin();
         try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
             byte[] result = null;
             encoder = encoderFactory.binaryEncoder(out, encoder);
             if (data != null) {
-                DatumWriter<SpecificRecordBase> writer = new SpecificDatumWriter<>(data.getSchema());
+                Schema schema = data instanceof SensorsSnapshotAvro snapshot
+                        ? SnapshotFormat.begin(snapshot, out)
+                        : data.getSchema();
+                DatumWriter<SpecificRecordBase> writer = new SpecificDatumWriter<>(schema);
                 writer.write(data, encoder);
                 encoder.flush();
                 result = out.toByteArray();
             }
+            event.end();
+            if (event.shouldCommit()) {
+                event.topic = topic;
+                if (data != null) {
+                    event.payloadType = payloadType(data);
+                    event.hubId = hubId(data);
+                    event.bytes = result.length;
+                }
+                event.commit();
+            }
             return result;
         } catch (IOException ex) {
             throw new SerializationException("Ошибка сериализации данных для топика [" + topic + "]", ex);
         }
     }
-}
\ No newline at end of file
+
+    private static String payloadType(SpecificRecordBase data) {
+        Schema.Field payload = data.getSchema().getField("payload");
+        if (payload != null && data.get(payload.pos()) instanceof SpecificRecordBase value) {
+            return value.getSchema().getName();
+        }
+        return data.getSchema().getName();
+    }
+
+    private static String hubId(SpecificRecordBase data) {
+        Schema.Field hubId = data.getSchema().getField("hubId");
+        return hubId == null ? null : String.valueOf(data.get(hubId.pos()));
+    }
+}
@@ -0,0 +1,76 @@
+package serializer;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.kafka.common.errors.SerializationException;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Формат снапшотов в топике, хранилище и журнале изменений агрегатора.
+ * <p>
+ * Снапшот, в котором нет истории показаний, пишется прежней схемой без поля {@code history},
+ * байт в байт как до его появления: пока история выключена, формат не меняется, и старые читатели
+ * снапшотов работают как раньше. Снапшот с историей пишется в виде Avro single object encoding:
+ * перед телом маркер {@code C3 01} и отпечаток схемы записи, по которому читатель находит эту схему.
+ * Запись без маркера с него не начинается: для прежней схемы это отрицательная длина {@code hubId}.
+ */
+public final class SnapshotFormat {
+    /**
+     * Схема снапшота до появления истории показаний; записи без маркера читаются ею.
+     */
+    public static final Schema WITHOUT_HISTORY = load("/avro/SensorsSnapshotAvro-v1.avsc");
+
+    private static final byte[] MARKER = {(byte) 0xC3, 0x01};
+    private static final byte[] HEADER = header(SensorsSnapshotAvro.getClassSchema());
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * Пишет маркер формата, если он нужен снапшоту.
+     *
+     * @return схема, которой нужно записать тело снапшота
+     */
+    public static Schema begin(SensorsSnapshotAvro snapshot, OutputStream out) throws IOException {
+        for (SensorStateAvro state : snapshot.getSensorsState().values()) {
+            if (state.getHistory() != null) {
+                out.write(HEADER);
+                return snapshot.getSchema();
+            }
+        }
+        return WITHOUT_HISTORY;
+    }
+
+    /**
+     * @return {@code true}, если запись начинается с маркера и отпечатка схемы
+     */
+    public static boolean isMarked(byte[] data) {
+        return data.length >= HEADER.length && data[0] == MARKER[0] && data[1] == MARKER[1];
+    }
+
+    private static byte[] header(Schema schema) {
+        return ByteBuffer.allocate(MARKER.length + Long.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .put(MARKER)
+                .putLong(SchemaNormalization.parsingFingerprint64(schema))
+                .array();
+    }
+
+    private static Schema load(String resource) {
+        try (InputStream in = SnapshotFormat.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Схема " + resource + " не найдена");
+            }
+            return new Schema.Parser().parse(in);
+        } catch (IOException e) {
+            throw new SerializationException("Не удалось прочитать схему " + resource, e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package tracing;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import ru.yandex.practicum.kafka.telemetry.event.BatchedSensorEventAvro;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Контекст трассировки события от датчика: идентификатор трассы и время приёма события коллектором.
+ * Передаётся через заголовки Kafka в топике датчиков, затем в {@code SensorStateAvro} снапшота
+ * и далее в {@code DeviceActionRequest}.
+ */
+public record TraceContext(String traceId, long ingestedAt) {
+    public static final String TRACE_ID_HEADER = "trace-id";
+    public static final String INGESTED_AT_HEADER = "ingested-at";
+
+    /**
+     * Создаёт новый контекст для события, только что принятого коллектором.
+     */
+    public static TraceContext start() {
+        return new TraceContext(UUID.randomUUID().toString(), System.currentTimeMillis());
+    }
+
+    /**
+     * Восстанавливает контекст из заголовков записи Kafka.
+     * Пустой результат означает, что запись пришла от producer'а без трассировки.
+     */
+    public static Optional<TraceContext> fromHeaders(Headers headers) {
+        Header traceId = headers.lastHeader(TRACE_ID_HEADER);
+        Header ingestedAt = headers.lastHeader(INGESTED_AT_HEADER);
+        if (traceId == null || ingestedAt == null || ingestedAt.value().length != Long.BYTES) {
+            return Optional.empty();
+        }
+        return Optional.of(new TraceContext(
+                new String(traceId.value(), StandardCharsets.UTF_8),
+                ByteBuffer.wrap(ingestedAt.value()).getLong()));
+    }
+
+    /**
+     * Восстанавливает контекст события из пачки событий хаба.
+     * Пустой результат означает, что событие попало в пачку без трассировки.
+     */
+    public static Optional<TraceContext> fromBatched(BatchedSensorEventAvro entry) {
+        if (entry.getTraceId() == null || entry.getIngestedAt() == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new TraceContext(entry.getTraceId(), entry.getIngestedAt().toEpochMilli()));
+    }
+
+    public void writeTo(Headers headers) {
+        headers.add(TRACE_ID_HEADER, traceId.getBytes(StandardCharsets.UTF_8));
+        headers.add(INGESTED_AT_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(ingestedAt).array());
+    }
+
+    /**
+     * Время в миллисекундах, прошедшее с момента приёма события коллектором.
+     */
+    public long elapsedMillis() {
+        return System.currentTimeMillis() - ingestedAt;
+    }
+}
@@ -0,0 +1,127 @@
+package deserializer;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.grpc.telemetry.event.ClimateSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.LightSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.MotionSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.SwitchSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.TemperatureSensorProto;
+import ru.yandex.practicum.kafka.telemetry.event.BatchedSensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ProtoSensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+import serializer.GeneralAvroSerializer;
+import tracing.TraceContext;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SensorEventProtoDeserializerTest {
+    private static final String TOPIC = "telemetry.sensors.v1";
+    private static final Timestamp TIMESTAMP = Timestamp.newBuilder().setSeconds(1_767_225_600).setNanos(123_456_789)
+            .build();
+
+    private final GeneralAvroSerializer serializer = new GeneralAvroSerializer();
+    private final SensorEventBatchDeserializer deserializer = new SensorEventBatchDeserializer();
+
+    @Test
+    void readsEveryPayloadTypeFromProtoEnvelope() {
+        Map<SensorEventProto, Object> payloads = Map.of(
+                event().setClimateSensorEvent(ClimateSensorProto.newBuilder()
+                        .setTemperatureC(-12).setHumidity(45).setCo2Level(800)).build(),
+                new ClimateSensorAvro(-12, 45, 800),
+                event().setLightSensorEvent(LightSensorProto.newBuilder()
+                        .setLinkQuality(90).setLuminosity(300)).build(),
+                new LightSensorAvro(90, 300),
+                event().setMotionSensorEvent(MotionSensorProto.newBuilder()
+                        .setLinkQuality(80).setMotion(true).setVoltage(220)).build(),
+                new MotionSensorAvro(80, true, 220),
+                event().setSwitchSensorEvent(SwitchSensorProto.newBuilder().setState(true)).build(),
+                new SwitchSensorAvro(true),
+                event().setTemperatureSensorEvent(TemperatureSensorProto.newBuilder()
+                        .setTemperatureC(21).setTemperatureF(69)).build(),
+                new TemperatureSensorAvro(21, 69));
+
+        payloads.forEach((event, payload) -> {
+            RecordHeaders headers = new RecordHeaders();
+            SensorEventBatchDeserializer.markProto(headers);
+
+            SensorEventBatchAvro batch = deserializer.deserialize(TOPIC, headers, envelope(event.toByteString()));
+
+            assertThat(batch.getHubId()).isEqualTo("hub-1");
+            SensorEventAvro read = batch.getEvents().getFirst().getEvent();
+            assertThat(read).isEqualTo(new SensorEventAvro("sensor-1", "hub-1",
+                    Instant.ofEpochSecond(TIMESTAMP.getSeconds(), TIMESTAMP.getNanos()), payload));
+            // разбор Protobuf в Avro такой же, как у обработчиков коллектора
+            assertThat(read).isEqualTo(SensorEventProtoDeserializer.toAvro(event));
+        });
+    }
+
+    @Test
+    void keepsTraceContextFromRecordHeaders() {
+        RecordHeaders headers = new RecordHeaders();
+        new TraceContext("trace-1", 1_000).writeTo(headers);
+        SensorEventBatchDeserializer.markProto(headers);
+        SensorEventProto event = event().setSwitchSensorEvent(SwitchSensorProto.newBuilder().setState(false)).build();
+
+        List<BatchedSensorEventAvro> events = deserializer.deserialize(TOPIC, headers, envelope(event.toByteString()))
+                .getEvents();
+
+        assertThat(events).singleElement().satisfies(batched -> {
+            assertThat(batched.getTraceId()).isEqualTo("trace-1");
+            assertThat(batched.getIngestedAt()).isEqualTo(Instant.ofEpochMilli(1_000));
+        });
+    }
+
+    @Test
+    void marksProtoEnvelopeSeparatelyFromBatch() {
+        RecordHeaders proto = new RecordHeaders();
+        SensorEventBatchDeserializer.markProto(proto);
+        RecordHeaders batch = new RecordHeaders();
+        SensorEventBatchDeserializer.markBatch(batch);
+
+        assertThat(SensorEventBatchDeserializer.isProto(proto)).isTrue();
+        assertThat(SensorEventBatchDeserializer.isBatch(proto)).isFalse();
+        assertThat(SensorEventBatchDeserializer.isProto(batch)).isFalse();
+        assertThat(SensorEventBatchDeserializer.isProto(new RecordHeaders())).isFalse();
+    }
+
+    @Test
+    void rejectsEventWithoutPayloadOrBrokenBytes() {
+        RecordHeaders headers = new RecordHeaders();
+        SensorEventBatchDeserializer.markProto(headers);
+        byte[] withoutPayload = envelope(event().build().toByteString());
+        byte[] broken = envelope(ByteString.copyFrom(new byte[]{0x12, 0x7F}));
+
+        assertThatThrownBy(() -> deserializer.deserialize(TOPIC, headers, withoutPayload))
+                .isInstanceOf(SerializationException.class);
+        assertThatThrownBy(() -> deserializer.deserialize(TOPIC, headers, broken))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    private byte[] envelope(ByteString event) {
+        return serializer.serialize(TOPIC, new ProtoSensorEventAvro(ByteBuffer.wrap(event.toByteArray())));
+    }
+
+    private static SensorEventProto.Builder event() {
+        return SensorEventProto.newBuilder()
+                .setId("sensor-1")
+                .setHubId("hub-1")
+                .setTimestamp(TIMESTAMP);
+    }
+}
@@ -0,0 +1,101 @@
+package deserializer;
+
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.kafka.telemetry.event.MetricHistoryAvro;
+import ru.yandex.practicum.kafka.telemetry.event.RollupMetricAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorHistoryAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+import serializer.GeneralAvroSerializer;
+import serializer.SnapshotFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorsSnapshotDeserializerTest {
+    private static final String TOPIC = "telemetry.snapshots.v1";
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final GeneralAvroSerializer serializer = new GeneralAvroSerializer();
+    private final SensorsSnapshotDeserializer deserializer = new SensorsSnapshotDeserializer();
+
+    @Test
+    void writesSnapshotWithoutHistoryInPreviousFormat() throws IOException {
+        SensorsSnapshotAvro snapshot = snapshot(null);
+
+        byte[] data = serializer.serialize(TOPIC, snapshot);
+
+        assertThat(SnapshotFormat.isMarked(data)).isFalse();
+        assertThat(data).isEqualTo(previousFormat());
+        assertThat(deserializer.deserialize(TOPIC, data)).isEqualTo(snapshot);
+    }
+
+    @Test
+    void readsSnapshotWrittenBeforeHistory() throws IOException {
+        SensorsSnapshotAvro snapshot = deserializer.deserialize(TOPIC, previousFormat());
+
+        SensorStateAvro state = snapshot.getSensorsState().get("t-1");
+        assertThat(state.getData()).isEqualTo(new TemperatureSensorAvro(21, 69));
+        assertThat(state.getTraceId()).isEqualTo("trace-1");
+        assertThat(state.getHistory()).isNull();
+    }
+
+    @Test
+    void marksSnapshotWithHistory() {
+        SensorHistoryAvro history = SensorHistoryAvro.newBuilder()
+                .setFirstTimestamp(START)
+                .setTimestampDeltas(List.of(1000L))
+                .setMetrics(List.of(new MetricHistoryAvro(RollupMetricAvro.TEMPERATURE_C, 20, List.of(1))))
+                .build();
+        SensorsSnapshotAvro snapshot = snapshot(history);
+
+        byte[] data = serializer.serialize(TOPIC, snapshot);
+
+        assertThat(SnapshotFormat.isMarked(data)).isTrue();
+        assertThat(deserializer.deserialize(TOPIC, data)).isEqualTo(snapshot);
+    }
+
+    private static SensorsSnapshotAvro snapshot(SensorHistoryAvro history) {
+        SensorStateAvro state = SensorStateAvro.newBuilder()
+                .setTimestamp(START)
+                .setData(new TemperatureSensorAvro(21, 69))
+                .setTraceId("trace-1")
+                .setIngestedAt(START)
+                .setHistory(history)
+                .build();
+        return new SensorsSnapshotAvro("hub-1", START, Map.of("t-1", state));
+    }
+
+    /**
+     * Снапшот, как его записывала версия без истории показаний.
+     */
+    private static byte[] previousFormat() throws IOException {
+        GenericData.Record state = new GenericData.Record(
+                SnapshotFormat.WITHOUT_HISTORY.getField("sensorsState").schema().getValueType());
+        state.put("timestamp", START.toEpochMilli());
+        state.put("data", new TemperatureSensorAvro(21, 69));
+        state.put("traceId", "trace-1");
+        state.put("ingestedAt", START.toEpochMilli());
+        GenericRecord snapshot = new GenericData.Record(SnapshotFormat.WITHOUT_HISTORY);
+        snapshot.put("hubId", "hub-1");
+        snapshot.put("timestamp", START.toEpochMilli());
+        snapshot.put("sensorsState", Map.of("t-1", state));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        new GenericDatumWriter<GenericRecord>(SnapshotFormat.WITHOUT_HISTORY).write(snapshot, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,69 @@
+package profiling;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+import serializer.GeneralAvroSerializer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AvroSerializeEventTest {
+    private static final String EVENT_NAME = "ru.yandex.practicum.telemetry.AvroSerialize";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void commitsEventWithTopicHubPayloadAndSize() throws IOException {
+        GeneralAvroSerializer serializer = new GeneralAvroSerializer();
+        SensorEventAvro event = new SensorEventAvro("t-1", "hub-1", Instant.ofEpochMilli(1_000),
+                new TemperatureSensorAvro(21, 69));
+        byte[] data;
+
+        try (Recording recording = new Recording()) {
+            recording.enable(AvroSerializeEvent.class);
+            recording.start();
+            data = serializer.serialize("telemetry.sensors.v1", event);
+            recording.stop();
+            recording.dump(directory.resolve("serialize.jfr"));
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(directory.resolve("serialize.jfr")).stream()
+                .filter(recorded -> recorded.getEventType().getName().equals(EVENT_NAME))
+                .toList();
+        assertThat(events).singleElement().satisfies(recorded -> {
+            assertThat(recorded.getString("topic")).isEqualTo("telemetry.sensors.v1");
+            assertThat(recorded.getString("hubId")).isEqualTo("hub-1");
+            // тип полезной нагрузки, а не обёртки события
+            assertThat(recorded.getString("payloadType")).isEqualTo("TemperatureSensorAvro");
+            assertThat(recorded.getLong("bytes")).isEqualTo(data.length);
+            assertThat(recorded.getDuration().isNegative()).isFalse();
+        });
+    }
+
+    @Test
+    void commitsNothingWhenEventIsDisabled() throws IOException {
+        GeneralAvroSerializer serializer = new GeneralAvroSerializer();
+
+        try (Recording recording = new Recording()) {
+            recording.disable(AvroSerializeEvent.class);
+            recording.start();
+            serializer.serialize("telemetry.sensors.v1", new SensorEventAvro("t-1", "hub-1",
+                    Instant.ofEpochMilli(1_000), new TemperatureSensorAvro(21, 69)));
+            recording.stop();
+            recording.dump(directory.resolve("disabled.jfr"));
+        }
+
+        assertThat(RecordingFile.readAllEvents(directory.resolve("disabled.jfr")))
+                .noneMatch(recorded -> recorded.getEventType().getName().equals(EVENT_NAME));
+    }
+}